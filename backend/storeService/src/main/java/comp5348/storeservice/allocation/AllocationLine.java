@@ -0,0 +1,14 @@
+package comp5348.storeservice.allocation;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Units to take from one slot
+ */
+@Getter
+@AllArgsConstructor
+public class AllocationLine {
+    private final StockSlot slot;
+    private final int quantity;
+}
@@ -0,0 +1,45 @@
+package comp5348.storeservice.allocation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of the AllocationStrategy beans, plus the one configured with inventory.allocation.strategy
+ */
+@Component
+public class AllocationStrategies {
+
+    private final Map<String, AllocationStrategy> byName;
+    private final AllocationStrategy configured;
+
+    @Autowired
+    public AllocationStrategies(List<AllocationStrategy> strategies,
+                                @Value("${inventory.allocation.strategy:SMALLEST_FIRST}") String configuredName) {
+        this.byName = strategies.stream()
+                .collect(Collectors.toMap(AllocationStrategy::getName, Function.identity()));
+        this.configured = get(configuredName);
+    }
+
+    public AllocationStrategy get(String name) {
+        AllocationStrategy strategy = byName.get(name.toUpperCase());
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown allocation strategy: " + name + ", expected one of " + byName.keySet());
+        }
+        return strategy;
+    }
+
+    public AllocationStrategy getConfigured() {
+        return configured;
+    }
+
+    public Collection<AllocationStrategy> getAll() {
+        return byName.values();
+    }
+}
@@ -0,0 +1,38 @@
+package comp5348.storeservice.allocation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which warehouses an order's quantity is taken from.
+ * Implementations are Spring beans, selected by name with inventory.allocation.strategy.
+ * They only plan: the caller applies the plan and re-plans if the stock changed underneath it.
+ */
+public interface AllocationStrategy {
+
+    String getName();
+
+    /**
+     * @param slots       current stock per warehouse (any order, may contain empty slots)
+     * @param quantity    units to allocate
+     * @param destination delivery destination, may be null
+     * @return the lines to take, or null if the slots do not hold enough stock
+     */
+    List<AllocationLine> allocate(List<StockSlot> slots, int quantity, Destination destination);
+
+    /**
+     * Take from the slots in the given order until the quantity is covered
+     */
+    static List<AllocationLine> takeInOrder(List<StockSlot> ordered, int quantity) {
+        List<AllocationLine> lines = new ArrayList<>();
+        int remaining = quantity;
+        for (StockSlot slot : ordered) {
+            if (remaining <= 0) break;
+            int take = Math.min(slot.getQuantity(), remaining);
+            if (take <= 0) continue;
+            lines.add(new AllocationLine(slot, take));
+            remaining -= take;
+        }
+        return remaining > 0 ? null : lines;
+    }
+}
@@ -0,0 +1,35 @@
+package comp5348.storeservice.allocation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Delivery destination, used by the NEAREST strategy
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Destination {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private double latitude;
+    private double longitude;
+
+    /**
+     * Great-circle (haversine) distance from the given point; Double.MAX_VALUE if it has no coordinates
+     */
+    public double distanceKm(Double fromLatitude, Double fromLongitude) {
+        if (fromLatitude == null || fromLongitude == null) {
+            return Double.MAX_VALUE;
+        }
+        double lat1 = Math.toRadians(fromLatitude);
+        double lat2 = Math.toRadians(latitude);
+        double dLat = lat2 - lat1;
+        double dLon = Math.toRadians(longitude - fromLongitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+}
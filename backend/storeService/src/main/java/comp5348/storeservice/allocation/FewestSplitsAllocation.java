@@ -0,0 +1,48 @@
+package comp5348.storeservice.allocation;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Minimum number of warehouses per order.
+ * The k largest warehouses are the smallest set that can cover the quantity; of those, the last one is
+ * swapped for the smallest warehouse that still covers the remainder, so large bins are kept for large orders.
+ */
+@Component
+public class FewestSplitsAllocation implements AllocationStrategy {
+
+    @Override
+    public String getName() {
+        return "FEWEST_SPLITS";
+    }
+
+    @Override
+    public List<AllocationLine> allocate(List<StockSlot> slots, int quantity, Destination destination) {
+        List<StockSlot> largestFirst = slots.stream()
+                .filter(slot -> slot.getQuantity() > 0)
+                .sorted(Comparator.comparingInt(StockSlot::getQuantity).reversed())
+                .collect(Collectors.toList());
+
+        List<AllocationLine> lines = new ArrayList<>();
+        int remaining = quantity;
+        for (int i = 0; i < largestFirst.size() && remaining > 0; i++) {
+            StockSlot slot = largestFirst.get(i);
+            if (slot.getQuantity() >= remaining) {
+                // Best fit for the last piece: smallest remaining warehouse that covers it
+                StockSlot bestFit = slot;
+                for (int j = i + 1; j < largestFirst.size() && largestFirst.get(j).getQuantity() >= remaining; j++) {
+                    bestFit = largestFirst.get(j);
+                }
+                lines.add(new AllocationLine(bestFit, remaining));
+                return lines;
+            }
+            lines.add(new AllocationLine(slot, slot.getQuantity()));
+            remaining -= slot.getQuantity();
+        }
+        return null;
+    }
+}
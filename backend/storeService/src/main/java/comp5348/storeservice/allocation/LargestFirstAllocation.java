@@ -0,0 +1,26 @@
+package comp5348.storeservice.allocation;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Take from the largest warehouses first
+ */
+@Component
+public class LargestFirstAllocation implements AllocationStrategy {
+
+    @Override
+    public String getName() {
+        return "LARGEST_FIRST";
+    }
+
+    @Override
+    public List<AllocationLine> allocate(List<StockSlot> slots, int quantity, Destination destination) {
+        return AllocationStrategy.takeInOrder(slots.stream()
+                .sorted(Comparator.comparingInt(StockSlot::getQuantity).reversed())
+                .collect(Collectors.toList()), quantity);
+    }
+}
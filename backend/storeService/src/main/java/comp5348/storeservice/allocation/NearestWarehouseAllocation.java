@@ -0,0 +1,40 @@
+package comp5348.storeservice.allocation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Take from the warehouses closest to the delivery destination (great-circle distance).
+ * Warehouses without coordinates come last; without a destination this is FEWEST_SPLITS.
+ */
+@Component
+public class NearestWarehouseAllocation implements AllocationStrategy {
+
+    private final FewestSplitsAllocation fallback;
+
+    @Autowired
+    public NearestWarehouseAllocation(FewestSplitsAllocation fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() {
+        return "NEAREST";
+    }
+
+    @Override
+    public List<AllocationLine> allocate(List<StockSlot> slots, int quantity, Destination destination) {
+        if (destination == null) {
+            return fallback.allocate(slots, quantity, null);
+        }
+        return AllocationStrategy.takeInOrder(slots.stream()
+                .sorted(Comparator.comparingDouble(
+                                (StockSlot slot) -> destination.distanceKm(slot.getLatitude(), slot.getLongitude()))
+                        .thenComparing(Comparator.comparingInt(StockSlot::getQuantity).reversed()))
+                .collect(Collectors.toList()), quantity);
+    }
+}
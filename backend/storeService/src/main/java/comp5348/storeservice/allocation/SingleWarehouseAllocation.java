@@ -0,0 +1,39 @@
+package comp5348.storeservice.allocation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Ship from one warehouse whenever one can cover the whole order (the smallest such warehouse);
+ * otherwise fall back to draining the smallest warehouses, which consolidates stock over time.
+ */
+@Component
+public class SingleWarehouseAllocation implements AllocationStrategy {
+
+    private final SmallestFirstAllocation fallback;
+
+    @Autowired
+    public SingleWarehouseAllocation(SmallestFirstAllocation fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() {
+        return "SINGLE_WAREHOUSE";
+    }
+
+    @Override
+    public List<AllocationLine> allocate(List<StockSlot> slots, int quantity, Destination destination) {
+        Optional<StockSlot> single = slots.stream()
+                .filter(slot -> slot.getQuantity() >= quantity)
+                .min(Comparator.comparingInt(StockSlot::getQuantity));
+        if (single.isPresent()) {
+            return List.of(new AllocationLine(single.get(), quantity));
+        }
+        return fallback.allocate(slots, quantity, destination);
+    }
+}
@@ -0,0 +1,26 @@
+package comp5348.storeservice.allocation;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Original behaviour: drain the smallest warehouses first (most splits, but clears out small bins)
+ */
+@Component
+public class SmallestFirstAllocation implements AllocationStrategy {
+
+    @Override
+    public String getName() {
+        return "SMALLEST_FIRST";
+    }
+
+    @Override
+    public List<AllocationLine> allocate(List<StockSlot> slots, int quantity, Destination destination) {
+        return AllocationStrategy.takeInOrder(slots.stream()
+                .sorted(Comparator.comparingInt(StockSlot::getQuantity))
+                .collect(Collectors.toList()), quantity);
+    }
+}
@@ -0,0 +1,26 @@
+package comp5348.storeservice.allocation;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Stock of one product in one warehouse, as seen by an allocation strategy
+ */
+@Getter
+@AllArgsConstructor
+public class StockSlot {
+    private final Long stockRowId;      // warehouse_products.id (null when planned from the stock ledger)
+    private final Long warehouseId;
+    private final String warehouseName;
+    private final String warehouseLocation;
+    private final Double latitude;
+    private final Double longitude;
+    private final Long productId;
+    private final String productName;
+    private final int quantity;
+
+    public StockSlot withQuantity(int newQuantity) {
+        return new StockSlot(stockRowId, warehouseId, warehouseName, warehouseLocation, latitude, longitude,
+                productId, productName, newQuantity);
+    }
+}
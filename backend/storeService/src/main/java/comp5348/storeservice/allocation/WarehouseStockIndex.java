@@ -0,0 +1,104 @@
+package comp5348.storeservice.allocation;
+
+import comp5348.storeservice.dto.WarehouseStockView;
+import comp5348.storeservice.repository.WarehouseProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static comp5348.storeservice.utils.TransactionCallbacks.afterCommit;
+
+/**
+ * In-memory per-product index of warehouse stock, used to plan allocations without a sorted query per order.
+ *
+ * The index is a planning hint, not the source of truth: the guarded decrement on warehouse_products
+ * still decides, and a failed decrement invalidates the product so the next attempt re-reads it.
+ * Committed holds are applied to the index directly; other stock changes invalidate the product,
+ * and entries older than inventory.allocation.index-ttl-ms are reloaded (changes made by other instances).
+ */
+@Component
+public class WarehouseStockIndex {
+
+    @Autowired
+    private WarehouseProductRepository warehouseProductRepository;
+
+    @Value("${inventory.allocation.index-ttl-ms:5000}")
+    private long ttlMillis;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Stock slots of a product (warehouses with stock only)
+     * @param reload true to bypass the cached entry and read warehouse_products again
+     */
+    public List<StockSlot> getSlots(Long productId, boolean reload) {
+        Entry entry = entries.get(productId);
+        if (reload || entry == null || System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+            entry = load(productId);
+        }
+        return entry.slots;
+    }
+
+    /**
+     * Read a product's stock slots without storing them. For callers inside a transaction that has already
+     * changed the product's stock: the read sees those uncommitted changes, which must not reach the shared index.
+     */
+    public List<StockSlot> peek(Long productId) {
+        return readSlots(productId);
+    }
+
+    /**
+     * Apply a committed stock change of one warehouse (holds made through the index)
+     */
+    public void adjustAfterCommit(Long productId, Long warehouseId, int delta) {
+        afterCommit(() -> entries.computeIfPresent(productId, (id, entry) -> {
+            List<StockSlot> slots = new ArrayList<>(entry.slots.size());
+            for (StockSlot slot : entry.slots) {
+                slots.add(slot.getWarehouseId().equals(warehouseId) ? slot.withQuantity(slot.getQuantity() + delta) : slot);
+            }
+            return new Entry(slots, entry.loadedAt);
+        }));
+    }
+
+    /**
+     * Drop a product once the current transaction commits, so the next allocation re-reads it
+     */
+    public void invalidateAfterCommit(Long productId) {
+        afterCommit(() -> entries.remove(productId));
+    }
+
+    public void invalidate(Long productId) {
+        entries.remove(productId);
+    }
+
+    private Entry load(Long productId) {
+        Entry entry = new Entry(readSlots(productId), System.currentTimeMillis());
+        entries.put(productId, entry);
+        return entry;
+    }
+
+    private List<StockSlot> readSlots(Long productId) {
+        List<StockSlot> slots = new ArrayList<>();
+        for (WarehouseStockView level : warehouseProductRepository.findStockLevelsByProductId(productId)) {
+            slots.add(new StockSlot(level.getId(), level.getWarehouseId(), level.getWarehouseName(),
+                    level.getWarehouseLocation(), level.getWarehouseLatitude(), level.getWarehouseLongitude(),
+                    level.getProductId(), level.getProductName(), level.getQuantity()));
+        }
+        return List.copyOf(slots);
+    }
+
+    private static final class Entry {
+        final List<StockSlot> slots;
+        final long loadedAt;
+
+        Entry(List<StockSlot> slots, long loadedAt) {
+            this.slots = slots;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
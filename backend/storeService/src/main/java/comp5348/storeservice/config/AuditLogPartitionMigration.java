@@ -0,0 +1,86 @@
+package comp5348.storeservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * One-way migration of inventory_audit_log from the plain table Hibernate creates to a table partitioned by
+ * month on operation_time (db/migration/partition_inventory_audit_log.sql, which also installs the partition
+ * functions AuditPartitionManager calls).
+ *
+ * Runs once, like ReservationLinkMigration: when every singleton is created and before the web server takes
+ * requests, in one transaction. An advisory lock serialises instances starting together; a row in
+ * schema_migration marks it done, so later starts skip it. A table that is already partitioned is only marked.
+ */
+@Component
+public class AuditLogPartitionMigration implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogPartitionMigration.class);
+
+    static final String NAME = "inventory-audit-log-partitioned";
+
+    private static final String SCRIPT = "db/migration/partition_inventory_audit_log.sql";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (isDone()) {
+            return;
+        }
+        String script = loadScript();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("select pg_advisory_xact_lock(hashtext(?))", Object.class, NAME);
+            // Another instance may have converted the table while this one waited for the lock
+            if (isDone()) {
+                return;
+            }
+            if (isPartitioned()) {
+                logger.info("inventory_audit_log is already partitioned, marking {} done", NAME);
+            } else {
+                // The driver splits the script into statements itself and keeps the $$ function bodies whole
+                jdbcTemplate.execute(script);
+                logger.info("Converted inventory_audit_log to monthly partitions");
+            }
+            jdbcTemplate.update("insert into schema_migration (name, applied_at) values (?, now()) " +
+                    "on conflict (name) do nothing", NAME);
+        });
+    }
+
+    private boolean isDone() {
+        Integer done = jdbcTemplate.queryForObject("select count(*) from schema_migration where name = ?",
+                Integer.class, NAME);
+        return done != null && done > 0;
+    }
+
+    private boolean isPartitioned() {
+        List<String> kind = jdbcTemplate.queryForList(
+                "select cast(relkind as text) from pg_class where oid = to_regclass(?)", String.class, "inventory_audit_log");
+        return !kind.isEmpty() && "p".equals(kind.get(0));
+    }
+
+    private String loadScript() {
+        try {
+            return StreamUtils.copyToString(new ClassPathResource(SCRIPT).getInputStream(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package comp5348.storeservice.config;
+
+import comp5348.storeservice.dto.CatalogImportReportDTO;
+import comp5348.storeservice.importer.ImportFormat;
+import comp5348.storeservice.service.CatalogImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports a catalog file at startup, e.g.
+ * java -jar storeService.jar --catalog.import.file=/data/catalog.csv.gz --catalog.import.exit-after=true
+ *
+ * Format follows the extension (.csv, .ndjson/.jsonl, optionally .gz) unless catalog.import.format is set.
+ * With exit-after the application stops once the import finishes (exit code 1 if it failed).
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(name = "catalog.import.file")
+public class CatalogImportRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportRunner.class);
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${catalog.import.file}")
+    private String file;
+
+    @Value("${catalog.import.format:}")
+    private String format;
+
+    @Value("${catalog.import.exit-after:false}")
+    private boolean exitAfter;
+
+    @Override
+    public void run(String... args) throws Exception {
+        Path path = Path.of(file);
+        ImportFormat importFormat = format.isBlank()
+                ? ImportFormat.fromFileName(path.getFileName().toString())
+                : ImportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        logger.info("[IMPORT] Importing {} as {} ({} bytes)", path, importFormat, Files.size(path));
+
+        CatalogImportReportDTO report;
+        try (InputStream in = open(path)) {
+            report = catalogImportService.importStream(in, importFormat, "file:" + path);
+        }
+        boolean failed = "FAILED".equals(report.getState());
+        if (!report.getErrors().isEmpty()) {
+            logger.warn("[IMPORT] {} rows rejected, first: {}", report.getRowsRejected(), report.getErrors());
+        }
+        if (exitAfter) {
+            System.exit(SpringApplication.exit(applicationContext, () -> failed ? 1 : 0));
+        }
+    }
+
+    private static InputStream open(Path path) throws Exception {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+        return path.toString().toLowerCase(Locale.ROOT).endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+}
@@ -0,0 +1,56 @@
+package comp5348.storeservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One-way migration from the old comma-separated orders.inventory_transaction_ids column
+ * to inventory_transactions.order_id. The old column is left in place (no longer mapped) so the previous
+ * release can still be rolled back to; it can be dropped once that is no longer needed.
+ *
+ * Runs once: when every singleton is created (Hibernate has updated the schema and db/upgrade.sql has run)
+ * and before the web server takes requests. A row in schema_migration marks it done, so later starts skip it.
+ */
+@Component
+public class ReservationLinkMigration implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationLinkMigration.class);
+
+    static final String NAME = "reservation-link-order-id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Integer done = jdbcTemplate.queryForObject("select count(*) from schema_migration where name = ?",
+                Integer.class, NAME);
+        if (done != null && done > 0) {
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Integer legacyColumn = jdbcTemplate.queryForObject(
+                    "select count(*) from information_schema.columns " +
+                            "where table_name = 'orders' and column_name = 'inventory_transaction_ids'", Integer.class);
+            if (legacyColumn != null && legacyColumn > 0) {
+                int linked = jdbcTemplate.update(
+                        "update inventory_transactions t set order_id = o.id from orders o " +
+                                "where t.order_id is null and o.inventory_transaction_ids is not null " +
+                                "and t.id = any(cast(array_remove(string_to_array(replace(o.inventory_transaction_ids, ' ', ''), ','), '') as bigint[]))");
+                logger.info("Linked {} inventory transactions to their orders from orders.inventory_transaction_ids", linked);
+            }
+            // Another instance may have finished first; its update found nothing left to link
+            jdbcTemplate.update("insert into schema_migration (name, applied_at) values (?, now()) " +
+                    "on conflict (name) do nothing", NAME);
+        });
+    }
+}
@@ -4,6 +4,9 @@ import comp5348.storeservice.model.*;
 import comp5348.storeservice.repository.ProductRepository;
 import comp5348.storeservice.repository.WarehouseRepository;
 import comp5348.storeservice.repository.WarehouseProductRepository;
+import comp5348.storeservice.service.ProductStockSummaryService;
+import comp5348.storeservice.service.StockLedger;
+import comp5348.storeservice.service.WarehouseService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +34,15 @@ public class StoreDataInitializer implements CommandLineRunner {
     @Autowired
     private WarehouseProductRepository warehouseProductRepository;
 
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private WarehouseService warehouseService;
+
+    @Autowired
+    private ProductStockSummaryService stockSummaryService;
+
     @Override
     @Transactional
     public void run(String... args) throws Exception {
@@ -162,7 +174,9 @@ public class StoreDataInitializer implements CommandLineRunner {
                     warehouseProduct.setProduct(product);
                     warehouseProduct.setQuantity(quantity);
                     warehouseProduct.setModifyTime(LocalDateTime.now());
-                    warehouseProductRepository.save(warehouseProduct);
+                    warehouseService.recordStockSet(warehouseProductRepository.save(warehouseProduct));
+                    stockSummaryService.recordDelta(product.getId(), quantity);
+                    stockLedger.adjustAfterCommit(product.getId(), warehouse.getId(), product.getName(), warehouse.getName(), quantity);
                     logger.info("Assigned {} to {}: quantity = {}", product.getName(), whInfo.name, quantity);
                 }
             }
@@ -0,0 +1,77 @@
+package comp5348.storeservice.controller;
+
+import comp5348.storeservice.dto.FlashSaleDTO;
+import comp5348.storeservice.dto.FlashSaleRequest;
+import comp5348.storeservice.dto.OrderResponse;
+import comp5348.storeservice.service.FlashSaleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Admin API for flash-sale admission control (see FlashSaleService)
+ */
+@RestController
+@RequestMapping("/api/store/admin/flash-sales")
+@CrossOrigin(origins = "*")
+public class FlashSaleController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlashSaleController.class);
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    /**
+     * List armed flash sales
+     * GET /api/store/admin/flash-sales
+     */
+    @GetMapping
+    public ResponseEntity<OrderResponse> getFlashSales() {
+        return ResponseEntity.ok(OrderResponse.success(flashSaleService.getSales(), "Flash sales retrieved successfully"));
+    }
+
+    /**
+     * GET /api/store/admin/flash-sales/{productId}
+     */
+    @GetMapping("/{productId}")
+    public ResponseEntity<OrderResponse> getFlashSale(@PathVariable Long productId) {
+        FlashSaleDTO sale = flashSaleService.getSale(productId);
+        if (sale == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(OrderResponse.error("No flash sale for product " + productId));
+        }
+        return ResponseEntity.ok(OrderResponse.success(sale, "Flash sale retrieved successfully"));
+    }
+
+    /**
+     * Arm (or re-arm) a flash sale, loading the product's stock into the token pool
+     * POST /api/store/admin/flash-sales/{productId}
+     */
+    @PostMapping("/{productId}")
+    public ResponseEntity<OrderResponse> armFlashSale(@PathVariable Long productId,
+                                                      @RequestBody(required = false) FlashSaleRequest request) {
+        logger.info("POST /api/store/admin/flash-sales/{} - Arming flash sale", productId);
+        try {
+            FlashSaleDTO sale = flashSaleService.arm(productId, request == null ? new FlashSaleRequest() : request);
+            return ResponseEntity.ok(OrderResponse.success(sale, "Flash sale armed"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(OrderResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Disarm a flash sale and reconcile it with warehouse_products
+     * DELETE /api/store/admin/flash-sales/{productId}
+     */
+    @DeleteMapping("/{productId}")
+    public ResponseEntity<OrderResponse> disarmFlashSale(@PathVariable Long productId) {
+        logger.info("DELETE /api/store/admin/flash-sales/{} - Disarming flash sale", productId);
+        FlashSaleDTO sale = flashSaleService.disarm(productId);
+        if (sale == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(OrderResponse.error("No flash sale for product " + productId));
+        }
+        return ResponseEntity.ok(OrderResponse.success(sale, "Flash sale disarmed"));
+    }
+}
@@ -2,11 +2,13 @@ package comp5348.storeservice.controller;
 
 import comp5348.storeservice.dto.*;
 import comp5348.storeservice.model.OrderStatus;
+import comp5348.storeservice.service.FlashSaleService;
 import comp5348.storeservice.service.OrderService;
 import comp5348.storeservice.service.WarehouseService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,24 +21,31 @@ import java.util.Optional;
 public class OrderController {
     
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     
     @Autowired
     private OrderService orderService;
     
     @Autowired
     private WarehouseService warehouseService;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
     
     /**
-     * Get all order list
+     * Get all order list, newest first, one keyset page at a time (next page cursor in the X-Next-Cursor header)
      * GET /api/orders
      */
     @GetMapping
-    public ResponseEntity<OrderResponse> getAllOrders() {
+    public ResponseEntity<OrderResponse> getAllOrders(@RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit) {
         logger.info("GET /api/orders - Fetching all orders");
         
         try {
-            List<OrderDTO> orders = orderService.getAllOrders();
-            return ResponseEntity.ok(OrderResponse.success(orders, "Orders retrieved successfully"));
+            return orderList(orderService.listOrders(null, null, cursor, limit), "Orders retrieved successfully");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(OrderResponse.error(e.getMessage()));
         } catch (Exception e) {
             logger.error("Error fetching all orders: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -45,16 +54,19 @@ public class OrderController {
     }
     
     /**
-     * Get order list by user ID
+     * Get order list by user ID, newest first, one keyset page at a time
      * GET /api/orders/user/{userId}
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<OrderResponse> getOrdersByUserId(@PathVariable Long userId) {
+    public ResponseEntity<OrderResponse> getOrdersByUserId(@PathVariable Long userId,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer limit) {
         logger.info("GET /api/orders/user/{} - Fetching orders for user", userId);
         
         try {
-            List<OrderDTO> orders = orderService.getOrdersByUserId(userId);
-            return ResponseEntity.ok(OrderResponse.success(orders, "User orders retrieved successfully"));
+            return orderList(orderService.listOrders(null, userId, cursor, limit), "User orders retrieved successfully");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(OrderResponse.error(e.getMessage()));
         } catch (Exception e) {
             logger.error("Error fetching orders for user {}: {}", userId, e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -63,6 +75,25 @@ public class OrderController {
 
     }
     
+    /**
+     * Search orders, one keyset page at a time (newest first); status and userId are optional.
+     * Pass the returned nextCursor as cursor to get the following page.
+     * GET /api/orders/search
+     */
+    @GetMapping("/search")
+    public ResponseEntity<OrderResponse> searchOrders(@RequestParam(required = false) String status,
+                                                      @RequestParam(required = false) Long userId,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit) {
+        try {
+            OrderStatus orderStatus = status == null ? null : OrderStatus.valueOf(status.toUpperCase());
+            OrderPageDTO page = orderService.getOrderPage(orderStatus, userId, cursor, limit);
+            return ResponseEntity.ok(OrderResponse.success(page, "Orders retrieved successfully"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(OrderResponse.error(e.getMessage()));
+        }
+    }
+
     /**
      * Get order details by order ID
      * GET /api/orders/{id}
@@ -72,7 +103,7 @@ public class OrderController {
         logger.info("GET /api/orders/{} - Fetching order by id", id);
         
         try {
-            Optional<OrderDTO> order = orderService.getOrderById(id);
+            Optional<OrderDTO> order = orderService.getOrderDetail(id);
             if (order.isPresent()) {
                 return ResponseEntity.ok(OrderResponse.success(order.get(), "Order found"));
             } else {
@@ -86,21 +117,27 @@ public class OrderController {
     }
     
     /**
-     * Get order list by order status
+     * Get order list by order status, newest first, one keyset page at a time
      * GET /api/orders/status/{status}
      */
     @GetMapping("/status/{status}")
-    public ResponseEntity<OrderResponse> getOrdersByStatus(@PathVariable String status) {
+    public ResponseEntity<OrderResponse> getOrdersByStatus(@PathVariable String status,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer limit) {
         logger.info("GET /api/orders/status/{} - Fetching orders by status", status);
         
+        OrderStatus orderStatus;
         try {
-            OrderStatus orderStatus = OrderStatus.valueOf(status.toUpperCase());
-            List<OrderDTO> orders = orderService.getOrdersByStatus(orderStatus);
-            return ResponseEntity.ok(OrderResponse.success(orders, "Orders by status retrieved successfully"));
+            orderStatus = OrderStatus.valueOf(status.toUpperCase());
         } catch (IllegalArgumentException e) {
             logger.error("Invalid order status: {}", status);
             return ResponseEntity.badRequest()
                     .body(OrderResponse.error("Invalid order status: " + status));
+        }
+        try {
+            return orderList(orderService.listOrders(orderStatus, null, cursor, limit), "Orders by status retrieved successfully");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(OrderResponse.error(e.getMessage()));
         } catch (Exception e) {
             logger.error("Error fetching orders by status {}: {}", status, e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -116,13 +153,24 @@ public class OrderController {
     public ResponseEntity<OrderResponse> createOrder(@RequestBody CreateOrderRequest request) {
         logger.info("POST /api/orders - Creating new order for user: {}", request.getUserId());
         
+        FlashSaleService.Ticket ticket;
+        try {
+            ticket = flashSaleService.admit(request);
+        } catch (FlashSaleService.SoldOutException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(OrderResponse.error(e.getMessage()));
+        }
+
+        boolean placed = false;
         try {
             OrderDTO order = orderService.createOrder(request);
+            placed = true;
             return ResponseEntity.ok(OrderResponse.success(order, "Order created successfully"));
         } catch (Exception e) {
             logger.error("Error creating order: {}", e.getMessage(), e);
             return ResponseEntity.badRequest()
                     .body(OrderResponse.error("Failed to create order: " + e.getMessage()));
+        } finally {
+            if (ticket != null) ticket.complete(placed);
         }
     }
     
@@ -188,4 +236,16 @@ public class OrderController {
                     .body(OrderResponse.error("Failed to fetch order inventory records: " + e.getMessage()));
         }
     }
+
+    /**
+     * List-shaped order responses keep their original body: every order unless a cursor or limit is given,
+     * in which case the cursor of the next page, if any, is returned in the X-Next-Cursor header
+     */
+    private ResponseEntity<OrderResponse> orderList(OrderPageDTO page, String message) {
+        OrderResponse response = OrderResponse.success(page.getItems(), message);
+        if (page.getNextCursor() == null) {
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, page.getNextCursor()).body(response);
+    }
 }
@@ -0,0 +1,69 @@
+package comp5348.storeservice.controller;
+
+import comp5348.storeservice.dto.OrderResponse;
+import comp5348.storeservice.service.OrderViewProjector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Admin API for the order_view read model (see OrderViewProjector)
+ */
+@RestController
+@RequestMapping("/api/store/admin/order-view")
+@CrossOrigin(origins = "*")
+public class OrderViewController {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderViewController.class);
+
+    @Autowired
+    private OrderViewProjector orderViewProjector;
+
+    /**
+     * Orders waiting to be refreshed
+     * GET /api/store/admin/order-view/pending
+     */
+    @GetMapping("/pending")
+    public ResponseEntity<OrderResponse> getPending() {
+        return ResponseEntity.ok(OrderResponse.success(orderViewProjector.getPendingCount(), "Pending order view refreshes"));
+    }
+
+    /**
+     * Re-project every order from the write side
+     * POST /api/store/admin/order-view/rebuild
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<OrderResponse> rebuild() {
+        logger.info("POST /api/store/admin/order-view/rebuild - Rebuilding order view");
+        int projected = orderViewProjector.rebuild();
+        return ResponseEntity.ok(OrderResponse.success(projected, "Order view rebuilt"));
+    }
+
+    /**
+     * Re-project the orders with outbox events, order or payment changes since the given time
+     * POST /api/store/admin/order-view/replay?since=2025-01-01T00:00:00
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<OrderResponse> replay(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        logger.info("POST /api/store/admin/order-view/replay - Replaying order changes since {}", since);
+        int projected = orderViewProjector.replay(since);
+        return ResponseEntity.ok(OrderResponse.success(projected, "Order view replayed"));
+    }
+
+    /**
+     * Re-project one order now
+     * POST /api/store/admin/order-view/{orderId}/refresh
+     */
+    @PostMapping("/{orderId}/refresh")
+    public ResponseEntity<OrderResponse> refresh(@PathVariable Long orderId) {
+        int projected = orderViewProjector.refresh(List.of(orderId));
+        return ResponseEntity.ok(OrderResponse.success(projected, projected > 0 ? "Order view refreshed" : "Order not found"));
+    }
+}
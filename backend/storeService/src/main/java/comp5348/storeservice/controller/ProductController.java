@@ -1,6 +1,8 @@
 package comp5348.storeservice.controller;
 
 import comp5348.storeservice.dto.*;
+import comp5348.storeservice.importer.ImportFormat;
+import comp5348.storeservice.service.CatalogImportService;
 import comp5348.storeservice.service.ProductService;
 import comp5348.storeservice.utils.ResponseCode;
 import org.slf4j.Logger;
@@ -10,9 +12,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api/products")
@@ -23,6 +30,9 @@ public class ProductController {
     
     @Autowired
     private ProductService productService;
+
+    @Autowired
+    private CatalogImportService catalogImportService;
     
     /**
      * Get all product list
@@ -184,4 +194,57 @@ public class ProductController {
                     .body(new BaseResponse(ResponseCode.A3.getMessage(), ResponseCode.A3.getResponseCode()));
         }
     }
+
+    /**
+     * Stream a CSV or NDJSON catalog (products and/or warehouse stock) from the request body
+     * POST /api/products/import?format=csv|ndjson (Content-Encoding: gzip accepted)
+     * e.g. curl -H 'Content-Type: text/csv' --data-binary @catalog.csv .../api/products/import
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ProductResponse> importCatalog(@RequestParam(defaultValue = "csv") String format,
+                                                         HttpServletRequest request) {
+        ImportFormat importFormat;
+        try {
+            importFormat = ImportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ProductResponse.error("Unsupported import format: " + format));
+        }
+        logger.info("POST /api/products/import - Importing {} catalog", importFormat);
+
+        try (InputStream body = "gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))
+                ? new GZIPInputStream(request.getInputStream(), 1 << 16) : request.getInputStream()) {
+            CatalogImportReportDTO report = catalogImportService.importStream(body, importFormat, "http:" + request.getRemoteAddr());
+            if ("FAILED".equals(report.getState())) {
+                ProductResponse response = ProductResponse.error("Catalog import failed: " + report.getFailure());
+                response.setData(report);
+                return ResponseEntity.badRequest().body(response);
+            }
+            return ResponseEntity.ok(ProductResponse.withData(report, "Catalog import completed"));
+        } catch (IOException e) {
+            logger.error("Error reading catalog import body: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(ProductResponse.error("Failed to read import body: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Progress of recent catalog imports
+     * GET /api/products/import
+     */
+    @GetMapping("/import")
+    public ResponseEntity<ProductResponse> getCatalogImports() {
+        return ResponseEntity.ok(ProductResponse.withData(catalogImportService.getJobs(), "Catalog imports retrieved successfully"));
+    }
+
+    /**
+     * Progress of one catalog import
+     * GET /api/products/import/{jobId}
+     */
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<ProductResponse> getCatalogImport(@PathVariable String jobId) {
+        CatalogImportReportDTO report = catalogImportService.getJob(jobId);
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ProductResponse.error("Catalog import not found: " + jobId));
+        }
+        return ResponseEntity.ok(ProductResponse.withData(report, "Catalog import retrieved successfully"));
+    }
 }
@@ -1,12 +1,16 @@
 package comp5348.storeservice.controller;
 
 import comp5348.storeservice.dto.*;
+import comp5348.storeservice.service.FlashSaleService;
+import comp5348.storeservice.service.IdempotencyService;
+import comp5348.storeservice.service.OrderIntakeBatcher;
 import comp5348.storeservice.service.OrderProductService;
 import comp5348.storeservice.service.ProductService;
 import comp5348.storeservice.service.OrderService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
@@ -20,6 +24,8 @@ import java.util.List;
 public class StoreController {
     
     private static final Logger logger = LoggerFactory.getLogger(StoreController.class);
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     
     @Autowired
     private OrderProductService orderProductService;
@@ -29,25 +35,93 @@ public class StoreController {
     
     @Autowired
     private OrderService orderService;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private OrderIntakeBatcher orderIntake;
     
     /**
      * Create order and process payment
      * POST /api/store/orders/create-with-payment
+     * With an Idempotency-Key header, a repeat of a successful request returns the first response
+     * and places nothing (see IdempotencyService)
      */
     @PostMapping("/orders/create-with-payment")
-    public ResponseEntity<OrderResponse> createOrderWithPayment(@Valid @RequestBody CreateOrderRequest request) {
+    public ResponseEntity<OrderResponse> createOrderWithPayment(
+            @Valid @RequestBody CreateOrderRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         logger.info("POST /api/store/orders/create-with-payment - Creating order with payment for user: {}", 
                    request.getUserId());
+
+        IdempotencyService.Claim claim;
+        try {
+            claim = idempotencyService.begin(idempotencyKey, request.getUserId(), request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(OrderResponse.error(e.getMessage()));
+        }
+        if (claim != null) {
+            switch (claim.getOutcome()) {
+                case REPLAY:
+                    logger.info("Replaying stored response for idempotency key of user {}", request.getUserId());
+                    return ResponseEntity.status(claim.getHttpStatus()).body(claim.getResponse());
+                case IN_PROGRESS:
+                    return ResponseEntity.status(HttpStatus.CONFLICT)
+                            .body(OrderResponse.error("A request with this Idempotency-Key is still being processed"));
+                case MISMATCH:
+                    return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                            .body(OrderResponse.error("Idempotency-Key was already used with a different request"));
+                default:
+                    break;
+            }
+        }
         
+        // Flash-sale products: take tokens first, so sold-out requests never reach the database
+        FlashSaleService.Ticket ticket;
         try {
-            OrderDTO order = orderProductService.createOrderWithPayment(request);
-            return ResponseEntity.ok(OrderResponse.success(order, "Order created with payment successfully"));
+            ticket = flashSaleService.admit(request);
+        } catch (FlashSaleService.SoldOutException | IllegalArgumentException e) {
+            idempotencyService.release(claim);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(OrderResponse.error(e.getMessage()));
+        }
+
+        boolean placed = false;
+        try {
+            // The response is stored under the key in the order's own transaction
+            OrderDTO order = orderIntake.createOrderWithPayment(request, claim);
+            placed = true;
+            return ResponseEntity.ok(OrderResponse.success(order, OrderProductService.ORDER_CREATED_MESSAGE));
         } catch (Exception e) {
             logger.error("Error creating order with payment: {}", e.getMessage(), e);
+            idempotencyService.release(claim);
             return ResponseEntity.badRequest()
                     .body(OrderResponse.error("Failed to create order with payment: " + e.getMessage()));
+        } finally {
+            if (ticket != null) ticket.complete(placed);
         }
     }
+
+    /**
+     * Idempotency-Key hit rate and cache occupancy
+     * GET /api/store/admin/idempotency/stats
+     */
+    @GetMapping("/admin/idempotency/stats")
+    public ResponseEntity<OrderResponse> getIdempotencyStats() {
+        return ResponseEntity.ok(OrderResponse.success(idempotencyService.getStats(), "Idempotency stats retrieved successfully"));
+    }
+    
+    /**
+     * Group-commit intake queue depth, batch sizes and latency
+     * GET /api/store/admin/intake/stats
+     */
+    @GetMapping("/admin/intake/stats")
+    public ResponseEntity<OrderResponse> getIntakeStats() {
+        return ResponseEntity.ok(OrderResponse.success(orderIntake.getStats(), "Order intake stats retrieved successfully"));
+    }
     
     /**
      * Get complete order information (including payment status)
@@ -67,16 +141,25 @@ public class StoreController {
     }
     
     /**
-     * Get user's order list (including payment status)
+     * Get user's order list (including payment status), newest first: all orders, or one keyset page when a
+     * cursor or limit is given (the cursor of the next page is returned in the X-Next-Cursor header)
      * GET /api/store/orders/user/{userId}/with-payment
      */
     @GetMapping("/orders/user/{userId}/with-payment")
-    public ResponseEntity<List<OrderWithPaymentDTO>> getUserOrdersWithPaymentInfo(@PathVariable Long userId) {
+    public ResponseEntity<List<OrderWithPaymentDTO>> getUserOrdersWithPaymentInfo(@PathVariable Long userId,
+                                                                                  @RequestParam(required = false) String cursor,
+                                                                                  @RequestParam(required = false) Integer limit) {
         logger.info("GET /api/store/orders/user/{}/with-payment - Getting user orders with payment info", userId);
         
         try {
-            List<OrderWithPaymentDTO> orders = orderProductService.getUserOrdersWithPaymentInfo(userId);
-            return ResponseEntity.ok(orders);
+            OrderWithPaymentPageDTO page = orderProductService.getUserOrdersWithPaymentInfo(userId, cursor, limit);
+            if (page.getNextCursor() == null) {
+                return ResponseEntity.ok(page.getItems());
+            }
+            return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, page.getNextCursor()).body(page.getItems());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Bad user order list request for {}: {}", userId, e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             logger.error("Error getting user orders with payment info for {}: {}", userId, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -2,19 +2,24 @@ package comp5348.storeservice.controller;
 
 import comp5348.storeservice.dto.*;
 import comp5348.storeservice.model.Warehouse;
+import comp5348.storeservice.service.BulkStockUpdateService;
+import comp5348.storeservice.service.InventoryAuditRollupService;
+import comp5348.storeservice.service.InventorySnapshotService;
 import comp5348.storeservice.service.WarehouseService;
 import comp5348.storeservice.utils.ResponseCode;
-import jakarta.persistence.EntityNotFoundException;
 import jakarta.persistence.OptimisticLockException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/warehouses")
@@ -23,21 +28,34 @@ public class WarehouseController {
     @Autowired
     private WarehouseService warehouseService;
 
+    @Autowired
+    private InventoryAuditRollupService auditRollupService;
+
+    @Autowired
+    private BulkStockUpdateService bulkStockUpdateService;
+
+    @Autowired
+    private InventorySnapshotService inventorySnapshotService;
+
     private static final Logger logger = LoggerFactory.getLogger(WarehouseController.class);
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @GetMapping
-    public ResponseEntity<WarehouseResponse> getAllWarehouses() {
+    public ResponseEntity<WarehouseResponse> getAllWarehouses(@RequestParam(required = false) Integer productPage,
+                                                              @RequestParam(required = false) Integer productSize) {
         logger.info("Received request to get all warehouses");
-        List<WarehouseDTO> warehouseDTOS = warehouseService.getAllWarehouses();
+        List<WarehouseDTO> warehouseDTOS = warehouseService.getAllWarehouses(productPage, productSize);
         WarehouseResponse response = new WarehouseResponse(warehouseDTOS, ResponseCode.W7.getMessage(),
                 ResponseCode.W7.getResponseCode());
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<WarehouseResponse> getWarehouseById(@PathVariable Long id) {
+    public ResponseEntity<WarehouseResponse> getWarehouseById(@PathVariable Long id,
+                                                              @RequestParam(required = false) Integer productPage,
+                                                              @RequestParam(required = false) Integer productSize) {
         logger.info("Received request to get warehouse with id: {}", id);
-        WarehouseDTO warehouseDTO = warehouseService.getWarehouseById(id);
+        WarehouseDTO warehouseDTO = warehouseService.getWarehouseById(id, productPage, productSize);
         if (warehouseDTO == null) {
             logger.warn("Warehouse not found with id: {}", id);
             WarehouseResponse response = new WarehouseResponse(ResponseCode.W3.getMessage(), ResponseCode.W3.getResponseCode());
@@ -86,22 +104,68 @@ public class WarehouseController {
 
     @PutMapping("/products/quantity")
     public ResponseEntity<BaseResponse> updateProductQuantities(@RequestBody ProductQuantityUpdateRequest updates) {
+        BulkStockUpdateRequest request = new BulkStockUpdateRequest();
+        request.setAllOrNothing(true);
+        request.setCreateMissing(false);
+        request.setReason("Quantity update");
+        List<BulkStockUpdateRequest.StockLine> lines = new ArrayList<>();
+        if (updates.getUpdates() != null) {
+            for (ProductQuantityUpdateRequest.ProductQuantityUpdate update : updates.getUpdates()) {
+                BulkStockUpdateRequest.StockLine line = new BulkStockUpdateRequest.StockLine();
+                line.setWarehouseId(update.getWarehouseId());
+                line.setProductId(update.getProductId());
+                line.setNewQuantity(update.getNewQuantity());
+                lines.add(line);
+            }
+        }
+        request.setLines(lines);
         try {
-            CompletableFuture<WarehouseProductDTO> warehouseProductDTO = warehouseService.updateProductQuantity(updates);
-            if (warehouseProductDTO.get() == null) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new BaseResponse(ResponseCode.W5.getMessage(), ResponseCode.W5.getResponseCode()));
+            BulkStockUpdateResultDTO result = bulkStockUpdateService.apply(request);
+            if (!result.isCommitted()) {
+                return ResponseEntity.status(failureStatus(result)).body(WarehouseResponse.withData(result,
+                        ResponseCode.W5.getMessage(), ResponseCode.W5.getResponseCode()));
             }
-            return ResponseEntity.ok().body(new WarehouseResponse(warehouseProductDTO.get().getWarehouse(),
-                    ResponseCode.W1.getMessage(), ResponseCode.W1.getResponseCode()));
-        } catch (EntityNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new BaseResponse(ResponseCode.W5.getMessage(), ResponseCode.W5.getResponseCode()));
-        } catch (OptimisticLockException e) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body(new BaseResponse(ResponseCode.W5.getMessage(), ResponseCode.W5.getResponseCode()));
+            return ResponseEntity.ok(WarehouseResponse.withData(result, ResponseCode.W1.getMessage(), ResponseCode.W1.getResponseCode()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new BaseResponse(e.getMessage(), ResponseCode.W5.getResponseCode()));
         } catch (Exception e) {
+            logger.error("Bulk quantity update failed: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new BaseResponse(ResponseCode.W5.getMessage(), ResponseCode.W5.getResponseCode()));
         }
     }
 
+    /**
+     * 400 for malformed lines, 404 for products not stocked in the warehouse, 409 for updates that were rejected
+     */
+    private static HttpStatus failureStatus(BulkStockUpdateResultDTO result) {
+        boolean notFound = false;
+        for (BulkStockUpdateResultDTO.LineResult line : result.getLines()) {
+            if (line.getStatus() == BulkStockUpdateResultDTO.LineStatus.INVALID) return HttpStatus.BAD_REQUEST;
+            if (line.getStatus() == BulkStockUpdateResultDTO.LineStatus.NOT_FOUND) notFound = true;
+        }
+        return notFound ? HttpStatus.NOT_FOUND : HttpStatus.CONFLICT;
+    }
+
+    /**
+     * Apply many stock changes (delta or absolute quantity per line) in one transaction.
+     * Returns a result per line; with allOrNothing any failed line rolls back the whole request.
+     */
+    @PostMapping("/products/stock")
+    public ResponseEntity<BaseResponse> bulkUpdateStock(@RequestBody BulkStockUpdateRequest request) {
+        logger.info("Received bulk stock update with {} lines", request.getLines() == null ? 0 : request.getLines().size());
+        try {
+            BulkStockUpdateResultDTO result = bulkStockUpdateService.apply(request);
+            ResponseCode code = result.getFailed() == 0 ? ResponseCode.W9 : ResponseCode.W10;
+            return ResponseEntity.ok(WarehouseResponse.withData(result, code.getMessage(), code.getResponseCode()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new BaseResponse(e.getMessage(), ResponseCode.W10.getResponseCode()));
+        } catch (Exception e) {
+            logger.error("Bulk stock update failed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new BaseResponse(ResponseCode.W10.getMessage(),
+                    ResponseCode.W10.getResponseCode()));
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<BaseResponse> deleteWarehouse(@PathVariable Long id) {
         logger.info("Received request to delete warehouse with id: {}", id);
@@ -161,50 +225,132 @@ public class WarehouseController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Search inventory audit logs, one keyset page at a time (newest first).
+     * Pass the returned nextCursor as cursor to get the following page.
+     */
+    @GetMapping("/audit-logs")
+    public ResponseEntity<WarehouseResponse> searchAuditLogs(
+            @RequestParam(required = false) String operationType,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long productId,
+            @RequestParam(required = false) Long warehouseId,
+            @RequestParam(required = false) Long orderId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        AuditLogQuery query = AuditLogQuery.of(operationType, status, productId, warehouseId, orderId);
+        query.setFrom(from);
+        query.setTo(to);
+        query.setCursor(cursor);
+        query.setLimit(limit);
+        try {
+            AuditLogPageDTO page = warehouseService.queryAuditLogs(query);
+            return ResponseEntity.ok(WarehouseResponse.withData(page, "Audit logs retrieved successfully", ResponseCode.W7.getResponseCode()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new WarehouseResponse(e.getMessage(), "400"));
+        }
+    }
+
     /**
      * Get inventory audit logs for an order
      */
     @GetMapping("/audit-logs/order/{orderId}")
-    public ResponseEntity<WarehouseResponse> getAuditLogsByOrder(@PathVariable Long orderId) {
+    public ResponseEntity<WarehouseResponse> getAuditLogsByOrder(@PathVariable Long orderId,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit) {
         logger.info("Received request to get audit logs for order: {}", orderId);
-        List<InventoryAuditLogDTO> auditLogs = warehouseService.getAuditLogsByOrderId(orderId);
-        WarehouseResponse response = WarehouseResponse.withData(auditLogs, "Audit logs retrieved successfully", ResponseCode.W7.getResponseCode());
-        return ResponseEntity.ok(response);
+        return auditLogList(warehouseService.orderAuditQuery(null, orderId), cursor, limit,
+                "Audit logs retrieved successfully");
     }
     
     /**
      * Get inventory audit logs for a product
      */
     @GetMapping("/audit-logs/product/{productId}")
-    public ResponseEntity<WarehouseResponse> getAuditLogsByProduct(@PathVariable Long productId) {
+    public ResponseEntity<WarehouseResponse> getAuditLogsByProduct(@PathVariable Long productId,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(required = false) Integer limit) {
         logger.info("Received request to get audit logs for product: {}", productId);
-        List<InventoryAuditLogDTO> auditLogs = warehouseService.getAuditLogsByProductId(productId);
-        WarehouseResponse response = WarehouseResponse.withData(auditLogs, "Audit logs retrieved successfully", ResponseCode.W7.getResponseCode());
-        return ResponseEntity.ok(response);
+        return auditLogList(AuditLogQuery.of(null, null, productId, null, null), cursor, limit,
+                "Audit logs retrieved successfully");
     }
     
     /**
      * Get inventory audit logs for a warehouse
      */
     @GetMapping("/audit-logs/warehouse/{warehouseId}")
-    public ResponseEntity<WarehouseResponse> getAuditLogsByWarehouse(@PathVariable Long warehouseId) {
+    public ResponseEntity<WarehouseResponse> getAuditLogsByWarehouse(@PathVariable Long warehouseId,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer limit) {
         logger.info("Received request to get audit logs for warehouse: {}", warehouseId);
-        List<InventoryAuditLogDTO> auditLogs = warehouseService.getAuditLogsByWarehouseId(warehouseId);
-        WarehouseResponse response = WarehouseResponse.withData(auditLogs, "Audit logs retrieved successfully", ResponseCode.W7.getResponseCode());
-        return ResponseEntity.ok(response);
+        return auditLogList(AuditLogQuery.of(null, null, null, warehouseId, null), cursor, limit,
+                "Audit logs retrieved successfully");
     }
     
     /**
      * Get failed audit logs
      */
     @GetMapping("/audit-logs/failed")
-    public ResponseEntity<WarehouseResponse> getFailedAuditLogs() {
+    public ResponseEntity<WarehouseResponse> getFailedAuditLogs(@RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit) {
         logger.info("Received request to get failed audit logs");
-        List<InventoryAuditLogDTO> auditLogs = warehouseService.getFailedAuditLogs();
-        WarehouseResponse response = WarehouseResponse.withData(auditLogs, "Failed audit logs retrieved successfully", ResponseCode.W7.getResponseCode());
-        return ResponseEntity.ok(response);
+        return auditLogList(AuditLogQuery.of(null, "FAILED", null, null, null), cursor, limit,
+                "Failed audit logs retrieved successfully");
     }
     
+    /**
+     * Daily inventory operation totals per product and warehouse (read from the rollup table, so it also
+     * covers months whose raw audit rows have been archived). Dates are inclusive, default the last 30 days.
+     */
+    @GetMapping("/audit-rollups")
+    public ResponseEntity<WarehouseResponse> getAuditRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long productId,
+            @RequestParam(required = false) Long warehouseId,
+            @RequestParam(required = false) String operationType) {
+        LocalDate toDay = to != null ? to : LocalDate.now();
+        LocalDate fromDay = from != null ? from : toDay.minusDays(30);
+        List<AuditRollupDTO> rollups = auditRollupService.getRollups(fromDay, toDay, productId, warehouseId, operationType);
+        return ResponseEntity.ok(WarehouseResponse.withData(rollups, "Audit rollups retrieved successfully", ResponseCode.W7.getResponseCode()));
+    }
+
+    /**
+     * Admin: stock of a product per warehouse at a point in time (latest snapshot at or before it plus the
+     * inventory transactions after the snapshot)
+     */
+    @GetMapping("/admin/inventory/stock-at")
+    public ResponseEntity<WarehouseResponse> getStockAt(
+            @RequestParam Long productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        List<StockPointDTO> stock = inventorySnapshotService.getStockAt(productId, at);
+        return ResponseEntity.ok(WarehouseResponse.withData(stock, "Stock retrieved successfully", ResponseCode.W7.getResponseCode()));
+    }
+
+    /**
+     * Admin: recompute warehouse stock from the latest snapshot and its transaction tail.
+     * Lists the rows that differ from warehouse_products; corrects them only when dryRun=false.
+     */
+    @PostMapping("/admin/inventory/rebuild")
+    public ResponseEntity<WarehouseResponse> rebuildWarehouseStock(@RequestParam(defaultValue = "true") boolean dryRun) {
+        logger.info("Received admin request to rebuild warehouse stock, dryRun={}", dryRun);
+        List<StockPointDTO> mismatches = inventorySnapshotService.rebuildWarehouseStock(dryRun);
+        return ResponseEntity.ok(WarehouseResponse.withData(mismatches,
+                dryRun ? "Stock differences computed" : "Warehouse stock rebuilt", ResponseCode.W7.getResponseCode()));
+    }
+
+    /**
+     * Admin: audit writer queue depth and flush latency
+     */
+    @GetMapping("/admin/audit-writer/stats")
+    public ResponseEntity<WarehouseResponse> getAuditWriterStats() {
+        AuditWriterStatsDTO stats = warehouseService.getAuditWriterStats();
+        WarehouseResponse response = WarehouseResponse.withData(stats, "Audit writer stats retrieved successfully", ResponseCode.W7.getResponseCode());
+        return ResponseEntity.ok(response);
+    }
+
     // ============ Admin Dashboard - OUT Transaction Logs ============
     
     /**
@@ -212,11 +358,11 @@ public class WarehouseController {
      * Shows all products that have left the warehouse when orders are delivered/lost
      */
     @GetMapping("/admin/out-transactions")
-    public ResponseEntity<WarehouseResponse> getOutTransactions() {
+    public ResponseEntity<WarehouseResponse> getOutTransactions(@RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit) {
         logger.info("Received admin request to get OUT transaction logs");
-        List<InventoryAuditLogDTO> outLogs = warehouseService.getOutTransactionLogs();
-        WarehouseResponse response = WarehouseResponse.withData(outLogs, "OUT transaction logs retrieved successfully", ResponseCode.W7.getResponseCode());
-        return ResponseEntity.ok(response);
+        return auditLogList(AuditLogQuery.of("OUT", null, null, null, null), cursor, limit,
+                "OUT transaction logs retrieved successfully");
     }
     
     /**
@@ -224,11 +370,12 @@ public class WarehouseController {
      * Shows which products left the warehouse for a specific order
      */
     @GetMapping("/admin/out-transactions/order/{orderId}")
-    public ResponseEntity<WarehouseResponse> getOutTransactionsByOrder(@PathVariable Long orderId) {
+    public ResponseEntity<WarehouseResponse> getOutTransactionsByOrder(@PathVariable Long orderId,
+                                                                       @RequestParam(required = false) String cursor,
+                                                                       @RequestParam(required = false) Integer limit) {
         logger.info("Received admin request to get OUT transaction logs for order: {}", orderId);
-        List<InventoryAuditLogDTO> outLogs = warehouseService.getOutTransactionLogsByOrderId(orderId);
-        WarehouseResponse response = WarehouseResponse.withData(outLogs, "OUT transaction logs retrieved successfully", ResponseCode.W7.getResponseCode());
-        return ResponseEntity.ok(response);
+        return auditLogList(warehouseService.orderAuditQuery("OUT", orderId), cursor, limit,
+                "OUT transaction logs retrieved successfully");
     }
     
     /**
@@ -236,11 +383,12 @@ public class WarehouseController {
      * Shows which orders caused this product to leave the warehouse
      */
     @GetMapping("/admin/out-transactions/product/{productId}")
-    public ResponseEntity<WarehouseResponse> getOutTransactionsByProduct(@PathVariable Long productId) {
+    public ResponseEntity<WarehouseResponse> getOutTransactionsByProduct(@PathVariable Long productId,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer limit) {
         logger.info("Received admin request to get OUT transaction logs for product: {}", productId);
-        List<InventoryAuditLogDTO> outLogs = warehouseService.getOutTransactionLogsByProductId(productId);
-        WarehouseResponse response = WarehouseResponse.withData(outLogs, "OUT transaction logs retrieved successfully", ResponseCode.W7.getResponseCode());
-        return ResponseEntity.ok(response);
+        return auditLogList(AuditLogQuery.of("OUT", null, productId, null, null), cursor, limit,
+                "OUT transaction logs retrieved successfully");
     }
     
     /**
@@ -248,29 +396,48 @@ public class WarehouseController {
      * Shows all products that have left a specific warehouse
      */
     @GetMapping("/admin/out-transactions/warehouse/{warehouseId}")
-    public ResponseEntity<WarehouseResponse> getOutTransactionsByWarehouse(@PathVariable Long warehouseId) {
+    public ResponseEntity<WarehouseResponse> getOutTransactionsByWarehouse(@PathVariable Long warehouseId,
+                                                                           @RequestParam(required = false) String cursor,
+                                                                           @RequestParam(required = false) Integer limit) {
         logger.info("Received admin request to get OUT transaction logs for warehouse: {}", warehouseId);
-        List<InventoryAuditLogDTO> outLogs = warehouseService.getOutTransactionLogsByWarehouseId(warehouseId);
-        WarehouseResponse response = WarehouseResponse.withData(outLogs, "OUT transaction logs retrieved successfully", ResponseCode.W7.getResponseCode());
-        return ResponseEntity.ok(response);
+        return auditLogList(AuditLogQuery.of("OUT", null, null, warehouseId, null), cursor, limit,
+                "OUT transaction logs retrieved successfully");
     }
 
     /**
      * Get all OUT transaction logs (public endpoint for admin dashboard)
      */
     @GetMapping("/audit-logs/out-transactions")
-    public ResponseEntity<WarehouseResponse> getAllOutTransactions() {
+    public ResponseEntity<WarehouseResponse> getAllOutTransactions(@RequestParam(required = false) String cursor,
+                                                                   @RequestParam(required = false) Integer limit) {
         logger.info("Received request to get all OUT transaction logs");
         try {
-            List<InventoryAuditLogDTO> outLogs = warehouseService.getOutTransactionLogs();
-            WarehouseResponse response = WarehouseResponse.withData(outLogs, "OUT transaction logs retrieved successfully", ResponseCode.W7.getResponseCode());
-            return ResponseEntity.ok(response);
+            return auditLogList(AuditLogQuery.of("OUT", null, null, null, null), cursor, limit,
+                    "OUT transaction logs retrieved successfully");
         } catch (Exception e) {
             logger.error("Error fetching OUT transaction logs: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
                     .body(WarehouseResponse.withData(null, "Failed to fetch OUT transaction logs: " + e.getMessage(), "500"));
         }
     }
-}
-
 
+    /**
+     * List-shaped audit responses keep their original body: every row unless a cursor or limit is given,
+     * in which case the cursor of the next page, if any, is returned in the X-Next-Cursor header
+     */
+    private ResponseEntity<WarehouseResponse> auditLogList(AuditLogQuery query, String cursor, Integer limit, String message) {
+        query.setCursor(cursor);
+        query.setLimit(limit);
+        AuditLogPageDTO page;
+        try {
+            page = warehouseService.listAuditLogs(query);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new WarehouseResponse(e.getMessage(), "400"));
+        }
+        WarehouseResponse response = WarehouseResponse.withData(page.getItems(), message, ResponseCode.W7.getResponseCode());
+        if (page.getNextCursor() == null) {
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, page.getNextCursor()).body(response);
+    }
+}
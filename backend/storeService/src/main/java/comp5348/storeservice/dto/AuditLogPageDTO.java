@@ -0,0 +1,19 @@
+package comp5348.storeservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of inventory audit logs; nextCursor is null on the last page
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditLogPageDTO {
+    private List<InventoryAuditLogDTO> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
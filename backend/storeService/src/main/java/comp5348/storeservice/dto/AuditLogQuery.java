@@ -0,0 +1,44 @@
+package comp5348.storeservice.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters for an inventory_audit_log page; null fields are not filtered on.
+ * Pages are ordered newest first by (operation_time, id); cursor is the nextCursor of the previous page.
+ */
+@Data
+public class AuditLogQuery {
+    private String operationType;
+    private String status;
+    private Long productId;
+    private Long warehouseId;
+    private Long orderId;
+    private LocalDateTime from;     // inclusive
+    private LocalDateTime to;       // exclusive
+    private String cursor;
+    private Integer limit;
+
+    public static AuditLogQuery of(String operationType, String status, Long productId, Long warehouseId, Long orderId) {
+        AuditLogQuery query = new AuditLogQuery();
+        query.setOperationType(operationType);
+        query.setStatus(status);
+        query.setProductId(productId);
+        query.setWarehouseId(warehouseId);
+        query.setOrderId(orderId);
+        return query;
+    }
+
+    /**
+     * Same filters, cursor and limit, so callers can page without changing the query they were given
+     */
+    public AuditLogQuery copy() {
+        AuditLogQuery query = of(operationType, status, productId, warehouseId, orderId);
+        query.setFrom(from);
+        query.setTo(to);
+        query.setCursor(cursor);
+        query.setLimit(limit);
+        return query;
+    }
+}
@@ -0,0 +1,36 @@
+package comp5348.storeservice.dto;
+
+import comp5348.storeservice.model.InventoryAuditDailyRollup;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * One day of inventory operations for a product in a warehouse
+ */
+@Data
+@NoArgsConstructor
+public class AuditRollupDTO {
+    private LocalDate day;
+    private Long productId;
+    private String productName;
+    private Long warehouseId;
+    private String warehouseName;
+    private String operationType;
+    private String status;
+    private Long operationCount;
+    private Long totalQuantity;
+
+    public AuditRollupDTO(InventoryAuditDailyRollup rollup) {
+        this.day = rollup.getDay();
+        this.productId = rollup.getProductId();
+        this.productName = rollup.getProductName();
+        this.warehouseId = rollup.getWarehouseId();
+        this.warehouseName = rollup.getWarehouseName();
+        this.operationType = rollup.getOperationType();
+        this.status = rollup.getStatus();
+        this.operationCount = rollup.getOperationCount();
+        this.totalQuantity = rollup.getTotalQuantity();
+    }
+}
@@ -0,0 +1,22 @@
+package comp5348.storeservice.dto;
+
+import lombok.Data;
+
+/**
+ * Counters of the inventory audit writer (queue depth and flush latency)
+ */
+@Data
+public class AuditWriterStatsDTO {
+
+    private String durability;
+    private int queueDepth;
+    private int queueCapacity;
+    private long enqueued;
+    private long written;
+    private long failed;
+    private long batches;
+    private long backpressureFallbacks;
+    private double lastFlushMillis;
+    private double avgFlushMillis;
+    private double maxFlushMillis;
+}
@@ -0,0 +1,31 @@
+package comp5348.storeservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Bulk warehouse stock change: every line either adds delta (restock, may be negative for write-offs)
+ * or sets newQuantity
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStockUpdateRequest {
+    private List<StockLine> lines;
+    private boolean allOrNothing;   // true: apply nothing if any line fails
+    private String reason;
+    private boolean createMissing = true;   // false: a (warehouse, product) pair without a stock row is NOT_FOUND
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StockLine {
+        private Long warehouseId;
+        private Long productId;
+        private Integer delta;
+        private Integer newQuantity;
+    }
+}
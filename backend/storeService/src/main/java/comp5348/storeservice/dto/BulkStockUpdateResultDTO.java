@@ -0,0 +1,42 @@
+package comp5348.storeservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk stock update, one LineResult per request line (same order)
+ */
+@Data
+@NoArgsConstructor
+public class BulkStockUpdateResultDTO {
+    private int requested;
+    private int applied;
+    private int failed;
+    private boolean committed;
+    private List<LineResult> lines = new ArrayList<>();
+
+    public enum LineStatus {
+        APPLIED,
+        INVALID,      // missing ids, or not exactly one of delta/newQuantity
+        NOT_FOUND,    // unknown warehouse or product
+        REJECTED,     // would make stock negative
+        SKIPPED       // valid, but not applied because another line failed (allOrNothing)
+    }
+
+    @Data
+    @NoArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class LineResult {
+        private int line;
+        private Long warehouseId;
+        private Long productId;
+        private LineStatus status;
+        private Integer previousQuantity;
+        private Integer newQuantity;
+        private String message;
+    }
+}
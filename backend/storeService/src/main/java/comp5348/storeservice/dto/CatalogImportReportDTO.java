@@ -0,0 +1,34 @@
+package comp5348.storeservice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress and outcome of one catalog import (a copy, safe to serialise while the import runs)
+ */
+@Data
+@NoArgsConstructor
+public class CatalogImportReportDTO {
+    private String jobId;
+    private String source;
+    private String format;
+    private String state;               // RUNNING, COMPLETED, FAILED
+    private long rowsRead;
+    private long rowsRejected;         // invalid values, or stock for an unknown sku/warehouse
+    private long rowsCommitted;        // rows in chunks that have committed
+    private long productsCreated;
+    private long productsUpdated;
+    private long stockRowsUpserted;
+    private long stockRowsChanged;     // stock rows whose quantity actually changed (one IN + audit row each)
+    private int chunksCommitted;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long elapsedMs;
+    private long rowsPerSecond;
+    private String failure;
+    private List<String> errors = new ArrayList<>();   // first few rejected rows, "line N: reason"
+}
@@ -0,0 +1,18 @@
+package comp5348.storeservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable catalog fields of a product as held by ProductCatalogCache (no stock, no JPA state)
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogProduct {
+    private final Long id;
+    private final String name;
+    private final BigDecimal price;
+    private final Long version;
+}
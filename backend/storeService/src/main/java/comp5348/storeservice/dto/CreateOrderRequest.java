@@ -21,6 +21,10 @@ public class CreateOrderRequest {
     @NotEmpty(message = "Order items cannot be empty")
     @Valid
     private List<OrderItemRequest> orderItems;
+
+    // Optional delivery coordinates, used by the NEAREST warehouse allocation strategy
+    private Double deliveryLatitude;
+    private Double deliveryLongitude;
     
     @Data
     @NoArgsConstructor
@@ -0,0 +1,33 @@
+package comp5348.storeservice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * State of a flash sale; on disarm also the reconciliation against warehouse stock
+ */
+@Data
+@NoArgsConstructor
+public class FlashSaleDTO {
+    private Long productId;
+    private String productName;
+    private BigDecimal price;
+    private boolean armed;
+    private int quota;                  // units on offer when armed
+    private boolean tracksStock;        // armed without a token count: the pool follows warehouse stock
+    private Integer maxPerOrder;
+    private int tokensLeft;             // units that can still be admitted
+    private int inFlight;               // admitted units whose order is still being placed
+    private long unitsSold;             // units of orders that were placed
+    private long ordersAdmitted;
+    private long ordersRejected;        // turned away without touching the database
+    private long ordersFailed;          // admitted but rejected by the reservation path, tokens returned
+    private LocalDateTime armedAt;
+    private LocalDateTime disarmedAt;
+    private int stockAtArm;
+    private Integer warehouseStock;     // warehouse_products total at disarm, after flushing pending ledger deltas
+    private Integer otherStockChange;   // warehouseStock - (stockAtArm - unitsSold): cancellations, restocks, failed payments
+}
@@ -0,0 +1,17 @@
+package comp5348.storeservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Arm a flash sale: tokens = units on offer (null = whatever is in stock, followed as it changes),
+ * maxPerOrder = units one order may take
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlashSaleRequest {
+    private Integer tokens;
+    private Integer maxPerOrder;
+}
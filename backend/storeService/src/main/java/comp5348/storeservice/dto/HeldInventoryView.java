@@ -0,0 +1,23 @@
+package comp5348.storeservice.dto;
+
+/**
+ * Read-only projection of one HOLD inventory_transactions row, with the names needed for audit logging
+ */
+public interface HeldInventoryView {
+
+    Long getId();
+
+    Long getOrderId();
+
+    Long getWarehouseId();
+
+    String getWarehouseName();
+
+    Long getProductId();
+
+    String getProductName();
+
+    Integer getQuantity();
+
+    Integer getAppliedQuantity();
+}
@@ -0,0 +1,21 @@
+package comp5348.storeservice.dto;
+
+import lombok.Data;
+
+/**
+ * Counters of Idempotency-Key handling on checkout (see IdempotencyService)
+ */
+@Data
+public class IdempotencyStatsDTO {
+
+    private long requests;          // requests that carried a key
+    private long memoryHits;        // replayed from the in-memory cache
+    private long databaseHits;      // replayed from idempotency_keys
+    private long claims;            // first sight of a key, the request ran
+    private long inProgress;        // rejected, the same key is still running
+    private long mismatches;        // rejected, the key was used with a different body
+    private long released;          // failed requests whose key was freed for a retry
+    private double hitRate;         // (memoryHits + databaseHits) / requests
+    private int cacheSize;
+    private int cacheCapacity;
+}
@@ -25,4 +25,6 @@ public class OrderDTO {
     private BigDecimal unitPrice;
     private BigDecimal totalPrice;
     private Long deliveryId;
+    // Every product of the order; productId/productName/quantity/unitPrice above describe the first line
+    private List<OrderLineDTO> lines;
 }
@@ -0,0 +1,25 @@
+package comp5348.storeservice.dto;
+
+import lombok.Data;
+
+/**
+ * Counters of the group-commit order intake (see OrderIntakeBatcher)
+ */
+@Data
+public class OrderIntakeStatsDTO {
+
+    private String mode;
+    private int queueDepth;
+    private int queueCapacity;
+    private long submitted;         // checkouts queued for a batch
+    private long placed;
+    private long rejected;          // missing product, short stock or a failed retry
+    private long batches;
+    private long batchRetries;      // batches rolled back and retried one order per transaction
+    private long directFallbacks;   // queue full, placed on the caller thread
+    private long timedOut;          // caller gave up before a batch took the order
+    private double avgBatchOrders;
+    private int maxBatchOrders;
+    private double avgBatchMillis;
+    private double maxBatchMillis;
+}
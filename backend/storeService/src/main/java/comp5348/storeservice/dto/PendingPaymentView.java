@@ -0,0 +1,13 @@
+package comp5348.storeservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Id and creation time of an order, enough to compute its payment deadline
+ */
+public interface PendingPaymentView {
+
+    Long getId();
+
+    LocalDateTime getCreatedAt();
+}
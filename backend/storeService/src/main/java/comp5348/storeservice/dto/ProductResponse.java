@@ -11,6 +11,7 @@ public class ProductResponse extends BaseResponse {
     private List<ProductDTO> products;
     private List<WarehouseProductDTO> warehouseProducts;
     private ProductDTO product;
+    private Object data;
 
     public ProductResponse(List<ProductDTO> products, String message, String responseCode) {
         super(message, responseCode);
@@ -42,6 +43,12 @@ public class ProductResponse extends BaseResponse {
         return response;
     }
 
+    public static ProductResponse withData(Object data, String message) {
+        ProductResponse response = new ProductResponse(message, "SUCCESS");
+        response.setData(data);
+        return response;
+    }
+
     public static ProductResponse error(String message) {
         ProductResponse response = new ProductResponse(message, "ERROR");
         return response;
@@ -0,0 +1,22 @@
+package comp5348.storeservice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock of a product in a warehouse reconstructed from an inventory snapshot plus the transactions after it
+ */
+@Data
+@NoArgsConstructor
+public class StockPointDTO {
+    private Long productId;
+    private Long warehouseId;
+    private Integer quantity;
+    private Integer recordedQuantity;       // warehouse_products.quantity (rebuild only)
+    private LocalDateTime at;
+    private LocalDateTime snapshotTakenAt;
+    private Integer replayedTransactions;
+    private boolean exact;                  // false when transactions after the snapshot were already compacted
+}
@@ -0,0 +1,27 @@
+package comp5348.storeservice.dto;
+
+import comp5348.storeservice.model.InventoryTransactionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * inventory_transactions row as replayed on top of an inventory snapshot
+ */
+public interface TransactionDeltaView {
+
+    Long getId();
+
+    Long getProductId();
+
+    Long getWarehouseId();
+
+    InventoryTransactionType getType();
+
+    Integer getQuantity();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getTransactionTime();
+
+    Long getChangeSeq();
+}
@@ -15,7 +15,10 @@ public class WarehouseDTO {
     private Long id;
     private String name;
     private String location;
+    private Double latitude;
+    private Double longitude;
     private List<ProductDTO> products;
+    private Long totalProducts;     // product lines in the warehouse, products may hold one page of them
     private List<WarehouseDTO> warehouses = new ArrayList<>();
     private List<Long> inventoryTransactionIds = new ArrayList<>();
 
@@ -23,6 +26,8 @@ public class WarehouseDTO {
         this.id = warehouse.getId();
         this.name = warehouse.getName();
         this.location = warehouse.getLocation();
+        this.latitude = warehouse.getLatitude();
+        this.longitude = warehouse.getLongitude();
     }
 }
 
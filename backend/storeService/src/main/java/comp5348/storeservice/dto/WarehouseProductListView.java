@@ -0,0 +1,23 @@
+package comp5348.storeservice.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * One product line of a warehouse listing, with the warehouse's total number of product lines
+ */
+public interface WarehouseProductListView {
+
+    Long getWarehouseId();
+
+    Long getProductId();
+
+    String getName();
+
+    BigDecimal getPrice();
+
+    String getDescription();
+
+    Integer getQuantity();
+
+    Long getTotalProducts();
+}
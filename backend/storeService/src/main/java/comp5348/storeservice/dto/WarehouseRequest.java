@@ -6,5 +6,7 @@ import lombok.Data;
 public class WarehouseRequest {
     private String name;
     private String location;
+    private Double latitude;
+    private Double longitude;
 }
 
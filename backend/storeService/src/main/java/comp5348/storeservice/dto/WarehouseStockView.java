@@ -0,0 +1,27 @@
+package comp5348.storeservice.dto;
+
+/**
+ * Read-only projection of one warehouse_products row.
+ * Always read straight from the database, so it reflects the committed quantity
+ * even when the WarehouseProduct entity is already cached in the persistence context.
+ */
+public interface WarehouseStockView {
+
+    Long getId();
+
+    Long getWarehouseId();
+
+    String getWarehouseName();
+
+    String getWarehouseLocation();
+
+    Double getWarehouseLatitude();
+
+    Double getWarehouseLongitude();
+
+    Long getProductId();
+
+    String getProductName();
+
+    Integer getQuantity();
+}
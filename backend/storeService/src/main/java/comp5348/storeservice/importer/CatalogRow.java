@@ -0,0 +1,82 @@
+package comp5348.storeservice.importer;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * One parsed import record: a product (sku, name, price, description), its stock in one warehouse
+ * (sku, warehouseId, quantity), or both. Values arrive as text and are checked by validate().
+ */
+@Getter
+public class CatalogRow {
+    private final long line;
+    private final String sku;
+    private final String name;
+    private final String rawPrice;
+    private final String description;
+    private final String rawWarehouseId;
+    private final String rawQuantity;
+
+    private BigDecimal price;
+    private Long warehouseId;
+    private Integer quantity;
+
+    public CatalogRow(long line, String sku, String name, String rawPrice, String description,
+                      String rawWarehouseId, String rawQuantity) {
+        this.line = line;
+        this.sku = trimToNull(sku);
+        this.name = trimToNull(name);
+        this.rawPrice = trimToNull(rawPrice);
+        this.description = trimToNull(description);
+        this.rawWarehouseId = trimToNull(rawWarehouseId);
+        this.rawQuantity = trimToNull(rawQuantity);
+    }
+
+    public boolean hasProduct() {
+        return name != null || rawPrice != null || description != null;
+    }
+
+    public boolean hasStock() {
+        return rawWarehouseId != null || rawQuantity != null;
+    }
+
+    /**
+     * Parse the numeric fields; returns an error message, or null if the row can be staged
+     */
+    public String validate() {
+        if (sku == null) return "sku is required";
+        if (sku.length() > 64) return "sku longer than 64 characters";
+        if (!hasProduct() && !hasStock()) return "row has neither product nor stock fields";
+        if (hasProduct()) {
+            if (name == null || rawPrice == null) return "name and price are required for a product";
+            if (name.length() > 100) return "name longer than 100 characters";
+            if (description != null && description.length() > 500) return "description longer than 500 characters";
+            try {
+                price = new BigDecimal(rawPrice);
+            } catch (NumberFormatException e) {
+                return "invalid price '" + rawPrice + "'";
+            }
+            if (price.signum() < 0 || price.scale() > 2 || price.precision() - price.scale() > 8) {
+                return "price out of range '" + rawPrice + "'";
+            }
+        }
+        if (hasStock()) {
+            if (rawWarehouseId == null || rawQuantity == null) return "warehouse_id and quantity are required for stock";
+            try {
+                warehouseId = Long.parseLong(rawWarehouseId);
+                quantity = Integer.parseInt(rawQuantity);
+            } catch (NumberFormatException e) {
+                return "invalid warehouse_id or quantity";
+            }
+            if (quantity < 0) return "quantity must not be negative";
+        }
+        return null;
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -0,0 +1,28 @@
+package comp5348.storeservice.importer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull parser over an import stream: one record at a time, so memory does not grow with the file size.
+ * An IOException means the stream itself is broken (bad quoting, invalid JSON); bad values are reported
+ * by CatalogRow.validate() instead.
+ */
+public interface CatalogRowReader extends Closeable {
+
+    /**
+     * @return the next record, or null at the end of the stream
+     */
+    CatalogRow next() throws IOException;
+
+    static CatalogRowReader open(InputStream in, ImportFormat format) throws IOException {
+        if (format == ImportFormat.NDJSON) {
+            return new NdjsonCatalogReader(in);
+        }
+        return new CsvCatalogReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16));
+    }
+}
@@ -0,0 +1,107 @@
+package comp5348.storeservice.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RFC 4180 CSV with a header row naming the columns: sku, name, price, description, warehouse_id, quantity
+ * (any order, unknown columns ignored). Quoted fields may contain commas, quotes ("") and line breaks.
+ */
+class CsvCatalogReader implements CatalogRowReader {
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final StringBuilder field = new StringBuilder();
+    private long record = 0;
+    private boolean eof = false;
+
+    CsvCatalogReader(BufferedReader reader) throws IOException {
+        this.reader = reader;
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new IOException("CSV import is empty (a header row is required)");
+        }
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "");
+            if (i == 0 && name.startsWith("\uFEFF")) name = name.substring(1);
+            columns.putIfAbsent(name, i);
+        }
+        if (!columns.containsKey("sku")) {
+            throw new IOException("CSV header has no sku column");
+        }
+    }
+
+    @Override
+    public CatalogRow next() throws IOException {
+        while (true) {
+            List<String> values = readRecord();
+            if (values == null) return null;
+            if (values.size() == 1 && values.get(0).isEmpty()) continue; // blank line
+            return new CatalogRow(record, value(values, "sku"), value(values, "name"), value(values, "price"),
+                    value(values, "description"), value(values, "warehouseid"), value(values, "quantity"));
+        }
+    }
+
+    private String value(List<String> values, String column) {
+        Integer index = columns.get(column);
+        return index == null || index >= values.size() ? null : values.get(index);
+    }
+
+    private List<String> readRecord() throws IOException {
+        if (eof) return null;
+        List<String> values = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean started = false;
+        while (true) {
+            int c = reader.read();
+            if (c == -1) {
+                eof = true;
+                if (quoted) throw new IOException("Unterminated quoted field in record " + (record + 1));
+                if (!started && values.isEmpty()) return null;
+                values.add(field.toString());
+                record++;
+                return values;
+            }
+            started = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') reader.reset();
+                }
+                values.add(field.toString());
+                record++;
+                return values;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,68 @@
+package comp5348.storeservice.importer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * One JSON object per line: {"sku", "name", "price", "description", "warehouseId", "quantity"}.
+ * A product may also list its stock as "stock": [{"warehouseId": 1, "quantity": 20}, ...],
+ * which yields one record per entry.
+ */
+class NdjsonCatalogReader implements CatalogRowReader {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MappingIterator<JsonNode> values;
+    private final Deque<CatalogRow> pending = new ArrayDeque<>();
+    private long record = 0;
+
+    NdjsonCatalogReader(InputStream in) throws IOException {
+        this.values = objectMapper.readerFor(JsonNode.class).readValues(in);
+    }
+
+    @Override
+    public CatalogRow next() throws IOException {
+        if (!pending.isEmpty()) return pending.poll();
+        try {
+            if (!values.hasNextValue()) return null;
+            JsonNode node = values.nextValue();
+            record++;
+            String sku = text(node, "sku");
+            JsonNode stock = node.get("stock");
+            if (stock == null || !stock.isArray() || stock.isEmpty()) {
+                return new CatalogRow(record, sku, text(node, "name"), text(node, "price"), text(node, "description"),
+                        warehouseId(node), text(node, "quantity"));
+            }
+            CatalogRow product = new CatalogRow(record, sku, text(node, "name"), text(node, "price"),
+                    text(node, "description"), null, null);
+            for (JsonNode entry : stock) {
+                pending.add(new CatalogRow(record, sku, null, null, null, warehouseId(entry), text(entry, "quantity")));
+            }
+            return product.hasProduct() ? product : pending.poll();
+        } catch (RuntimeException e) {
+            // MappingIterator wraps parse errors in unchecked exceptions
+            throw new IOException("Invalid JSON after record " + record + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String warehouseId(JsonNode node) {
+        String value = text(node, "warehouseId");
+        return value != null ? value : text(node, "warehouse_id");
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    @Override
+    public void close() throws IOException {
+        values.close();
+    }
+}
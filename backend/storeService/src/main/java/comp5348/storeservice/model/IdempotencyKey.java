@@ -0,0 +1,52 @@
+package comp5348.storeservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One Idempotency-Key seen on a checkout request. The unique key is what makes two instances (or two
+ * concurrent requests) agree on which one runs; the others replay response_body once it is COMPLETED.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at")
+})
+public class IdempotencyKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Client key scoped by user: "<userId>:<Idempotency-Key>"
+    @Column(name = "idem_key", nullable = false, unique = true, length = 300)
+    private String idemKey;
+
+    // SHA-256 of the request body; the same key with a different body is rejected
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(nullable = false, length = 20)
+    private String status; // IN_PROGRESS, COMPLETED
+
+    @Column(name = "http_status")
+    private Integer httpStatus;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
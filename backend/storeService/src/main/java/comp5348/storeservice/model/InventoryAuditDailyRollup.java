@@ -0,0 +1,58 @@
+package comp5348.storeservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Daily aggregate of inventory_audit_log per (product, warehouse, operation type, status).
+ * Written by InventoryAuditRollupService; survives archiving of the raw audit partitions.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "inventory_audit_daily_rollup", indexes = {
+        @Index(name = "idx_audit_rollup_day_product", columnList = "day, product_id"),
+        @Index(name = "idx_audit_rollup_day_warehouse", columnList = "day, warehouse_id")
+})
+public class InventoryAuditDailyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    @Column(name = "warehouse_id")
+    private Long warehouseId;
+
+    @Column(name = "warehouse_name")
+    private String warehouseName;
+
+    @Column(name = "operation_type", nullable = false)
+    private String operationType;
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column(name = "operation_count", nullable = false)
+    private Long operationCount;
+
+    @Column(name = "total_quantity", nullable = false)
+    private Long totalQuantity;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -8,7 +8,15 @@ import java.time.LocalDateTime;
  * Tracks HOLD, UNHOLD, OUT, and IN transactions with detailed information
  */
 @Entity
-@Table(name = "inventory_audit_log")
+@Table(name = "inventory_audit_log", indexes = {
+        // Keyset pages are ordered by (operation_time, id); each filter has an index ending in that order
+        @Index(name = "idx_audit_time_id", columnList = "operation_time, id"),
+        @Index(name = "idx_audit_type_time_id", columnList = "operation_type, operation_time, id"),
+        @Index(name = "idx_audit_status_time_id", columnList = "status, operation_time, id"),
+        @Index(name = "idx_audit_product_time_id", columnList = "product_id, operation_time, id"),
+        @Index(name = "idx_audit_warehouse_time_id", columnList = "warehouse_id, operation_time, id"),
+        @Index(name = "idx_audit_order_type", columnList = "order_id, operation_type")
+})
 public class InventoryAuditLog {
     
     @Id
@@ -26,8 +34,8 @@ public class InventoryAuditLog {
     @Column(name = "product_name")
     private String productName;
     
-    // Warehouse information
-    @Column(name = "warehouse_id", nullable = false)
+    // Warehouse information (null for failed operations that never reached a warehouse)
+    @Column(name = "warehouse_id")
     private Long warehouseId;
     
     @Column(name = "warehouse_name")
@@ -0,0 +1,53 @@
+package comp5348.storeservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One point-in-time copy of warehouse stock (rows in inventory_snapshots).
+ * The watermarks say which inventory_transactions changes it already contains: rows with an id up to
+ * idWatermark and UNHOLD flips with a change_seq up to seqWatermark, except the gaps: ids and change_seq values
+ * below the watermarks whose transactions had not committed when the copy was taken.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "inventory_snapshot_runs",
+        indexes = @Index(name = "idx_inventory_snapshot_runs_taken_at", columnList = "taken_at"))
+public class InventorySnapshotRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "taken_at", nullable = false)
+    private LocalDateTime takenAt;
+
+    @Column(name = "id_watermark", nullable = false)
+    private Long idWatermark;
+
+    @Column(name = "seq_watermark", nullable = false)
+    private Long seqWatermark;
+
+    // Sorted; null on runs taken before gaps were recorded
+    @Column(name = "id_gaps")
+    private Long[] idGaps;
+
+    @Column(name = "seq_gaps")
+    private Long[] seqGaps;
+
+    @Column(name = "row_count")
+    private Integer rowCount;
+
+    // Set once the transactions folded into this snapshot have been compacted away
+    @Column(name = "compacted_at")
+    private LocalDateTime compactedAt;
+
+    @Column(name = "compacted_rows")
+    private Integer compactedRows;
+}
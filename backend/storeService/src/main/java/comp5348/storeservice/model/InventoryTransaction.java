@@ -11,7 +11,12 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "inventory_transactions")
+@Table(name = "inventory_transactions",
+        indexes = {
+                @Index(name = "idx_inventory_tx_stock_pending", columnList = "stock_pending"),
+                @Index(name = "idx_inventory_tx_order_type", columnList = "order_id, type"),
+                @Index(name = "idx_inventory_tx_change_seq", columnList = "change_seq")
+        })
 public class InventoryTransaction {
 
     @Id
@@ -35,6 +40,33 @@ public class InventoryTransaction {
 
     @Column(name = "transaction_time")
     private LocalDateTime transactionTime;
+
+    // Order this row was created for (null for restocks and benchmark holds)
+    @Column(name = "order_id")
+    private Long orderId;
+
+    // Stock delta of this row already written to warehouse_products (null = written inline with the row)
+    @Column(name = "applied_quantity")
+    private Integer appliedQuantity;
+
+    // True while the stock ledger still has to write this row's delta to warehouse_products
+    @Column(name = "stock_pending")
+    private Boolean stockPending;
+
+    // When the row was inserted (transaction_time moves when a HOLD is flipped to UNHOLD)
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // inventory_tx_change_seq value taken when the row was flipped to UNHOLD, compared with snapshot watermarks
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = transactionTime != null ? transactionTime : LocalDateTime.now();
+        }
+    }
 }
 
 
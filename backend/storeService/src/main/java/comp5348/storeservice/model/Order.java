@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -14,7 +15,12 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "orders")
+@DynamicUpdate // status moves with guarded bulk updates; a later save must not write back a stale status
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_status_created_at", columnList = "status, created_at"),
+        @Index(name = "idx_orders_user_created_at", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_orders_created_at_id", columnList = "created_at, id")
+})
 public class Order {
     
     @Id
@@ -39,18 +45,14 @@ public class Order {
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
-    private Product product; // Directly associated with specific product
+    private Product product; // First line's product, all lines are in order_lines
 
     @Column(nullable = false)
-    private Integer quantity; // Purchase quantity
+    private Integer quantity; // First line's purchase quantity
 
     @Column(name = "unit_price", nullable = false, precision = 10, scale = 2)
     private BigDecimal unitPrice;
 
-    // Comma-separated list of inventory transaction IDs (HOLD records), used for rollback on cancellation/failure
-    @Column(name = "inventory_transaction_ids", length = 1000)
-    private String inventoryTransactionIds;
-
     @Column(name = "delivery_id", unique = true) // delivery_id should be unique
     private Long deliveryId;
     
@@ -1,5 +1,11 @@
 package comp5348.storeservice.model;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum OrderStatus {
     PENDING_STOCK_HOLD("PENDING_STOCK_HOLD"),
     PLACED("Order Placed"),
@@ -20,6 +26,39 @@ public enum OrderStatus {
     public String getDescription() {
         return description;
     }
+
+    // Allowed moves; DELIVERED, CANCELLED and CANCELLED_SYSTEM are final.
+    // PICKED_UP/IN_TRANSIT -> CANCELLED is a lost parcel reported by the delivery service
+    private static final Map<OrderStatus, Set<OrderStatus>> NEXT = new EnumMap<>(OrderStatus.class);
+    private static final Map<OrderStatus, Set<OrderStatus>> PREVIOUS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        NEXT.put(PENDING_STOCK_HOLD, EnumSet.of(PLACED, CANCELLED));
+        NEXT.put(PLACED, EnumSet.of(PENDING_PAYMENT, PAID, CANCELLED));
+        NEXT.put(PENDING_PAYMENT, EnumSet.of(PAID, CANCELLED));
+        NEXT.put(PAID, EnumSet.of(PROCESSING, PICKED_UP, IN_TRANSIT, DELIVERED, CANCELLED, CANCELLED_SYSTEM));
+        NEXT.put(PROCESSING, EnumSet.of(PICKED_UP, IN_TRANSIT, DELIVERED, CANCELLED, CANCELLED_SYSTEM));
+        NEXT.put(PICKED_UP, EnumSet.of(IN_TRANSIT, DELIVERED, CANCELLED));
+        NEXT.put(IN_TRANSIT, EnumSet.of(DELIVERED, CANCELLED));
+        NEXT.put(DELIVERED, EnumSet.noneOf(OrderStatus.class));
+        NEXT.put(CANCELLED, EnumSet.noneOf(OrderStatus.class));
+        NEXT.put(CANCELLED_SYSTEM, EnumSet.noneOf(OrderStatus.class));
+        for (OrderStatus status : values()) {
+            PREVIOUS.put(status, EnumSet.noneOf(OrderStatus.class));
+        }
+        NEXT.forEach((from, targets) -> targets.forEach(to -> PREVIOUS.get(to).add(from)));
+    }
+
+    public boolean canMoveTo(OrderStatus next) {
+        return NEXT.get(this).contains(next);
+    }
+
+    /**
+     * Statuses an order may be in to move to the given one
+     */
+    public static Set<OrderStatus> allowedFrom(OrderStatus to) {
+        return Collections.unmodifiableSet(PREVIOUS.get(to));
+    }
     
     @Override
     public String toString() {
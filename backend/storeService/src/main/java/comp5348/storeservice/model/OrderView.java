@@ -0,0 +1,104 @@
+package comp5348.storeservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Denormalized read model: one row per order with its product, payment, delivery and user email, so order
+ * detail and list reads do not touch orders/payments/products/account. Written only by OrderViewProjector,
+ * which refreshes a row from the write-side tables after every committed change to the order.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "order_view", indexes = {
+        @Index(name = "idx_order_view_user_created_at", columnList = "user_id, created_at, order_id"),
+        @Index(name = "idx_order_view_status_created_at", columnList = "status, created_at, order_id"),
+        @Index(name = "idx_order_view_created_at", columnList = "created_at, order_id")
+})
+public class OrderView {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "user_email")
+    private String userEmail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OrderStatus status;
+
+    @Column(name = "total_amount", precision = 10, scale = 2)
+    private BigDecimal totalAmount;
+
+    // First line, like the product columns of orders
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    private Integer quantity;
+
+    @Column(name = "unit_price", precision = 10, scale = 2)
+    private BigDecimal unitPrice;
+
+    @Column(name = "line_count")
+    private Integer lineCount;
+
+    // JSON array of OrderLineDTO; null for orders placed before order_lines existed
+    @Column(name = "lines_json", columnDefinition = "text")
+    private String linesJson;
+
+    @Column(name = "payment_id")
+    private Long paymentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_status")
+    private PaymentStatus paymentStatus;
+
+    @Column(name = "payment_amount")
+    private BigDecimal paymentAmount;
+
+    @Column(name = "bank_txn_id")
+    private String bankTxnId;
+
+    @Column(name = "payment_error")
+    private String paymentError;
+
+    @Column(name = "payment_created_at")
+    private LocalDateTime paymentCreatedAt;
+
+    @Column(name = "payment_updated_at")
+    private LocalDateTime paymentUpdatedAt;
+
+    @Column(name = "payment_date")
+    private LocalDateTime paymentDate;
+
+    @Column(name = "delivery_id")
+    private Long deliveryId;
+
+    // Last status reported by DeliveryService (CREATED, PICKED_UP, DELIVERING, DELIVERED, LOST...)
+    @Column(name = "delivery_status")
+    private String deliveryStatus;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // When the projector last refreshed the row
+    @Column(name = "projected_at")
+    private LocalDateTime projectedAt;
+}
@@ -0,0 +1,37 @@
+package comp5348.storeservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An order whose order_view row needs a refresh. Inserted in the transaction that changed the order, so a
+ * committed change is never lost by a crash before the projection catches up; OrderViewProjector deletes
+ * the rows it has refreshed. The same order may be queued more than once.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "order_view_dirty", indexes = {
+        @Index(name = "idx_order_view_dirty_order_id", columnList = "order_id")
+})
+public class OrderViewDirty {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    // Failed refreshes of this row; dropped after orders.read-model.max-attempts
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
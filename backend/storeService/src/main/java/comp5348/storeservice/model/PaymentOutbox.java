@@ -11,7 +11,9 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "payment_outbox")
+@Table(name = "payment_outbox", indexes = {
+        @Index(name = "idx_payment_outbox_status_order_id", columnList = "status, order_id, id")
+})
 public class PaymentOutbox {
     
     @Id
@@ -37,6 +39,12 @@ public class PaymentOutbox {
     private LocalDateTime createdAt;
     
     private LocalDateTime processedAt;
+
+    // Set by OutboxDispatcher while a worker owns the row; claimedUntil also delays the next retry
+    @Column(length = 64)
+    private String claimedBy;
+
+    private LocalDateTime claimedUntil;
     
     @PrePersist
     protected void onCreate() {
@@ -12,13 +12,17 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "products")
+@Table(name = "products", uniqueConstraints = @UniqueConstraint(name = "uk_products_sku", columnNames = "sku"))
 public class Product {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    // Merchant SKU, the key catalog imports upsert on (null for products created through the API)
+    @Column(length = 64)
+    private String sku;
+
     @Column(nullable = false, length = 100)
     private String name;
     
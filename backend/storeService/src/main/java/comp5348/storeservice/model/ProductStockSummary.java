@@ -0,0 +1,31 @@
+package comp5348.storeservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Total stock of a product across all warehouses (sum of warehouse_products.quantity).
+ * Maintained incrementally by ProductStockSummaryService so catalog listing does not aggregate per product.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "product_stock_summary",
+        indexes = @Index(name = "idx_product_stock_summary_total", columnList = "total_quantity"))
+public class ProductStockSummary {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "total_quantity", nullable = false)
+    private Integer totalQuantity;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
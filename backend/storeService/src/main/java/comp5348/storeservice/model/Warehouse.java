@@ -24,6 +24,11 @@ public class Warehouse {
     @Column(length = 200)
     private String location;
 
+    // Optional coordinates, used by the NEAREST allocation strategy
+    private Double latitude;
+
+    private Double longitude;
+
     @Version
     private Long version;
 
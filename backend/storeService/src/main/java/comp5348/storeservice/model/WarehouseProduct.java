@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "warehouse_products")
+@Table(name = "warehouse_products", indexes = {
+        @Index(name = "idx_warehouse_products_warehouse_product", columnList = "warehouse_id, product_id")
+})
 public class WarehouseProduct {
 
     @Id
@@ -0,0 +1,45 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.model.InventoryAuditDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface InventoryAuditDailyRollupRepository extends JpaRepository<InventoryAuditDailyRollup, Long> {
+
+    @Query("select max(r.day) from InventoryAuditDailyRollup r")
+    Optional<LocalDate> findLatestDay();
+
+    @Modifying
+    @Query("delete from InventoryAuditDailyRollup r where r.day >= :fromDay and r.day < :toDay")
+    int deleteDays(@Param("fromDay") LocalDate fromDay, @Param("toDay") LocalDate toDay);
+
+    /**
+     * Recompute the rollup rows of [from, to) from the raw audit log (to be run after deleteDays for the same range)
+     */
+    @Modifying
+    @Query(value = "insert into inventory_audit_daily_rollup (day, product_id, product_name, warehouse_id, warehouse_name, " +
+            "operation_type, status, operation_count, total_quantity, updated_at) " +
+            "select cast(operation_time as date), product_id, max(product_name), warehouse_id, max(warehouse_name), " +
+            "operation_type, status, count(*), coalesce(sum(quantity), 0), now() " +
+            "from inventory_audit_log where operation_time >= :fromTime and operation_time < :toTime " +
+            "group by cast(operation_time as date), product_id, warehouse_id, operation_type, status", nativeQuery = true)
+    int insertRollups(@Param("fromTime") LocalDateTime fromTime, @Param("toTime") LocalDateTime toTime);
+
+    @Query("select r from InventoryAuditDailyRollup r where r.day >= :fromDay and r.day <= :toDay " +
+            "and (:productId is null or r.productId = :productId) " +
+            "and (:warehouseId is null or r.warehouseId = :warehouseId) " +
+            "and (:operationType is null or r.operationType = :operationType) " +
+            "order by r.day, r.productId, r.warehouseId")
+    List<InventoryAuditDailyRollup> findRollups(@Param("fromDay") LocalDate fromDay,
+                                                @Param("toDay") LocalDate toDay,
+                                                @Param("productId") Long productId,
+                                                @Param("warehouseId") Long warehouseId,
+                                                @Param("operationType") String operationType);
+}
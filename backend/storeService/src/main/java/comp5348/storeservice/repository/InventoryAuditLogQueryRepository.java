@@ -0,0 +1,19 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.dto.AuditLogQuery;
+import comp5348.storeservice.dto.KeysetCursor;
+import comp5348.storeservice.model.InventoryAuditLog;
+
+import java.util.List;
+
+/**
+ * Dynamic audit log queries that Spring Data cannot derive (optional filters + keyset position)
+ */
+public interface InventoryAuditLogQueryRepository {
+
+    /**
+     * Up to maxRows rows matching the query's filters, newest first by (operation_time, id),
+     * strictly after the given cursor (null for the first page)
+     */
+    List<InventoryAuditLog> findPage(AuditLogQuery query, KeysetCursor after, int maxRows);
+}
@@ -0,0 +1,59 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.dto.AuditLogQuery;
+import comp5348.storeservice.dto.KeysetCursor;
+import comp5348.storeservice.model.InventoryAuditLog;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the JPQL for InventoryAuditLogQueryRepository with only the filters that are set,
+ * so every page is a single range scan on one of the (..., operation_time, id) indexes
+ */
+public class InventoryAuditLogQueryRepositoryImpl implements InventoryAuditLogQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<InventoryAuditLog> findPage(AuditLogQuery query, KeysetCursor after, int maxRows) {
+        StringBuilder jpql = new StringBuilder("select a from InventoryAuditLog a where 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        addFilter(jpql, params, "operationType", query.getOperationType());
+        addFilter(jpql, params, "status", query.getStatus());
+        addFilter(jpql, params, "productId", query.getProductId());
+        addFilter(jpql, params, "warehouseId", query.getWarehouseId());
+        addFilter(jpql, params, "orderId", query.getOrderId());
+        if (query.getFrom() != null) {
+            jpql.append(" and a.operationTime >= :from");
+            params.put("from", query.getFrom());
+        }
+        if (query.getTo() != null) {
+            jpql.append(" and a.operationTime < :to");
+            params.put("to", query.getTo());
+        }
+        if (after != null) {
+            // Written so the leading operation_time bound is an index range condition
+            jpql.append(" and a.operationTime <= :afterTime and (a.operationTime < :afterTime or a.id < :afterId)");
+            params.put("afterTime", after.getTime());
+            params.put("afterId", after.getId());
+        }
+        jpql.append(" order by a.operationTime desc, a.id desc");
+
+        TypedQuery<InventoryAuditLog> typedQuery = entityManager.createQuery(jpql.toString(), InventoryAuditLog.class);
+        params.forEach(typedQuery::setParameter);
+        return typedQuery.setMaxResults(maxRows).getResultList();
+    }
+
+    private static void addFilter(StringBuilder jpql, Map<String, Object> params, String field, Object value) {
+        if (value == null) return;
+        jpql.append(" and a.").append(field).append(" = :").append(field);
+        params.put(field, value);
+    }
+}
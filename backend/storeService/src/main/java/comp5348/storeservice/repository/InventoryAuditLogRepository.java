@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface InventoryAuditLogRepository extends JpaRepository<InventoryAuditLog, Long> {
+public interface InventoryAuditLogRepository extends JpaRepository<InventoryAuditLog, Long>, InventoryAuditLogQueryRepository {
     
     /**
      * Query audit logs by order ID
@@ -0,0 +1,34 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.model.InventorySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface InventorySnapshotRepository extends JpaRepository<InventorySnapshot, Long> {
+
+    /**
+     * Copy warehouse_products into a snapshot run. Deltas the stock ledger has not flushed yet are added,
+     * so the snapshot holds the logical stock, consistent with the journal.
+     */
+    @Modifying
+    @Query(value = "insert into inventory_snapshots (run_id, product_id, warehouse_id, quantity) " +
+            "select :runId, wp.product_id, wp.warehouse_id, wp.quantity + coalesce(p.pending, 0) " +
+            "from warehouse_products wp left join (" +
+            "select product_id, warehouse_id, " +
+            "sum((case when type = 'HOLD' then -quantity else 0 end) - coalesce(applied_quantity, 0)) as pending " +
+            "from inventory_transactions where stock_pending = true group by product_id, warehouse_id) p " +
+            "on p.product_id = wp.product_id and p.warehouse_id = wp.warehouse_id", nativeQuery = true)
+    int insertFromWarehouseProducts(@Param("runId") Long runId);
+
+    @Query("select s from InventorySnapshot s where s.runId = :runId and (:productId is null or s.productId = :productId)")
+    List<InventorySnapshot> findByRun(@Param("runId") Long runId, @Param("productId") Long productId);
+
+    @Modifying
+    @Query("delete from InventorySnapshot s where s.runId in :runIds")
+    int deleteByRunIds(@Param("runIds") Collection<Long> runIds);
+}
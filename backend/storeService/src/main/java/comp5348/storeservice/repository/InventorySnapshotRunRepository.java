@@ -0,0 +1,19 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.model.InventorySnapshotRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface InventorySnapshotRunRepository extends JpaRepository<InventorySnapshotRun, Long> {
+
+    Optional<InventorySnapshotRun> findTopByTakenAtLessThanEqualOrderByTakenAtDesc(LocalDateTime time);
+
+    Optional<InventorySnapshotRun> findTopByOrderByTakenAtDesc();
+
+    Optional<InventorySnapshotRun> findTopByCompactedAtIsNotNullOrderByTakenAtDesc();
+
+    List<InventorySnapshotRun> findByTakenAtBefore(LocalDateTime time);
+}
@@ -1,9 +1,124 @@
 package comp5348.storeservice.repository;
 
+import comp5348.storeservice.dto.HeldInventoryView;
+import comp5348.storeservice.dto.TransactionDeltaView;
 import comp5348.storeservice.model.InventoryTransaction;
+import comp5348.storeservice.model.InventoryTransactionType;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long> {
-}
 
+    /**
+     * Rows whose stock delta has not been written to warehouse_products yet (stock ledger write-behind).
+     * Locked so that a concurrent unhold waits until the flush has committed.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from InventoryTransaction t where t.stockPending = true order by t.id")
+    List<InventoryTransaction> findStockPendingForUpdate(Pageable pageable);
+
+    /**
+     * Lock the rows among :ids that are still HOLD (bulk unhold).
+     * A concurrent release of the same rows waits here and then no longer sees them as HOLD.
+     */
+    @Query(value = "select t.id as \"id\", t.order_id as \"orderId\", t.warehouse_id as \"warehouseId\", w.name as \"warehouseName\", " +
+            "t.product_id as \"productId\", p.name as \"productName\", t.quantity as \"quantity\", " +
+            "t.applied_quantity as \"appliedQuantity\" " +
+            "from inventory_transactions t join warehouses w on w.id = t.warehouse_id join products p on p.id = t.product_id " +
+            "where t.id in (:ids) and t.type = 'HOLD' order by t.id for update of t", nativeQuery = true)
+    List<HeldInventoryView> lockHeldByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Lock the HOLD rows of a set of orders (bulk unhold by order, uses idx_inventory_tx_order_type)
+     */
+    @Query(value = "select t.id as \"id\", t.order_id as \"orderId\", t.warehouse_id as \"warehouseId\", w.name as \"warehouseName\", " +
+            "t.product_id as \"productId\", p.name as \"productName\", t.quantity as \"quantity\", " +
+            "t.applied_quantity as \"appliedQuantity\" " +
+            "from inventory_transactions t join warehouses w on w.id = t.warehouse_id join products p on p.id = t.product_id " +
+            "where t.order_id in (:orderIds) and t.type = 'HOLD' order by t.id for update of t", nativeQuery = true)
+    List<HeldInventoryView> lockHeldByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Rows of one type for an order, with product and warehouse loaded
+     */
+    @Query("select t from InventoryTransaction t join fetch t.product join fetch t.warehouse " +
+            "where t.orderId = :orderId and t.type = :type order by t.id")
+    List<InventoryTransaction> findByOrderIdAndType(@Param("orderId") Long orderId,
+                                                    @Param("type") InventoryTransactionType type);
+
+    /**
+     * Bulk unhold with the stock released inline (warehouse_products is updated by the caller)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update InventoryTransaction t set t.type = :unhold, t.stockPending = false, " +
+            "t.appliedQuantity = case when t.appliedQuantity is null then null else 0 end, t.transactionTime = :now, " +
+            "t.changeSeq = function('nextval', 'inventory_tx_change_seq') where t.id in :ids")
+    int markUnheld(@Param("ids") Collection<Long> ids,
+                   @Param("unhold") InventoryTransactionType unhold,
+                   @Param("now") LocalDateTime now);
 
+    /**
+     * Bulk unhold queued for the stock ledger flush.
+     * Rows created inline (appliedQuantity null) already have their HOLD applied.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update InventoryTransaction t set t.type = :unhold, t.stockPending = true, " +
+            "t.appliedQuantity = coalesce(t.appliedQuantity, -t.quantity), t.transactionTime = :now, " +
+            "t.changeSeq = function('nextval', 'inventory_tx_change_seq') where t.id in :ids")
+    int markAllUnholdPending(@Param("ids") Collection<Long> ids,
+                             @Param("unhold") InventoryTransactionType unhold,
+                             @Param("now") LocalDateTime now);
+
+    /**
+     * Rows inserted after a snapshot (id above its watermark), optionally for one product
+     */
+    @Query("select t.id as id, t.product.id as productId, t.warehouse.id as warehouseId, t.type as type, " +
+            "t.quantity as quantity, t.createdAt as createdAt, t.transactionTime as transactionTime, t.changeSeq as changeSeq " +
+            "from InventoryTransaction t where t.id > :idWatermark " +
+            "and (:productId is null or t.product.id = :productId) order by t.id")
+    List<TransactionDeltaView> findInsertedAfter(@Param("idWatermark") long idWatermark,
+                                                 @Param("productId") Long productId);
+
+    /**
+     * Rows flipped to UNHOLD after a snapshot (change_seq above its watermark), optionally for one product
+     */
+    @Query("select t.id as id, t.product.id as productId, t.warehouse.id as warehouseId, t.type as type, " +
+            "t.quantity as quantity, t.createdAt as createdAt, t.transactionTime as transactionTime, t.changeSeq as changeSeq " +
+            "from InventoryTransaction t where t.changeSeq > :seqWatermark and t.type = :unhold " +
+            "and (:productId is null or t.product.id = :productId) order by t.id")
+    List<TransactionDeltaView> findReleasedAfter(@Param("seqWatermark") long seqWatermark,
+                                                 @Param("unhold") InventoryTransactionType unhold,
+                                                 @Param("productId") Long productId);
+
+    /**
+     * Compaction: UNHOLD rows (net zero) and IN rows folded into a snapshot
+     */
+    @Modifying
+    @Query("delete from InventoryTransaction t where t.id <= :idWatermark and " +
+            "((t.type = :unhold and coalesce(t.changeSeq, 0) <= :seqWatermark and coalesce(t.stockPending, false) = false) " +
+            "or t.type = :in)")
+    int deleteSettledReleasesAndRestocks(@Param("idWatermark") long idWatermark,
+                                         @Param("seqWatermark") long seqWatermark,
+                                         @Param("unhold") InventoryTransactionType unhold,
+                                         @Param("in") InventoryTransactionType in);
+
+    /**
+     * Compaction: HOLD and OUT rows of orders that were shipped (have an OUT row) before the snapshot
+     */
+    @Modifying
+    @Query("delete from InventoryTransaction t where t.id <= :idWatermark and t.orderId in " +
+            "(select o.orderId from InventoryTransaction o where o.type = :out and o.id <= :idWatermark) " +
+            "and (t.type = :out or (t.type = :hold and coalesce(t.stockPending, false) = false))")
+    int deleteShippedOrders(@Param("idWatermark") long idWatermark,
+                            @Param("hold") InventoryTransactionType hold,
+                            @Param("out") InventoryTransactionType out);
+}
@@ -0,0 +1,31 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.model.OrderLine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderLineRepository extends JpaRepository<OrderLine, Long> {
+
+    /**
+     * Lines of an order with their products, in the order they were placed
+     */
+    @Query("SELECT l FROM OrderLine l JOIN FETCH l.product WHERE l.orderId = :orderId ORDER BY l.id")
+    List<OrderLine> findByOrderIdWithProduct(@Param("orderId") Long orderId);
+
+    /**
+     * Lines of an order without their products (only product ids are needed)
+     */
+    List<OrderLine> findByOrderIdOrderById(Long orderId);
+
+    /**
+     * Lines of several orders in one query (order lists)
+     */
+    @Query("SELECT l FROM OrderLine l JOIN FETCH l.product WHERE l.orderId IN :orderIds ORDER BY l.orderId, l.id")
+    List<OrderLine> findByOrderIdInWithProduct(@Param("orderIds") Collection<Long> orderIds);
+}
@@ -0,0 +1,19 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.dto.KeysetCursor;
+import comp5348.storeservice.model.Order;
+import comp5348.storeservice.model.OrderStatus;
+
+import java.util.List;
+
+/**
+ * Order list queries that Spring Data cannot derive (optional filters + keyset position)
+ */
+public interface OrderQueryRepository {
+
+    /**
+     * Up to maxRows orders with their product, newest first by (created_at, id), optionally filtered by
+     * status and/or user, strictly after the given cursor (null for the first page)
+     */
+    List<Order> findPage(OrderStatus status, Long userId, KeysetCursor after, int maxRows);
+}
@@ -0,0 +1,49 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.dto.KeysetCursor;
+import comp5348.storeservice.model.Order;
+import comp5348.storeservice.model.OrderStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the JPQL for OrderQueryRepository with only the filters that are set, so every page is one range scan
+ * on idx_orders_status_created_at, idx_orders_user_created_at or idx_orders_created_at_id, with the product
+ * fetched in the same query
+ */
+public class OrderQueryRepositoryImpl implements OrderQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Order> findPage(OrderStatus status, Long userId, KeysetCursor after, int maxRows) {
+        StringBuilder jpql = new StringBuilder("select o from Order o join fetch o.product where 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        if (status != null) {
+            jpql.append(" and o.status = :status");
+            params.put("status", status);
+        }
+        if (userId != null) {
+            jpql.append(" and o.userId = :userId");
+            params.put("userId", userId);
+        }
+        if (after != null) {
+            // Written so the leading created_at bound is an index range condition
+            jpql.append(" and o.createdAt <= :afterTime and (o.createdAt < :afterTime or o.id < :afterId)");
+            params.put("afterTime", after.getTime());
+            params.put("afterId", after.getId());
+        }
+        jpql.append(" order by o.createdAt desc, o.id desc");
+
+        TypedQuery<Order> typedQuery = entityManager.createQuery(jpql.toString(), Order.class);
+        params.forEach(typedQuery::setParameter);
+        return typedQuery.setMaxResults(maxRows).getResultList();
+    }
+}
@@ -1,28 +1,22 @@
 package comp5348.storeservice.repository;
 
+import comp5348.storeservice.dto.PendingPaymentView;
 import comp5348.storeservice.model.Order;
 import comp5348.storeservice.model.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
-    
-    /**
-     * Find orders by user ID, sorted by creation date descending (newest first)
-     */
-    List<Order> findByUserIdOrderByCreatedAtDesc(Long userId);
-    
-    /**
-     * Find orders by order status
-     */
-    List<Order> findByStatus(OrderStatus status);
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderQueryRepository {
     
 //    /**
 //     * Find orders by user ID and order status
@@ -61,4 +55,53 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     Optional<Order> findByDeliveryId(Long deliveryId);
 
+    /**
+     * Creation time only, used to bound audit log lookups to the partitions an order can be in
+     */
+    @Query("SELECT o.createdAt FROM Order o WHERE o.id = :orderId")
+    Optional<LocalDateTime> findCreatedAtById(@Param("orderId") Long orderId);
+
+    /**
+     * Id and creation time of every order in a status (rebuilds the payment expiry wheel at startup)
+     */
+    @Query("SELECT o.id AS id, o.createdAt AS createdAt FROM Order o WHERE o.status = :status")
+    List<PendingPaymentView> findIdAndCreatedAtByStatus(@Param("status") OrderStatus status);
+
+    /**
+     * Orders in a status created before the cutoff, oldest first (uses idx_orders_status_created_at)
+     */
+    @Query("SELECT o.id FROM Order o WHERE o.status = :status AND o.createdAt < :cutoff ORDER BY o.createdAt")
+    List<Long> findIdsByStatusCreatedBefore(@Param("status") OrderStatus status,
+                                            @Param("cutoff") LocalDateTime cutoff,
+                                            Pageable pageable);
+
+    /**
+     * Orders still in a status, from the given ids (expiry batches re-check before cancelling)
+     */
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids AND o.status = :status")
+    List<Long> findIdsByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status);
+
+    @Query("SELECT o.status FROM Order o WHERE o.id = :orderId")
+    Optional<OrderStatus> findStatusById(@Param("orderId") Long orderId);
+
+    /**
+     * Compare-and-set of the status: moves the order only if it is still in one of the given statuses.
+     * One statement, no entity load; returns the number of rows changed (0 or 1)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :to, o.updatedAt = :now WHERE o.id = :orderId AND o.status IN :from")
+    int updateStatusIfIn(@Param("orderId") Long orderId,
+                         @Param("from") Collection<OrderStatus> from,
+                         @Param("to") OrderStatus to,
+                         @Param("now") LocalDateTime now);
+
+    /**
+     * Set the delivery id alone, so a status changed since the order was read is not written back
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Order o SET o.deliveryId = :deliveryId, o.updatedAt = :now WHERE o.id = :orderId")
+    int updateDeliveryId(@Param("orderId") Long orderId,
+                         @Param("deliveryId") Long deliveryId,
+                         @Param("now") LocalDateTime now);
+
 }
@@ -0,0 +1,19 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.dto.KeysetCursor;
+import comp5348.storeservice.model.OrderStatus;
+import comp5348.storeservice.model.OrderView;
+
+import java.util.List;
+
+/**
+ * Keyset pages over order_view, same contract as OrderQueryRepository
+ */
+public interface OrderViewQueryRepository {
+
+    /**
+     * Up to maxRows view rows, newest first by (created_at, order_id), optionally filtered by status and/or
+     * user, strictly after the given cursor (null for the first page)
+     */
+    List<OrderView> findPage(OrderStatus status, Long userId, KeysetCursor after, int maxRows);
+}
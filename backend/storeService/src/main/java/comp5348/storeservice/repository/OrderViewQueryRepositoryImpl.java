@@ -0,0 +1,47 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.dto.KeysetCursor;
+import comp5348.storeservice.model.OrderStatus;
+import comp5348.storeservice.model.OrderView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the JPQL for OrderViewQueryRepository with only the filters that are set, so every page is one range
+ * scan on one of the order_view indexes
+ */
+public class OrderViewQueryRepositoryImpl implements OrderViewQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<OrderView> findPage(OrderStatus status, Long userId, KeysetCursor after, int maxRows) {
+        StringBuilder jpql = new StringBuilder("select v from OrderView v where 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        if (status != null) {
+            jpql.append(" and v.status = :status");
+            params.put("status", status);
+        }
+        if (userId != null) {
+            jpql.append(" and v.userId = :userId");
+            params.put("userId", userId);
+        }
+        if (after != null) {
+            jpql.append(" and v.createdAt <= :afterTime and (v.createdAt < :afterTime or v.orderId < :afterId)");
+            params.put("afterTime", after.getTime());
+            params.put("afterId", after.getId());
+        }
+        jpql.append(" order by v.createdAt desc, v.orderId desc");
+
+        TypedQuery<OrderView> typedQuery = entityManager.createQuery(jpql.toString(), OrderView.class);
+        params.forEach(typedQuery::setParameter);
+        return typedQuery.setMaxResults(maxRows).getResultList();
+    }
+}
@@ -0,0 +1,14 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.model.OrderView;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderViewRepository extends JpaRepository<OrderView, Long>, OrderViewQueryRepository {
+
+    List<OrderView> findByOrderIdIn(Collection<Long> orderIds);
+}
@@ -4,12 +4,16 @@ import comp5348.storeservice.model.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     
     Optional<Payment> findByOrderId(Long orderId);
+
+    List<Payment> findByOrderIdIn(Collection<Long> orderIds);
     
     Optional<Payment> findByBankTxnId(String bankTxnId);
     
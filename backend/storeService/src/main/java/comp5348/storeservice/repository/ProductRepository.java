@@ -1,5 +1,6 @@
 package comp5348.storeservice.repository;
 
+import comp5348.storeservice.dto.ProductDTO;
 import comp5348.storeservice.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -46,6 +47,34 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.price BETWEEN :minPrice AND :maxPrice")
     List<Product> findByPriceRange(@Param("minPrice") BigDecimal minPrice,
                                    @Param("maxPrice") BigDecimal maxPrice);
-    
-    
+
+    /**
+     * Catalog listing with total stock from product_stock_summary, in one query
+     */
+    @Query("SELECT new comp5348.storeservice.dto.ProductDTO(p.id, p.name, p.price, p.description, " +
+            "coalesce(s.totalQuantity, 0), p.createdAt, p.updatedAt) " +
+            "FROM Product p LEFT JOIN ProductStockSummary s ON s.productId = p.id ORDER BY p.id")
+    List<ProductDTO> findCatalog();
+
+    /**
+     * Catalog listing restricted to products with stock (filter evaluated in the database)
+     */
+    @Query("SELECT new comp5348.storeservice.dto.ProductDTO(p.id, p.name, p.price, p.description, " +
+            "s.totalQuantity, p.createdAt, p.updatedAt) " +
+            "FROM Product p JOIN ProductStockSummary s ON s.productId = p.id " +
+            "WHERE s.totalQuantity > 0 ORDER BY p.id")
+    List<ProductDTO> findAvailableCatalog();
+
+    @Query("SELECT new comp5348.storeservice.dto.ProductDTO(p.id, p.name, p.price, p.description, " +
+            "coalesce(s.totalQuantity, 0), p.createdAt, p.updatedAt) " +
+            "FROM Product p LEFT JOIN ProductStockSummary s ON s.productId = p.id " +
+            "WHERE lower(p.name) LIKE lower(concat('%', :name, '%')) ORDER BY p.id")
+    List<ProductDTO> findCatalogByName(@Param("name") String name);
+
+    @Query("SELECT new comp5348.storeservice.dto.ProductDTO(p.id, p.name, p.price, p.description, " +
+            "coalesce(s.totalQuantity, 0), p.createdAt, p.updatedAt) " +
+            "FROM Product p LEFT JOIN ProductStockSummary s ON s.productId = p.id " +
+            "WHERE p.price BETWEEN :minPrice AND :maxPrice ORDER BY p.id")
+    List<ProductDTO> findCatalogByPriceRange(@Param("minPrice") BigDecimal minPrice,
+                                             @Param("maxPrice") BigDecimal maxPrice);
 }
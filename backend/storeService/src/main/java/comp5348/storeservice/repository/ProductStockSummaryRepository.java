@@ -0,0 +1,31 @@
+package comp5348.storeservice.repository;
+
+import comp5348.storeservice.model.ProductStockSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ProductStockSummaryRepository extends JpaRepository<ProductStockSummary, Long> {
+
+    /**
+     * Add a signed delta to a product's total, creating the row on first use
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "insert into product_stock_summary (product_id, total_quantity, updated_at) " +
+            "values (:productId, :delta, now()) " +
+            "on conflict (product_id) do update set total_quantity = product_stock_summary.total_quantity + excluded.total_quantity, " +
+            "updated_at = excluded.updated_at", nativeQuery = true)
+    int applyDelta(@Param("productId") Long productId, @Param("delta") int delta);
+
+    /**
+     * Recompute every product's total from warehouse_products (startup and repair)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "insert into product_stock_summary (product_id, total_quantity, updated_at) " +
+            "select p.id, coalesce(sum(wp.quantity), 0), now() from products p " +
+            "left join warehouse_products wp on wp.product_id = p.id group by p.id " +
+            "on conflict (product_id) do update set total_quantity = excluded.total_quantity, " +
+            "updated_at = excluded.updated_at", nativeQuery = true)
+    int rebuildAll();
+}
@@ -1,18 +1,26 @@
 package comp5348.storeservice.repository;
 
+import comp5348.storeservice.dto.WarehouseProductListView;
+import comp5348.storeservice.dto.WarehouseStockView;
 import comp5348.storeservice.model.Product;
 import comp5348.storeservice.model.Warehouse;
 import comp5348.storeservice.model.WarehouseProduct;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface WarehouseProductRepository extends JpaRepository<WarehouseProduct, Long> {
 
-    @Query("select wp from WarehouseProduct wp where wp.product.id = :productId and wp.quantity > 0 order by wp.quantity asc")
+    /**
+     * Rows with stock, in id order: updates to them are flushed in that order, so concurrent orders lock rows alike
+     */
+    @Query("select wp from WarehouseProduct wp where wp.product.id = :productId and wp.quantity > 0 order by wp.id")
     List<WarehouseProduct> findByProductIdAndQuantity(@Param("productId") Long productId);
 
     @Query("select sum(wp.quantity) from WarehouseProduct wp where wp.product.id = :productId")
@@ -24,6 +32,85 @@ public interface WarehouseProductRepository extends JpaRepository<WarehouseProdu
 
     @Query("select wp from WarehouseProduct wp where wp.warehouse.id = :warehouseId and wp.product.id = :productId")
     Optional<WarehouseProduct> findByWarehouseIdAndProductId(@Param("warehouseId") Long warehouseId, @Param("productId") Long productId);
+
+    /**
+     * Current stock rows for a product as a projection (bypasses the persistence context cache)
+     */
+    @Query("select wp.id as id, w.id as warehouseId, w.name as warehouseName, w.location as warehouseLocation, " +
+            "w.latitude as warehouseLatitude, w.longitude as warehouseLongitude, " +
+            "p.id as productId, p.name as productName, wp.quantity as quantity " +
+            "from WarehouseProduct wp join wp.warehouse w join wp.product p " +
+            "where p.id = :productId and wp.quantity > 0 order by wp.id")
+    List<WarehouseStockView> findStockLevelsByProductId(@Param("productId") Long productId);
+
+    /**
+     * Current stock rows for all products (used to load the stock ledger)
+     */
+    @Query("select wp.id as id, w.id as warehouseId, w.name as warehouseName, w.location as warehouseLocation, " +
+            "w.latitude as warehouseLatitude, w.longitude as warehouseLongitude, " +
+            "p.id as productId, p.name as productName, wp.quantity as quantity " +
+            "from WarehouseProduct wp join wp.warehouse w join wp.product p")
+    List<WarehouseStockView> findAllStockLevels();
+
+    /**
+     * Current stock rows for a set of products, including empty ones
+     */
+    @Query("select wp.id as id, w.id as warehouseId, w.name as warehouseName, w.location as warehouseLocation, " +
+            "w.latitude as warehouseLatitude, w.longitude as warehouseLongitude, " +
+            "p.id as productId, p.name as productName, wp.quantity as quantity " +
+            "from WarehouseProduct wp join wp.warehouse w join wp.product p where p.id in :productIds")
+    List<WarehouseStockView> findStockLevelsByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Product lines of every warehouse in one statement, :limit lines per warehouse starting after :offset
+     * (ordered by product id). totalProducts is the warehouse's line count before paging.
+     */
+    @Query(value = "select t.warehouse_id as \"warehouseId\", t.product_id as \"productId\", t.name as \"name\", " +
+            "t.price as \"price\", t.description as \"description\", t.quantity as \"quantity\", " +
+            "t.total_products as \"totalProducts\" from (" +
+            "select wp.warehouse_id, p.id as product_id, p.name, p.price, p.description, wp.quantity, " +
+            "row_number() over (partition by wp.warehouse_id order by p.id) as rn, " +
+            "count(*) over (partition by wp.warehouse_id) as total_products " +
+            "from warehouse_products wp join products p on p.id = wp.product_id) t " +
+            "where t.rn > :offset and t.rn - :offset <= :limit order by t.warehouse_id, t.rn", nativeQuery = true)
+    List<WarehouseProductListView> findProductListings(@Param("offset") int offset, @Param("limit") int limit);
+
+    /**
+     * Product lines of one warehouse, same shape as findProductListings
+     */
+    @Query(value = "select wp.warehouse_id as \"warehouseId\", p.id as \"productId\", p.name as \"name\", " +
+            "p.price as \"price\", p.description as \"description\", wp.quantity as \"quantity\", " +
+            "count(*) over () as \"totalProducts\" " +
+            "from warehouse_products wp join products p on p.id = wp.product_id where wp.warehouse_id = :warehouseId " +
+            "order by p.id offset :offset limit :limit", nativeQuery = true)
+    List<WarehouseProductListView> findProductListingsByWarehouseId(@Param("warehouseId") Long warehouseId,
+                                                                    @Param("offset") int offset,
+                                                                    @Param("limit") int limit);
+
+    /**
+     * Guarded single-statement decrement: only succeeds if the row still holds at least :quantity units.
+     * Returns the row's quantity after the decrement, empty if another order took the stock first.
+     */
+    @Query(value = "update warehouse_products set quantity = quantity - :quantity, version = version + 1, " +
+            "modify_time = :now where id = :id and quantity >= :quantity returning quantity", nativeQuery = true)
+    Optional<Integer> decrementIfAvailable(@Param("id") Long id, @Param("quantity") int quantity, @Param("now") LocalDateTime now);
+
+    /**
+     * Single-statement increment, used to give back stock that was decremented by decrementIfAvailable
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update WarehouseProduct wp set wp.quantity = wp.quantity + :quantity, wp.version = wp.version + 1, " +
+            "wp.modifyTime = :now where wp.id = :id")
+    int increment(@Param("id") Long id, @Param("quantity") int quantity, @Param("now") LocalDateTime now);
+
+    /**
+     * Apply a signed stock delta to one (warehouse, product) row in a single statement
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update WarehouseProduct wp set wp.quantity = wp.quantity + :delta, wp.version = wp.version + 1, " +
+            "wp.modifyTime = :now where wp.warehouse.id = :warehouseId and wp.product.id = :productId")
+    int adjustQuantity(@Param("warehouseId") Long warehouseId, @Param("productId") Long productId,
+                       @Param("delta") int delta, @Param("now") LocalDateTime now);
 }
 
 
@@ -0,0 +1,209 @@
+package comp5348.storeservice.scheduler;
+
+import comp5348.storeservice.model.PaymentOutbox;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Claims pending payment_outbox rows and hands them to OutboxProcessor on a pool of workers.
+ *
+ * Each poll claims up to batch-size rows with one UPDATE over a FOR UPDATE SKIP LOCKED select and commits it
+ * at once: the row gets a claim token and a lease (claimed_until), so other instances skip it and no
+ * transaction stays open while the bank or delivery service is called. Only the oldest pending event of an
+ * order is claimable, and each order always goes to the same single-threaded worker (orderId modulo workers),
+ * so an order's events are handled one at a time and in order, across instances too.
+ *
+ * The outcome is written back only by the holder of the claim token. A row whose lease ran out (instance
+ * died, worker stuck) is claimed again by the next poll. A failed attempt stays claimed for retry-delay-ms,
+ * which spaces retries like the old 5 second scan did.
+ */
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private static final String CLAIM_SQL = "update payment_outbox set claimed_by = ?, claimed_until = ? where id in (" +
+            "select o.id from payment_outbox o where o.status = 'PENDING' and o.retry_count < ? " +
+            "and (o.claimed_until is null or o.claimed_until < localtimestamp) " +
+            // Head of line: an order's next event waits until the one before it is settled
+            "and not exists (select 1 from payment_outbox e where e.order_id = o.order_id and e.status = 'PENDING' " +
+            "and e.retry_count < ? and e.id < o.id) " +
+            "order by o.id limit ? for update skip locked) " +
+            "returning id, order_id, event_type, payload, status, retry_count, created_at";
+
+    private static final String RECORD_SQL = "update payment_outbox set status = ?, retry_count = ?, processed_at = ?, " +
+            "claimed_by = null, claimed_until = ? where id = ? and claimed_by = ?";
+
+    private static final String DEFER_SQL = "update payment_outbox set claimed_by = null, claimed_until = ? " +
+            "where id = ? and claimed_by = ?";
+
+    @Autowired
+    private OutboxProcessor outboxProcessor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${outbox.processor.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.processor.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${outbox.dispatcher.workers:4}")
+    private int workers;
+
+    @Value("${outbox.dispatcher.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.dispatcher.max-in-flight:400}")
+    private int maxInFlight;
+
+    @Value("${outbox.dispatcher.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${outbox.dispatcher.retry-delay-ms:5000}")
+    private long retryDelayMs;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Set<Long> inFlightIds = ConcurrentHashMap.newKeySet();
+    private ExecutorService[] partitions;
+
+    @PostConstruct
+    public void start() {
+        partitions = new ExecutorService[workers];
+        for (int i = 0; i < workers; i++) {
+            String name = "outbox-worker-" + i;
+            partitions[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        logger.info("[OUTBOX] Dispatcher started: workers={}, batchSize={}, maxInFlight={}, enabled={}",
+                workers, batchSize, maxInFlight, enabled);
+    }
+
+    /**
+     * Let the workers finish what they hold; anything left keeps its lease and is claimed again after it runs out
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ExecutorService partition : partitions) {
+            partition.shutdown();
+        }
+        for (ExecutorService partition : partitions) {
+            partition.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Claim batches while workers have room; a full batch is followed by another claim right away
+     */
+    @Scheduled(fixedDelayString = "${outbox.dispatcher.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int claimed;
+            do {
+                int room = Math.min(batchSize, maxInFlight - inFlight.get());
+                if (room <= 0) return;
+                claimed = claimAndDispatch(room);
+            } while (claimed == batchSize);
+        } catch (Exception e) {
+            logger.error("Error in outbox dispatcher: {}", e.getMessage(), e);
+        }
+    }
+
+    private int claimAndDispatch(int limit) {
+        String token = instanceId + ":" + claimSequence.incrementAndGet();
+        Timestamp leaseUntil = Timestamp.valueOf(LocalDateTime.now().plusSeconds(leaseSeconds));
+        List<PaymentOutbox> claimed = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> {
+            PaymentOutbox outbox = new PaymentOutbox();
+            outbox.setId(rs.getLong("id"));
+            outbox.setOrderId(rs.getLong("order_id"));
+            outbox.setEventType(rs.getString("event_type"));
+            outbox.setPayload(rs.getString("payload"));
+            outbox.setStatus(rs.getString("status"));
+            outbox.setRetryCount(rs.getInt("retry_count"));
+            outbox.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+            outbox.setClaimedBy(token);
+            return outbox;
+        }, token, leaseUntil, maxRetries, maxRetries, limit);
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        logger.info("Processing {} pending outbox messages", claimed.size());
+        claimed.sort(Comparator.comparing(PaymentOutbox::getId));
+        for (PaymentOutbox outbox : claimed) {
+            // Our own lease ran out while a worker still holds the row: the new claim is left to expire
+            if (!inFlightIds.add(outbox.getId())) continue;
+            inFlight.incrementAndGet();
+            partitions[Math.floorMod(outbox.getOrderId().hashCode(), workers)].execute(() -> process(outbox));
+        }
+        return claimed.size();
+    }
+
+    private void process(PaymentOutbox outbox) {
+        try {
+            if (outboxProcessor.processOutboxMessage(outbox)) {
+                record(outbox);
+            } else {
+                defer(outbox, LocalDateTime.now().plus(Duration.ofMillis(retryDelayMs)));
+            }
+        } catch (Exception e) {
+            logger.error("Error dispatching outbox message: id={}, error={}", outbox.getId(), e.getMessage(), e);
+            // Retry after the usual delay instead of holding the row until the lease runs out
+            try {
+                defer(outbox, LocalDateTime.now().plus(Duration.ofMillis(retryDelayMs)));
+            } catch (Exception deferFailure) {
+                logger.warn("Could not release outbox message {}, it is retried when its lease runs out: {}",
+                        outbox.getId(), deferFailure.getMessage());
+            }
+        } finally {
+            inFlightIds.remove(outbox.getId());
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void record(PaymentOutbox outbox) {
+        LocalDateTime retryAt = "PENDING".equals(outbox.getStatus())
+                ? LocalDateTime.now().plus(Duration.ofMillis(retryDelayMs)) : null;
+        int updated = jdbcTemplate.update(RECORD_SQL, outbox.getStatus(), outbox.getRetryCount(),
+                outbox.getProcessedAt() != null ? Timestamp.valueOf(outbox.getProcessedAt()) : null,
+                retryAt != null ? Timestamp.valueOf(retryAt) : null, outbox.getId(), outbox.getClaimedBy());
+        if (updated == 0) {
+            logger.warn("Outbox message {} was claimed again after its lease ran out; outcome {} not recorded",
+                    outbox.getId(), outbox.getStatus());
+        }
+    }
+
+    private void defer(PaymentOutbox outbox, LocalDateTime until) {
+        jdbcTemplate.update(DEFER_SQL, Timestamp.valueOf(until), outbox.getId(), outbox.getClaimedBy());
+    }
+}
@@ -3,32 +3,33 @@ package comp5348.storeservice.scheduler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import comp5348.storeservice.adapter.DeliveryAdapter;
+import comp5348.storeservice.dto.CatalogProduct;
 import comp5348.storeservice.dto.DeliveryRequestDTO;
 import comp5348.storeservice.dto.DeliveryResponseDTO;
 import comp5348.storeservice.model.*;
 import comp5348.storeservice.repository.AccountRepository;
+import comp5348.storeservice.repository.OrderLineRepository;
 import comp5348.storeservice.repository.OrderRepository;
-import comp5348.storeservice.repository.PaymentOutboxRepository;
 import comp5348.storeservice.service.OrderService;
+import comp5348.storeservice.service.OrderViewProjector;
 import comp5348.storeservice.service.OutboxService;
 import comp5348.storeservice.service.PaymentService;
+import comp5348.storeservice.service.ProductCatalogCache;
 import comp5348.storeservice.service.WarehouseService;
-import comp5348.storeservice.dto.UnholdProductRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Component
 @EnableScheduling
@@ -36,9 +37,6 @@ public class OutboxProcessor {
     
     private static final Logger logger = LoggerFactory.getLogger(OutboxProcessor.class);
     
-    @Autowired
-    private PaymentOutboxRepository outboxRepository;
-    
     @Autowired
     private PaymentService paymentService;
     
@@ -48,6 +46,9 @@ public class OutboxProcessor {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderLineRepository orderLineRepository;
+
     @Autowired
     private OrderService orderService;
 
@@ -65,13 +66,19 @@ public class OutboxProcessor {
 
     @Autowired
     private WarehouseService warehouseService;
+
+    @Autowired
+    private OrderViewProjector orderViewProjector;
+
+    @Autowired
+    private ProductCatalogCache productCatalog;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
     
     @Value("${outbox.processor.max-retries:3}")
     private int maxRetries;
     
-    @Value("${outbox.processor.enabled:true}")
-    private boolean enabled;
-    
     @Value("${delivery.notification.url:http://localhost:8082/api/delivery-webhook}")
     private String deliveryNotificationUrl;
     
@@ -93,38 +100,12 @@ public class OutboxProcessor {
     }
 
     /**
-     * Scheduled processing of Outbox messages - executed every 5 seconds
-     */
-    @Scheduled(fixedDelay = 5000)
-    @Transactional
-    public void processOutbox() {
-        if (!enabled) {
-            return;
-        }
-
-        try {
-            // Query pending Outbox records (PENDING status and retry count less than max)
-            List<PaymentOutbox> pendingOutboxes = outboxRepository.findByStatusAndRetryCountLessThan("PENDING", maxRetries);
-
-            if (pendingOutboxes.isEmpty()) {
-                return;
-            }
-
-            logger.info("Processing {} pending outbox messages", pendingOutboxes.size());
-
-            for (PaymentOutbox outbox : pendingOutboxes) {
-                processOutboxMessage(outbox);
-            }
-
-        } catch (Exception e) {
-            logger.error("Error in outbox processor: {}", e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Process a single Outbox message
+     * Process a single Outbox message (called by OutboxDispatcher on a worker thread, outside any transaction).
+     * Each handler runs its database steps in transactions of their own, never across a bank or delivery call.
+     * Sets the outcome on the message (PROCESSED, or retryCount/FAILED) for the dispatcher to record;
+     * returns false when the message is not due yet and should be offered again later unchanged.
      */
-    private void processOutboxMessage(PaymentOutbox outbox) {
+    public boolean processOutboxMessage(PaymentOutbox outbox) {
         logger.info("Processing outbox message: id={}, eventType={}, orderId={}", 
                 outbox.getId(), outbox.getEventType(), outbox.getOrderId());
         
@@ -176,7 +157,7 @@ public class OutboxProcessor {
                         // Return false means still waiting (haven't reached 30 seconds yet)
                         // Don't process, don't increment retry count, wait for next scan
                         logger.debug("DELIVERY_FAILED event for orderId {} still waiting, skipping this round.", outbox.getOrderId());
-                        return; // Return directly without updating outbox status, next scheduled task will scan again
+                        return false; // Return directly without updating outbox status, the dispatcher offers it again later
                     }
                     // Return true means compensation has been triggered
                     success = true;
@@ -203,7 +184,9 @@ public class OutboxProcessor {
                 }
             }
             
-            outboxRepository.save(outbox);
+            // Payment, status and delivery changes made by the handler reach order_view
+            orderViewProjector.markDirty(outbox.getOrderId());
+            return true;
             
         } catch (Exception e) {
             logger.error("Error processing outbox message: id={}, error={}", outbox.getId(), e.getMessage(), e);
@@ -213,8 +196,7 @@ public class OutboxProcessor {
             if (outbox.getRetryCount() >= maxRetries) {
                 outbox.setStatus("FAILED");
             }
-            
-            outboxRepository.save(outbox);
+            return true;
         }
     }
     
@@ -238,6 +220,26 @@ public class OutboxProcessor {
         }
     }
     
+    /**
+     * Refund a payment that succeeded after its order was cancelled; false keeps the event for a retry
+     */
+    private boolean refundCancelledOrder(Long orderId, OrderStatus current) {
+        try {
+            Payment payment = paymentService.getPaymentByOrderId(orderId)
+                    .orElseThrow(() -> new IllegalStateException("Payment not found for orderId: " + orderId));
+            if (payment.getStatus() != PaymentStatus.SUCCESS) {
+                logger.info("Order {} is {} and its payment is {}, nothing to refund", orderId, current, payment.getStatus());
+                return true;
+            }
+            logger.warn("Order {} is {} but its payment succeeded, refunding", orderId, current);
+            paymentService.refundPayment(orderId, "Order was cancelled before payment completed");
+            return true;
+        } catch (Exception e) {
+            logger.error("Refund of cancelled order {} failed, will retry: {}", orderId, e.getMessage(), e);
+            return false;
+        }
+    }
+
     /**
      * Process payment success event - create delivery request (call team member D's DeliveryService)
      */
@@ -251,8 +253,30 @@ public class OutboxProcessor {
             // [New Step 1]: Update order status to PAID
             // Place status update before calling external service, if update fails, don't continue
             try {
-                orderService.updateOrderStatus(orderId, OrderStatus.PAID);
-                logger.info("Order status updated to PAID for orderId={}", orderId);
+                // Null when this attempt moved the order, otherwise the status that kept it from moving
+                OrderStatus current = new TransactionTemplate(transactionManager).execute(status ->
+                        orderService.transitionStatus(orderId, OrderStatus.PAID) ? null
+                                : orderRepository.findStatusById(orderId)
+                                        .orElseThrow(() -> new RuntimeException("Order not found: " + orderId)));
+                if (current == null) {
+                    logger.info("Order status updated to PAID for orderId={}", orderId);
+                } else {
+                    if (current == OrderStatus.CANCELLED || current == OrderStatus.CANCELLED_SYSTEM) {
+                        // Cancelled before the payment landed: the money has to go back
+                        return refundCancelledOrder(orderId, current);
+                    }
+                    if (current.compareTo(OrderStatus.PROCESSING) >= 0) {
+                        // Redelivered event for an order that already has its delivery
+                        logger.info("Skipping delivery request for orderId={}: order is {}", orderId, current);
+                        return true;
+                    }
+                    if (current != OrderStatus.PAID) {
+                        logger.warn("Order {} is {} and cannot move to PAID yet, will retry", orderId, current);
+                        return false;
+                    }
+                    // Still PAID: an earlier attempt failed after the status update, carry on with the delivery
+                    logger.info("Order {} already PAID, retrying delivery request", orderId);
+                }
             } catch (Exception e) {
                 logger.error("Failed to update order status to PAID for orderId={}. Will retry. Error: {}", orderId, e.getMessage(), e);
                 return false; // Updating order status is a critical step, must retry on failure
@@ -262,38 +286,13 @@ public class OutboxProcessor {
 
             logger.info("Triggering delivery request for orderId={}", orderId);
 
-            // 1. Query order information
-            Order order = orderRepository.findByIdWithProduct(orderId) // Use findByIdWithProduct to ensure product info is loaded
-                    .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
-
-            // 2. Query user information (logic unchanged)
-            Account account = accountRepository.findById(order.getUserId()).orElse(null);
-            String email = (account != null) ? account.getEmail() : "customer@example.com";
-            String userName = (account != null && account.getUsername() != null) ? account.getUsername() : "Customer";
-
-            // 3. [Modified] Get order product information
-            // Since Order is directly associated with Product, getOrderItems() is no longer needed
-            if (order.getProduct() == null) {
-                throw new IllegalStateException("Order " + orderId + " has no associated product.");
-            }
-            String productName = order.getProduct().getName();
-            int quantity = order.getQuantity();
-
-            // 4. Construct delivery request (logic unchanged)
-            DeliveryRequestDTO deliveryRequest = new DeliveryRequestDTO();
-            deliveryRequest.setOrderId(orderId.toString());
-            deliveryRequest.setEmail(email);
-            deliveryRequest.setUserName(userName);
-            deliveryRequest.setToAddress("Default Address - 123 Main St");
-            deliveryRequest.setFromAddress(Collections.singletonList("Warehouse-1, 456 Storage Rd"));
-            deliveryRequest.setProductName(productName);
-            deliveryRequest.setQuantity(quantity);
-            deliveryRequest.setNotificationUrl("http://localhost:8082/api/delivery-webhook");
+            // 1-4. Read the order, its customer and lines in one read-only transaction
+            DeliveryRequestDTO deliveryRequest = readOnlyTransaction().execute(status -> buildDeliveryRequest(orderId));
 
             // 5. [Optimized] Confirm inventory reservation (Saga pattern "Confirm")
             // The purpose of this step is to mark inventory transactions in HOLD status as COMMITTED/CONFIRMED
             // This is usually done by WarehouseService providing a dedicated method
-            // warehouseService.confirmHold(order.getInventoryTransactionIds());
+            // warehouseService.confirmHold(orderId);
             // If your process doesn't have this step, you can skip or remove it, but keeping it demonstrates more complete Saga thinking
             logger.info("Confirming stock hold for orderId={}", orderId);
 
@@ -304,13 +303,12 @@ public class OutboxProcessor {
                 logger.info("Delivery request created successfully: orderId={}, deliveryId={}", orderId, response.getDeliveryId());
 
                 try {
-                    // Get latest order object again
-                    Order orderToUpdate = orderRepository.findById(orderId)
-                            .orElseThrow(() -> new RuntimeException("Order disappeared unexpectedly: " + orderId));
-
-                    // Set and save deliveryId
-                    orderToUpdate.setDeliveryId(response.getDeliveryId());
-                    orderRepository.save(orderToUpdate);
+                    // Only the delivery id is written: a status set meanwhile by a webhook or a cancellation stays
+                    Integer updated = new TransactionTemplate(transactionManager).execute(status ->
+                            orderRepository.updateDeliveryId(orderId, response.getDeliveryId(), LocalDateTime.now()));
+                    if (updated == null || updated == 0) {
+                        throw new IllegalStateException("Order disappeared unexpectedly: " + orderId);
+                    }
 
                     logger.info("Saved deliveryId {} to orderId {}", response.getDeliveryId(), orderId);
 
@@ -347,6 +345,55 @@ public class OutboxProcessor {
         }
     }
     
+    /**
+     * Delivery request of an order; runs inside the caller's read-only transaction
+     */
+    private DeliveryRequestDTO buildDeliveryRequest(Long orderId) {
+        // 1. Query order information (product names come from the catalog cache rather than a join)
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+
+        // 2. Query user information (logic unchanged)
+        Account account = accountRepository.findById(order.getUserId()).orElse(null);
+        String email = (account != null) ? account.getEmail() : "customer@example.com";
+        String userName = (account != null && account.getUsername() != null) ? account.getUsername() : "Customer";
+
+        // 3. [Modified] Get order product information
+        // Since Order is directly associated with Product, getOrderItems() is no longer needed
+        if (order.getProduct() == null) {
+            throw new IllegalStateException("Order " + orderId + " has no associated product.");
+        }
+        String productName = productCatalog.getName(order.getProduct().getId());
+        int quantity = order.getQuantity();
+        // One delivery per order: a multi-item order ships as one parcel listing every line
+        List<OrderLine> lines = orderLineRepository.findByOrderIdOrderById(orderId);
+        if (lines.size() > 1) {
+            Map<Long, CatalogProduct> products = productCatalog.getAll(
+                    lines.stream().map(line -> line.getProduct().getId()).toList());
+            StringJoiner names = new StringJoiner(", ");
+            quantity = 0;
+            for (OrderLine line : lines) {
+                CatalogProduct product = products.get(line.getProduct().getId());
+                names.add((product != null ? product.getName() : "Product " + line.getProduct().getId())
+                        + " x" + line.getQuantity());
+                quantity += line.getQuantity();
+            }
+            productName = names.toString();
+        }
+
+        // 4. Construct delivery request (logic unchanged)
+        DeliveryRequestDTO deliveryRequest = new DeliveryRequestDTO();
+        deliveryRequest.setOrderId(orderId.toString());
+        deliveryRequest.setEmail(email);
+        deliveryRequest.setUserName(userName);
+        deliveryRequest.setToAddress("Default Address - 123 Main St");
+        deliveryRequest.setFromAddress(Collections.singletonList("Warehouse-1, 456 Storage Rd"));
+        deliveryRequest.setProductName(productName);
+        deliveryRequest.setQuantity(quantity);
+        deliveryRequest.setNotificationUrl("http://localhost:8082/api/delivery-webhook");
+        return deliveryRequest;
+    }
+
     /**
      * Process payment failed event - release reserved inventory + send email notification
      */
@@ -358,35 +405,29 @@ public class OutboxProcessor {
 
             logger.info("Payment failed for orderId={}, error={}", orderId, error);
 
-            Order order = orderRepository.findById(orderId).orElse(null);
-            if (order == null) {
-                logger.warn("Order not found for failed payment, cannot release stock. orderId={}", orderId);
-                return true; // Order doesn't exist, no need to release inventory, consider processing successful
-            }
-
-            // 1. Release inventory reservation
+            // 1. Release inventory reservation (order lookup and release in one transaction)
+            Order order;
             try {
-                if (order.getInventoryTransactionIds() != null && !order.getInventoryTransactionIds().isEmpty()) {
-                    List<Long> txIds = Arrays.stream(order.getInventoryTransactionIds().split(","))
-                            .filter(s -> s != null && !s.trim().isEmpty())
-                            .map(Long::valueOf)
-                            .collect(Collectors.toList());
-
-                    if (!txIds.isEmpty()) {
-                        UnholdProductRequest unholdRequest = new UnholdProductRequest();
-                        unholdRequest.setInventoryTransactionIds(txIds);
-                        warehouseService.unholdProduct(unholdRequest);
-                        logger.info("Released inventory for failed payment, orderId={}", orderId);
+                order = new TransactionTemplate(transactionManager).execute(status -> {
+                    Order found = orderRepository.findById(orderId).orElse(null);
+                    if (found != null) {
+                        warehouseService.releaseHoldsForOrders(List.of(orderId));
                     }
-                }
+                    return found;
+                });
             } catch (Exception e) {
                 logger.error("Failed to release inventory for orderId={}. Will retry. Error: {}", orderId, e.getMessage(), e);
                 return false; // Releasing inventory is a critical step, must retry on failure
             }
+            if (order == null) {
+                logger.warn("Order not found for failed payment, cannot release stock. orderId={}", orderId);
+                return true; // Order doesn't exist, no need to release inventory, consider processing successful
+            }
+            logger.info("Released inventory for failed payment, orderId={}", orderId);
 
             // 2. Send failure notification email
             try {
-                accountRepository.findById(order.getUserId()).ifPresent(acc -> {
+                readOnlyTransaction().execute(status -> accountRepository.findById(order.getUserId())).ifPresent(acc -> {
                     if (acc.getEmail() != null) {
                         emailAdapter.sendOrderFailed(acc.getEmail(), String.valueOf(orderId), error);
                     }
@@ -417,12 +458,12 @@ public class OutboxProcessor {
             logger.info("Refund success for orderId={}, refundTxnId={}", orderId, refundTxnId);
             
             try {
-                Order order = orderRepository.findById(orderId).orElse(null);
-                String email = null;
-                if (order != null) {
+                String email = readOnlyTransaction().execute(status -> {
+                    Order order = orderRepository.findById(orderId).orElse(null);
+                    if (order == null) return null;
                     var acc = accountRepository.findById(order.getUserId()).orElse(null);
-                    if (acc != null) email = acc.getEmail();
-                }
+                    return acc != null ? acc.getEmail() : null;
+                });
                 if (email != null) {
                     emailAdapter.sendRefundSuccess(email, String.valueOf(orderId), refundTxnId);
                 }
@@ -461,6 +502,10 @@ public class OutboxProcessor {
         String reason = "Delivery service failed to create shipment after waiting 30 seconds.";
         return compensationService.compensateDeliveryFailed(orderId, reason);
     }
-}
-
 
+    private TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+}
@@ -0,0 +1,124 @@
+package comp5348.storeservice.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel keyed by item: O(1) schedule and cancel, and advancing the clock only touches
+ * the buckets whose time has come, however many timers are pending.
+ *
+ * Level 0 has one bucket per tick; every level above has buckets wheelSize times wider. A timer goes into the
+ * lowest level whose window covers its deadline and is moved down a level when its bucket comes up, so it fires
+ * in the tick of its deadline. Not thread-safe: callers serialise access.
+ */
+public class TimingWheel<K> {
+
+    private static final int LEVELS = 4;
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long[] span = new long[LEVELS];   // ticks per bucket at each level
+    private final List<ArrayDeque<Timer<K>>[]> levels = new ArrayList<>(LEVELS);
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.currentTick = startMs / tickMs;
+        long bucketSpan = 1;
+        for (int level = 0; level < LEVELS; level++) {
+            span[level] = bucketSpan;
+            levels.add(new ArrayDeque[wheelSize]);
+            bucketSpan *= wheelSize;
+        }
+    }
+
+    /**
+     * Schedule (or reschedule) a key. Returns false if the deadline has already passed: nothing is scheduled
+     * and the caller handles the key as expired.
+     */
+    public boolean schedule(K key, long deadlineMs) {
+        cancel(key);
+        long deadlineTick = (deadlineMs + tickMs - 1) / tickMs;
+        if (deadlineTick <= currentTick) return false;
+        Timer<K> timer = new Timer<>(key, deadlineTick);
+        timers.put(key, timer);
+        place(timer);
+        return true;
+    }
+
+    public boolean cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer == null) return false;
+        timer.cancelled = true;     // left in its bucket, skipped when the bucket comes up
+        return true;
+    }
+
+    public int size() {
+        return timers.size();
+    }
+
+    /**
+     * Move the clock to nowMs and collect every key whose deadline has been reached, in deadline order
+     */
+    public List<K> advance(long nowMs, List<K> expired) {
+        long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade from the top so timers moved down are seen by the lower levels in this same tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if (currentTick % span[level] != 0) continue;
+                ArrayDeque<Timer<K>> bucket = takeBucket(level, currentTick);
+                if (bucket == null) continue;
+                for (Timer<K> timer : bucket) {
+                    if (!timer.cancelled) place(timer);
+                }
+            }
+            ArrayDeque<Timer<K>> due = takeBucket(0, currentTick);
+            if (due == null) continue;
+            for (Timer<K> timer : due) {
+                if (timer.cancelled) continue;
+                timers.remove(timer.key);
+                expired.add(timer.key);
+            }
+        }
+        return expired;
+    }
+
+    private void place(Timer<K> timer) {
+        for (int level = 0; level < LEVELS; level++) {
+            long levelStart = currentTick - currentTick % span[level];
+            if (timer.deadlineTick < levelStart + span[level] * wheelSize || level == LEVELS - 1) {
+                int index = (int) ((timer.deadlineTick / span[level]) % wheelSize);
+                ArrayDeque<Timer<K>>[] buckets = levels.get(level);
+                if (buckets[index] == null) buckets[index] = new ArrayDeque<>();
+                buckets[index].add(timer);
+                return;
+            }
+        }
+    }
+
+    private ArrayDeque<Timer<K>> takeBucket(int level, long tick) {
+        ArrayDeque<Timer<K>>[] buckets = levels.get(level);
+        int index = (int) ((tick / span[level]) % wheelSize);
+        ArrayDeque<Timer<K>> bucket = buckets[index];
+        buckets[index] = null;
+        return bucket;
+    }
+
+    private static final class Timer<K> {
+        final K key;
+        final long deadlineTick;
+        boolean cancelled;
+
+        Timer(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -1,26 +1,34 @@
 package comp5348.storeservice.scheduler;
 
-import comp5348.storeservice.model.Order;
 import comp5348.storeservice.model.OrderStatus;
 import comp5348.storeservice.repository.OrderRepository;
 import comp5348.storeservice.service.OrderService;
+import comp5348.storeservice.service.PaymentExpiryTracker;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 /**
- * Scheduled task to auto-cancel unpaid orders after 15 minutes
+ * Auto-cancels unpaid orders once their payment window (orders.payment-timeout-minutes) has passed.
+ *
+ * PaymentExpiryTracker's timing wheel queues each order at its deadline; a worker thread drains the queue in
+ * batches, drops orders that were paid or cancelled meanwhile with one query, and cancels the rest in one
+ * transaction that releases their stock with one set-based call (one by one if the batch fails).
+ * A low-frequency indexed sweep catches anything the wheel missed (e.g. orders created during startup).
  */
 @Component
 public class UnpaidOrderCanceller {
 
     private static final Logger logger = LoggerFactory.getLogger(UnpaidOrderCanceller.class);
-    private static final int PAYMENT_TIMEOUT_MINUTES = 15;
 
     @Autowired
     private OrderRepository orderRepository;
@@ -28,52 +36,91 @@ public class UnpaidOrderCanceller {
     @Autowired
     private OrderService orderService;
 
-    /**
-     * Run every minute to check for expired unpaid orders
-     */
-    @Scheduled(fixedRate = 60000) // Run every 60 seconds
-    public void cancelExpiredUnpaidOrders() {
-        try {
-            // Find all PENDING_PAYMENT orders
-            List<Order> pendingOrders = orderRepository.findByStatus(OrderStatus.PENDING_PAYMENT);
-
-            if (pendingOrders.isEmpty()) {
-                return;
-            }
+    @Autowired
+    private PaymentExpiryTracker paymentExpiryTracker;
 
-            logger.info("Checking {} pending payment orders for expiration", pendingOrders.size());
+    @Value("${orders.payment-expiry.batch-size:100}")
+    private int batchSize;
 
-            LocalDateTime now = LocalDateTime.now();
-            int cancelledCount = 0;
+    @Value("${orders.payment-expiry.sweep-limit:1000}")
+    private int sweepLimit;
 
-            for (Order order : pendingOrders) {
-                // Check if order has been pending for more than 15 minutes
-                LocalDateTime createdAt = order.getCreatedAt();
-                if (createdAt != null) {
-                    LocalDateTime expirationTime = createdAt.plusMinutes(PAYMENT_TIMEOUT_MINUTES);
+    private Thread worker;
+    private volatile boolean running = false;
 
-                    if (now.isAfter(expirationTime)) {
-                        try {
-                            logger.info("Auto-cancelling expired unpaid order: orderId={}, createdAt={}",
-                                    order.getId(), createdAt);
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        running = true;
+        worker = new Thread(this::drain, "unpaid-order-canceller");
+        worker.setDaemon(true);
+        worker.start();
+    }
 
-                            orderService.cancelOrder(order.getId());
-                            cancelledCount++;
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) worker.interrupt();
+    }
 
-                            logger.info("Successfully cancelled expired order: {}", order.getId());
-                        } catch (Exception e) {
-                            logger.error("Failed to cancel expired order {}: {}", order.getId(), e.getMessage(), e);
-                        }
-                    }
-                }
+    /**
+     * Safety net: queue PENDING_PAYMENT orders past their deadline that the wheel has not handled
+     */
+    @Scheduled(fixedDelayString = "${orders.payment-expiry.sweep-interval-ms:600000}",
+            initialDelayString = "${orders.payment-expiry.sweep-interval-ms:600000}")
+    public void sweepExpiredUnpaidOrders() {
+        try {
+            List<Long> overdue = orderRepository.findIdsByStatusCreatedBefore(OrderStatus.PENDING_PAYMENT,
+                    paymentExpiryTracker.expiryCutoff(), PageRequest.of(0, sweepLimit));
+            if (!overdue.isEmpty()) {
+                logger.warn("Safety-net sweep found {} expired unpaid orders, queueing for cancellation", overdue.size());
+                paymentExpiryTracker.enqueue(overdue);
             }
+        } catch (Exception e) {
+            logger.error("Error in unpaid order sweep: {}", e.getMessage(), e);
+        }
+    }
 
-            if (cancelledCount > 0) {
-                logger.info("Auto-cancelled {} expired unpaid orders", cancelledCount);
+    private void drain() {
+        while (running) {
+            try {
+                List<Long> batch = paymentExpiryTracker.takeExpired(batchSize, 1000);
+                if (batch.isEmpty()) continue;
+                cancelBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Error in unpaid order cancellation worker: {}", e.getMessage(), e);
             }
+        }
+    }
 
-        } catch (Exception e) {
-            logger.error("Error in unpaid order cancellation task: {}", e.getMessage(), e);
+    private void cancelBatch(List<Long> orderIds) {
+        // One query drops the orders that were paid or cancelled before their timer fired
+        List<Long> pending = orderRepository.findIdsByIdInAndStatus(orderIds, OrderStatus.PENDING_PAYMENT);
+        if (pending.isEmpty()) return;
+        int cancelledCount = 0;
+        try {
+            // One transaction and one stock release for the whole batch
+            List<Long> cancelled = orderService.cancelExpiredOrders(pending);
+            cancelledCount = cancelled.size();
+            logger.info("Auto-cancelled expired unpaid orders: {}", cancelled);
+        } catch (Exception batchFailure) {
+            logger.warn("Batch cancellation of {} expired orders failed, cancelling one by one: {}",
+                    pending.size(), batchFailure.getMessage());
+            for (Long orderId : pending) {
+                try {
+                    if (orderService.cancelExpiredOrder(orderId)) {
+                        cancelledCount++;
+                        logger.info("Auto-cancelled expired unpaid order: {}", orderId);
+                    }
+                } catch (Exception e) {
+                    logger.error("Failed to cancel expired order {}: {}", orderId, e.getMessage(), e);
+                }
+            }
+        }
+        if (cancelledCount > 0) {
+            logger.info("Auto-cancelled {} of {} expired unpaid orders", cancelledCount, orderIds.size());
         }
     }
-}
\ No newline at end of file
+}
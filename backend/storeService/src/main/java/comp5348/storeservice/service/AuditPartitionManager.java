@@ -0,0 +1,180 @@
+package comp5348.storeservice.service;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maintains the monthly partitions of inventory_audit_log, which AuditLogPartitionMigration converts into a
+ * table partitioned by month on operation_time.
+ *
+ * On start and daily it creates the partitions for the coming months and archives partitions older than
+ * retention-months: their days are rolled up, the partition is detached, streamed through the driver's COPY API
+ * into a gzip CSV under archive-dir on this host, and dropped once the file holds every row. Dashboards read
+ * inventory_audit_daily_rollup, so archived months stay visible there. Creating and detaching is done by the SQL
+ * functions the migration installs; COPY and DROP take the name of a table that matched PARTITION_NAME.
+ */
+@Component
+public class AuditPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditPartitionManager.class);
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("inventory_audit_log_p(\\d{4})_(\\d{2})");
+
+    // Partition of the rows older than the conversion; archived once its newest row is past retention
+    private static final String HISTORY_PARTITION = "inventory_audit_log_history";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InventoryAuditRollupService rollupService;
+
+    @Value("${inventory.audit.partition.months-ahead:2}")
+    private int monthsAhead;
+
+    @Value("${inventory.audit.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${inventory.audit.archive.retention-months:6}")
+    private int retentionMonths;
+
+    @Value("${inventory.audit.archive.dir:./audit-archive}")
+    private String archiveDir;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        ensurePartitions();
+    }
+
+    @Scheduled(cron = "${inventory.audit.archive.cron:0 30 3 * * *}")
+    public void maintain() {
+        try {
+            ensurePartitions();
+            if (archiveEnabled) {
+                archiveColdPartitions();
+            }
+        } catch (Exception e) {
+            logger.error("[AUDIT PARTITION] Maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Partitions for the current month and the next months-ahead months
+     */
+    public void ensurePartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            Boolean created = jdbcTemplate.queryForObject("select inventory_audit_create_partition(?)",
+                    Boolean.class, Date.valueOf(month.atDay(1)));
+            if (Boolean.TRUE.equals(created)) {
+                logger.info("[AUDIT PARTITION] Created partition for {}", month);
+            }
+        }
+    }
+
+    public void archiveColdPartitions() {
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+        for (String partition : listPartitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) continue;
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (!month.isBefore(cutoff)) continue;
+            // Rollups are the only record of the month once the partition is archived
+            rollupService.rollupDays(month.atDay(1), month.plusMonths(1).atDay(1));
+            jdbcTemplate.queryForObject("select inventory_audit_detach_partition(?)", Boolean.class,
+                    Date.valueOf(month.atDay(1)));
+            archiveAndDrop(partition);
+        }
+        archiveHistory(cutoff);
+        // Partitions detached by an earlier run that failed before the drop
+        for (String table : listDetachedPartitions()) {
+            archiveAndDrop(table);
+        }
+    }
+
+    private void archiveHistory(YearMonth cutoff) {
+        if (!listPartitions().contains(HISTORY_PARTITION)) return;
+        Timestamp[] range = jdbcTemplate.queryForObject(
+                "select min(operation_time), max(operation_time) from " + HISTORY_PARTITION,
+                (rs, i) -> new Timestamp[]{rs.getTimestamp(1), rs.getTimestamp(2)});
+        if (range[1] != null) {
+            if (!YearMonth.from(range[1].toLocalDateTime()).isBefore(cutoff)) return;
+            rollupService.rollupDays(range[0].toLocalDateTime().toLocalDate(),
+                    range[1].toLocalDateTime().toLocalDate().plusDays(1));
+        }
+        jdbcTemplate.execute("alter table inventory_audit_log detach partition " + HISTORY_PARTITION);
+        archiveAndDrop(HISTORY_PARTITION);
+    }
+
+    /**
+     * Write a detached partition to archive-dir/<table>.csv.gz and drop it. The file is written under a temporary
+     * name and only moved into place, and the table only dropped, once COPY has streamed as many rows as the
+     * table holds; otherwise the table stays for the next run.
+     */
+    private void archiveAndDrop(String table) {
+        Path dir = Paths.get(archiveDir);
+        Path file = dir.resolve(table + ".csv.gz");
+        Path tmp = dir.resolve(table + ".csv.gz.tmp");
+        Long expected = jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                Files.createDirectories(dir);
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                    return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyOut("copy " + table + " to stdout with (format csv, header)", out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (expected == null || copied == null || copied.longValue() != expected.longValue()) {
+            logger.error("[AUDIT PARTITION] Archive of {} wrote {} of {} rows, keeping the table", table, copied, expected);
+            return;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        jdbcTemplate.execute("drop table " + table);
+        logger.info("[AUDIT PARTITION] Archived {} ({} rows) to {}", table, copied, file.toAbsolutePath());
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+                "where i.inhparent = to_regclass(?) order by c.relname", String.class, "inventory_audit_log");
+    }
+
+    private List<String> listDetachedPartitions() {
+        return jdbcTemplate.queryForList("select c.relname from pg_class c " +
+                "where c.relkind = 'r' and c.relnamespace = to_regnamespace(current_schema()) " +
+                "and (c.relname ~ '^inventory_audit_log_p[0-9]{4}_[0-9]{2}$' or c.relname = ?) " +
+                "and not exists (select 1 from pg_inherits i where i.inhrelid = c.oid) order by c.relname",
+                String.class, HISTORY_PARTITION);
+    }
+}
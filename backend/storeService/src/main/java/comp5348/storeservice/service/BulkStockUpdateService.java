@@ -0,0 +1,303 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.allocation.WarehouseStockIndex;
+import comp5348.storeservice.dto.BulkStockUpdateRequest;
+import comp5348.storeservice.dto.BulkStockUpdateResultDTO;
+import comp5348.storeservice.dto.BulkStockUpdateResultDTO.LineResult;
+import comp5348.storeservice.dto.BulkStockUpdateResultDTO.LineStatus;
+import comp5348.storeservice.model.InventoryAuditLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Applies many (warehouse, product) stock changes in one transaction with a fixed number of statements:
+ * create missing stock rows (if asked), lock all rows (in id order), then JDBC batches for the warehouse_products
+ * updates and the IN journal rows, and one audit batch. Lines that cannot be applied are reported, not thrown.
+ *
+ * In LEDGER reservation mode warehouse_products lags behind the holds the ledger has not flushed yet, so the
+ * locked rows are read together with their pending deltas and rows are written as deltas, never absolute values.
+ */
+@Service
+public class BulkStockUpdateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkStockUpdateService.class);
+
+    /** Serialises warehouse_products row creation: there is no unique constraint on (warehouse_id, product_id) */
+    static final String CREATE_LOCK_SQL = "select pg_advisory_xact_lock(hashtext('warehouse_products_create'))";
+
+    private static final String PAIRS = "(select distinct k.warehouse_id, k.product_id from " +
+            "unnest(cast(? as bigint[]), cast(? as bigint[])) as k(warehouse_id, product_id)) k";
+
+    private static final String CREATE_MISSING_SQL = "insert into warehouse_products (warehouse_id, product_id, quantity, version, modify_time) " +
+            "select k.warehouse_id, k.product_id, 0, 0, now() from " + PAIRS + " " +
+            "join warehouses w on w.id = k.warehouse_id join products p on p.id = k.product_id " +
+            "where not exists (select 1 from warehouse_products wp " +
+            "where wp.warehouse_id = k.warehouse_id and wp.product_id = k.product_id)";
+
+    private static final String LOCK_SQL = "select wp.id, wp.warehouse_id, wp.product_id, wp.quantity, " +
+            "w.name as warehouse_name, p.name as product_name from warehouse_products wp " +
+            "join " + PAIRS + " on wp.warehouse_id = k.warehouse_id and wp.product_id = k.product_id " +
+            "join warehouses w on w.id = wp.warehouse_id join products p on p.id = wp.product_id " +
+            "order by wp.id for update of wp";
+
+    /** Journaled HOLD/UNHOLD deltas not yet flushed into warehouse_products (same sum as the snapshot query) */
+    private static final String PENDING_SQL = "select t.warehouse_id, t.product_id, " +
+            "sum((case when t.type = 'HOLD' then -t.quantity else 0 end) - coalesce(t.applied_quantity, 0)) as pending " +
+            "from inventory_transactions t join " + PAIRS + " on t.warehouse_id = k.warehouse_id and t.product_id = k.product_id " +
+            "where t.stock_pending = true group by t.warehouse_id, t.product_id";
+
+    private static final String UPDATE_SQL = "update warehouse_products set quantity = quantity + ?, version = version + 1, " +
+            "modify_time = ? where id = ?";
+
+    private static final String INSERT_IN_SQL = "insert into inventory_transactions " +
+            "(product_id, warehouse_id, quantity, type, transaction_time, created_at) values (?, ?, ?, 'IN', ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private InventoryAuditWriter auditWriter;
+
+    @Autowired
+    private ProductStockSummaryService stockSummaryService;
+
+    @Autowired
+    private WarehouseStockIndex stockIndex;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Value("${inventory.reservation.mode:GUARDED}")
+    private WarehouseService.ReservationMode reservationMode;
+
+    @Value("${inventory.bulk-update.batch-size:500}")
+    private int batchSize;
+
+    @Value("${inventory.bulk-update.max-lines:50000}")
+    private int maxLines;
+
+    public BulkStockUpdateResultDTO apply(BulkStockUpdateRequest request) {
+        List<BulkStockUpdateRequest.StockLine> lines = request.getLines() == null ? List.of() : request.getLines();
+        if (lines.size() > maxLines) {
+            throw new IllegalArgumentException("Too many lines: " + lines.size() + " (max " + maxLines + ")");
+        }
+        long start = System.nanoTime();
+        BulkStockUpdateResultDTO result = new TransactionTemplate(transactionManager).execute(status -> {
+            BulkStockUpdateResultDTO outcome = applyLines(lines, request.getReason(), request.isCreateMissing());
+            if (request.isAllOrNothing() && outcome.getFailed() > 0) {
+                status.setRollbackOnly();
+                outcome.setApplied(0);
+                outcome.setCommitted(false);
+                for (LineResult line : outcome.getLines()) {
+                    if (line.getStatus() == LineStatus.APPLIED) {
+                        line.setStatus(LineStatus.SKIPPED);
+                        line.setNewQuantity(null);
+                    }
+                }
+            }
+            return outcome;
+        });
+        logger.info("[BULK STOCK] {} lines: applied={}, failed={}, committed={} in {} ms", result.getRequested(),
+                result.getApplied(), result.getFailed(), result.isCommitted(), (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    private BulkStockUpdateResultDTO applyLines(List<BulkStockUpdateRequest.StockLine> lines, String reason,
+                                                boolean createMissing) {
+        BulkStockUpdateResultDTO result = new BulkStockUpdateResultDTO();
+        result.setRequested(lines.size());
+
+        Set<List<Long>> pairs = new LinkedHashSet<>();
+        for (BulkStockUpdateRequest.StockLine line : lines) {
+            if (isValid(line)) pairs.add(List.of(line.getWarehouseId(), line.getProductId()));
+        }
+        Map<List<Long>, StockRow> rows = pairs.isEmpty() ? Map.of() : createAndLock(pairs, createMissing);
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, StockRow> changed = new LinkedHashMap<>();
+        List<Object[]> journal = new ArrayList<>();
+        List<InventoryAuditLog> auditLogs = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            BulkStockUpdateRequest.StockLine line = lines.get(i);
+            LineResult lineResult = new LineResult();
+            lineResult.setLine(i);
+            lineResult.setWarehouseId(line.getWarehouseId());
+            lineResult.setProductId(line.getProductId());
+            result.getLines().add(lineResult);
+
+            if (!isValid(line)) {
+                fail(result, lineResult, LineStatus.INVALID, "warehouseId, productId and exactly one of delta/newQuantity (>= 0) are required");
+                continue;
+            }
+            StockRow row = rows.get(List.of(line.getWarehouseId(), line.getProductId()));
+            if (row == null) {
+                fail(result, lineResult, LineStatus.NOT_FOUND, createMissing
+                        ? "Unknown warehouse or product" : "Product is not stocked in this warehouse");
+                continue;
+            }
+            int before = row.quantity;
+            int after = line.getNewQuantity() != null ? line.getNewQuantity() : before + line.getDelta();
+            lineResult.setPreviousQuantity(before);
+            if (after < 0) {
+                fail(result, lineResult, LineStatus.REJECTED, "Stock would become negative (" + after + ")");
+                continue;
+            }
+
+            // Later lines for the same row see the result of earlier ones
+            row.quantity = after;
+            changed.put(row.id, row);
+            lineResult.setNewQuantity(after);
+            lineResult.setStatus(LineStatus.APPLIED);
+            result.setApplied(result.getApplied() + 1);
+
+            journal.add(new Object[]{row.productId, row.warehouseId, after});
+            auditLogs.add(auditLog(row, before, after, now, reason));
+        }
+
+        if (!changed.isEmpty()) {
+            Timestamp timestamp = Timestamp.valueOf(now);
+            jdbcTemplate.batchUpdate(UPDATE_SQL, new ArrayList<>(changed.values()), batchSize, (ps, row) -> {
+                ps.setInt(1, row.quantity - row.originalQuantity);
+                ps.setTimestamp(2, timestamp);
+                ps.setLong(3, row.id);
+            });
+            jdbcTemplate.batchUpdate(INSERT_IN_SQL, journal, batchSize, (ps, entry) -> {
+                ps.setLong(1, (Long) entry[0]);
+                ps.setLong(2, (Long) entry[1]);
+                ps.setInt(3, (Integer) entry[2]);
+                ps.setTimestamp(4, timestamp);
+                ps.setTimestamp(5, timestamp);
+            });
+            auditWriter.writeAll(auditLogs);
+            publishDeltas(changed.values());
+        }
+        result.setCommitted(true);
+        return result;
+    }
+
+    private Map<List<Long>, StockRow> createAndLock(Collection<List<Long>> pairs, boolean createMissing) {
+        Long[] warehouseIds = pairs.stream().map(pair -> pair.get(0)).toArray(Long[]::new);
+        Long[] productIds = pairs.stream().map(pair -> pair.get(1)).toArray(Long[]::new);
+
+        if (createMissing) {
+            jdbcTemplate.queryForObject(CREATE_LOCK_SQL, Object.class);
+            jdbcTemplate.update(withPairs(CREATE_MISSING_SQL, warehouseIds, productIds));
+        }
+
+        Map<List<Long>, StockRow> rows = new HashMap<>();
+        jdbcTemplate.query(withPairs(LOCK_SQL, warehouseIds, productIds), rs -> {
+            StockRow row = new StockRow(rs.getLong("id"), rs.getLong("warehouse_id"), rs.getLong("product_id"),
+                    rs.getString("warehouse_name"), rs.getString("product_name"), rs.getInt("quantity"));
+            row.originalQuantity = row.quantity;
+            rows.putIfAbsent(List.of(row.warehouseId, row.productId), row);
+        });
+
+        // Read after the rows are locked: a flush of these rows now waits for this transaction
+        if (reservationMode == WarehouseService.ReservationMode.LEDGER && stockLedger.isReady() && !rows.isEmpty()) {
+            jdbcTemplate.query(withPairs(PENDING_SQL, warehouseIds, productIds), rs -> {
+                StockRow row = rows.get(List.of(rs.getLong("warehouse_id"), rs.getLong("product_id")));
+                if (row != null) {
+                    row.quantity += rs.getInt("pending");
+                    row.originalQuantity = row.quantity;
+                }
+            });
+        }
+        return rows;
+    }
+
+    private static PreparedStatementCreator withPairs(String sql, Long[] warehouseIds, Long[] productIds) {
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setArray(1, connection.createArrayOf("bigint", warehouseIds));
+            ps.setArray(2, connection.createArrayOf("bigint", productIds));
+            return ps;
+        };
+    }
+
+    /**
+     * Stock summary, allocation index and ledger see one net delta per (product, warehouse)
+     */
+    private void publishDeltas(Collection<StockRow> changed) {
+        Map<Long, Integer> byProduct = new TreeMap<>();
+        for (StockRow row : changed) {
+            int delta = row.quantity - row.originalQuantity;
+            if (delta == 0) continue;
+            byProduct.merge(row.productId, delta, Integer::sum);
+            stockLedger.adjustAfterCommit(row.productId, row.warehouseId, row.productName, row.warehouseName, delta);
+        }
+        byProduct.forEach((productId, delta) -> {
+            stockSummaryService.recordDelta(productId, delta);
+            stockIndex.invalidateAfterCommit(productId);
+        });
+    }
+
+    private static boolean isValid(BulkStockUpdateRequest.StockLine line) {
+        if (line == null || line.getWarehouseId() == null || line.getProductId() == null) return false;
+        if ((line.getDelta() == null) == (line.getNewQuantity() == null)) return false;
+        return line.getNewQuantity() == null || line.getNewQuantity() >= 0;
+    }
+
+    private static void fail(BulkStockUpdateResultDTO result, LineResult lineResult, LineStatus status, String message) {
+        lineResult.setStatus(status);
+        lineResult.setMessage(message);
+        result.setFailed(result.getFailed() + 1);
+    }
+
+    private static InventoryAuditLog auditLog(StockRow row, int before, int after, LocalDateTime now, String reason) {
+        InventoryAuditLog auditLog = new InventoryAuditLog();
+        auditLog.setOperationType("IN");
+        auditLog.setProductId(row.productId);
+        auditLog.setProductName(row.productName);
+        auditLog.setWarehouseId(row.warehouseId);
+        auditLog.setWarehouseName(row.warehouseName);
+        auditLog.setQuantity(after - before);
+        auditLog.setStockBefore(before);
+        auditLog.setStockAfter(after);
+        auditLog.setOperationTime(now);
+        auditLog.setReason(reason != null ? reason : "Bulk stock update");
+        auditLog.setStatus("SUCCESS");
+        return auditLog;
+    }
+
+    private static final class StockRow {
+        final long id;
+        final long warehouseId;
+        final long productId;
+        final String warehouseName;
+        final String productName;
+        int quantity;
+        int originalQuantity;
+
+        StockRow(long id, long warehouseId, long productId, String warehouseName, String productName, int quantity) {
+            this.id = id;
+            this.warehouseId = warehouseId;
+            this.productId = productId;
+            this.warehouseName = warehouseName;
+            this.productName = productName;
+            this.quantity = quantity;
+        }
+    }
+}
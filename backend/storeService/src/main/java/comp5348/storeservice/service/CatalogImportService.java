@@ -0,0 +1,361 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.allocation.WarehouseStockIndex;
+import comp5348.storeservice.dto.CatalogImportReportDTO;
+import comp5348.storeservice.importer.CatalogRow;
+import comp5348.storeservice.importer.CatalogRowReader;
+import comp5348.storeservice.importer.ImportFormat;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Streaming catalog import: records are parsed one at a time and staged in chunks with COPY into a temp table,
+ * then merged with a handful of set-based statements per chunk (products upserted by sku, warehouse stock set
+ * to the imported quantity). Each chunk is its own transaction, so progress is visible while a large file
+ * loads and a failed import can simply be re-run: both merges are idempotent and later rows win.
+ *
+ * Changed stock rows get an IN journal row and an audit row like any other restock. In LEDGER reservation mode
+ * the current quantity includes the holds the ledger has not flushed yet, and stock rows are written as deltas.
+ * The report counts a chunk only once it has committed.
+ */
+@Service
+public class CatalogImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportService.class);
+
+    private static final String CREATE_STAGE_SQL = "create temp table catalog_import_stage (line bigint, sku text, " +
+            "name text, price numeric(10, 2), description text, warehouse_id bigint, quantity integer) on commit drop";
+
+    private static final String COPY_SQL = "copy catalog_import_stage (line, sku, name, price, description, warehouse_id, " +
+            "quantity) from stdin with (format csv)";
+
+    // Unchanged products are skipped, so re-importing the same file does not rewrite the catalog
+    private static final String UPSERT_PRODUCTS_SQL = "with upserted as (" +
+            "insert into products (sku, name, price, description, stock_quantity, version, created_at, updated_at) " +
+            "select distinct on (s.sku) s.sku, s.name, s.price, s.description, 0, 0, now(), now() " +
+            "from catalog_import_stage s where s.name is not null order by s.sku, s.line desc " +
+            "on conflict (sku) do update set name = excluded.name, price = excluded.price, " +
+            "description = excluded.description, version = products.version + 1, updated_at = excluded.updated_at " +
+            "where (products.name, products.price, products.description) " +
+            "is distinct from (excluded.name, excluded.price, excluded.description) " +
+            "returning (xmax = 0) as inserted) " +
+            "select count(*) filter (where inserted) as created, count(*) filter (where not inserted) as updated from upserted";
+
+    private static final String REJECTED_STOCK_SQL = "select s.line, s.sku, s.warehouse_id, p.id is null as unknown_sku " +
+            "from catalog_import_stage s left join products p on p.sku = s.sku " +
+            "left join warehouses w on w.id = s.warehouse_id " +
+            "where s.quantity is not null and (p.id is null or w.id is null) order by s.line";
+
+    private static final String CREATE_STOCK_SQL = "create temp table catalog_import_stock on commit drop as " +
+            "select distinct on (p.id, w.id) p.id as product_id, w.id as warehouse_id, p.name as product_name, " +
+            "w.name as warehouse_name, s.quantity, cast(null as bigint) as stock_id, cast(null as integer) as old_quantity " +
+            "from catalog_import_stage s join products p on p.sku = s.sku join warehouses w on w.id = s.warehouse_id " +
+            "where s.quantity is not null order by p.id, w.id, s.line desc";
+
+    private static final String CREATE_MISSING_STOCK_SQL = "insert into warehouse_products " +
+            "(warehouse_id, product_id, quantity, version, modify_time) " +
+            "select k.warehouse_id, k.product_id, 0, 0, now() from catalog_import_stock k " +
+            "where not exists (select 1 from warehouse_products wp " +
+            "where wp.warehouse_id = k.warehouse_id and wp.product_id = k.product_id)";
+
+    // Lock the stock rows in id order and remember their current quantity
+    private static final String LOCK_STOCK_SQL = "update catalog_import_stock k set stock_id = l.id, old_quantity = l.quantity " +
+            "from (select wp.id, wp.warehouse_id, wp.product_id, wp.quantity from warehouse_products wp " +
+            "join catalog_import_stock k2 on k2.warehouse_id = wp.warehouse_id and k2.product_id = wp.product_id " +
+            "order by wp.id for update of wp) l " +
+            "where l.warehouse_id = k.warehouse_id and l.product_id = k.product_id";
+
+    // Journaled HOLD/UNHOLD deltas not yet flushed into warehouse_products (same sum as the snapshot query)
+    private static final String PENDING_STOCK_SQL = "update catalog_import_stock k set old_quantity = k.old_quantity + p.pending " +
+            "from (select t.warehouse_id, t.product_id, " +
+            "sum((case when t.type = 'HOLD' then -t.quantity else 0 end) - coalesce(t.applied_quantity, 0)) as pending " +
+            "from inventory_transactions t join catalog_import_stock k2 " +
+            "on k2.warehouse_id = t.warehouse_id and k2.product_id = t.product_id " +
+            "where t.stock_pending = true group by t.warehouse_id, t.product_id) p " +
+            "where p.warehouse_id = k.warehouse_id and p.product_id = k.product_id";
+
+    private static final String UPDATE_STOCK_SQL = "update warehouse_products wp set quantity = wp.quantity + k.quantity - k.old_quantity, " +
+            "version = wp.version + 1, modify_time = now() from catalog_import_stock k " +
+            "where wp.id = k.stock_id and k.quantity <> k.old_quantity";
+
+    private static final String INSERT_IN_SQL = "insert into inventory_transactions " +
+            "(product_id, warehouse_id, quantity, type, transaction_time, created_at) " +
+            "select product_id, warehouse_id, quantity, 'IN', now(), now() from catalog_import_stock " +
+            "where quantity <> old_quantity";
+
+    private static final String INSERT_AUDIT_SQL = "insert into inventory_audit_log (operation_type, product_id, " +
+            "product_name, warehouse_id, warehouse_name, quantity, stock_before, stock_after, operation_time, reason, " +
+            "status, created_at) " +
+            "select 'IN', product_id, product_name, warehouse_id, warehouse_name, quantity - old_quantity, old_quantity, " +
+            "quantity, now(), 'Catalog import', 'SUCCESS', now() from catalog_import_stock where quantity <> old_quantity";
+
+    private static final String INIT_SUMMARY_SQL = "insert into product_stock_summary (product_id, total_quantity, updated_at) " +
+            "select p.id, 0, now() from products p where p.sku in (select sku from catalog_import_stage) " +
+            "on conflict (product_id) do nothing";
+
+    private static final String SUMMARY_DELTA_SQL = "insert into product_stock_summary (product_id, total_quantity, updated_at) " +
+            "select product_id, sum(quantity - old_quantity), now() from catalog_import_stock " +
+            "where quantity <> old_quantity group by product_id " +
+            "on conflict (product_id) do update set total_quantity = product_stock_summary.total_quantity + " +
+            "excluded.total_quantity, updated_at = excluded.updated_at";
+
+    private static final String CHANGED_STOCK_SQL = "select product_id, warehouse_id, product_name, warehouse_name, " +
+            "quantity - old_quantity as delta from catalog_import_stock where quantity <> old_quantity";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private WarehouseStockIndex stockIndex;
+
+    @Autowired
+    private ProductCatalogCache productCatalog;
+
+    @Value("${inventory.reservation.mode:GUARDED}")
+    private WarehouseService.ReservationMode reservationMode;
+
+    @Value("${catalog.import.chunk-size:50000}")
+    private int chunkSize;
+
+    @Value("${catalog.import.max-reported-errors:50}")
+    private int maxReportedErrors;
+
+    @Value("${catalog.import.history-size:20}")
+    private int historySize;
+
+    // Recent imports by job id (insertion order), each entry a copy published after every chunk
+    private final Map<String, CatalogImportReportDTO> jobs = new LinkedHashMap<>();
+
+    /**
+     * Import a stream in the calling thread and return the final report.
+     * Progress is published after every chunk and can be read with getJob/getJobs meanwhile.
+     */
+    public CatalogImportReportDTO importStream(InputStream in, ImportFormat format, String source) {
+        CatalogImportReportDTO report = new CatalogImportReportDTO();
+        report.setJobId(UUID.randomUUID().toString());
+        report.setSource(source);
+        report.setFormat(format.name());
+        report.setState("RUNNING");
+        report.setStartedAt(LocalDateTime.now());
+        publish(report);
+        logger.info("[IMPORT {}] Importing {} ({}), chunk size {}", report.getJobId(), source, format, chunkSize);
+
+        long start = System.nanoTime();
+        StringBuilder chunk = new StringBuilder();
+        int staged = 0;
+        try (CatalogRowReader reader = CatalogRowReader.open(in, format)) {
+            CatalogRow row;
+            while ((row = reader.next()) != null) {
+                report.setRowsRead(report.getRowsRead() + 1);
+                String error = row.validate();
+                if (error != null) {
+                    reject(report, row.getLine(), error);
+                    continue;
+                }
+                appendCopyLine(chunk, row);
+                if (++staged >= chunkSize) {
+                    commitChunk(report, chunk, staged, start);
+                    chunk.setLength(0);
+                    staged = 0;
+                }
+            }
+            if (staged > 0) {
+                commitChunk(report, chunk, staged, start);
+            }
+            report.setState("COMPLETED");
+        } catch (Exception e) {
+            logger.error("[IMPORT {}] Failed after {} committed rows: {}", report.getJobId(), report.getRowsCommitted(),
+                    e.getMessage(), e);
+            report.setState("FAILED");
+            report.setFailure(e.getMessage());
+        }
+        report.setFinishedAt(LocalDateTime.now());
+        updateTiming(report, start);
+        publish(report);
+        logger.info("[IMPORT {}] {}: read={} rejected={} productsCreated={} productsUpdated={} stockChanged={} in {} ms " +
+                        "({} rows/s)", report.getJobId(), report.getState(), report.getRowsRead(), report.getRowsRejected(),
+                report.getProductsCreated(), report.getProductsUpdated(), report.getStockRowsChanged(),
+                report.getElapsedMs(), report.getRowsPerSecond());
+        return copy(report);
+    }
+
+    public CatalogImportReportDTO getJob(String jobId) {
+        synchronized (jobs) {
+            return jobs.get(jobId);
+        }
+    }
+
+    public List<CatalogImportReportDTO> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * COPY one chunk into the stage table and merge it, all in one transaction
+     */
+    private void commitChunk(CatalogImportReportDTO report, StringBuilder chunk, int staged, long start) {
+        List<Object[]> changes = new ArrayList<>();
+        List<Object[]> rejected = new ArrayList<>();
+        long[] counts = new long[4];   // products created, products updated, stock rows upserted, stock rows changed
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.execute(CREATE_STAGE_SQL);
+            jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyIn(COPY_SQL, new StringReader(chunk.toString()));
+                } catch (IOException e) {
+                    throw new SQLException("COPY into catalog_import_stage failed", e);
+                }
+            });
+            jdbcTemplate.execute("analyze catalog_import_stage");
+
+            // A retried transaction starts over, so nothing is counted until the chunk has committed
+            changes.clear();
+            rejected.clear();
+            Arrays.fill(counts, 0);
+            jdbcTemplate.query(UPSERT_PRODUCTS_SQL, rs -> {
+                counts[0] += rs.getLong("created");
+                counts[1] += rs.getLong("updated");
+            });
+            jdbcTemplate.query(REJECTED_STOCK_SQL, rs -> {
+                rejected.add(new Object[]{rs.getLong("line"), rs.getBoolean("unknown_sku")
+                        ? "unknown sku " + rs.getString("sku")
+                        : "unknown warehouse_id " + rs.getLong("warehouse_id")});
+            });
+
+            jdbcTemplate.execute(CREATE_STOCK_SQL);
+            jdbcTemplate.queryForObject(BulkStockUpdateService.CREATE_LOCK_SQL, Object.class);
+            jdbcTemplate.update(CREATE_MISSING_STOCK_SQL);
+            int upserted = jdbcTemplate.update(LOCK_STOCK_SQL);
+            if (reservationMode == WarehouseService.ReservationMode.LEDGER && stockLedger.isReady()) {
+                jdbcTemplate.update(PENDING_STOCK_SQL);
+            }
+            int changed = jdbcTemplate.update(UPDATE_STOCK_SQL);
+            if (changed > 0) {
+                jdbcTemplate.update(INSERT_IN_SQL);
+                jdbcTemplate.update(INSERT_AUDIT_SQL);
+            }
+            jdbcTemplate.update(INIT_SUMMARY_SQL);
+            if (changed > 0) {
+                jdbcTemplate.update(SUMMARY_DELTA_SQL);
+                jdbcTemplate.query(CHANGED_STOCK_SQL, rs -> {
+                    changes.add(new Object[]{rs.getLong("product_id"), rs.getLong("warehouse_id"),
+                            rs.getString("product_name"), rs.getString("warehouse_name"), rs.getLong("delta")});
+                });
+            }
+            counts[2] = upserted;
+            counts[3] = changed;
+        });
+
+        report.setProductsCreated(report.getProductsCreated() + counts[0]);
+        report.setProductsUpdated(report.getProductsUpdated() + counts[1]);
+        report.setStockRowsUpserted(report.getStockRowsUpserted() + counts[2]);
+        report.setStockRowsChanged(report.getStockRowsChanged() + counts[3]);
+        for (Object[] line : rejected) {
+            reject(report, (Long) line[0], (String) line[1]);
+        }
+
+        // Committed: bring the in-memory stock views up to date (outside a transaction these apply immediately)
+        Set<Long> products = new TreeSet<>();
+        for (Object[] change : changes) {
+            stockLedger.adjustAfterCommit((Long) change[0], (Long) change[1], (String) change[2], (String) change[3],
+                    (Long) change[4]);
+            products.add((Long) change[0]);
+        }
+        products.forEach(stockIndex::invalidate);
+        productCatalog.invalidateAll();
+
+        report.setRowsCommitted(report.getRowsCommitted() + staged);
+        report.setChunksCommitted(report.getChunksCommitted() + 1);
+        updateTiming(report, start);
+        publish(report);
+        logger.info("[IMPORT {}] Chunk {} committed: {} rows read, {} committed, {} rejected, {} rows/s",
+                report.getJobId(), report.getChunksCommitted(), report.getRowsRead(), report.getRowsCommitted(),
+                report.getRowsRejected(), report.getRowsPerSecond());
+    }
+
+    /**
+     * One COPY csv line: line, sku, name, price, description, warehouse_id, quantity (unquoted empty = null)
+     */
+    private static void appendCopyLine(StringBuilder out, CatalogRow row) {
+        out.append(row.getLine()).append(',');
+        appendQuoted(out, row.getSku());
+        out.append(',');
+        appendQuoted(out, row.getName());
+        out.append(',');
+        if (row.getPrice() != null) out.append(row.getPrice().toPlainString());
+        out.append(',');
+        appendQuoted(out, row.getDescription());
+        out.append(',');
+        if (row.getWarehouseId() != null) out.append(row.getWarehouseId());
+        out.append(',');
+        if (row.getQuantity() != null) out.append(row.getQuantity());
+        out.append('\n');
+    }
+
+    private static void appendQuoted(StringBuilder out, String value) {
+        if (value == null) return;
+        out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private void reject(CatalogImportReportDTO report, long line, String message) {
+        report.setRowsRejected(report.getRowsRejected() + 1);
+        if (report.getErrors().size() < maxReportedErrors) {
+            report.getErrors().add("line " + line + ": " + message);
+        }
+    }
+
+    private static void updateTiming(CatalogImportReportDTO report, long start) {
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        report.setElapsedMs(elapsedMs);
+        report.setRowsPerSecond(elapsedMs == 0 ? 0 : report.getRowsRead() * 1000 / elapsedMs);
+    }
+
+    private void publish(CatalogImportReportDTO report) {
+        CatalogImportReportDTO published = copy(report);
+        synchronized (jobs) {
+            jobs.put(published.getJobId(), published);
+            while (jobs.size() > historySize) {
+                jobs.remove(jobs.keySet().iterator().next());
+            }
+        }
+    }
+
+    private static CatalogImportReportDTO copy(CatalogImportReportDTO report) {
+        CatalogImportReportDTO copy = new CatalogImportReportDTO();
+        BeanUtils.copyProperties(report, copy);
+        copy.setErrors(new ArrayList<>(report.getErrors()));
+        return copy;
+    }
+}
@@ -1,6 +1,5 @@
 package comp5348.storeservice.service;
 
-import comp5348.storeservice.dto.UnholdProductRequest;
 import comp5348.storeservice.model.Order;
 import comp5348.storeservice.model.OrderStatus;
 import comp5348.storeservice.repository.OrderRepository;
@@ -10,10 +9,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
-
 @Service
 public class CompensationService {
 
@@ -45,23 +40,11 @@ public class CompensationService {
 
             // 2. Release inventory (critical step - must release the reserved stock)
             try {
-                if (order.getInventoryTransactionIds() != null && !order.getInventoryTransactionIds().isEmpty()) {
-                    List<Long> txIds = Arrays.stream(order.getInventoryTransactionIds().split(","))
-                            .filter(s -> s != null && !s.trim().isEmpty())
-                            .map(Long::valueOf)
-                            .collect(Collectors.toList());
-                    if (!txIds.isEmpty()) {
-                        UnholdProductRequest unhold = new UnholdProductRequest();
-                        unhold.setInventoryTransactionIds(txIds);
-                        boolean unholdSuccess = warehouseService.unholdProduct(unhold);
-                        if (unholdSuccess) {
-                            logger.info("Inventory released successfully for orderId={}", orderId);
-                        } else {
-                            logger.error("CRITICAL: Failed to release inventory for orderId={}", orderId);
-                        }
-                    }
+                boolean unholdSuccess = warehouseService.unholdOrder(orderId);
+                if (unholdSuccess) {
+                    logger.info("Inventory released successfully for orderId={}", orderId);
                 } else {
-                    logger.warn("Order {} has no inventory transaction IDs to release", orderId);
+                    logger.error("CRITICAL: Failed to release inventory for orderId={}", orderId);
                 }
             } catch (Exception e) {
                 logger.error("CRITICAL: Unhold inventory failed for order {}: {}", orderId, e.getMessage(), e);
@@ -0,0 +1,300 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.allocation.WarehouseStockIndex;
+import comp5348.storeservice.dto.CreateOrderRequest;
+import comp5348.storeservice.dto.FlashSaleDTO;
+import comp5348.storeservice.dto.FlashSaleRequest;
+import comp5348.storeservice.model.Product;
+import comp5348.storeservice.repository.ProductRepository;
+import comp5348.storeservice.repository.WarehouseProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in flash-sale admission per product.
+ *
+ * Arming a product loads its stock into an in-memory token pool (an atomic counter). Order requests take
+ * tokens before anything touches the database; once the pool is empty they are rejected immediately, and
+ * only token holders go on to the normal reservation path, which stays the source of truth. Tokens of
+ * orders that fail are returned.
+ *
+ * A sale armed without a token count tracks stock: a periodic sync sets the pool to the warehouse stock less
+ * the units of admitted orders still in flight, so stock changed by other paths (cancellations, restocks) is
+ * picked up in both directions. A sale armed with a token count offers that many units: the sync only caps the
+ * pool at the stock, and re-arming is the way to offer more.
+ *
+ * In-memory, so per instance: with several storeService instances each pool admits up to the full stock
+ * and the reservation path rejects the surplus.
+ */
+@Service
+public class FlashSaleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlashSaleService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseProductRepository warehouseProductRepository;
+
+    @Autowired
+    private WarehouseService warehouseService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private WarehouseStockIndex stockIndex;
+
+    private final Map<Long, Sale> sales = new ConcurrentHashMap<>();
+
+    /**
+     * Thrown when an armed product has no tokens left for the requested quantity
+     */
+    public static class SoldOutException extends RuntimeException {
+        public SoldOutException(String message) {
+            super(message);
+        }
+    }
+
+    public FlashSaleDTO arm(Long productId, FlashSaleRequest request) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found: " + productId));
+        if (request.getTokens() != null && request.getTokens() < 0) {
+            throw new IllegalArgumentException("tokens must not be negative");
+        }
+        if (request.getMaxPerOrder() != null && request.getMaxPerOrder() <= 0) {
+            throw new IllegalArgumentException("maxPerOrder must be positive");
+        }
+        int stock = warehouseService.getProductQuantity(productId);
+        int quota = request.getTokens() == null ? stock : Math.min(request.getTokens(), stock);
+        Sale sale = new Sale(productId, product.getName(), product.getPrice(), quota, stock, request.getMaxPerOrder(),
+                request.getTokens() == null);
+        Sale previous = sales.put(productId, sale);
+        if (previous != null) {
+            logger.info("[FLASH SALE] Re-armed product {}, previous sale had sold {} units", productId, previous.sold.get());
+        }
+        logger.info("[FLASH SALE] Armed product {} ({}) with {} tokens of {} in stock, maxPerOrder={}",
+                productId, product.getName(), quota, stock, request.getMaxPerOrder());
+        return toDTO(sale);
+    }
+
+    /**
+     * Stop admission control for a product, flush pending ledger deltas to warehouse_products and report
+     * how the sale's counters compare with the stock left in the warehouses
+     */
+    public FlashSaleDTO disarm(Long productId) {
+        Sale sale = sales.remove(productId);
+        if (sale == null) {
+            return null;
+        }
+        sale.disarmedAt = LocalDateTime.now();
+        stockLedger.flushAll();
+        stockIndex.invalidate(productId);
+        int warehouseStock = warehouseProductRepository.findTotalQuantityByProductId(productId).orElse(0);
+
+        FlashSaleDTO dto = toDTO(sale);
+        dto.setWarehouseStock(warehouseStock);
+        dto.setOtherStockChange(warehouseStock - (sale.stockAtArm - (int) sale.sold.get()));
+        logger.info("[FLASH SALE] Disarmed product {}: sold={} admitted={} rejected={} failed={} tokensLeft={} " +
+                        "warehouseStock={} otherStockChange={}", productId, sale.sold.get(), sale.admitted.get(),
+                sale.rejected.get(), sale.failed.get(), sale.tokens.get(), warehouseStock, dto.getOtherStockChange());
+        return dto;
+    }
+
+    public List<FlashSaleDTO> getSales() {
+        List<FlashSaleDTO> result = new ArrayList<>();
+        for (Sale sale : sales.values()) {
+            result.add(toDTO(sale));
+        }
+        result.sort(Comparator.comparing(FlashSaleDTO::getProductId));
+        return result;
+    }
+
+    public FlashSaleDTO getSale(Long productId) {
+        Sale sale = sales.get(productId);
+        return sale == null ? null : toDTO(sale);
+    }
+
+    /**
+     * Take tokens for every armed product in the order, before any database work.
+     *
+     * @return a ticket to complete once the order is placed or has failed, or null if no product is armed
+     * @throws SoldOutException         if an armed product has too few tokens left
+     * @throws IllegalArgumentException if the quantity exceeds the sale's maxPerOrder
+     */
+    public Ticket admit(CreateOrderRequest request) {
+        if (sales.isEmpty() || request.getOrderItems() == null) return null;
+        Ticket ticket = null;
+        for (CreateOrderRequest.OrderItemRequest item : request.getOrderItems()) {
+            Sale sale = item.getProductId() == null ? null : sales.get(item.getProductId());
+            if (sale == null || item.getQuantity() == null || item.getQuantity() <= 0) continue;
+            int quantity = item.getQuantity();
+            try {
+                if (sale.maxPerOrder != null && quantity > sale.maxPerOrder) {
+                    throw new IllegalArgumentException("At most " + sale.maxPerOrder + " units of " + sale.productName
+                            + " per order during the flash sale");
+                }
+                if (!sale.take(quantity)) {
+                    sale.rejected.incrementAndGet();
+                    throw new SoldOutException(sale.productName + " is sold out");
+                }
+            } catch (RuntimeException e) {
+                if (ticket != null) ticket.complete(false);
+                throw e;
+            }
+            if (ticket == null) ticket = new Ticket();
+            ticket.add(sale, quantity);
+        }
+        return ticket;
+    }
+
+    /**
+     * Set stock-tracking pools to the warehouse stock not already admitted, and cap fixed-quota pools at it.
+     * In-flight units are subtracted because their reservation is not in the stock read yet (uncommitted
+     * decrements are not visible). The exception is an order whose hold already shows, between its commit (or,
+     * in LEDGER mode, its in-memory hold) and its ticket's completion: it is counted twice for one sync and
+     * corrected by the next. Raising the pool may briefly over-admit; the reservation path rejects the surplus
+     * and returns the tokens.
+     */
+    @Scheduled(fixedDelayString = "${inventory.flash-sale.sync-interval-ms:1000}")
+    public void syncTokens() {
+        for (Sale sale : sales.values()) {
+            try {
+                int stock = warehouseService.getProductQuantity(sale.productId);
+                int current;
+                int inFlight;
+                int target;
+                do {
+                    // A take() or finish() in between changes tokens, so the target is recomputed rather than overwritten
+                    current = sale.tokens.get();
+                    inFlight = sale.inFlight.get();
+                    int available = stock - inFlight;
+                    if (!sale.tracksStock) {
+                        // Cancelled orders stay sold: a fixed quota is units offered, not units in stock
+                        available = Math.min(available, sale.quota - (int) sale.sold.get() - inFlight);
+                    }
+                    target = Math.max(0, available);
+                } while (!sale.tokens.compareAndSet(current, target));
+                if (current != target) {
+                    logger.debug("[FLASH SALE] Product {} tokens {} -> {} (stock={}, inFlight={})",
+                            sale.productId, current, target, stock, inFlight);
+                }
+            } catch (Exception e) {
+                logger.warn("[FLASH SALE] Token sync failed for product {}: {}", sale.productId, e.getMessage());
+            }
+        }
+    }
+
+    private static FlashSaleDTO toDTO(Sale sale) {
+        FlashSaleDTO dto = new FlashSaleDTO();
+        dto.setProductId(sale.productId);
+        dto.setProductName(sale.productName);
+        dto.setPrice(sale.price);
+        dto.setArmed(sale.disarmedAt == null);
+        dto.setQuota(sale.quota);
+        dto.setTracksStock(sale.tracksStock);
+        dto.setMaxPerOrder(sale.maxPerOrder);
+        dto.setTokensLeft(sale.tokens.get());
+        dto.setInFlight(sale.inFlight.get());
+        dto.setUnitsSold(sale.sold.get());
+        dto.setOrdersAdmitted(sale.admitted.get());
+        dto.setOrdersRejected(sale.rejected.get());
+        dto.setOrdersFailed(sale.failed.get());
+        dto.setArmedAt(sale.armedAt);
+        dto.setDisarmedAt(sale.disarmedAt);
+        dto.setStockAtArm(sale.stockAtArm);
+        return dto;
+    }
+
+    /**
+     * Tokens taken for one order
+     */
+    public static final class Ticket {
+        private final List<Sale> sales = new ArrayList<>(1);
+        private final List<Integer> quantities = new ArrayList<>(1);
+        private boolean completed = false;
+
+        private void add(Sale sale, int quantity) {
+            sales.add(sale);
+            quantities.add(quantity);
+        }
+
+        /**
+         * placed = the order committed (tokens are spent); otherwise the tokens go back to the pool
+         */
+        public synchronized void complete(boolean placed) {
+            if (completed) return;
+            completed = true;
+            for (int i = 0; i < sales.size(); i++) {
+                sales.get(i).finish(quantities.get(i), placed);
+            }
+        }
+    }
+
+    private static final class Sale {
+        final Long productId;
+        final String productName;
+        final BigDecimal price;
+        final int quota;
+        final int stockAtArm;
+        final Integer maxPerOrder;
+        final boolean tracksStock;
+        final LocalDateTime armedAt = LocalDateTime.now();
+        volatile LocalDateTime disarmedAt;
+
+        final AtomicInteger tokens;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong sold = new AtomicLong();
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+
+        Sale(Long productId, String productName, BigDecimal price, int quota, int stockAtArm, Integer maxPerOrder,
+             boolean tracksStock) {
+            this.productId = productId;
+            this.productName = productName;
+            this.price = price;
+            this.quota = quota;
+            this.stockAtArm = stockAtArm;
+            this.maxPerOrder = maxPerOrder;
+            this.tracksStock = tracksStock;
+            this.tokens = new AtomicInteger(quota);
+        }
+
+        boolean take(int quantity) {
+            while (true) {
+                int current = tokens.get();
+                if (current < quantity) return false;
+                if (tokens.compareAndSet(current, current - quantity)) {
+                    inFlight.addAndGet(quantity);
+                    admitted.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        void finish(int quantity, boolean placed) {
+            inFlight.addAndGet(-quantity);
+            if (placed) {
+                sold.addAndGet(quantity);
+            } else {
+                failed.incrementAndGet();
+                tokens.addAndGet(quantity);
+            }
+        }
+    }
+}
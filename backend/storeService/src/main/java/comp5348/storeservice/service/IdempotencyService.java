@@ -0,0 +1,308 @@
+package comp5348.storeservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import comp5348.storeservice.dto.IdempotencyStatsDTO;
+import comp5348.storeservice.dto.OrderResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static comp5348.storeservice.utils.TransactionCallbacks.afterCommit;
+
+/**
+ * Idempotency-Key support for checkout requests.
+ *
+ * The first request with a key claims it with an insert into idempotency_keys (unique on the key), runs, and
+ * stores its response; a repeat of the key returns that stored response without touching stock, payment or
+ * outbox. Completed responses are also kept in a bounded LRU with the same TTL, so a retry storm on one
+ * instance does not reach the database. Keys are scoped per user and bound to the request body.
+ *
+ * Only successful responses are stored: a failed request frees its key so the client can retry with it.
+ * The response is stored by complete() in the transaction that places the order, so a committed order always
+ * leaves its key COMPLETED. A claim left IN_PROGRESS by a crashed instance can be taken over after
+ * orders.idempotency.in-progress-timeout-seconds; the claim's created_at fences the old request out, so if it
+ * was only slow its complete() fails and its order rolls back.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final String CLAIM_SQL = "insert into idempotency_keys (idem_key, request_hash, status, created_at, expires_at) " +
+            "values (?, ?, 'IN_PROGRESS', localtimestamp, ?) " +
+            "on conflict (idem_key) do update set request_hash = excluded.request_hash, status = 'IN_PROGRESS', " +
+            "http_status = null, response_body = null, order_id = null, created_at = excluded.created_at, " +
+            "expires_at = excluded.expires_at " +
+            "where idempotency_keys.expires_at < localtimestamp " +
+            "or (idempotency_keys.status = 'IN_PROGRESS' and idempotency_keys.created_at < ?) " +
+            "returning created_at";
+
+    private static final String COMPLETE_SQL = "update idempotency_keys set status = 'COMPLETED', http_status = ?, " +
+            "response_body = ?, order_id = ? where idem_key = ? and status = 'IN_PROGRESS' and created_at = ?";
+
+    public enum Outcome {
+        PROCEED,        // key claimed, run the request and complete() or release() it
+        REPLAY,         // key already completed with this body, return getResponse()
+        IN_PROGRESS,    // another request with this key is running
+        MISMATCH        // key already used with a different request body
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${orders.idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${orders.idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${orders.idempotency.in-progress-timeout-seconds:120}")
+    private long inProgressTimeoutSeconds;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong databaseHits = new AtomicLong();
+    private final AtomicLong claims = new AtomicLong();
+    private final AtomicLong inProgress = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+
+    // Access-ordered, so the eldest entry is the least recently used one
+    private final LinkedHashMap<String, StoredResponse> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    /**
+     * Check the key and claim it if it is new. A blank key returns null (no idempotency for this request).
+     */
+    public Claim begin(String idempotencyKey, Long userId, Object request) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return null;
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        requests.incrementAndGet();
+        String key = userId + ":" + idempotencyKey;
+        String requestHash = hash(request);
+
+        StoredResponse stored = getCached(key);
+        if (stored != null) {
+            if (!stored.requestHash.equals(requestHash)) {
+                mismatches.incrementAndGet();
+                return new Claim(key, requestHash, Outcome.MISMATCH, null);
+            }
+            memoryHits.incrementAndGet();
+            return new Claim(key, requestHash, Outcome.REPLAY, stored);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Timestamp> claimed = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> rs.getTimestamp("created_at"),
+                key, requestHash, Timestamp.valueOf(now.plusMinutes(ttlMinutes)),
+                Timestamp.valueOf(now.minusSeconds(inProgressTimeoutSeconds)));
+        if (!claimed.isEmpty()) {
+            claims.incrementAndGet();
+            return new Claim(key, requestHash, Outcome.PROCEED, null, claimed.get(0));
+        }
+
+        List<StoredResponse> rows = jdbcTemplate.query(
+                "select request_hash, status, http_status, response_body, expires_at from idempotency_keys where idem_key = ?",
+                (rs, rowNum) -> "COMPLETED".equals(rs.getString("status"))
+                        ? new StoredResponse(rs.getString("request_hash"), rs.getInt("http_status"),
+                                readResponse(rs.getString("response_body")), rs.getTimestamp("expires_at").getTime())
+                        : new StoredResponse(rs.getString("request_hash"), 0, null, 0),
+                key);
+        if (rows.isEmpty()) {
+            // Released between our insert and select; the client can simply retry
+            inProgress.incrementAndGet();
+            return new Claim(key, requestHash, Outcome.IN_PROGRESS, null);
+        }
+        StoredResponse row = rows.get(0);
+        if (!row.requestHash.equals(requestHash)) {
+            mismatches.incrementAndGet();
+            return new Claim(key, requestHash, Outcome.MISMATCH, null);
+        }
+        if (row.response == null) {
+            inProgress.incrementAndGet();
+            return new Claim(key, requestHash, Outcome.IN_PROGRESS, null);
+        }
+        databaseHits.incrementAndGet();
+        putCached(key, row);
+        return new Claim(key, requestHash, Outcome.REPLAY, row);
+    }
+
+    /**
+     * Store the response of a claimed request; repeats of the key return it until the key expires.
+     * Must run in the transaction that places the order: throws if the claim was taken over meanwhile,
+     * which rolls that order back.
+     */
+    public void complete(Claim claim, int httpStatus, OrderResponse response) {
+        if (claim == null || claim.outcome != Outcome.PROCEED) return;
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(response);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot store response: " + e.getMessage(), e);
+        }
+        Long orderId = response.getOrder() != null ? response.getOrder().getId() : null;
+        int updated = jdbcTemplate.update(COMPLETE_SQL, httpStatus, body, orderId, claim.key, claim.claimedAt);
+        if (updated == 0) {
+            throw new IllegalStateException("Idempotency key was taken over by a retry, order not placed");
+        }
+        StoredResponse stored = new StoredResponse(claim.requestHash, httpStatus, response,
+                System.currentTimeMillis() + ttlMinutes * 60_000);
+        afterCommit(() -> putCached(claim.key, stored));
+    }
+
+    /**
+     * Free the key of a claimed request that failed, so it can be retried
+     */
+    public void release(Claim claim) {
+        if (claim == null || claim.outcome != Outcome.PROCEED) return;
+        try {
+            jdbcTemplate.update("delete from idempotency_keys where idem_key = ? and status = 'IN_PROGRESS' and created_at = ?",
+                    claim.key, claim.claimedAt);
+            released.incrementAndGet();
+        } catch (Exception e) {
+            logger.warn("[IDEMPOTENCY] Failed to release key {}: {}", claim.key, e.getMessage());
+        }
+    }
+
+    public IdempotencyStatsDTO getStats() {
+        IdempotencyStatsDTO stats = new IdempotencyStatsDTO();
+        long total = requests.get();
+        stats.setRequests(total);
+        stats.setMemoryHits(memoryHits.get());
+        stats.setDatabaseHits(databaseHits.get());
+        stats.setClaims(claims.get());
+        stats.setInProgress(inProgress.get());
+        stats.setMismatches(mismatches.get());
+        stats.setReleased(released.get());
+        stats.setHitRate(total == 0 ? 0 : (double) (memoryHits.get() + databaseHits.get()) / total);
+        synchronized (cache) {
+            stats.setCacheSize(cache.size());
+        }
+        stats.setCacheCapacity(cacheSize);
+        return stats;
+    }
+
+    /**
+     * Drop expired keys
+     */
+    @Scheduled(fixedDelayString = "${orders.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int purged = jdbcTemplate.update("delete from idempotency_keys where expires_at < localtimestamp");
+            if (purged > 0) {
+                logger.info("[IDEMPOTENCY] Purged {} expired keys", purged);
+            }
+        } catch (Exception e) {
+            logger.error("[IDEMPOTENCY] Purge failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private StoredResponse getCached(String key) {
+        synchronized (cache) {
+            StoredResponse stored = cache.get(key);
+            if (stored != null && stored.expiresAtMillis < System.currentTimeMillis()) {
+                cache.remove(key);
+                return null;
+            }
+            return stored;
+        }
+    }
+
+    private void putCached(String key, StoredResponse stored) {
+        synchronized (cache) {
+            cache.put(key, stored);
+        }
+    }
+
+    private OrderResponse readResponse(String json) {
+        try {
+            return json == null ? null : objectMapper.readValue(json, OrderResponse.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable stored response: " + e.getMessage(), e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot hash request: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class StoredResponse {
+        final String requestHash;
+        final int httpStatus;
+        final OrderResponse response;
+        final long expiresAtMillis;
+
+        StoredResponse(String requestHash, int httpStatus, OrderResponse response, long expiresAtMillis) {
+            this.requestHash = requestHash;
+            this.httpStatus = httpStatus;
+            this.response = response;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /**
+     * Result of begin(): what to do with the request, and the stored response for a replay
+     */
+    public static final class Claim {
+        private final String key;
+        private final String requestHash;
+        private final Outcome outcome;
+        private final StoredResponse stored;
+        private final Timestamp claimedAt;
+
+        private Claim(String key, String requestHash, Outcome outcome, StoredResponse stored) {
+            this(key, requestHash, outcome, stored, null);
+        }
+
+        private Claim(String key, String requestHash, Outcome outcome, StoredResponse stored, Timestamp claimedAt) {
+            this.key = key;
+            this.requestHash = requestHash;
+            this.outcome = outcome;
+            this.stored = stored;
+            this.claimedAt = claimedAt;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public int getHttpStatus() {
+            return stored == null ? 0 : stored.httpStatus;
+        }
+
+        public OrderResponse getResponse() {
+            return stored == null ? null : stored.response;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.dto.AuditRollupDTO;
+import comp5348.storeservice.repository.InventoryAuditDailyRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains inventory_audit_daily_rollup, the per-day aggregate that dashboards read instead of the raw audit log.
+ *
+ * A day is always recomputed as a whole (delete + insert ... select ... group by in one transaction), so runs are
+ * idempotent. Each run recomputes the last lookback-days days to pick up rows the audit writer committed late,
+ * and backfills everything after the newest rolled-up day.
+ */
+@Service
+public class InventoryAuditRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryAuditRollupService.class);
+
+    @Autowired
+    private InventoryAuditDailyRollupRepository rollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory.audit.rollup.lookback-days:2}")
+    private int lookbackDays;
+
+    @Scheduled(initialDelayString = "${inventory.audit.rollup.initial-delay-ms:60000}",
+            fixedDelayString = "${inventory.audit.rollup.interval-ms:3600000}")
+    public void scheduledRollup() {
+        try {
+            LocalDate from = rollupRepository.findLatestDay()
+                    .map(day -> day.minusDays(lookbackDays))
+                    .orElseGet(this::firstAuditDay);
+            if (from == null) return;
+            int rows = rollupDays(from, LocalDate.now().plusDays(1));
+            logger.info("[AUDIT ROLLUP] Rolled up {} - today into {} rows", from, rows);
+        } catch (Exception e) {
+            logger.error("[AUDIT ROLLUP] Rollup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recompute the rollups of [fromDay, toDay)
+     */
+    @Transactional
+    public int rollupDays(LocalDate fromDay, LocalDate toDay) {
+        rollupRepository.deleteDays(fromDay, toDay);
+        return rollupRepository.insertRollups(fromDay.atStartOfDay(), toDay.atStartOfDay());
+    }
+
+    @Transactional(readOnly = true)
+    public List<AuditRollupDTO> getRollups(LocalDate fromDay, LocalDate toDay, Long productId, Long warehouseId,
+                                           String operationType) {
+        return rollupRepository.findRollups(fromDay, toDay, productId, warehouseId, operationType).stream()
+                .map(AuditRollupDTO::new)
+                .collect(Collectors.toList());
+    }
+
+    private LocalDate firstAuditDay() {
+        Timestamp first = jdbcTemplate.queryForObject("select min(operation_time) from inventory_audit_log", Timestamp.class);
+        return first == null ? null : first.toLocalDateTime().toLocalDate();
+    }
+}
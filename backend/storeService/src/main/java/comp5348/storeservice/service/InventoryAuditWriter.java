@@ -0,0 +1,249 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.dto.AuditWriterStatsDTO;
+import comp5348.storeservice.model.InventoryAuditLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes inventory_audit_log rows off the order path.
+ *
+ * Records are queued in a bounded ring buffer (ArrayBlockingQueue) once the caller's transaction commits,
+ * and a dedicated writer thread drains it into JDBC batch inserts, one transaction per batch.
+ * Durability modes (inventory.audit.durability):
+ *   SYNC  - batch insert inside the caller's transaction (atomic with the stock change, original behaviour, default)
+ *   ASYNC - queued after commit, the caller returns immediately (rows still queued are lost on a crash)
+ * When the buffer is full the caller waits up to offer-timeout-ms, then writes its rows itself (nothing is dropped).
+ */
+@Component
+public class InventoryAuditWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryAuditWriter.class);
+
+    private static final String INSERT_SQL = "insert into inventory_audit_log (operation_type, product_id, product_name, " +
+            "warehouse_id, warehouse_name, quantity, order_id, stock_before, stock_after, operation_time, reason, status, " +
+            "error_message, created_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    public enum Durability {
+        SYNC,
+        ASYNC
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.audit.durability:SYNC}")
+    private Durability durability;
+
+    @Value("${inventory.audit.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${inventory.audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${inventory.audit.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    private BlockingQueue<InventoryAuditLog> buffer;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong backpressureFallbacks = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    @PostConstruct
+    public void start() {
+        buffer = new ArrayBlockingQueue<>(bufferSize);
+        if (durability == Durability.SYNC) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::drainLoop, "inventory-audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("[AUDIT] Writer started: durability={}, bufferSize={}, batchSize={}", durability, bufferSize, batchSize);
+    }
+
+    /**
+     * Stop accepting work for the writer thread and flush whatever is still buffered
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    public void write(InventoryAuditLog auditLog) {
+        writeAll(List.of(auditLog));
+    }
+
+    public void writeAll(List<InventoryAuditLog> auditLogs) {
+        if (auditLogs.isEmpty()) return;
+        if (durability == Durability.SYNC || !running) {
+            insertBatch(auditLogs);
+            written.addAndGet(auditLogs.size());
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Audit rows of a rolled-back transaction are never written, same as when they were saved inline
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(auditLogs);
+                }
+            });
+        } else {
+            enqueue(auditLogs);
+        }
+    }
+
+    public AuditWriterStatsDTO getStats() {
+        long batchCount = batches.get();
+        AuditWriterStatsDTO stats = new AuditWriterStatsDTO();
+        stats.setDurability(durability.name());
+        stats.setQueueDepth(buffer.size());
+        stats.setQueueCapacity(bufferSize);
+        stats.setEnqueued(enqueued.get());
+        stats.setWritten(written.get());
+        stats.setFailed(failed.get());
+        stats.setBatches(batchCount);
+        stats.setBackpressureFallbacks(backpressureFallbacks.get());
+        stats.setLastFlushMillis(lastFlushNanos / 1_000_000.0);
+        stats.setMaxFlushMillis(maxFlushNanos.get() / 1_000_000.0);
+        stats.setAvgFlushMillis(batchCount == 0 ? 0 : totalFlushNanos.get() / 1_000_000.0 / batchCount);
+        return stats;
+    }
+
+    private void enqueue(List<InventoryAuditLog> auditLogs) {
+        List<InventoryAuditLog> overflow = new ArrayList<>();
+        for (InventoryAuditLog auditLog : auditLogs) {
+            boolean accepted;
+            try {
+                accepted = buffer.offer(auditLog, offerTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+            if (accepted) {
+                enqueued.incrementAndGet();
+            } else {
+                overflow.add(auditLog);
+            }
+        }
+
+        if (!overflow.isEmpty()) {
+            // Buffer full: the caller pays for its own insert instead of losing the rows
+            backpressureFallbacks.incrementAndGet();
+            logger.warn("[AUDIT] Buffer full ({} queued), writing {} rows on the caller thread", buffer.size(), overflow.size());
+            newTransaction().executeWithoutResult(status -> insertBatch(overflow));
+            written.addAndGet(overflow.size());
+        }
+    }
+
+    private void drainLoop() {
+        List<InventoryAuditLog> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                InventoryAuditLog first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Everything that arrived while the previous batch was being written goes into this one
+                buffer.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                logger.error("[AUDIT] Writer loop error: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+        logger.info("[AUDIT] Writer stopped, {} rows written", written.get());
+    }
+
+    private void flush(List<InventoryAuditLog> batch) {
+        long start = System.nanoTime();
+        try {
+            newTransaction().executeWithoutResult(status -> insertBatch(batch));
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            // One bad row fails the whole batch: retry row by row so only that row is lost
+            logger.warn("[AUDIT] Batch of {} failed ({}), retrying row by row", batch.size(), e.getMessage());
+            for (InventoryAuditLog auditLog : batch) {
+                try {
+                    newTransaction().executeWithoutResult(status -> insertBatch(List.of(auditLog)));
+                    written.incrementAndGet();
+                } catch (Exception rowError) {
+                    failed.incrementAndGet();
+                    logger.error("[AUDIT] Dropping audit row {} for product {}: {}", auditLog.getOperationType(),
+                            auditLog.getProductId(), rowError.getMessage());
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        batches.incrementAndGet();
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        lastFlushNanos = elapsed;
+    }
+
+    private void insertBatch(List<InventoryAuditLog> auditLogs) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, auditLogs, batchSize, (ps, log) -> {
+            ps.setString(1, log.getOperationType());
+            ps.setObject(2, log.getProductId(), Types.BIGINT);
+            ps.setString(3, log.getProductName());
+            ps.setObject(4, log.getWarehouseId(), Types.BIGINT);
+            ps.setString(5, log.getWarehouseName());
+            ps.setObject(6, log.getQuantity(), Types.INTEGER);
+            ps.setObject(7, log.getOrderId(), Types.BIGINT);
+            ps.setObject(8, log.getStockBefore(), Types.INTEGER);
+            ps.setObject(9, log.getStockAfter(), Types.INTEGER);
+            ps.setTimestamp(10, log.getOperationTime() != null ? Timestamp.valueOf(log.getOperationTime()) : now);
+            ps.setString(11, log.getReason());
+            ps.setString(12, log.getStatus());
+            ps.setString(13, log.getErrorMessage());
+            ps.setTimestamp(14, now);
+        });
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+}
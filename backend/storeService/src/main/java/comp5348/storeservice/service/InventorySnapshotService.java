@@ -0,0 +1,318 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.allocation.WarehouseStockIndex;
+import comp5348.storeservice.dto.StockPointDTO;
+import comp5348.storeservice.dto.TransactionDeltaView;
+import comp5348.storeservice.dto.WarehouseStockView;
+import comp5348.storeservice.model.InventorySnapshot;
+import comp5348.storeservice.model.InventorySnapshotRun;
+import comp5348.storeservice.model.InventoryTransactionType;
+import comp5348.storeservice.repository.InventorySnapshotRepository;
+import comp5348.storeservice.repository.InventorySnapshotRunRepository;
+import comp5348.storeservice.repository.InventoryTransactionRepository;
+import comp5348.storeservice.repository.WarehouseProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Periodic snapshots of warehouse stock plus compaction of settled inventory_transactions.
+ *
+ * A snapshot run copies warehouse_products (plus unflushed ledger deltas) in one REPEATABLE READ transaction,
+ * without locking out journal writers. Its watermarks are the highest id and change_seq it can see; every change
+ * made later gets a higher value. Journal transactions still open when the copy was taken may hold lower values,
+ * so the ids and change_seq values between the previous run's watermarks and these that the copy cannot see are
+ * kept as the run's gaps and replayed like changes past the watermarks (a journal transaction open across a whole
+ * snapshot interval is not covered). Stock at time T is the latest run taken at or before T plus the journal rows
+ * past its watermarks or in its gaps:
+ *   HOLD rows (also ones flipped to UNHOLD later)  -quantity at created_at
+ *   UNHOLD flips                                    +quantity at transaction_time
+ *   IN rows                                         quantity is set to the row's quantity
+ * OUT rows do not move stock (the HOLD already did).
+ *
+ * Compaction deletes the rows below the lowest gap of a snapshot older than compaction-horizon-hours (so the
+ * snapshot already contains them) that can no longer change: UNHOLD rows, IN rows, and the HOLD/OUT rows of shipped orders. Answers for times before that
+ * snapshot are flagged as not exact.
+ */
+@Service
+public class InventorySnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventorySnapshotService.class);
+    private static final String CHANGE_SEQUENCE = "inventory_tx_change_seq";
+
+    private static final String ID_GAPS_SQL = "select g from generate_series(?, ?) g " +
+            "where not exists (select 1 from inventory_transactions t where t.id = g) order by g";
+
+    private static final String SEQ_GAPS_SQL = "select g from generate_series(?, ?) g " +
+            "where not exists (select 1 from inventory_transactions t where t.change_seq = g) order by g";
+
+    @Autowired
+    private InventorySnapshotRunRepository runRepository;
+
+    @Autowired
+    private InventorySnapshotRepository snapshotRepository;
+
+    @Autowired
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @Autowired
+    private WarehouseProductRepository warehouseProductRepository;
+
+    @Autowired
+    private ProductStockSummaryService stockSummaryService;
+
+    @Autowired
+    private WarehouseStockIndex stockIndex;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.snapshot.compaction-horizon-hours:168}")
+    private long compactionHorizonHours;
+
+    @Value("${inventory.snapshot.retention-days:30}")
+    private long retentionDays;
+
+    @Scheduled(initialDelayString = "${inventory.snapshot.initial-delay-ms:300000}",
+            fixedDelayString = "${inventory.snapshot.interval-ms:3600000}")
+    public void scheduledSnapshot() {
+        try {
+            takeSnapshot();
+            compact();
+            pruneSnapshots();
+        } catch (Exception e) {
+            logger.error("[SNAPSHOT] Snapshot/compaction failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public InventorySnapshotRun takeSnapshot() {
+        InventorySnapshotRun previous = runRepository.findTopByOrderByTakenAtDesc().orElse(null);
+        long idFrom = previous == null ? 1 : previous.getIdWatermark() + 1;
+        long seqFrom = previous == null ? 1 : previous.getSeqWatermark() + 1;
+        // Watermarks, gaps and copy all read the snapshot frozen by the first query
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        InventorySnapshotRun run = template.execute(status -> {
+            InventorySnapshotRun newRun = new InventorySnapshotRun();
+            newRun.setTakenAt(LocalDateTime.now());
+            newRun.setIdWatermark(jdbcTemplate.queryForObject(
+                    "select coalesce(max(id), 0) from inventory_transactions", Long.class));
+            newRun.setSeqWatermark(jdbcTemplate.queryForObject(
+                    "select nextval('" + CHANGE_SEQUENCE + "')", Long.class));
+            newRun.setIdGaps(gaps(ID_GAPS_SQL, idFrom, newRun.getIdWatermark()));
+            newRun.setSeqGaps(gaps(SEQ_GAPS_SQL, seqFrom, newRun.getSeqWatermark() - 1));
+            newRun = runRepository.saveAndFlush(newRun);
+            newRun.setRowCount(snapshotRepository.insertFromWarehouseProducts(newRun.getId()));
+            return runRepository.save(newRun);
+        });
+        logger.info("[SNAPSHOT] Run {} taken: {} stock rows, idWatermark={}, seqWatermark={}, gaps={}/{}",
+                run.getId(), run.getRowCount(), run.getIdWatermark(), run.getSeqWatermark(),
+                run.getIdGaps().length, run.getSeqGaps().length);
+        return run;
+    }
+
+    /**
+     * Delete the settled transactions contained in the newest snapshot older than the compaction horizon
+     */
+    public int compact() {
+        LocalDateTime horizon = LocalDateTime.now().minusHours(compactionHorizonHours);
+        InventorySnapshotRun boundary = runRepository.findTopByTakenAtLessThanEqualOrderByTakenAtDesc(horizon).orElse(null);
+        if (boundary == null || boundary.getCompactedAt() != null) {
+            return 0;
+        }
+        Integer deleted = new TransactionTemplate(transactionManager).execute(status -> {
+            long idWatermark = belowGaps(boundary.getIdGaps(), boundary.getIdWatermark());
+            long seqWatermark = belowGaps(boundary.getSeqGaps(), boundary.getSeqWatermark());
+            int rows = inventoryTransactionRepository.deleteShippedOrders(idWatermark,
+                    InventoryTransactionType.HOLD, InventoryTransactionType.OUT);
+            rows += inventoryTransactionRepository.deleteSettledReleasesAndRestocks(idWatermark,
+                    seqWatermark, InventoryTransactionType.UNHOLD, InventoryTransactionType.IN);
+            boundary.setCompactedAt(LocalDateTime.now());
+            boundary.setCompactedRows(rows);
+            runRepository.save(boundary);
+            return rows;
+        });
+        logger.info("[SNAPSHOT] Compacted {} inventory transactions up to run {} ({})",
+                deleted, boundary.getId(), boundary.getTakenAt());
+        return deleted;
+    }
+
+    /**
+     * Drop runs past retention, always keeping the latest compacted run and everything after it
+     */
+    public void pruneSnapshots() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        LocalDateTime keepFrom = runRepository.findTopByCompactedAtIsNotNullOrderByTakenAtDesc()
+                .map(InventorySnapshotRun::getTakenAt)
+                .filter(takenAt -> takenAt.isBefore(cutoff))
+                .orElse(cutoff);
+        List<Long> runIds = runRepository.findByTakenAtBefore(keepFrom).stream()
+                .map(InventorySnapshotRun::getId)
+                .collect(Collectors.toList());
+        if (runIds.isEmpty()) return;
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            snapshotRepository.deleteByRunIds(runIds);
+            runRepository.deleteAllByIdInBatch(runIds);
+        });
+        logger.info("[SNAPSHOT] Pruned {} snapshot runs taken before {}", runIds.size(), keepFrom);
+    }
+
+    /**
+     * Stock of a product per warehouse at a point in time
+     */
+    @Transactional(readOnly = true)
+    public List<StockPointDTO> getStockAt(Long productId, LocalDateTime at) {
+        InventorySnapshotRun run = runRepository.findTopByTakenAtLessThanEqualOrderByTakenAtDesc(at).orElse(null);
+        if (run == null) {
+            return List.of();
+        }
+        return new ArrayList<>(replay(run, productId, at).values());
+    }
+
+    /**
+     * Recompute current stock from the latest snapshot and its journal tail and compare it with warehouse_products.
+     * Returns the rows that differ; unless dryRun, warehouse_products is corrected to the recomputed values.
+     * Stock written without a journal row after the snapshot (e.g. benchmark resets) is reverted by a real run.
+     */
+    public List<StockPointDTO> rebuildWarehouseStock(boolean dryRun) {
+        // warehouse_products has to include the ledger's write-behind deltas before it is compared
+        stockLedger.flushAll();
+        Set<Long> changedProducts = new TreeSet<>();
+        List<StockPointDTO> mismatches = new TransactionTemplate(transactionManager).execute(status -> {
+            InventorySnapshotRun run = runRepository.findTopByOrderByTakenAtDesc().orElse(null);
+            if (run == null) {
+                return List.<StockPointDTO>of();
+            }
+            LocalDateTime now = LocalDateTime.now();
+            Map<List<Long>, StockPointDTO> expected = replay(run, null, now);
+            List<StockPointDTO> differing = new ArrayList<>();
+            for (WarehouseStockView level : warehouseProductRepository.findAllStockLevels()) {
+                StockPointDTO point = expected.get(List.of(level.getProductId(), level.getWarehouseId()));
+                if (point == null || point.getQuantity().equals(level.getQuantity())) continue;
+                point.setRecordedQuantity(level.getQuantity());
+                differing.add(point);
+                if (!dryRun) {
+                    int delta = point.getQuantity() - level.getQuantity();
+                    warehouseProductRepository.adjustQuantity(level.getWarehouseId(), level.getProductId(), delta, now);
+                    stockSummaryService.recordDelta(level.getProductId(), delta);
+                    stockIndex.invalidateAfterCommit(level.getProductId());
+                    changedProducts.add(level.getProductId());
+                }
+            }
+            return differing;
+        });
+        for (Long productId : changedProducts) {
+            stockLedger.resync(productId);
+        }
+        if (!changedProducts.isEmpty()) {
+            logger.warn("[SNAPSHOT] Rebuild corrected {} warehouse stock rows", mismatches.size());
+        }
+        return mismatches;
+    }
+
+    private Map<List<Long>, StockPointDTO> replay(InventorySnapshotRun run, Long productId, LocalDateTime at) {
+        boolean exact = runRepository.findTopByCompactedAtIsNotNullOrderByTakenAtDesc()
+                .map(compacted -> !compacted.getTakenAt().isAfter(run.getTakenAt()))
+                .orElse(true);
+
+        Map<List<Long>, StockPointDTO> stock = new LinkedHashMap<>();
+        for (InventorySnapshot snapshot : snapshotRepository.findByRun(run.getId(), productId)) {
+            point(stock, snapshot.getProductId(), snapshot.getWarehouseId(), run, at, exact)
+                    .setQuantity(snapshot.getQuantity());
+        }
+
+        Set<Long> idGaps = run.getIdGaps() == null ? Set.of() : Set.of(run.getIdGaps());
+        Set<Long> seqGaps = run.getSeqGaps() == null ? Set.of() : Set.of(run.getSeqGaps());
+        List<StockEvent> events = new ArrayList<>();
+        for (TransactionDeltaView row : inventoryTransactionRepository.findInsertedAfter(
+                belowGaps(run.getIdGaps(), run.getIdWatermark()), productId)) {
+            if (row.getId() <= run.getIdWatermark() && !idGaps.contains(row.getId())) continue;
+            switch (row.getType()) {
+                case HOLD, UNHOLD -> events.add(new StockEvent(row,
+                        row.getCreatedAt() != null ? row.getCreatedAt() : row.getTransactionTime(), -row.getQuantity(), false));
+                case IN -> events.add(new StockEvent(row, row.getTransactionTime(), row.getQuantity(), true));
+                default -> { }
+            }
+        }
+        for (TransactionDeltaView row : inventoryTransactionRepository.findReleasedAfter(
+                belowGaps(run.getSeqGaps(), run.getSeqWatermark()), InventoryTransactionType.UNHOLD, productId)) {
+            if (row.getChangeSeq() <= run.getSeqWatermark() && !seqGaps.contains(row.getChangeSeq())) continue;
+            events.add(new StockEvent(row, row.getTransactionTime(), row.getQuantity(), false));
+        }
+        events.sort(Comparator.comparing((StockEvent e) -> e.time).thenComparing(e -> e.row.getId()));
+
+        Map<List<Long>, Integer> replayed = new HashMap<>();
+        for (StockEvent event : events) {
+            if (event.time == null || event.time.isAfter(at)) continue;
+            StockPointDTO point = point(stock, event.row.getProductId(), event.row.getWarehouseId(), run, at, exact);
+            point.setQuantity(event.absolute ? event.quantity : point.getQuantity() + event.quantity);
+            replayed.merge(List.of(event.row.getProductId(), event.row.getWarehouseId()), 1, Integer::sum);
+        }
+        stock.forEach((key, point) -> point.setReplayedTransactions(replayed.getOrDefault(key, 0)));
+        return stock;
+    }
+
+    private Long[] gaps(String sql, long from, long to) {
+        return jdbcTemplate.queryForList(sql, Long.class, from, to).toArray(new Long[0]);
+    }
+
+    /**
+     * Highest watermark below which the snapshot saw every change
+     */
+    private static long belowGaps(Long[] gaps, long watermark) {
+        return gaps == null || gaps.length == 0 ? watermark : Math.min(watermark, gaps[0] - 1);
+    }
+
+    private static StockPointDTO point(Map<List<Long>, StockPointDTO> stock, Long productId, Long warehouseId,
+                                       InventorySnapshotRun run, LocalDateTime at, boolean exact) {
+        return stock.computeIfAbsent(List.of(productId, warehouseId), key -> {
+            StockPointDTO point = new StockPointDTO();
+            point.setProductId(productId);
+            point.setWarehouseId(warehouseId);
+            point.setQuantity(0);
+            point.setAt(at);
+            point.setSnapshotTakenAt(run.getTakenAt());
+            point.setExact(exact);
+            return point;
+        });
+    }
+
+    private static final class StockEvent {
+        final TransactionDeltaView row;
+        final LocalDateTime time;
+        final int quantity;
+        final boolean absolute;
+
+        StockEvent(TransactionDeltaView row, LocalDateTime time, int quantity, boolean absolute) {
+            this.row = row;
+            this.time = time;
+            this.quantity = quantity;
+            this.absolute = absolute;
+        }
+    }
+}
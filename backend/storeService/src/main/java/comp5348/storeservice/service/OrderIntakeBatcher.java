@@ -0,0 +1,363 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.dto.CreateOrderRequest;
+import comp5348.storeservice.dto.OrderDTO;
+import comp5348.storeservice.dto.OrderIntakeStatsDTO;
+import comp5348.storeservice.dto.OrderResponse;
+import comp5348.storeservice.model.OrderStatus;
+import comp5348.storeservice.model.PaymentStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group-commit intake for create-with-payment (orders.intake.mode=GROUP_COMMIT).
+ *
+ * Checkouts are queued and an intake thread collects them for up to batch-window-ms (or batch-size orders),
+ * then applies the whole batch in one transaction: each order is placed with OrderPlacementStatement (stock,
+ * lines, HOLD/audit rows, PENDING event), then all orders move to PENDING_PAYMENT and get their payment rows
+ * with two JDBC batches. Every caller waits on its own future, completed once the batch has committed.
+ *
+ * A missing product or short stock is detected before the statement writes anything, so only that order is
+ * rejected and the rest of the batch commits. Any other failure rolls the batch back and its orders are retried
+ * one transaction each, so a bad order cannot take the others down with it.
+ *
+ * An order sent with an Idempotency-Key has its response stored in the batch transaction too; a claim taken over
+ * meanwhile fails the batch and so ends up rejecting only that order in the one-by-one retry.
+ *
+ * The order's own PENDING payment_outbox event is the only one written, as on the DIRECT path. Needs the statement
+ * placement, so LEDGER reservation mode falls back to DIRECT; a full queue makes the caller place its order
+ * directly, like the audit writer.
+ */
+@Component
+public class OrderIntakeBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderIntakeBatcher.class);
+
+    private static final String PENDING_PAYMENT_SQL =
+            "update orders set status = ?, updated_at = localtimestamp where id = ? and status = ?";
+
+    private static final String PAYMENT_SQL = "insert into payments (order_id, status, amount, created_at, updated_at) " +
+            "values (?, ?, ?, localtimestamp, localtimestamp)";
+
+    public enum IntakeMode {
+        DIRECT,         // each request places its order in its own transaction (original behaviour)
+        GROUP_COMMIT    // concurrent requests are placed together in one transaction
+    }
+
+    @Autowired
+    private OrderProductService orderProductService;
+
+    @Autowired
+    private OrderPlacementStatement placementStatement;
+
+    @Autowired
+    private PaymentExpiryTracker paymentExpiryTracker;
+
+    @Autowired
+    private OrderViewProjector orderViewProjector;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${orders.intake.mode:DIRECT}")
+    private IntakeMode mode;
+
+    @Value("${orders.intake.batch-window-ms:5}")
+    private long batchWindowMs;
+
+    @Value("${orders.intake.batch-size:64}")
+    private int batchSize;
+
+    @Value("${orders.intake.queue-size:4096}")
+    private int queueSize;
+
+    @Value("${orders.intake.timeout-ms:10000}")
+    private long timeoutMs;
+
+    private BlockingQueue<PendingOrder> queue;
+    private Thread intakeThread;
+    private volatile boolean running;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong placed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchRetries = new AtomicLong();
+    private final AtomicLong directFallbacks = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong totalBatchNanos = new AtomicLong();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+    private final AtomicInteger maxBatchOrders = new AtomicInteger();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueSize);
+        if (mode != IntakeMode.GROUP_COMMIT) {
+            return;
+        }
+        if (!placementStatement.isSupported()) {
+            logger.warn("[INTAKE] GROUP_COMMIT needs the statement placement, not available in LEDGER reservation mode; using DIRECT");
+            mode = IntakeMode.DIRECT;
+            return;
+        }
+        running = true;
+        intakeThread = new Thread(this::drainLoop, "order-intake");
+        intakeThread.setDaemon(true);
+        intakeThread.start();
+        logger.info("[INTAKE] Group commit started: window={}ms, batchSize={}, queueSize={}", batchWindowMs, batchSize, queueSize);
+    }
+
+    /**
+     * Stop taking new orders and place the ones still queued
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (intakeThread != null) {
+            intakeThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Create an order and its pending payment, either directly or as part of the next batch.
+     * The response is stored under the claimed Idempotency-Key (may be null) in the transaction that places the order.
+     * Must not be called inside a transaction in GROUP_COMMIT mode: the order commits on the intake thread.
+     */
+    public OrderDTO createOrderWithPayment(CreateOrderRequest request, IdempotencyService.Claim claim) {
+        if (!running) {
+            return orderProductService.createOrderWithPayment(request, claim);
+        }
+        // Malformed carts are rejected here and never take a place in a batch
+        PendingOrder order = new PendingOrder(request.getUserId(), OrderService.quantitiesOf(request), claim);
+        if (!queue.offer(order)) {
+            directFallbacks.incrementAndGet();
+            logger.warn("[INTAKE] Queue full ({} queued), placing order of user {} directly", queue.size(), request.getUserId());
+            return orderProductService.createOrderWithPayment(request, claim);
+        }
+        submitted.incrementAndGet();
+        return await(order);
+    }
+
+    public OrderIntakeStatsDTO getStats() {
+        long batchCount = batches.get();
+        OrderIntakeStatsDTO stats = new OrderIntakeStatsDTO();
+        stats.setMode(mode.name());
+        stats.setQueueDepth(queue.size());
+        stats.setQueueCapacity(queueSize);
+        stats.setSubmitted(submitted.get());
+        stats.setPlaced(placed.get());
+        stats.setRejected(rejected.get());
+        stats.setBatches(batchCount);
+        stats.setBatchRetries(batchRetries.get());
+        stats.setDirectFallbacks(directFallbacks.get());
+        stats.setTimedOut(timedOut.get());
+        stats.setAvgBatchOrders(batchCount == 0 ? 0 : (double) (placed.get() + rejected.get()) / batchCount);
+        stats.setMaxBatchOrders(maxBatchOrders.get());
+        stats.setAvgBatchMillis(batchCount == 0 ? 0 : totalBatchNanos.get() / 1_000_000.0 / batchCount);
+        stats.setMaxBatchMillis(maxBatchNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    private OrderDTO await(PendingOrder order) {
+        try {
+            try {
+                return order.result.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (order.abandon()) {
+                    timedOut.incrementAndGet();
+                    throw new RuntimeException("Order intake timed out after " + timeoutMs + " ms, nothing was placed");
+                }
+                // Already in a batch: its outcome is decided by that commit, so wait for it
+                return order.result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for order intake", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Keep the batch open for the window, unless it fills up first
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                logger.error("[INTAKE] Intake loop error: {}", e.getMessage(), e);
+                for (PendingOrder order : batch) order.result.completeExceptionally(e);
+            } finally {
+                batch.clear();
+            }
+        }
+        logger.info("[INTAKE] Group commit stopped, {} orders placed", placed.get());
+    }
+
+    private void apply(List<PendingOrder> batch) {
+        long start = System.nanoTime();
+        List<PendingOrder> claimed = new ArrayList<>(batch.size());
+        for (PendingOrder order : batch) {
+            if (order.claim()) claimed.add(order);
+        }
+        if (claimed.isEmpty()) return;
+
+        Map<PendingOrder, Object> outcomes;
+        try {
+            outcomes = newTransaction().execute(status -> placeAll(claimed));
+        } catch (Exception e) {
+            // Rolled back as a whole: give each order its own transaction so only the bad one fails
+            batchRetries.incrementAndGet();
+            logger.warn("[INTAKE] Batch of {} orders failed ({}), retrying one by one", claimed.size(), e.getMessage());
+            outcomes = new LinkedHashMap<>();
+            for (PendingOrder order : claimed) {
+                try {
+                    outcomes.putAll(newTransaction().execute(status -> placeAll(List.of(order))));
+                } catch (Exception orderError) {
+                    outcomes.put(order, orderError);
+                }
+            }
+        }
+
+        for (Map.Entry<PendingOrder, Object> outcome : outcomes.entrySet()) {
+            if (outcome.getValue() instanceof OrderDTO) {
+                placed.incrementAndGet();
+                outcome.getKey().result.complete((OrderDTO) outcome.getValue());
+            } else {
+                rejected.incrementAndGet();
+                outcome.getKey().result.completeExceptionally((Exception) outcome.getValue());
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        batches.incrementAndGet();
+        totalBatchNanos.addAndGet(elapsed);
+        maxBatchNanos.accumulateAndGet(elapsed, Math::max);
+        maxBatchOrders.accumulateAndGet(claimed.size(), Math::max);
+        logger.debug("[INTAKE] Batch of {} orders applied in {} ms", claimed.size(), elapsed / 1_000_000.0);
+    }
+
+    /**
+     * Place the orders in the current transaction; the outcome of each is its OrderDTO or the rejection.
+     * Failures other than a rejected cart are thrown and roll the whole transaction back.
+     */
+    private Map<PendingOrder, Object> placeAll(List<PendingOrder> orders) {
+        Map<PendingOrder, Object> outcomes = new LinkedHashMap<>();
+        Map<PendingOrder, OrderDTO> placedOrders = new LinkedHashMap<>();
+        for (PendingOrder order : orders) {
+            try {
+                OrderDTO dto = placementStatement.place(order.userId, order.quantities);
+                placedOrders.put(order, dto);
+                outcomes.put(order, dto);
+            } catch (DataAccessException | IllegalStateException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // Missing product or short stock: the statement wrote nothing for this order
+                outcomes.put(order, e);
+            }
+        }
+        if (placedOrders.isEmpty()) {
+            return outcomes;
+        }
+        List<OrderDTO> created = new ArrayList<>(placedOrders.values());
+
+        jdbcTemplate.batchUpdate(PENDING_PAYMENT_SQL, created, batchSize, (ps, dto) -> {
+            ps.setString(1, OrderStatus.PENDING_PAYMENT.name());
+            ps.setLong(2, dto.getId());
+            ps.setString(3, OrderStatus.PLACED.name());
+        });
+        jdbcTemplate.batchUpdate(PAYMENT_SQL, created, batchSize, (ps, dto) -> {
+            ps.setLong(1, dto.getId());
+            ps.setString(2, PaymentStatus.PENDING.name());
+            ps.setBigDecimal(3, dto.getTotalAmount());
+        });
+        for (OrderDTO dto : created) {
+            paymentExpiryTracker.scheduleAfterCommit(dto.getId(), dto.getCreatedAt());
+            orderViewProjector.markDirty(dto.getId());
+        }
+        // A claim taken over by a retry throws here and rolls the batch back
+        placedOrders.forEach((order, dto) -> idempotencyService.complete(order.claim, HttpStatus.OK.value(),
+                OrderResponse.success(dto, OrderProductService.ORDER_CREATED_MESSAGE)));
+        return outcomes;
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private static final class PendingOrder {
+        private static final int QUEUED = 0, CLAIMED = 1, ABANDONED = 2;
+
+        final Long userId;
+        final Map<Long, Integer> quantities;
+        final IdempotencyService.Claim claim;
+        final CompletableFuture<OrderDTO> result = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        PendingOrder(Long userId, Map<Long, Integer> quantities, IdempotencyService.Claim claim) {
+            this.userId = userId;
+            this.quantities = quantities;
+            this.claim = claim;
+        }
+
+        /** Taken by a batch; false if the caller gave up waiting */
+        boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+
+        /** Given up by the caller; false if a batch already took it */
+        boolean abandon() {
+            return state.compareAndSet(QUEUED, ABANDONED);
+        }
+    }
+}
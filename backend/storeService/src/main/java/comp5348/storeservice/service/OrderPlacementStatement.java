@@ -0,0 +1,205 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.allocation.WarehouseStockIndex;
+import comp5348.storeservice.dto.OrderDTO;
+import comp5348.storeservice.dto.OrderLineDTO;
+import comp5348.storeservice.model.OrderStatus;
+import comp5348.storeservice.model.PaymentStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Order placement in one database round-trip (orders.placement.mode=STATEMENT).
+ *
+ * A single statement of chained CTEs locks the product's stock rows (in id order, like the bulk stock update),
+ * checks the cart against them, takes the stock and inserts the order, its lines, the HOLD rows, the audit rows,
+ * the stock summary deltas and the PENDING payment_outbox event. When a product is missing or short nothing
+ * is written; the returned availability tells which line failed.
+ *
+ * Stock is split across a product's warehouses largest-first (close to FEWEST_SPLITS) instead of by the
+ * configured AllocationStrategy, so delivery coordinates are ignored. Not usable with the LEDGER reservation
+ * mode, whose stock lives in memory; OrderService falls back to the JPA path then.
+ */
+@Component
+public class OrderPlacementStatement {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPlacementStatement.class);
+
+    private static final String PLACE_SQL = "with input as (" +
+            "select i.product_id, i.quantity, i.line_no " +
+            "from unnest(cast(? as bigint[]), cast(? as int[])) with ordinality as i(product_id, quantity, line_no)), " +
+            "priced as (" +
+            "select i.product_id, i.quantity, i.line_no, p.name as product_name, p.price as unit_price, " +
+            "p.price * i.quantity as line_total from input i join products p on p.id = i.product_id), " +
+            "stock as (" +
+            "select wp.id, wp.warehouse_id, wp.product_id, wp.quantity, w.name as warehouse_name " +
+            "from warehouse_products wp join input i on i.product_id = wp.product_id " +
+            "join warehouses w on w.id = wp.warehouse_id " +
+            "where wp.quantity > 0 order by wp.id for update of wp), " +
+            "available as (" +
+            "select i.product_id, coalesce(sum(s.quantity), 0) as units " +
+            "from input i left join stock s on s.product_id = i.product_id group by i.product_id), " +
+            "checked as (" +
+            "select (select count(*) from priced) = (select count(*) from input) " +
+            "and not exists (select 1 from input i join available a on a.product_id = i.product_id " +
+            "where a.units < i.quantity) as ok), " +
+            // Largest rows first: units taken by the rows before this one, per product
+            "plan as (" +
+            "select s.id, s.warehouse_id, s.warehouse_name, s.product_id, s.quantity, i.quantity as wanted, " +
+            "sum(s.quantity) over (partition by s.product_id order by s.quantity desc, s.id) - s.quantity as before_row " +
+            "from stock s join input i on i.product_id = s.product_id), " +
+            "take as (" +
+            "select id, warehouse_id, warehouse_name, product_id, least(quantity, wanted - before_row) as units " +
+            "from plan where before_row < wanted), " +
+            "new_order as (" +
+            "insert into orders (user_id, status, total_amount, created_at, updated_at, product_id, quantity, unit_price) " +
+            "select ?, ?, (select sum(line_total) from priced), localtimestamp, localtimestamp, " +
+            "f.product_id, f.quantity, f.unit_price from priced f where f.line_no = 1 and (select ok from checked) " +
+            "returning id, user_id, total_amount, created_at), " +
+            "lines as (" +
+            "insert into order_lines (order_id, product_id, quantity, unit_price, line_total) " +
+            "select o.id, p.product_id, p.quantity, p.unit_price, p.line_total " +
+            "from priced p cross join new_order o order by p.line_no), " +
+            "taken as (" +
+            "update warehouse_products wp set quantity = wp.quantity - t.units, version = wp.version + 1, " +
+            "modify_time = localtimestamp from take t, new_order o where wp.id = t.id and wp.quantity >= t.units " +
+            "returning wp.warehouse_id, wp.product_id, wp.quantity, t.units, t.warehouse_name), " +
+            "holds as (" +
+            "insert into inventory_transactions (product_id, warehouse_id, quantity, type, transaction_time, order_id, created_at) " +
+            "select t.product_id, t.warehouse_id, t.units, 'HOLD', localtimestamp, o.id, localtimestamp " +
+            "from taken t cross join new_order o returning product_id, quantity), " +
+            "audit as (" +
+            "insert into inventory_audit_log (operation_type, product_id, product_name, warehouse_id, warehouse_name, " +
+            "quantity, order_id, stock_before, stock_after, operation_time, reason, status, error_message, created_at) " +
+            "select 'HOLD', t.product_id, p.product_name, t.warehouse_id, t.warehouse_name, t.units, o.id, " +
+            "t.quantity + t.units, t.quantity, localtimestamp, 'Order processing', 'SUCCESS', null, localtimestamp " +
+            "from taken t join priced p on p.product_id = t.product_id cross join new_order o), " +
+            "summary as (" +
+            "insert into product_stock_summary (product_id, total_quantity, updated_at) " +
+            "select product_id, -sum(units), localtimestamp from taken group by product_id " +
+            "on conflict (product_id) do update set total_quantity = product_stock_summary.total_quantity + " +
+            "excluded.total_quantity, updated_at = excluded.updated_at), " +
+            "outbox as (" +
+            "insert into payment_outbox (order_id, event_type, payload, status, retry_count, created_at) " +
+            "select o.id, ?, cast(json_build_object('orderId', o.id, 'amount', o.total_amount, 'userId', o.user_id) as text), " +
+            "'PENDING', 0, localtimestamp from new_order o) " +
+            "select i.product_id, p.product_name, i.quantity, p.unit_price, p.line_total, a.units as available, " +
+            "o.id as order_id, o.total_amount, o.created_at, " +
+            "coalesce((select sum(h.quantity) from holds h where h.product_id = i.product_id), 0) as held " +
+            "from input i join available a on a.product_id = i.product_id " +
+            "left join priced p on p.product_id = i.product_id left join new_order o on true order by i.line_no";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private WarehouseStockIndex stockIndex;
+
+    @Value("${inventory.reservation.mode:GUARDED}")
+    private WarehouseService.ReservationMode reservationMode;
+
+    /**
+     * False in LEDGER reservation mode, where warehouse_products lags behind the in-memory stock
+     */
+    public boolean isSupported() {
+        return reservationMode != WarehouseService.ReservationMode.LEDGER;
+    }
+
+    /**
+     * Place an order for the given units per product (one line each, in map order).
+     * Runs in the caller's transaction; a missing or short product throws.
+     */
+    public OrderDTO place(Long userId, Map<Long, Integer> quantities) {
+        Long[] productIds = quantities.keySet().toArray(new Long[0]);
+        Integer[] units = quantities.values().toArray(new Integer[0]);
+
+        List<PlacedLine> rows = jdbcTemplate.query(PLACE_SQL, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", productIds));
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", units));
+            ps.setLong(3, userId);
+            ps.setString(4, OrderStatus.PLACED.name());
+            ps.setString(5, PaymentStatus.PENDING.name());
+        }, (rs, rowNum) -> {
+            PlacedLine row = new PlacedLine();
+            row.productId = rs.getLong("product_id");
+            row.productName = rs.getString("product_name");
+            row.quantity = rs.getInt("quantity");
+            row.unitPrice = rs.getBigDecimal("unit_price");
+            row.lineTotal = rs.getBigDecimal("line_total");
+            row.available = rs.getLong("available");
+            row.orderId = rs.getObject("order_id", Long.class);
+            row.totalAmount = rs.getBigDecimal("total_amount");
+            row.createdAt = rs.getTimestamp("created_at");
+            row.held = rs.getLong("held");
+            return row;
+        });
+
+        for (PlacedLine row : rows) {
+            if (row.productName == null) {
+                throw new RuntimeException("Product not found: " + row.productId);
+            }
+        }
+        Long orderId = rows.get(0).orderId;
+        if (orderId == null) {
+            for (PlacedLine row : rows) {
+                if (row.available < row.quantity) {
+                    logger.warn("[ORDER] INSUFFICIENT STOCK for product: {}. Required: {}, Available: {}",
+                            row.productId, row.quantity, row.available);
+                    throw new RuntimeException("Insufficient stock for product: " + row.productName);
+                }
+            }
+            throw new IllegalStateException("Order placement statement did not create an order");
+        }
+        for (PlacedLine row : rows) {
+            if (row.held != row.quantity) {
+                // The guard on the stock update only trips if the row locks did not hold; never commit a short order
+                throw new IllegalStateException("Held " + row.held + " of " + row.quantity + " units of product "
+                        + row.productId + " for order " + orderId);
+            }
+            stockIndex.invalidateAfterCommit(row.productId);
+        }
+
+        PlacedLine first = rows.get(0);
+        OrderDTO dto = new OrderDTO();
+        dto.setId(orderId);
+        dto.setUserId(userId);
+        dto.setStatus(OrderStatus.PLACED.name());
+        dto.setTotalAmount(first.totalAmount);
+        dto.setCreatedAt(first.createdAt.toLocalDateTime());
+        dto.setUpdatedAt(first.createdAt.toLocalDateTime());
+        dto.setProductId(first.productId);
+        dto.setProductName(first.productName);
+        dto.setQuantity(first.quantity);
+        dto.setUnitPrice(first.unitPrice);
+        List<OrderLineDTO> lines = new ArrayList<>(rows.size());
+        for (PlacedLine row : rows) {
+            lines.add(new OrderLineDTO(row.productId, row.productName, row.quantity, row.unitPrice, row.lineTotal));
+        }
+        dto.setLines(lines);
+        logger.info("[ORDER] Order {} placed by statement: {} lines, total {}", orderId, rows.size(), first.totalAmount);
+        return dto;
+    }
+
+    private static final class PlacedLine {
+        long productId;
+        String productName;
+        int quantity;
+        BigDecimal unitPrice;
+        BigDecimal lineTotal;
+        long available;
+        Long orderId;
+        BigDecimal totalAmount;
+        Timestamp createdAt;
+        long held;
+    }
+}
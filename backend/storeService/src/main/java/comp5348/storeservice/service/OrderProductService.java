@@ -9,11 +9,13 @@ import comp5348.storeservice.service.WarehouseService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -26,6 +28,8 @@ import java.util.stream.Collectors;
 public class OrderProductService {
     
     private static final Logger logger = LoggerFactory.getLogger(OrderProductService.class);
+
+    public static final String ORDER_CREATED_MESSAGE = "Order created with payment successfully";
     
     @Autowired
     private ProductService productService;
@@ -60,27 +64,33 @@ public class OrderProductService {
     @Autowired
     private OutboxService outboxService;
 
+    @Autowired
+    private OrderViewService orderViewService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     /**
      * Create order and process payment
      * This is the core method of integration, handling the entire flow from product selection to payment completion
      */
     public OrderDTO createOrderWithPayment(CreateOrderRequest request) {
+        return createOrderWithPayment(request, null);
+    }
+
+    /**
+     * Create order and payment, storing the response under the request's Idempotency-Key in the same transaction
+     */
+    public OrderDTO createOrderWithPayment(CreateOrderRequest request, IdempotencyService.Claim claim) {
         logger.info("Creating order with payment for user: {}", request.getUserId());
         
-        // 0. Estimate total price
-        java.math.BigDecimal estimatedTotal = java.math.BigDecimal.ZERO;
-        for (CreateOrderRequest.OrderItemRequest item : request.getOrderItems()) {
-            comp5348.storeservice.model.Product p = productRepository.findById(item.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found: " + item.getProductId()));
-            int qty = (item.getQuantity() == null || item.getQuantity() <= 0) ? 1 : item.getQuantity();
-            estimatedTotal = estimatedTotal.add(p.getPrice().multiply(java.math.BigDecimal.valueOf(qty)));
-        }
-
-        // 1. Create order (stock will be reserved during order creation)
+        // 1. Create order (every line is priced and reserved during order creation, the total comes back on the DTO)
         OrderDTO order = orderService.createOrder(request);
         
         // 2. Update order status to pending payment
-        orderService.updateOrderStatus(order.getId(), OrderStatus.PENDING_PAYMENT);
+        if (!orderService.transitionStatus(order.getId(), OrderStatus.PENDING_PAYMENT)) {
+            throw new IllegalStateException("Order " + order.getId() + " could not move to PENDING_PAYMENT");
+        }
         
         // 3. Create payment record
         try {
@@ -97,7 +107,8 @@ public class OrderProductService {
             orderService.cancelOrder(order.getId());
             throw new RuntimeException("Failed to create payment: " + e.getMessage());
         }
-        
+
+        idempotencyService.complete(claim, HttpStatus.OK.value(), OrderResponse.success(order, ORDER_CREATED_MESSAGE));
         return order;
     }
     
@@ -138,35 +149,35 @@ public class OrderProductService {
     public OrderWithPaymentDTO getOrderWithPaymentInfo(Long orderId) {
         logger.info("Getting order with payment info for order: {}", orderId);
         
-        OrderDTO order = orderService.getOrderById(orderId)
+        OrderDTO order = orderService.getOrderDetail(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
         
-        // Get payment information
-        Optional<Payment> payment = paymentService.getPaymentByOrderId(orderId);
-        
-        OrderWithPaymentDTO orderWithPayment = new OrderWithPaymentDTO();
-        orderWithPayment.setOrder(order);
-        orderWithPayment.setPayment(payment.orElse(null));
-        
-        return orderWithPayment;
+        return withPayments(List.of(order)).get(0);
     }
     
     /**
-     * Get user's order list (including payment status)
+     * Get user's order list (including payment status), newest first: all orders, or one keyset page when a
+     * cursor or limit is given. Each page costs a fixed number of queries: orders with products, their lines,
+     * then their payments.
      */
-    public List<OrderWithPaymentDTO> getUserOrdersWithPaymentInfo(Long userId) {
+    @Transactional(readOnly = true)
+    public OrderWithPaymentPageDTO getUserOrdersWithPaymentInfo(Long userId, String cursor, Integer limit) {
         logger.info("Getting user orders with payment info for user: {}", userId);
         
-        List<OrderDTO> orders = orderService.getOrdersByUserId(userId);
-        
+        OrderPageDTO page = orderService.listOrders(null, userId, cursor, limit);
+        return new OrderWithPaymentPageDTO(withPayments(page.getItems()), page.getNextCursor(), page.isHasMore());
+    }
+
+    /**
+     * Pair orders with their payments, loaded with one set-based query (from order_view when the read model is enabled)
+     */
+    private List<OrderWithPaymentDTO> withPayments(List<OrderDTO> orders) {
+        List<Long> orderIds = orders.stream().map(OrderDTO::getId).collect(Collectors.toList());
+        Map<Long, Payment> payments = orderViewService.isEnabled()
+                ? orderViewService.findPayments(orderIds)
+                : paymentService.getPaymentsByOrderIds(orderIds);
         return orders.stream()
-                .map(order -> {
-                    Optional<Payment> payment = paymentService.getPaymentByOrderId(order.getId());
-                    OrderWithPaymentDTO orderWithPayment = new OrderWithPaymentDTO();
-                    orderWithPayment.setOrder(order);
-                    orderWithPayment.setPayment(payment.orElse(null));
-                    return orderWithPayment;
-                })
+                .map(order -> new OrderWithPaymentDTO(order, payments.get(order.getId())))
                 .collect(Collectors.toList());
     }
     
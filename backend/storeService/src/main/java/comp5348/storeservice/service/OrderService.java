@@ -2,21 +2,28 @@ package comp5348.storeservice.service;
 
 import comp5348.storeservice.adapter.DeliveryAdapter;
 import comp5348.storeservice.adapter.EmailAdapter;
+import comp5348.storeservice.allocation.Destination;
 import comp5348.storeservice.dto.*;
 import comp5348.storeservice.model.*;
 import comp5348.storeservice.repository.AccountRepository;
+import comp5348.storeservice.repository.OrderLineRepository;
 import comp5348.storeservice.repository.OrderRepository;
 import comp5348.storeservice.repository.ProductRepository;
 import comp5348.storeservice.repository.PaymentOutboxRepository;
+import comp5348.storeservice.utils.BatchLoader;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -26,9 +33,18 @@ public class OrderService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
+    // Statuses a user (or the payment expiry) may cancel from; a lost parcel is cancelled by the delivery webhook
+    private static final Set<OrderStatus> USER_CANCELLABLE = EnumSet.of(OrderStatus.PENDING_STOCK_HOLD,
+            OrderStatus.PLACED, OrderStatus.PENDING_PAYMENT, OrderStatus.PAID, OrderStatus.PROCESSING);
+
+    private static final String PAYMENT_EXPIRED_REASON = "Order cancelled: payment window expired";
+
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderLineRepository orderLineRepository;
+
     @Autowired
     private ProductRepository productRepository;
 
@@ -52,24 +68,110 @@ public class OrderService {
     @Autowired
     private WarehouseService warehouseService;
 
+    @Autowired
+    private PaymentExpiryTracker paymentExpiryTracker;
+
+    @Autowired
+    private OrderPlacementStatement placementStatement;
+
+    @Autowired
+    private OrderViewProjector orderViewProjector;
+
+    @Autowired
+    private OrderViewService orderViewService;
+
+    @Autowired
+    private ProductCatalogCache productCatalog;
+
     /**
-     * Get all orders list
+     * How createOrder writes an order
      */
-    public List<OrderDTO> getAllOrders() {
-        logger.info("Fetching all orders");
-        return orderRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public enum PlacementMode {
+        JPA,        // entity saves plus the configured reservation mode, about ten round-trips (default)
+        STATEMENT   // one chained-CTE statement (OrderPlacementStatement), not available in LEDGER reservation mode
+    }
+
+    @Value("${orders.placement.mode:JPA}")
+    private PlacementMode placementMode;
+
+    @Value("${orders.list.default-page-size:100}")
+    private int listDefaultPageSize;
+
+    @Value("${orders.list.max-page-size:1000}")
+    private int listMaxPageSize;
+
+    @PostConstruct
+    void checkPlacementMode() {
+        if (placementMode == PlacementMode.STATEMENT && !placementStatement.isSupported()) {
+            logger.warn("orders.placement.mode=STATEMENT is not supported with inventory.reservation.mode=LEDGER, using JPA placement");
+        }
     }
 
     /**
-     * Get orders list by user ID, sorted by creation date descending (newest first)
+     * One keyset page of orders, newest first by (created_at, id); status and userId are optional filters.
+     * Each page is one query for the orders with their products and one for their lines, or a single query
+     * on order_view when the read model is enabled.
      */
-    public List<OrderDTO> getOrdersByUserId(Long userId) {
-        logger.info("Fetching orders for user: {}", userId);
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(userId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public OrderPageDTO getOrderPage(OrderStatus status, Long userId, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? listDefaultPageSize : Math.min(limit, listMaxPageSize);
+        KeysetCursor after = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+
+        if (orderViewService.isEnabled()) {
+            List<OrderView> views = orderViewService.findPage(status, userId, after, pageSize + 1);
+            boolean hasMore = views.size() > pageSize;
+            if (hasMore) {
+                views = views.subList(0, pageSize);
+            }
+            OrderView last = views.isEmpty() ? null : views.get(views.size() - 1);
+            String nextCursor = hasMore ? new KeysetCursor(last.getCreatedAt(), last.getOrderId()).encode() : null;
+            return new OrderPageDTO(views.stream().map(orderViewService::toOrderDTO).collect(Collectors.toList()),
+                    nextCursor, hasMore);
+        }
+
+        // One extra row tells whether there is a next page without a count query
+        List<Order> rows = orderRepository.findPage(status, userId, after, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        Order last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+        String nextCursor = hasMore ? new KeysetCursor(last.getCreatedAt(), last.getId()).encode() : null;
+        return new OrderPageDTO(convertToDTOs(rows), nextCursor, hasMore);
+    }
+
+    /**
+     * List-shaped endpoints: one page when a cursor or limit is given; otherwise every matching order,
+     * newest first, as these endpoints always returned (read in max-page-size pages)
+     */
+    @Transactional(readOnly = true)
+    public OrderPageDTO listOrders(OrderStatus status, Long userId, String cursor, Integer limit) {
+        if (limit != null || (cursor != null && !cursor.isBlank())) {
+            return getOrderPage(status, userId, cursor, limit);
+        }
+        List<OrderDTO> orders = new ArrayList<>();
+        String next = null;
+        do {
+            OrderPageDTO page = getOrderPage(status, userId, next, listMaxPageSize);
+            orders.addAll(page.getItems());
+            next = page.getNextCursor();
+        } while (next != null);
+        return new OrderPageDTO(orders, null, false);
+    }
+
+    /**
+     * Order details for display: from order_view when the read model is enabled, from the write side for
+     * orders it does not have yet. Decisions that need the current status use getOrderById.
+     */
+    @Transactional(readOnly = true)
+    public Optional<OrderDTO> getOrderDetail(Long orderId) {
+        if (orderViewService.isEnabled()) {
+            Optional<OrderDTO> view = orderViewService.findOrder(orderId);
+            if (view.isPresent()) {
+                return view;
+            }
+        }
+        return getOrderById(orderId);
     }
 
     /**
@@ -83,72 +185,88 @@ public class OrderService {
     }
 
     /**
-     * Get order list by order status
+     * Create a new order with one or more lines. All lines are reserved in this one transaction, so either the
+     * whole cart is held or nothing is; the order gets a single payment event whatever its number of lines.
      */
-    public List<OrderDTO> getOrdersByStatus(OrderStatus status) {
-        logger.info("Fetching orders by status: {}", status);
-        return orderRepository.findByStatus(status).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Transactional // Ensure entire method is within one transaction
+    public OrderDTO createOrder(CreateOrderRequest request) {
+        return createOrder(request, placementMode);
     }
 
     /**
-     * Create new order (adapted for single product model)
+     * Create a new order with the given placement mode (the benchmark compares both)
      */
-    @Transactional // Ensure entire method is within one transaction
-    public OrderDTO createOrder(CreateOrderRequest request) {
+    @Transactional
+    public OrderDTO createOrder(CreateOrderRequest request, PlacementMode mode) {
         logger.info("Creating new order for user: {}", request.getUserId());
 
-        // --- Validation logic (unchanged) ---
-        if (request.getOrderItems() == null || request.getOrderItems().size() != 1) {
-            throw new IllegalArgumentException("Order must contain exactly one item.");
-        }
-        CreateOrderRequest.OrderItemRequest itemRequest = request.getOrderItems().get(0);
-        Long productId = itemRequest.getProductId();
-        Integer quantity = itemRequest.getQuantity();
-        if (quantity == null || quantity <= 0) {
-            throw new IllegalArgumentException("Invalid quantity for product: " + productId);
+        Map<Long, Integer> quantities = quantitiesOf(request);
+        if (mode == PlacementMode.STATEMENT && placementStatement.isSupported()) {
+            OrderDTO placed = placementStatement.place(request.getUserId(), quantities);
+            orderViewProjector.markDirty(placed.getId());
+            return placed;
         }
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
-        int totalStock = warehouseService.getProductQuantity(productId);
-        if (totalStock < quantity) {
-            throw new RuntimeException("Insufficient stock for product: " + product.getName());
+
+        // Name and price come from the catalog cache; the lines only need a reference to the product row
+        Map<Long, CatalogProduct> products = productCatalog.getAll(quantities.keySet());
+        for (Long productId : quantities.keySet()) {
+            if (!products.containsKey(productId)) {
+                throw new RuntimeException("Product not found: " + productId);
+            }
         }
 
-        // --- Core modification part ---
+        List<OrderLine> lines = new ArrayList<>(quantities.size());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            CatalogProduct product = products.get(entry.getKey());
+            OrderLine line = new OrderLine();
+            line.setProduct(productRepository.getReferenceById(product.getId()));
+            line.setQuantity(entry.getValue());
+            line.setUnitPrice(product.getPrice());
+            line.setLineTotal(product.getPrice().multiply(BigDecimal.valueOf(entry.getValue())));
+            lines.add(line);
+            totalAmount = totalAmount.add(line.getLineTotal());
+        }
 
         // 1. First create a temporary Order object and save it to get the database-generated ID
+        OrderLine firstLine = lines.get(0);
         Order order = new Order();
         order.setUserId(request.getUserId());
         order.setStatus(OrderStatus.PENDING_STOCK_HOLD); // Use a temporary status
-        order.setProduct(product);
-        order.setQuantity(quantity);
-        order.setUnitPrice(product.getPrice());
-        order.setTotalAmount(product.getPrice().multiply(BigDecimal.valueOf(quantity)));
+        order.setProduct(firstLine.getProduct());
+        order.setQuantity(firstLine.getQuantity());
+        order.setUnitPrice(firstLine.getUnitPrice());
+        order.setTotalAmount(totalAmount);
         Order savedOrder = orderRepository.saveAndFlush(order); // Use saveAndFlush to ensure immediate ID acquisition
         Long orderId = savedOrder.getId();
-        logger.info("[ORDER] Order temporary saved with id: {}, status: PENDING_STOCK_HOLD", orderId);
-
-        // 2. Call inventory reservation service, passing the real orderId
-        logger.info("[ORDER] Calling warehouseService.getAndUpdateAvailableWarehouse for orderId: {}", orderId);
-        var whDTO = warehouseService.getAndUpdateAvailableWarehouse(productId, quantity, orderId);
-        if (whDTO == null || whDTO.getInventoryTransactionIds() == null || whDTO.getInventoryTransactionIds().isEmpty()) {
-            // If reservation fails, the entire transaction will rollback, and the temporary order saved above will also be revoked
-            logger.error("[ORDER] Failed to hold stock for orderId: {}", orderId);
-            throw new RuntimeException("Failed to hold stock, maybe it was taken by another order. Product: " + product.getName());
+        for (OrderLine line : lines) {
+            line.setOrderId(orderId);
         }
-        logger.info("[ORDER] Stock hold successful for orderId: {}, txIds: {}", orderId, whDTO.getInventoryTransactionIds());
-
-        // 3. Convert transaction ID list to string and update order final status
-        String inventoryTxIds = whDTO.getInventoryTransactionIds().stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining(","));
+        orderLineRepository.saveAll(lines);
+        logger.info("[ORDER] Order temporary saved with id: {}, {} lines, status: PENDING_STOCK_HOLD", orderId, lines.size());
+
+        // 2. Reserve every line, passing the real orderId. Products go in id order so two carts sharing
+        // products take their stock rows in the same order; a short line throws and rolls back every hold
+        Destination destination = request.getDeliveryLatitude() != null && request.getDeliveryLongitude() != null
+                ? new Destination(request.getDeliveryLatitude(), request.getDeliveryLongitude())
+                : null;
+        List<Long> inventoryTxIds = new ArrayList<>();
+        for (Long productId : new TreeSet<>(quantities.keySet())) {
+            int quantity = quantities.get(productId);
+            var whDTO = warehouseService.getAndUpdateAvailableWarehouse(productId, quantity, orderId, destination);
+            if (whDTO == null || whDTO.getInventoryTransactionIds() == null || whDTO.getInventoryTransactionIds().isEmpty()) {
+                // If reservation fails, the entire transaction will rollback, and the temporary order saved above will also be revoked
+                logger.error("[ORDER] Failed to hold stock of product {} for orderId: {}", productId, orderId);
+                throw new RuntimeException("Insufficient stock for product: " + products.get(productId).getName());
+            }
+            inventoryTxIds.addAll(whDTO.getInventoryTransactionIds());
+        }
+        logger.info("[ORDER] Stock hold successful for orderId: {}, txIds: {}", orderId, inventoryTxIds);
 
-        savedOrder.setInventoryTransactionIds(inventoryTxIds);
+        // 3. Update order final status (the HOLD rows carry the order_id, nothing to store on the order)
         savedOrder.setStatus(OrderStatus.PLACED); // Update to final success status
 
-        // Save again to update status and transaction IDs
+        // Save again to update status
         Order finalOrder = orderRepository.save(savedOrder);
         logger.info("[ORDER] Order finalized with id: {}, status: PLACED, inventoryTxIds: {}", finalOrder.getId(), inventoryTxIds);
 
@@ -176,44 +294,139 @@ public class OrderService {
             logger.error("Failed to save event to outbox for orderId: {}", finalOrder.getId(), e);
             throw new RuntimeException("Failed to create outbox event, rolling back transaction.", e);
         }
+        orderViewProjector.markDirty(finalOrder.getId());
+
+        return convertToDTO(finalOrder, lines);
+    }
 
-        return convertToDTO(finalOrder);
+    /**
+     * Validate the items of a request and merge them into units per product, in request order
+     * (the same product listed twice becomes one line)
+     */
+    public static Map<Long, Integer> quantitiesOf(CreateOrderRequest request) {
+        if (request.getOrderItems() == null || request.getOrderItems().isEmpty()) {
+            throw new IllegalArgumentException("Order must contain at least one item.");
+        }
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CreateOrderRequest.OrderItemRequest itemRequest : request.getOrderItems()) {
+            Long productId = itemRequest.getProductId();
+            Integer quantity = itemRequest.getQuantity();
+            if (productId == null) {
+                throw new IllegalArgumentException("Product id is required for every order item.");
+            }
+            if (quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Invalid quantity for product: " + productId);
+            }
+            quantities.merge(productId, quantity, Integer::sum);
+        }
+        return quantities;
     }
 
     /**
-     * Update order status
+     * Update order status. Only moves allowed by the OrderStatus transition table happen; asking for the
+     * status the order is already in is a no-op.
      */
     public OrderDTO updateOrderStatus(Long orderId, OrderStatus status) {
         logger.info("Updating order status: orderId={}, status={}", orderId, status);
 
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
-
-        order.setStatus(status);
-        Order savedOrder = orderRepository.save(order);
+        if (!transitionStatus(orderId, status)) {
+            OrderStatus current = orderRepository.findStatusById(orderId)
+                    .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+            if (current != status) {
+                throw new IllegalStateException("Cannot move order " + orderId + " from " + current.name()
+                        + " to " + status.name());
+            }
+        }
 
         logger.info("Order status updated successfully");
-        return convertToDTO(savedOrder);
+        OrderDTO dto = getOrderById(orderId).orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+        dto.setStatus(status.name()); // an order already in the persistence context was loaded before the update
+        return dto;
+    }
+
+    /**
+     * Move an order to a status with one guarded update (no entity load), if the transition table allows it
+     * from the status the order is in now. False when it does not exist or cannot move there (a concurrent
+     * update got there first, or the move is illegal).
+     */
+    public boolean transitionStatus(Long orderId, OrderStatus status) {
+        return transitionStatus(orderId, OrderStatus.allowedFrom(status), status);
+    }
+
+    private boolean transitionStatus(Long orderId, Set<OrderStatus> from, OrderStatus status) {
+        if (from.isEmpty() || orderRepository.updateStatusIfIn(orderId, from, status, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        if (status == OrderStatus.PENDING_PAYMENT) {
+            orderRepository.findCreatedAtById(orderId)
+                    .ifPresent(createdAt -> paymentExpiryTracker.scheduleAfterCommit(orderId, createdAt));
+        } else {
+            paymentExpiryTracker.cancelAfterCommit(orderId);
+        }
+        orderViewProjector.markDirty(orderId);
+        return true;
     }
 
     /**
-     * Cancel order (logic mostly unchanged, excellent)
+     * Cancel order: moves the status, then cancels the delivery and releases the stock held for the order
+     * (found through inventory_transactions.order_id), and refunds or fails the payment
      */
     public OrderDTO cancelOrder(Long orderId) {
-        // ... Your cancel order logic hardly needs modification because it already works based on inventoryTransactionIds in the Order entity.
-        // I only made minor adjustments
         logger.info("Cancelling order: {}", orderId);
 
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
-        // Cannot cancel if already picked up, in transit, delivered, or cancelled
-        if (order.getStatus() == OrderStatus.PICKED_UP ||
-            order.getStatus() == OrderStatus.IN_TRANSIT ||
-            order.getStatus() == OrderStatus.DELIVERED ||
-            order.getStatus() == OrderStatus.CANCELLED) {
-            throw new RuntimeException("Cannot cancel order with status: " + order.getStatus());
+        // Cannot cancel if already picked up, in transit, delivered, or cancelled. The status moves first, so a
+        // concurrent cancel or delivery update waits on the row and then finds it no longer cancellable
+        if (!transitionStatus(orderId, USER_CANCELLABLE, OrderStatus.CANCELLED)) {
+            OrderStatus current = orderRepository.findStatusById(orderId).orElse(order.getStatus());
+            throw new RuntimeException("Cannot cancel order with status: " + current);
+        }
+        return releaseCancelledOrder(order, "Order cancelled by user");
+    }
+
+    /**
+     * Cancel an order whose payment window has passed. Nothing happens if it was paid or cancelled in the
+     * meantime: the guarded status update only matches a PENDING_PAYMENT order.
+     */
+    public boolean cancelExpiredOrder(Long orderId) {
+        return !cancelExpiredOrders(List.of(orderId)).isEmpty();
+    }
+
+    /**
+     * Cancel a batch of orders whose payment window has passed, in one transaction. Each status moves with
+     * the guarded update (orders paid or cancelled meanwhile are skipped), then the stock held by all of the
+     * cancelled orders is released with one set-based call; if that fails, the whole batch rolls back.
+     * An unpaid order has no delivery to cancel.
+     * @return the ids of the orders that were cancelled
+     */
+    public List<Long> cancelExpiredOrders(Collection<Long> orderIds) {
+        List<Long> cancelled = new ArrayList<>();
+        for (Long orderId : new TreeSet<>(orderIds)) {
+            if (transitionStatus(orderId, EnumSet.of(OrderStatus.PENDING_PAYMENT), OrderStatus.CANCELLED)) {
+                cancelled.add(orderId);
+            }
         }
+        if (cancelled.isEmpty()) {
+            return cancelled;
+        }
+        // Not caught: a failed release has already marked the transaction rollback-only, so the batch has to fail
+        // as a whole (UnpaidOrderCanceller then retries the orders one by one)
+        warehouseService.releaseHoldsForOrders(cancelled);
+        for (Order order : orderRepository.findAllById(cancelled)) {
+            cancelPayment(order, PAYMENT_EXPIRED_REASON);
+            notifyCancelled(order, "Payment not received in time");
+        }
+        return cancelled;
+    }
+
+    /**
+     * Side effects of a cancellation whose status change has been made: delivery, stock, payment and email.
+     * Throws (rolling the status back with it) when the delivery can no longer be cancelled.
+     */
+    private OrderDTO releaseCancelledOrder(Order order, String reason) {
+        Long orderId = order.getId();
 
         // Only try to cancel delivery if one exists (order has been paid and delivery created)
         if (order.getDeliveryId() != null) {
@@ -234,25 +447,25 @@ public class OrderService {
 
         // Rollback inventory
         try {
-            if (order.getInventoryTransactionIds() != null && !order.getInventoryTransactionIds().isEmpty()) {
-                List<Long> txIds = Arrays.stream(order.getInventoryTransactionIds().split(","))
-                        .filter(s -> s != null && !s.trim().isEmpty())
-                        .map(Long::valueOf)
-                        .collect(Collectors.toList());
-                if (!txIds.isEmpty()) {
-                    UnholdProductRequest unhold = new UnholdProductRequest();
-                    unhold.setInventoryTransactionIds(txIds);
-                    warehouseService.unholdProduct(unhold);
-                }
-            }
+            warehouseService.unholdOrder(order.getId());
         } catch (Exception e) {
             logger.error("CRITICAL: Unhold inventory failed for order {}: {}", orderId, e.getMessage());
         }
 
-        order.setStatus(OrderStatus.CANCELLED);
-        Order savedOrder = orderRepository.save(order);
+        cancelPayment(order, reason);
+        notifyCancelled(order, "User cancelled");
+
+        logger.info("Order cancelled successfully");
+        // The managed entity still carries the status it was loaded with
+        OrderDTO dto = convertToDTO(order);
+        dto.setStatus(OrderStatus.CANCELLED.name());
+        return dto;
+    }
 
-        // Handle payment cancellation
+    /**
+     * Refund a successful payment, or mark a pending one FAILED so it is not retried
+     */
+    private void cancelPayment(Order order, String reason) {
         try {
             Optional<Payment> paymentOpt = paymentService.getPaymentByOrderId(order.getId());
             if (paymentOpt.isPresent()) {
@@ -260,11 +473,11 @@ public class OrderService {
                 
                 if (payment.getStatus() == PaymentStatus.SUCCESS) {
                     // If payment was successful, process refund
-                    paymentService.refundPayment(order.getId(), "Order cancelled by user");
+                    paymentService.refundPayment(order.getId(), reason);
                 } else if (payment.getStatus() == PaymentStatus.PENDING) {
                     // If payment is still pending, mark as FAILED (will not be retried)
                     payment.setStatus(PaymentStatus.FAILED);
-                    payment.setErrorMessage("Order cancelled by user");
+                    payment.setErrorMessage(reason);
                     paymentService.updatePayment(payment);
                     logger.info("Payment marked as FAILED due to order cancellation: orderId={}", order.getId());
                 }
@@ -272,19 +485,17 @@ public class OrderService {
         } catch (Exception e) {
             logger.warn("Payment cancellation skipped or failed for order {}: {}", order.getId(), e.getMessage());
         }
+    }
 
-        // Email notification
+    private void notifyCancelled(Order order, String reason) {
         try {
             accountRepository.findById(order.getUserId()).ifPresent(acc -> {
                 String email = acc.getEmail();
                 if (email != null && !email.isEmpty()) {
-                    emailAdapter.sendOrderCancelled(email, String.valueOf(order.getId()), "User cancelled");
+                    emailAdapter.sendOrderCancelled(email, String.valueOf(order.getId()), reason);
                 }
             });
         } catch (Exception ignore) {}
-
-        logger.info("Order cancelled successfully");
-        return convertToDTO(savedOrder);
     }
 
     @Transactional
@@ -315,21 +526,29 @@ public class OrderService {
         // This is the core logic of the "anti-corruption layer"
         String incomingStatus = notification.getStatus();
         OrderStatus newStatus = translateDeliveryStatus(incomingStatus);
+        boolean changed = newStatus != null && order.getStatus() != newStatus;
+
+        // Late or duplicate webhooks (IN_TRANSIT after DELIVERED, anything after a cancel) are dropped
+        if (changed && !transitionStatus(orderId, newStatus)) {
+            logger.warn("Ignoring delivery status {} for orderId={}: order cannot move from {} to {}",
+                    incomingStatus, orderId, order.getStatus(), newStatus);
+            return;
+        }
+        orderViewProjector.recordDeliveryStatusAfterCommit(orderId, incomingStatus);
 
         // If new status is not null and differs from current status, update
-        if (newStatus != null && order.getStatus() != newStatus) {
-            order.setStatus(newStatus);
-            orderRepository.save(order);
+        if (changed) {
             logger.info("Order status updated to {} for orderId={}", newStatus, orderId);
 
             // Record OUT transaction when order is DELIVERED or LOST
             if (newStatus == OrderStatus.DELIVERED || "LOST".equalsIgnoreCase(incomingStatus)) {
                 try {
-                    boolean outRecorded = warehouseService.recordOutTransaction(
-                            order.getProduct().getId(), 
-                            order.getQuantity(), 
-                            orderId
-                    );
+                    Map<Long, Integer> quantities = new LinkedHashMap<>();
+                    List<OrderLine> lines = orderLineRepository.findByOrderIdOrderById(orderId);
+                    for (OrderLine line : lines.isEmpty() ? List.of(legacyLine(order)) : lines) {
+                        quantities.merge(line.getProduct().getId(), line.getQuantity(), Integer::sum);
+                    }
+                    boolean outRecorded = warehouseService.recordOutForOrder(orderId, quantities);
                     if (outRecorded) {
                         logger.info("OUT transaction recorded for orderId={}, status={}", orderId, newStatus);
                     } else {
@@ -430,9 +649,62 @@ public class OrderService {
     }
 
     /**
-     * Convert entity to DTO (adapted for single product model)
+     * Lines of an order; orders placed before order_lines existed get one line built from their product columns
+     */
+    private List<OrderLine> linesOf(Order order) {
+        List<OrderLine> lines = orderLineRepository.findByOrderIdWithProduct(order.getId());
+        return lines.isEmpty() ? List.of(legacyLine(order)) : lines;
+    }
+
+    private static OrderLine legacyLine(Order order) {
+        OrderLine line = new OrderLine();
+        line.setOrderId(order.getId());
+        line.setProduct(order.getProduct());
+        line.setQuantity(order.getQuantity());
+        line.setUnitPrice(order.getUnitPrice());
+        line.setLineTotal(order.getUnitPrice() == null || order.getQuantity() == null ? null
+                : order.getUnitPrice().multiply(BigDecimal.valueOf(order.getQuantity())));
+        return line;
+    }
+
+    /**
+     * Convert a list of orders, loading the lines of all of them with one query
+     */
+    private List<OrderDTO> convertToDTOs(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, List<OrderLine>> linesByOrder = BatchLoader.loadGroupedByKeys(
+                orders.stream().map(Order::getId).collect(Collectors.toList()),
+                orderLineRepository::findByOrderIdInWithProduct, OrderLine::getOrderId);
+        return orders.stream()
+                .map(order -> convertToDTO(order, linesByOrder.getOrDefault(order.getId(), List.of(legacyLine(order)))))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Name of a product that may be an uninitialized reference: taken from the catalog cache instead of
+     * loading the row
      */
+    private String productName(Product product) {
+        if (product == null) {
+            return null;
+        }
+        if (Hibernate.isInitialized(product)) {
+            return product.getName();
+        }
+        String name = productCatalog.getName(product.getId());
+        return name != null ? name : product.getName();
+    }
+
     private OrderDTO convertToDTO(Order order) {
+        return convertToDTO(order, linesOf(order));
+    }
+
+    /**
+     * Convert entity to DTO. The single-product fields describe the first line, lines has all of them
+     */
+    private OrderDTO convertToDTO(Order order, List<OrderLine> lines) {
         OrderDTO dto = new OrderDTO();
         dto.setId(order.getId());
         dto.setUserId(order.getUserId());
@@ -449,11 +721,18 @@ public class OrderService {
         // Safely get ID and Name from associated Product entity
         if (order.getProduct() != null) {
             dto.setProductId(order.getProduct().getId());
-            dto.setProductName(order.getProduct().getName());
+            dto.setProductName(productName(order.getProduct()));
         }
 
+        dto.setLines(lines.stream()
+                .map(line -> new OrderLineDTO(
+                        line.getProduct() != null ? line.getProduct().getId() : null,
+                        productName(line.getProduct()),
+                        line.getQuantity(), line.getUnitPrice(), line.getLineTotal()))
+                .collect(Collectors.toList()));
+
         dto.setDeliveryId(order.getDeliveryId());
 
         return dto;
     }
-}
\ No newline at end of file
+}
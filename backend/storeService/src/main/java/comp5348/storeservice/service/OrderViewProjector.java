@@ -0,0 +1,223 @@
+package comp5348.storeservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static comp5348.storeservice.utils.TransactionCallbacks.afterCommit;
+
+/**
+ * Keeps order_view in step with the write side.
+ *
+ * Every code path that changes an order, its payment or its delivery marks the order dirty: a row in
+ * order_view_dirty written by the same transaction, so the mark commits (or rolls back) with the change and
+ * survives a crash. A scheduled drain refreshes the marked orders in batches with one upsert that re-reads
+ * orders, order_lines, products, payments and account. A row is always rebuilt from committed state, so events
+ * arriving twice or out of order cannot leave it wrong, only briefly stale.
+ *
+ * When a batch fails its orders are refreshed one by one; an order that keeps failing is dropped from the queue
+ * after orders.read-model.max-attempts and logged, so it cannot hold up the others (replay or rebuild fix it).
+ *
+ * Nothing is queued while orders.read-model.enabled is false; rebuild() after turning it on.
+ *
+ * delivery_status is derived from the order status, except that the raw webhook status (LOST, RECEIVED) is kept
+ * while it still agrees with the order. rebuild() and replay() re-project from the write side for recovery.
+ */
+@Component
+public class OrderViewProjector {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderViewProjector.class);
+
+    private static final String REFRESH_SQL = "insert into order_view (order_id, user_id, user_email, status, " +
+            "total_amount, product_id, product_name, quantity, unit_price, line_count, lines_json, payment_id, " +
+            "payment_status, payment_amount, bank_txn_id, payment_error, payment_created_at, payment_updated_at, " +
+            "payment_date, delivery_id, delivery_status, created_at, updated_at, projected_at) " +
+            "select o.id, o.user_id, a.email, o.status, o.total_amount, o.product_id, p.name, o.quantity, o.unit_price, " +
+            "greatest(l.line_count, 1), l.lines_json, pay.id, pay.status, pay.amount, pay.bank_txn_id, pay.error_message, " +
+            "pay.created_at, pay.updated_at, pay.payment_date, o.delivery_id, " +
+            "case when o.delivery_id is null then null " +
+            "when o.status = 'PICKED_UP' then 'PICKED_UP' " +
+            "when o.status = 'IN_TRANSIT' then 'DELIVERING' " +
+            "when o.status = 'DELIVERED' then 'DELIVERED' " +
+            "when o.status in ('CANCELLED', 'CANCELLED_SYSTEM') then 'CANCELLED' " +
+            "else 'CREATED' end, " +
+            "o.created_at, o.updated_at, localtimestamp " +
+            "from orders o " +
+            "left join products p on p.id = o.product_id " +
+            "left join account a on a.id = o.user_id " +
+            "left join payments pay on pay.order_id = o.id " +
+            "left join lateral (select count(*) as line_count, cast(json_agg(json_build_object(" +
+            "'productId', ol.product_id, 'productName', lp.name, 'quantity', ol.quantity, " +
+            "'unitPrice', ol.unit_price, 'lineTotal', ol.line_total) order by ol.id) as text) as lines_json " +
+            "from order_lines ol join products lp on lp.id = ol.product_id where ol.order_id = o.id) l on true " +
+            "where o.id = any(?) " +
+            "on conflict (order_id) do update set user_id = excluded.user_id, user_email = excluded.user_email, " +
+            "status = excluded.status, total_amount = excluded.total_amount, product_id = excluded.product_id, " +
+            "product_name = excluded.product_name, quantity = excluded.quantity, unit_price = excluded.unit_price, " +
+            "line_count = excluded.line_count, lines_json = excluded.lines_json, payment_id = excluded.payment_id, " +
+            "payment_status = excluded.payment_status, payment_amount = excluded.payment_amount, " +
+            "bank_txn_id = excluded.bank_txn_id, payment_error = excluded.payment_error, " +
+            "payment_created_at = excluded.payment_created_at, payment_updated_at = excluded.payment_updated_at, " +
+            "payment_date = excluded.payment_date, delivery_id = excluded.delivery_id, " +
+            // The webhook's own wording survives a refresh as long as it means the same order status
+            "delivery_status = case " +
+            "when excluded.delivery_status = 'CANCELLED' and order_view.delivery_status = 'LOST' then 'LOST' " +
+            "when excluded.delivery_status = 'DELIVERED' and order_view.delivery_status = 'RECEIVED' then 'RECEIVED' " +
+            "else excluded.delivery_status end, " +
+            "created_at = excluded.created_at, updated_at = excluded.updated_at, projected_at = excluded.projected_at";
+
+    private static final String MARK_SQL = "insert into order_view_dirty (order_id, attempts, created_at) " +
+            "values (?, 0, localtimestamp)";
+
+    private static final String REPLAY_IDS_SQL = "select order_id from payment_outbox where created_at >= ? " +
+            "union select id from orders where updated_at >= ? " +
+            "union select order_id from payments where updated_at >= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${orders.read-model.enabled:false}")
+    private boolean enabled;
+
+    @Value("${orders.read-model.batch-size:500}")
+    private int batchSize;
+
+    @Value("${orders.read-model.max-attempts:5}")
+    private int maxAttempts;
+
+    /**
+     * Queue a refresh of the order's view row with the current transaction: the drain sees it once the
+     * transaction commits, and never if it rolls back
+     */
+    public void markDirty(Long orderId) {
+        if (!enabled || orderId == null) return;
+        jdbcTemplate.update(MARK_SQL, orderId);
+    }
+
+    /**
+     * Keep the status DeliveryService reported, then refresh the rest of the row
+     */
+    public void recordDeliveryStatusAfterCommit(Long orderId, String deliveryStatus) {
+        if (!enabled || orderId == null) return;
+        afterCommit(() -> {
+            if (deliveryStatus != null) {
+                jdbcTemplate.update("update order_view set delivery_status = ? where order_id = ?",
+                        deliveryStatus.toUpperCase(), orderId);
+            }
+        });
+        markDirty(orderId);
+    }
+
+    public long getPendingCount() {
+        return jdbcTemplate.queryForObject("select count(*) from order_view_dirty", Long.class);
+    }
+
+    /**
+     * Refresh every queued order, batchSize queue rows per statement. A failed batch is retried one order at a
+     * time; the drain stops after such a batch and carries on at the next run.
+     */
+    @Scheduled(fixedDelayString = "${orders.read-model.refresh-interval-ms:500}")
+    public void drain() {
+        if (!enabled) return;
+        while (true) {
+            List<long[]> rows = jdbcTemplate.query("select id, order_id from order_view_dirty order by id limit ?",
+                    (rs, rowNum) -> new long[]{rs.getLong("id"), rs.getLong("order_id")}, batchSize);
+            if (rows.isEmpty()) return;
+
+            // Queue row ids per order, orders in queue order
+            Map<Long, List<Long>> rowsByOrder = new LinkedHashMap<>();
+            for (long[] row : rows) {
+                rowsByOrder.computeIfAbsent(row[1], id -> new ArrayList<>()).add(row[0]);
+            }
+            try {
+                refresh(new ArrayList<>(rowsByOrder.keySet()));
+                dequeue(rowsByOrder.values().stream().flatMap(List::stream).toList());
+            } catch (Exception e) {
+                logger.warn("[ORDER VIEW] Refresh of {} orders failed ({}), retrying one by one",
+                        rowsByOrder.size(), e.getMessage());
+                rowsByOrder.forEach(this::refreshOne);
+                return;
+            }
+            if (rows.size() < batchSize) return;
+        }
+    }
+
+    private void refreshOne(Long orderId, List<Long> rowIds) {
+        try {
+            refresh(List.of(orderId));
+            dequeue(rowIds);
+        } catch (Exception e) {
+            jdbcTemplate.update("update order_view_dirty set attempts = attempts + 1 where id = any(?)", ps ->
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", rowIds.toArray(new Long[0]))));
+            Integer attempts = jdbcTemplate.queryForObject(
+                    "select coalesce(max(attempts), 0) from order_view_dirty where order_id = ?", Integer.class, orderId);
+            if (attempts != null && attempts >= maxAttempts) {
+                dequeue(rowIds);
+                logger.error("[ORDER VIEW] Giving up on order {} after {} failed refreshes, replay or rebuild to fix: {}",
+                        orderId, attempts, e.getMessage(), e);
+            } else {
+                logger.warn("[ORDER VIEW] Refresh of order {} failed (attempt {}): {}", orderId, attempts, e.getMessage());
+            }
+        }
+    }
+
+    private void dequeue(List<Long> rowIds) {
+        jdbcTemplate.update("delete from order_view_dirty where id = any(?)", ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint", rowIds.toArray(new Long[0]))));
+    }
+
+    /**
+     * Re-project the given orders now
+     * @return rows written
+     */
+    public int refresh(List<Long> orderIds) {
+        if (orderIds.isEmpty()) return 0;
+        return jdbcTemplate.update(REFRESH_SQL, ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint", orderIds.toArray(new Long[0]))));
+    }
+
+    /**
+     * Re-project every order, walking orders by id in batches
+     * @return orders projected
+     */
+    public int rebuild() {
+        logger.info("[ORDER VIEW] Rebuilding order_view from the write side");
+        long lastId = 0;
+        int total = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "select id from orders where id > ? order by id limit ?", Long.class, lastId, batchSize);
+            if (ids.isEmpty()) break;
+            total += refresh(ids);
+            lastId = ids.get(ids.size() - 1);
+        }
+        logger.info("[ORDER VIEW] Rebuild finished: {} orders projected", total);
+        return total;
+    }
+
+    /**
+     * Re-project the orders touched since the given time: outbox events, order changes and payment changes
+     * @return orders projected
+     */
+    public int replay(LocalDateTime since) {
+        Timestamp from = Timestamp.valueOf(since);
+        List<Long> ids = jdbcTemplate.queryForList(REPLAY_IDS_SQL, Long.class, from, from, from);
+        int total = 0;
+        for (int start = 0; start < ids.size(); start += batchSize) {
+            total += refresh(ids.subList(start, Math.min(start + batchSize, ids.size())));
+        }
+        logger.info("[ORDER VIEW] Replayed {} orders changed since {}", total, since);
+        return total;
+    }
+}
@@ -0,0 +1,128 @@
+package comp5348.storeservice.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import comp5348.storeservice.dto.KeysetCursor;
+import comp5348.storeservice.dto.OrderDTO;
+import comp5348.storeservice.dto.OrderLineDTO;
+import comp5348.storeservice.model.OrderStatus;
+import comp5348.storeservice.model.OrderView;
+import comp5348.storeservice.model.Payment;
+import comp5348.storeservice.repository.OrderViewRepository;
+import comp5348.storeservice.utils.BatchLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Order reads served from order_view (orders.read-model.enabled=true). The view lags the write side by the
+ * projector's refresh interval; callers fall back to the write side for orders it does not have yet.
+ */
+@Service
+@Transactional(readOnly = true)
+public class OrderViewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderViewService.class);
+
+    @Autowired
+    private OrderViewRepository orderViewRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Value("${orders.read-model.enabled:false}")
+    private boolean enabled;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<OrderView> findPage(OrderStatus status, Long userId, KeysetCursor after, int maxRows) {
+        return orderViewRepository.findPage(status, userId, after, maxRows);
+    }
+
+    public Optional<OrderDTO> findOrder(Long orderId) {
+        return orderViewRepository.findById(orderId).map(this::toOrderDTO);
+    }
+
+    /**
+     * Payments of the given orders keyed by orderId, as recorded in the view; orders not projected yet are
+     * looked up in payments. Orders without a payment are absent.
+     */
+    public Map<Long, Payment> findPayments(Collection<Long> orderIds) {
+        Map<Long, OrderView> views = BatchLoader.loadByKeys(orderIds, orderViewRepository::findByOrderIdIn, OrderView::getOrderId);
+        Map<Long, Payment> payments = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long orderId : orderIds) {
+            OrderView view = views.get(orderId);
+            if (view == null) {
+                missing.add(orderId);
+            } else if (view.getPaymentId() != null) {
+                payments.put(orderId, toPayment(view));
+            }
+        }
+        if (!missing.isEmpty()) {
+            payments.putAll(paymentService.getPaymentsByOrderIds(missing));
+        }
+        return payments;
+    }
+
+    public OrderDTO toOrderDTO(OrderView view) {
+        OrderDTO dto = new OrderDTO();
+        dto.setId(view.getOrderId());
+        dto.setUserId(view.getUserId());
+        dto.setStatus(view.getStatus().name());
+        dto.setTotalAmount(view.getTotalAmount());
+        dto.setCreatedAt(view.getCreatedAt());
+        dto.setUpdatedAt(view.getUpdatedAt());
+        dto.setProductId(view.getProductId());
+        dto.setProductName(view.getProductName());
+        dto.setQuantity(view.getQuantity());
+        dto.setUnitPrice(view.getUnitPrice());
+        dto.setDeliveryId(view.getDeliveryId());
+        dto.setLines(linesOf(view));
+        return dto;
+    }
+
+    private List<OrderLineDTO> linesOf(OrderView view) {
+        if (view.getLinesJson() != null) {
+            try {
+                return objectMapper.readValue(view.getLinesJson(), new TypeReference<List<OrderLineDTO>>() {});
+            } catch (Exception e) {
+                logger.warn("[ORDER VIEW] Unreadable lines for order {}: {}", view.getOrderId(), e.getMessage());
+            }
+        }
+        // Orders placed before order_lines existed: one line from the first-product columns
+        BigDecimal lineTotal = view.getUnitPrice() == null || view.getQuantity() == null ? null
+                : view.getUnitPrice().multiply(BigDecimal.valueOf(view.getQuantity()));
+        return List.of(new OrderLineDTO(view.getProductId(), view.getProductName(), view.getQuantity(),
+                view.getUnitPrice(), lineTotal));
+    }
+
+    private static Payment toPayment(OrderView view) {
+        Payment payment = new Payment();
+        payment.setId(view.getPaymentId());
+        payment.setOrderId(view.getOrderId());
+        payment.setStatus(view.getPaymentStatus());
+        payment.setAmount(view.getPaymentAmount());
+        payment.setBankTxnId(view.getBankTxnId());
+        payment.setErrorMessage(view.getPaymentError());
+        payment.setCreatedAt(view.getPaymentCreatedAt());
+        payment.setUpdatedAt(view.getPaymentUpdatedAt());
+        payment.setPaymentDate(view.getPaymentDate());
+        return payment;
+    }
+}
@@ -0,0 +1,170 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.dto.PendingPaymentView;
+import comp5348.storeservice.model.OrderStatus;
+import comp5348.storeservice.repository.OrderRepository;
+import comp5348.storeservice.scheduler.TimingWheel;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static comp5348.storeservice.utils.TransactionCallbacks.afterCommit;
+
+/**
+ * Payment deadlines of PENDING_PAYMENT orders, kept in a hierarchical timing wheel.
+ * A ticker thread advances the wheel every tick and queues the orders whose deadline has passed;
+ * UnpaidOrderCanceller drains that queue in batches. The wheel is rebuilt from the orders table at startup.
+ */
+@Component
+public class PaymentExpiryTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentExpiryTracker.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Value("${orders.payment-timeout-minutes:15}")
+    private long paymentTimeoutMinutes;
+
+    @Value("${orders.payment-expiry.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${orders.payment-expiry.wheel-size:512}")
+    private int wheelSize;
+
+    private final BlockingQueue<Long> expired = new LinkedBlockingQueue<>();
+    private TimingWheel<Long> wheel;
+    private Thread ticker;
+    private volatile boolean running = false;
+
+    /**
+     * Load the deadline of every order still waiting for payment, then start ticking
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        synchronized (this) {
+            wheel = new TimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+        }
+        List<PendingPaymentView> pending = orderRepository.findIdAndCreatedAtByStatus(OrderStatus.PENDING_PAYMENT);
+        int overdue = 0;
+        for (PendingPaymentView order : pending) {
+            if (!schedule(order.getId(), order.getCreatedAt())) overdue++;
+        }
+        logger.info("[PAYMENT EXPIRY] Tracking {} unpaid orders ({} already overdue)", pending.size(), overdue);
+
+        running = true;
+        ticker = new Thread(this::tick, "payment-expiry-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (ticker != null) ticker.interrupt();
+    }
+
+    public LocalDateTime deadlineOf(LocalDateTime createdAt) {
+        return createdAt.plusMinutes(paymentTimeoutMinutes);
+    }
+
+    /**
+     * Orders created before this are past their payment deadline
+     */
+    public LocalDateTime expiryCutoff() {
+        return LocalDateTime.now().minusMinutes(paymentTimeoutMinutes);
+    }
+
+    /**
+     * Track an order's payment deadline once the current transaction commits
+     */
+    public void scheduleAfterCommit(Long orderId, LocalDateTime createdAt) {
+        afterCommit(() -> schedule(orderId, createdAt));
+    }
+
+    /**
+     * Stop tracking an order (paid or cancelled) once the current transaction commits
+     */
+    public void cancelAfterCommit(Long orderId) {
+        afterCommit(() -> cancel(orderId));
+    }
+
+    /**
+     * @return false if the deadline has already passed (the order is queued for cancellation right away)
+     */
+    public boolean schedule(Long orderId, LocalDateTime createdAt) {
+        long deadline = deadlineOf(createdAt != null ? createdAt : LocalDateTime.now())
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        boolean scheduled;
+        synchronized (this) {
+            if (wheel == null) return true;  // before startup: picked up by the rebuild
+            scheduled = wheel.schedule(orderId, deadline);
+        }
+        if (!scheduled) expired.add(orderId);
+        return scheduled;
+    }
+
+    public synchronized void cancel(Long orderId) {
+        if (wheel != null) wheel.cancel(orderId);
+    }
+
+    public synchronized int getTrackedCount() {
+        return wheel == null ? 0 : wheel.size();
+    }
+
+    /**
+     * Queue orders found by other means (the safety-net sweep) for cancellation
+     */
+    public void enqueue(Collection<Long> orderIds) {
+        expired.addAll(orderIds);
+    }
+
+    /**
+     * Wait up to timeoutMs for the first expired order, then take whatever else is queued, up to max
+     */
+    public List<Long> takeExpired(int max, long timeoutMs) throws InterruptedException {
+        List<Long> batch = new ArrayList<>();
+        Long first = expired.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (first == null) return batch;
+        batch.add(first);
+        expired.drainTo(batch, max - 1);
+        return batch;
+    }
+
+    private void tick() {
+        List<Long> due = new ArrayList<>();
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                Thread.sleep(tickMs - now % tickMs);
+                synchronized (this) {
+                    wheel.advance(System.currentTimeMillis(), due);
+                }
+                if (!due.isEmpty()) {
+                    logger.debug("[PAYMENT EXPIRY] {} orders reached their payment deadline", due.size());
+                    expired.addAll(due);
+                    due.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("[PAYMENT EXPIRY] Tick failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import comp5348.storeservice.dto.BankTransferResponse;
 import comp5348.storeservice.model.Payment;
 import comp5348.storeservice.model.PaymentStatus;
 import comp5348.storeservice.repository.PaymentRepository;
+import comp5348.storeservice.utils.BatchLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +18,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -45,9 +48,13 @@ public class PaymentService {
 
     @Autowired
     private comp5348.storeservice.repository.AccountRepository accountRepository;
+
+    @Autowired
+    private OrderViewProjector orderViewProjector;
     
     /**
-     * Create payment record - idempotency guarantee
+     * Create payment record - idempotency guarantee.
+     * A new payment adds no PENDING event (order placement wrote it); an existing one gets its event re-sent.
      */
     @Transactional
     public Payment createPayment(Long orderId, BigDecimal amount) {
@@ -74,7 +81,7 @@ public class PaymentService {
             if (existing.getStatus() == PaymentStatus.FAILED) {
                 existing.setStatus(PaymentStatus.PENDING);
                 existing.setErrorMessage(null);
-                Payment saved = paymentRepository.save(existing);
+                Payment saved = savePayment(existing);
                 try {
                     outboxService.createPaymentPendingEvent(orderId, saved.getAmount());
                     logger.info("Re-enqueued PAYMENT_PENDING after FAILED for orderId={}", orderId);
@@ -101,12 +108,10 @@ public class PaymentService {
         payment.setAmount(amount);
         payment.setStatus(PaymentStatus.PENDING);
         
-        Payment savedPayment = paymentRepository.save(payment);
+        Payment savedPayment = savePayment(payment);
         logger.info("Payment created: id={}, orderId={}", savedPayment.getId(), orderId);
-        
-        // Create pending payment event to Outbox
-        outboxService.createPaymentPendingEvent(orderId, amount);
-        
+
+        // No event here: the order's PENDING payment_outbox event was written when it was placed, one per order
         return savedPayment;
     }
     
@@ -178,7 +183,7 @@ public class PaymentService {
         payment.setStatus(PaymentStatus.SUCCESS);
         payment.setBankTxnId(bankTxnId);
         payment.setPaymentDate(LocalDateTime.now());  // 记录支付成功的时间
-        paymentRepository.save(payment);
+        savePayment(payment);
         
         // Create payment success event to Outbox (used to trigger delivery)
         outboxService.createPaymentSuccessEvent(payment.getOrderId(), bankTxnId);
@@ -197,7 +202,7 @@ public class PaymentService {
         // Inventory will only be released if order is cancelled by user
         payment.setStatus(PaymentStatus.PENDING);
         payment.setErrorMessage(errorMessage);
-        paymentRepository.save(payment);
+        savePayment(payment);
         
         // Do NOT create payment failed event here - inventory stays HELD
         // Only notify user that payment failed, they can retry
@@ -229,7 +234,7 @@ public class PaymentService {
         if (response.isSuccess()) {
             payment.setStatus(PaymentStatus.REFUNDED);
             payment.setErrorMessage(reason);
-            paymentRepository.save(payment);
+            savePayment(payment);
             
             logger.info("Refund successful: orderId={}, refundTxnId={}", orderId, response.getRefundTransactionId());
             
@@ -250,6 +255,13 @@ public class PaymentService {
         return paymentRepository.findByOrderId(orderId);
     }
     
+    /**
+     * Payments of several orders with set-based queries, keyed by orderId (orders without a payment are absent)
+     */
+    public Map<Long, Payment> getPaymentsByOrderIds(Collection<Long> orderIds) {
+        return BatchLoader.loadByKeys(orderIds, paymentRepository::findByOrderIdIn, Payment::getOrderId);
+    }
+
     /**
      * Query payment by id
      */
@@ -262,8 +274,15 @@ public class PaymentService {
      */
     @Transactional
     public void updatePayment(Payment payment) {
-        paymentRepository.save(payment);
+        savePayment(payment);
     }
-}
-
 
+    /**
+     * Every payment write goes through here so the order's view row is refreshed after commit
+     */
+    private Payment savePayment(Payment payment) {
+        Payment saved = paymentRepository.save(payment);
+        orderViewProjector.markDirty(saved.getOrderId());
+        return saved;
+    }
+}
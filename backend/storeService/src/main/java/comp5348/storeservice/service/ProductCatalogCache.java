@@ -0,0 +1,203 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.dto.CatalogProduct;
+import comp5348.storeservice.model.Product;
+import comp5348.storeservice.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static comp5348.storeservice.utils.TransactionCallbacks.afterCommit;
+
+/**
+ * Product name and price for the checkout, outbox and delivery webhook paths.
+ *
+ * Two levels: a map bound to the current transaction, so one checkout (or one outbox run, or one webhook)
+ * never loads or re-reads the same product twice and prices every line from the same snapshot; behind it a
+ * bounded LRU shared by all requests, entries expiring after catalog.cache.ttl-seconds. Misses of a lookup are
+ * loaded together with one query.
+ *
+ * ProductService evicts a product after its update commits and CatalogImportService drops the whole cache
+ * (generation bump) after an import chunk. A load that raced with an eviction is not cached, and an entry is
+ * never replaced by an older @Version of the product. Other instances see catalog edits within the TTL.
+ */
+@Component
+public class ProductCatalogCache {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${catalog.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${catalog.cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final AtomicLong generation = new AtomicLong();     // bumped by invalidateAll
+    private final AtomicLong evictions = new AtomicLong();      // bumped by every invalidation
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Access-ordered, so the eldest entry is the least recently used one
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * @return the product, or null if it does not exist
+     */
+    public CatalogProduct get(Long productId) {
+        return getAll(List.of(productId)).get(productId);
+    }
+
+    public String getName(Long productId) {
+        CatalogProduct product = get(productId);
+        return product != null ? product.getName() : null;
+    }
+
+    /**
+     * Products by id; ids that do not exist are absent from the result
+     */
+    public Map<Long, CatalogProduct> getAll(Collection<Long> productIds) {
+        Map<Long, CatalogProduct> memo = transactionMemo();
+        Map<Long, CatalogProduct> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Long productId : new LinkedHashSet<>(productIds)) {
+            CatalogProduct product = memo != null ? memo.get(productId) : null;
+            if (product == null) {
+                product = getShared(productId, now);
+            }
+            if (product != null) {
+                hits.incrementAndGet();
+                result.put(productId, product);
+            } else {
+                missing.add(productId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            misses.addAndGet(missing.size());
+            long evictionsBefore = evictions.get();
+            for (Product product : productRepository.findAllById(missing)) {
+                CatalogProduct loaded = new CatalogProduct(product.getId(), product.getName(), product.getPrice(),
+                        product.getVersion());
+                result.put(loaded.getId(), loaded);
+                putShared(loaded, evictionsBefore, now);
+            }
+        }
+        if (memo != null) {
+            memo.putAll(result);
+        }
+        return result;
+    }
+
+    /**
+     * Evict a product once the current transaction commits (right away outside a transaction)
+     */
+    public void invalidateAfterCommit(Long productId) {
+        Map<Long, CatalogProduct> memo = transactionMemo();
+        if (memo != null) {
+            memo.remove(productId);
+        }
+        afterCommit(() -> {
+            evictions.incrementAndGet();
+            synchronized (entries) {
+                entries.remove(productId);
+            }
+        });
+    }
+
+    /**
+     * Drop every cached product (bulk catalog changes)
+     */
+    public void invalidateAll() {
+        evictions.incrementAndGet();
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private CatalogProduct getShared(Long productId, long now) {
+        synchronized (entries) {
+            Entry entry = entries.get(productId);
+            if (entry == null) return null;
+            if (entry.expiresAt < now || entry.generation != generation.get()) {
+                entries.remove(productId);
+                return null;
+            }
+            return entry.product;
+        }
+    }
+
+    private void putShared(CatalogProduct product, long evictionsBefore, long now) {
+        synchronized (entries) {
+            // An eviction during the load may mean we read the row before the update committed
+            if (evictions.get() != evictionsBefore) return;
+            Entry existing = entries.get(product.getId());
+            if (existing != null && existing.product.getVersion() != null && product.getVersion() != null
+                    && existing.product.getVersion() > product.getVersion()) {
+                return;
+            }
+            entries.put(product.getId(), new Entry(product, now + ttlSeconds * 1000, generation.get()));
+        }
+    }
+
+    /**
+     * Products already looked up by the current transaction, bound on first use and dropped when it completes
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, CatalogProduct> transactionMemo() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<Long, CatalogProduct> memo = (Map<Long, CatalogProduct>) TransactionSynchronizationManager.getResource(this);
+        if (memo == null) {
+            Map<Long, CatalogProduct> bound = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, bound);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ProductCatalogCache.this);
+                }
+            });
+            memo = bound;
+        }
+        return memo;
+    }
+
+    private static final class Entry {
+        final CatalogProduct product;
+        final long expiresAt;
+        final long generation;
+
+        Entry(CatalogProduct product, long expiresAt, long generation) {
+            this.product = product;
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
+    }
+}
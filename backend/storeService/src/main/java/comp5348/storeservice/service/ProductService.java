@@ -1,5 +1,6 @@
 package comp5348.storeservice.service;
 
+import comp5348.storeservice.allocation.WarehouseStockIndex;
 import comp5348.storeservice.dto.*;
 import comp5348.storeservice.model.*;
 import comp5348.storeservice.repository.OrderRepository;
@@ -19,7 +20,6 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional(isolation = Isolation.READ_COMMITTED)
@@ -38,15 +38,25 @@ public class ProductService {
 
     @Autowired
     private WarehouseService warehouseService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductStockSummaryService stockSummaryService;
+
+    @Autowired
+    private WarehouseStockIndex stockIndex;
+
+    @Autowired
+    private ProductCatalogCache productCatalog;
     
     /**
      * Get all product list
      */
     public List<ProductDTO> getAllProducts() {
         logger.info("Fetching all products");
-        return productRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return productRepository.findCatalog();
     }
     
     /**
@@ -54,11 +64,8 @@ public class ProductService {
      */
     public List<ProductDTO> getAvailableProducts() {
         logger.info("Fetching available products");
-        // Filter based on warehouse aggregated inventory (replacing Product.stockQuantity)
-        return productRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .filter(dto -> dto.getStockQuantity() != null && dto.getStockQuantity() > 0)
-                .collect(Collectors.toList());
+        // Filter on product_stock_summary (aggregated warehouse inventory), evaluated in the database
+        return productRepository.findAvailableCatalog();
     }
     
     /**
@@ -75,9 +82,7 @@ public class ProductService {
      */
     public List<ProductDTO> searchProductsByName(String name) {
         logger.info("Searching products by name: {}", name);
-        return productRepository.findByNameContainingIgnoreCase(name).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return productRepository.findCatalogByName(name);
     }
     
     /**
@@ -85,9 +90,7 @@ public class ProductService {
      */
     public List<ProductDTO> searchProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
         logger.info("Searching products by price range: {} - {}", minPrice, maxPrice);
-        return productRepository.findByPriceRange(minPrice, maxPrice).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return productRepository.findCatalogByPriceRange(minPrice, maxPrice);
     }
     
     /**
@@ -106,6 +109,7 @@ public class ProductService {
         product.setStockQuantity(0);
 
         Product savedProduct = productRepository.save(product);
+        productCatalog.invalidateAfterCommit(savedProduct.getId());
         logger.info("Product created successfully with id: {}", savedProduct.getId());
 
         // Note: convertToDTO here may get inventory from WarehouseService, so the returned DTO will still have inventory information
@@ -130,6 +134,7 @@ public class ProductService {
         // Removed product.setStockQuantity(productDTO.getStockQuantity());
 
         Product savedProduct = productRepository.save(product);
+        productCatalog.invalidateAfterCommit(productId);
         logger.info("Product updated successfully");
 
         return convertToDTO(savedProduct);
@@ -177,7 +182,13 @@ public class ProductService {
                     warehouseProduct.setQuantity(assignment.getQuantity());
                 }
                 warehouseProduct.setModifyTime(LocalDateTime.now());
-                warehouseProducts.add(warehouseProductRepository.save(warehouseProduct));
+                WarehouseProduct savedWarehouseProduct = warehouseProductRepository.save(warehouseProduct);
+                warehouseProducts.add(savedWarehouseProduct);
+                warehouseService.recordStockSet(savedWarehouseProduct);
+                stockSummaryService.recordDelta(productId, assignment.getQuantity());
+                stockIndex.invalidateAfterCommit(productId);
+                stockLedger.adjustAfterCommit(productId, warehouse.getId(), product.getName(), warehouse.getName(),
+                        assignment.getQuantity());
             }
 
             return true;
@@ -0,0 +1,85 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.repository.ProductStockSummaryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps product_stock_summary in step with warehouse_products.
+ *
+ * Every code path that changes warehouse_products.quantity reports the delta here. Deltas are collected
+ * per transaction and written in beforeCommit, one upsert per product in productId order, so the hot
+ * summary row is only locked for the commit itself and two transactions never lock it in opposite order.
+ */
+@Service
+public class ProductStockSummaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductStockSummaryService.class);
+
+    @Autowired
+    private ProductStockSummaryRepository summaryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Recompute all totals from warehouse_products at startup.
+     * Order relative to the stock ledger's journal replay does not matter: the replay reports its deltas too.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void rebuild() {
+        Integer rows = new TransactionTemplate(transactionManager).execute(status -> summaryRepository.rebuildAll());
+        logger.info("[STOCK SUMMARY] Rebuilt totals for {} products", rows);
+    }
+
+    /**
+     * Record a change of warehouse_products.quantity for a product.
+     * Applied when the surrounding transaction commits, or immediately if there is none.
+     */
+    public void recordDelta(Long productId, int delta) {
+        if (delta == 0) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            summaryRepository.applyDelta(productId, delta);
+            return;
+        }
+        PendingDeltas pending = null;
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingDeltas) {
+                pending = (PendingDeltas) synchronization;
+                break;
+            }
+        }
+        if (pending == null) {
+            pending = new PendingDeltas();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.deltas.merge(productId, delta, Integer::sum);
+    }
+
+    /**
+     * Deltas of the current transaction, keyed and therefore flushed in productId order
+     */
+    private final class PendingDeltas implements TransactionSynchronization {
+        final Map<Long, Integer> deltas = new TreeMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            deltas.forEach((productId, delta) -> {
+                if (delta != 0) {
+                    summaryRepository.applyDelta(productId, delta);
+                }
+            });
+        }
+    }
+}
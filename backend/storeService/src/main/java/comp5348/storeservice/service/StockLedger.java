@@ -0,0 +1,355 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.allocation.AllocationLine;
+import comp5348.storeservice.allocation.AllocationStrategy;
+import comp5348.storeservice.allocation.Destination;
+import comp5348.storeservice.allocation.StockSlot;
+import comp5348.storeservice.dto.WarehouseStockView;
+import comp5348.storeservice.model.InventoryTransaction;
+import comp5348.storeservice.model.InventoryTransactionType;
+import comp5348.storeservice.repository.InventoryTransactionRepository;
+import comp5348.storeservice.repository.WarehouseProductRepository;
+import comp5348.storeservice.service.WarehouseService.ReservationMode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static comp5348.storeservice.utils.TransactionCallbacks.afterCommit;
+
+/**
+ * In-process stock ledger used by the LEDGER reservation mode.
+ *
+ * Holds a primitive long counter per (productId, warehouseId), guarded by lock stripes keyed by productId,
+ * so hold/unhold decisions never touch warehouse_products on the order path.
+ * inventory_transactions is the durable journal: HOLD/UNHOLD rows are written with the order and flagged
+ * stock_pending, and a write-behind flush applies their deltas to warehouse_products in batches.
+ * The same flush runs at startup, which is the crash recovery path.
+ *
+ * Single-instance only: several storeService instances in LEDGER mode would each hand out the same stock.
+ */
+@Component
+public class StockLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockLedger.class);
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private WarehouseProductRepository warehouseProductRepository;
+
+    @Autowired
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @Autowired
+    private ProductStockSummaryService stockSummaryService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.reservation.mode:GUARDED}")
+    private ReservationMode reservationMode;
+
+    @Value("${inventory.ledger.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final Map<Long, ProductStock> products = new ConcurrentHashMap<>();
+    private final Map<Long, Double[]> warehouseCoordinates = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    public StockLedger() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Apply anything a previous run left unflushed, then load the counters (LEDGER mode only).
+     * Runs before CommandLineRunners, which report their stock changes through adjustAfterCommit.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        int recovered = flushAll();
+        if (recovered > 0) {
+            logger.info("[LEDGER] Recovered {} pending inventory transactions into warehouse_products", recovered);
+        }
+        if (reservationMode != ReservationMode.LEDGER) {
+            return;
+        }
+        List<WarehouseStockView> levels = warehouseProductRepository.findAllStockLevels();
+        for (WarehouseStockView level : levels) {
+            stockFor(level.getProductId(), level.getProductName())
+                    .add(level.getWarehouseId(), level.getWarehouseName(), level.getQuantity());
+            if (level.getWarehouseLatitude() != null && level.getWarehouseLongitude() != null) {
+                warehouseCoordinates.put(level.getWarehouseId(),
+                        new Double[]{level.getWarehouseLatitude(), level.getWarehouseLongitude()});
+            }
+        }
+        ready = true;
+        logger.info("[LEDGER] Loaded {} stock rows for {} products", levels.size(), products.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Total stock of a product across warehouses, including deltas not yet flushed
+     */
+    public long getTotal(Long productId) {
+        ProductStock stock = products.get(productId);
+        if (stock == null) return 0;
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            return stock.total();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take quantity units of a product, split across warehouses by the given allocation strategy.
+     * If called inside a transaction, the units are given back automatically when it rolls back.
+     * @return the per-warehouse allocations, or null if there is not enough stock
+     */
+    public List<Allocation> hold(Long productId, int quantity, AllocationStrategy strategy, Destination destination) {
+        if (!ready) {
+            throw new IllegalStateException("Stock ledger is not loaded yet");
+        }
+        ProductStock stock = products.get(productId);
+        if (stock == null) return null;
+
+        List<Allocation> allocations = new ArrayList<>();
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            if (stock.total() < quantity) return null;
+
+            List<StockSlot> slots = new ArrayList<>(stock.size);
+            for (int i = 0; i < stock.size; i++) {
+                Double[] coordinates = warehouseCoordinates.get(stock.warehouseIds[i]);
+                slots.add(new StockSlot(null, stock.warehouseIds[i], stock.warehouseNames[i], null,
+                        coordinates == null ? null : coordinates[0], coordinates == null ? null : coordinates[1],
+                        productId, stock.productName, (int) stock.quantities[i]));
+            }
+            List<AllocationLine> plan = strategy.allocate(slots, quantity, destination);
+            if (plan == null) return null;
+
+            for (AllocationLine line : plan) {
+                int i = stock.indexOf(line.getSlot().getWarehouseId());
+                long before = stock.quantities[i];
+                stock.quantities[i] -= line.getQuantity();
+                allocations.add(new Allocation(productId, stock.productName, stock.warehouseIds[i],
+                        stock.warehouseNames[i], line.getQuantity(), (int) before, (int) stock.quantities[i]));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        for (Allocation allocation : allocations) {
+                            adjust(productId, allocation.getWarehouseId(), null, null, allocation.getQuantity());
+                        }
+                    }
+                }
+            });
+        }
+        return allocations;
+    }
+
+    /**
+     * Add stock back to the counters once the current transaction commits
+     * (unhold, restock, assignment). Applied immediately when there is no transaction.
+     */
+    public void adjustAfterCommit(Long productId, Long warehouseId, String productName, String warehouseName, long delta) {
+        if (!ready || delta == 0) return;
+        afterCommit(() -> adjust(productId, warehouseId, productName, warehouseName, delta));
+    }
+
+    /**
+     * Re-read one product from warehouse_products after flushing the journal.
+     * Only safe while no orders are being placed for that product (admin/benchmark use).
+     * The flush runs before the stripe lock is taken, so holds of other products on the stripe are not blocked by it.
+     */
+    public void resync(Long productId) {
+        if (!ready) return;
+        flushAll();
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            ProductStock stock = null;
+            for (WarehouseStockView level : warehouseProductRepository.findStockLevelsByProductIds(List.of(productId))) {
+                if (stock == null) stock = new ProductStock(level.getProductName());
+                stock.add(level.getWarehouseId(), level.getWarehouseName(), level.getQuantity());
+            }
+            if (stock == null) {
+                products.remove(productId);
+            } else {
+                products.put(productId, stock);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write-behind flush of journaled HOLD/UNHOLD deltas to warehouse_products
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        if (!ready) return;
+        try {
+            flushAll();
+        } catch (Exception e) {
+            logger.error("[LEDGER] Write-behind flush failed, will retry: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write every pending journal delta to warehouse_products now
+     */
+    public int flushAll() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int total = 0;
+        while (true) {
+            Integer flushed = tx.execute(status -> flushBatch());
+            if (flushed == null || flushed == 0) break;
+            total += flushed;
+        }
+        return total;
+    }
+
+    /**
+     * One batch: lock pending rows, aggregate per (warehouse, product), one update per pair, mark rows applied
+     */
+    private int flushBatch() {
+        List<InventoryTransaction> pending = inventoryTransactionRepository
+                .findStockPendingForUpdate(PageRequest.of(0, flushBatchSize));
+        if (pending.isEmpty()) return 0;
+
+        Map<List<Long>, Integer> deltas = new HashMap<>();
+        for (InventoryTransaction tx : pending) {
+            int target = tx.getType() == InventoryTransactionType.HOLD ? -tx.getQuantity() : 0;
+            int applied = tx.getAppliedQuantity() == null ? 0 : tx.getAppliedQuantity();
+            if (target != applied) {
+                deltas.merge(List.of(tx.getWarehouse().getId(), tx.getProduct().getId()), target - applied, Integer::sum);
+            }
+            tx.setAppliedQuantity(target);
+            tx.setStockPending(false);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        deltas.forEach((key, delta) -> {
+            if (delta != 0) {
+                warehouseProductRepository.adjustQuantity(key.get(0), key.get(1), delta, now);
+                stockSummaryService.recordDelta(key.get(1), delta);
+            }
+        });
+        logger.debug("[LEDGER] Flushed {} transactions into {} stock rows", pending.size(), deltas.size());
+        return pending.size();
+    }
+
+    private void adjust(Long productId, Long warehouseId, String productName, String warehouseName, long delta) {
+        ProductStock stock = stockFor(productId, productName);
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            stock.add(warehouseId, warehouseName, delta);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ProductStock stockFor(Long productId, String productName) {
+        return products.computeIfAbsent(productId, id -> new ProductStock(productName));
+    }
+
+    private ReentrantLock lockFor(Long productId) {
+        return locks[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+
+    /**
+     * Counters of one product, indexed by warehouse slot. Guarded by the product's stripe lock.
+     */
+    private static final class ProductStock {
+        final String productName;
+        long[] warehouseIds = new long[4];
+        String[] warehouseNames = new String[4];
+        long[] quantities = new long[4];
+        int size = 0;
+
+        ProductStock(String productName) {
+            this.productName = productName;
+        }
+
+        long total() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) sum += quantities[i];
+            return sum;
+        }
+
+        int indexOf(long warehouseId) {
+            for (int i = 0; i < size; i++) {
+                if (warehouseIds[i] == warehouseId) return i;
+            }
+            return -1;
+        }
+
+        void add(Long warehouseId, String warehouseName, long delta) {
+            int existing = indexOf(warehouseId);
+            if (existing >= 0) {
+                quantities[existing] += delta;
+                return;
+            }
+            if (size == warehouseIds.length) {
+                warehouseIds = Arrays.copyOf(warehouseIds, size * 2);
+                warehouseNames = Arrays.copyOf(warehouseNames, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            warehouseIds[size] = warehouseId;
+            warehouseNames[size] = warehouseName;
+            quantities[size] = delta;
+            size++;
+        }
+    }
+
+    /**
+     * Units taken from one warehouse by a ledger hold
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Allocation {
+        private final Long productId;
+        private final String productName;
+        private final Long warehouseId;
+        private final String warehouseName;
+        private final int quantity;
+        private final int stockBefore;
+        private final int stockAfter;
+    }
+}
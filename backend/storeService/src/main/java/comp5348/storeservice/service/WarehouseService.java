@@ -1,27 +1,39 @@
 package comp5348.storeservice.service;
 
+import comp5348.storeservice.allocation.AllocationLine;
+import comp5348.storeservice.allocation.AllocationStrategies;
+import comp5348.storeservice.allocation.AllocationStrategy;
+import comp5348.storeservice.allocation.Destination;
+import comp5348.storeservice.allocation.StockSlot;
+import comp5348.storeservice.allocation.WarehouseStockIndex;
 import comp5348.storeservice.dto.*;
 import comp5348.storeservice.model.*;
 import comp5348.storeservice.repository.InventoryAuditLogRepository;
 import comp5348.storeservice.repository.InventoryTransactionRepository;
+import comp5348.storeservice.repository.OrderRepository;
 import comp5348.storeservice.repository.ProductRepository;
 import comp5348.storeservice.repository.WarehouseProductRepository;
 import comp5348.storeservice.repository.WarehouseRepository;
-import jakarta.persistence.EntityNotFoundException;
 import jakarta.persistence.OptimisticLockException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,6 +41,8 @@ import java.util.stream.Collectors;
 public class WarehouseService {
 
     private static final Logger logger = LoggerFactory.getLogger(WarehouseService.class);
+    private static final int RELEASE_CHUNK_SIZE = 1000;
+    private static final int ORDER_AUDIT_MARGIN_MINUTES = 60;
 
     @Autowired
     private WarehouseRepository warehouseRepository;
@@ -41,61 +55,120 @@ public class WarehouseService {
     
     @Autowired
     private InventoryAuditLogRepository auditLogRepository;
+
+    @Autowired
+    private InventoryAuditWriter auditWriter;
     
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /**
+     * How stock is taken from warehouse_products when an order is placed
+     */
+    public enum ReservationMode {
+        GUARDED,     // conditional single-statement decrement per warehouse row (default)
+        OPTIMISTIC,  // load, decrement in memory, saveAll with @Version check (original path)
+        LEDGER       // in-memory StockLedger counters with write-behind to warehouse_products
+    }
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductStockSummaryService stockSummaryService;
+
+    @Autowired
+    private AllocationStrategies allocationStrategies;
+
+    @Autowired
+    private WarehouseStockIndex stockIndex;
+
+    @Autowired
+    private ProductCatalogCache productCatalog;
+
+    @Value("${inventory.reservation.mode:GUARDED}")
+    private ReservationMode reservationMode;
+
+    @Value("${inventory.reservation.max-attempts:3}")
+    private int maxReservationAttempts;
+
+    @Value("${inventory.audit.query.default-page-size:100}")
+    private int auditDefaultPageSize;
+
+    @Value("${inventory.audit.query.max-page-size:1000}")
+    private int auditMaxPageSize;
+
     @Transactional(readOnly = true)
     public List<WarehouseDTO> getAllWarehouses() {
-        List<Warehouse> warehouses = warehouseRepository.findAll();
-        return warehouses.stream()
-                .map(warehouse -> {
-                    WarehouseDTO warehouseDTO = new WarehouseDTO(warehouse);
-                    // Get all warehouse-product relationships for this warehouse
-                    List<WarehouseProduct> warehouseProducts = warehouseProductRepository.findByWarehouseId(warehouse.getId());
-                    // Convert to ProductDTOs with quantity information
-                    List<ProductDTO> productDTOs = warehouseProducts.stream()
-                            .map(wp -> {
-                                ProductDTO productDTO = new ProductDTO();
-                                productDTO.setId(wp.getProduct().getId());
-                                productDTO.setName(wp.getProduct().getName());
-                                productDTO.setPrice(wp.getProduct().getPrice());
-                                productDTO.setDescription(wp.getProduct().getDescription());
-                                productDTO.setStockQuantity(wp.getQuantity());  // Store quantity in stockQuantity field
-                                return productDTO;
-                            })
-                            .collect(Collectors.toList());
-                    warehouseDTO.setProducts(productDTOs);
-                    return warehouseDTO;
-                })
+        return getAllWarehouses(null, null);
+    }
+
+    /**
+     * All warehouses with their product lines in two queries (warehouses, then every product line through
+     * one windowed projection). When productSize is given each warehouse lists at most productSize products,
+     * starting at productPage (0-based).
+     */
+    @Transactional(readOnly = true)
+    public List<WarehouseDTO> getAllWarehouses(Integer productPage, Integer productSize) {
+        int limit = productLimit(productSize);
+        List<WarehouseProductListView> lines = warehouseProductRepository
+                .findProductListings(productOffset(productPage, limit), limit);
+
+        Map<Long, List<WarehouseProductListView>> linesByWarehouse = lines.stream()
+                .collect(Collectors.groupingBy(WarehouseProductListView::getWarehouseId));
+        return warehouseRepository.findAll(Sort.by("id")).stream()
+                .map(warehouse -> toWarehouseDTO(warehouse, linesByWarehouse.getOrDefault(warehouse.getId(), List.of())))
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public WarehouseDTO getWarehouseById(Long id) {
+        return getWarehouseById(id, null, null);
+    }
+
+    @Transactional(readOnly = true)
+    public WarehouseDTO getWarehouseById(Long id, Integer productPage, Integer productSize) {
+        int limit = productLimit(productSize);
         return warehouseRepository.findById(id)
-                .map(warehouse -> {
-                    WarehouseDTO warehouseDTO = new WarehouseDTO(warehouse);
-                    List<WarehouseProduct> warehouseProducts = warehouseProductRepository.findByWarehouseId(warehouse.getId());
-                    List<ProductDTO> productDTOs = warehouseProducts.stream()
-                            .map(wp -> {
-                                ProductDTO productDTO = new ProductDTO();
-                                productDTO.setId(wp.getProduct().getId());
-                                productDTO.setName(wp.getProduct().getName());
-                                productDTO.setPrice(wp.getProduct().getPrice());
-                                productDTO.setDescription(wp.getProduct().getDescription());
-                                productDTO.setStockQuantity(wp.getQuantity());
-                                return productDTO;
-                            })
-                            .collect(Collectors.toList());
-                    warehouseDTO.setProducts(productDTOs);
-                    return warehouseDTO;
-                })
+                .map(warehouse -> toWarehouseDTO(warehouse, warehouseProductRepository
+                        .findProductListingsByWarehouseId(id, productOffset(productPage, limit), limit)))
                 .orElse(null);
     }
 
+    private static WarehouseDTO toWarehouseDTO(Warehouse warehouse, List<WarehouseProductListView> lines) {
+        WarehouseDTO warehouseDTO = new WarehouseDTO(warehouse);
+        List<ProductDTO> productDTOs = new ArrayList<>(lines.size());
+        for (WarehouseProductListView line : lines) {
+            ProductDTO productDTO = new ProductDTO();
+            productDTO.setId(line.getProductId());
+            productDTO.setName(line.getName());
+            productDTO.setPrice(line.getPrice());
+            productDTO.setDescription(line.getDescription());
+            productDTO.setStockQuantity(line.getQuantity());  // Store quantity in stockQuantity field
+            productDTOs.add(productDTO);
+        }
+        warehouseDTO.setProducts(productDTOs);
+        warehouseDTO.setTotalProducts(lines.isEmpty() ? null : lines.get(0).getTotalProducts());
+        return warehouseDTO;
+    }
+
+    private static int productLimit(Integer productSize) {
+        return productSize == null || productSize <= 0 ? Integer.MAX_VALUE : productSize;
+    }
+
+    private static int productOffset(Integer productPage, int limit) {
+        if (productPage == null || productPage <= 0 || limit == Integer.MAX_VALUE) return 0;
+        return (int) Math.min((long) productPage * limit, Integer.MAX_VALUE);
+    }
+
     @Transactional(readOnly = true)
     public Integer getProductQuantity(Long productId) {
+        if (reservationMode == ReservationMode.LEDGER && stockLedger.isReady()) {
+            return (int) stockLedger.getTotal(productId);
+        }
         return warehouseProductRepository.findTotalQuantityByProductId(productId).orElse(0);
     }
 
@@ -104,6 +177,8 @@ public class WarehouseService {
             Warehouse warehouse = new Warehouse();
             warehouse.setName(request.getName());
             warehouse.setLocation(request.getLocation());
+            warehouse.setLatitude(request.getLatitude());
+            warehouse.setLongitude(request.getLongitude());
             warehouse.setModifyTime(LocalDateTime.now());
             Warehouse savedWarehouse = warehouseRepository.save(warehouse);
             return new WarehouseDTO(savedWarehouse);
@@ -113,43 +188,13 @@ public class WarehouseService {
         }
     }
 
-    @Async
-    @Transactional(isolation = Isolation.REPEATABLE_READ)
-    public CompletableFuture<WarehouseProductDTO> updateProductQuantity(ProductQuantityUpdateRequest updates) {
-        return CompletableFuture.supplyAsync(() -> {
-            for (ProductQuantityUpdateRequest.ProductQuantityUpdate update : updates.getUpdates()) {
-                try {
-                    WarehouseProduct warehouseProduct = warehouseProductRepository
-                            .findByWarehouseIdAndProductId(update.getWarehouseId(), update.getProductId())
-                            .orElseThrow(() -> new EntityNotFoundException("WarehouseProduct not found"));
-
-                    warehouseProduct.setQuantity(update.getNewQuantity());
-                    warehouseProduct.setModifyTime(LocalDateTime.now());
-                    WarehouseProduct savedWarehouseProduct = warehouseProductRepository.save(warehouseProduct);
-
-                    InventoryTransaction transaction = new InventoryTransaction();
-                    transaction.setProduct(savedWarehouseProduct.getProduct());
-                    transaction.setWarehouse(savedWarehouseProduct.getWarehouse());
-                    transaction.setQuantity(update.getNewQuantity());
-                    transaction.setTransactionTime(LocalDateTime.now());
-                    transaction.setType(InventoryTransactionType.IN);
-                    inventoryTransactionRepository.save(transaction);
-
-                    return new WarehouseProductDTO(warehouseProduct);
-                } catch (OptimisticLockException e) {
-                    logger.error("optimistic lock exception during quantity update: {}", e.getMessage());
-                    throw e;
-                }
-            }
-            return null;
-        });
-    }
-
     public WarehouseDTO updateWarehouse(Long id, Warehouse warehouseDetails) throws OptimisticLockException {
         return warehouseRepository.findByIdWithLock(id)
                 .map(warehouse -> {
                     warehouse.setName(warehouseDetails.getName());
                     warehouse.setLocation(warehouseDetails.getLocation());
+                    warehouse.setLatitude(warehouseDetails.getLatitude());
+                    warehouse.setLongitude(warehouseDetails.getLongitude());
                     try {
                         warehouse.setModifyTime(LocalDateTime.now());
                         Warehouse updatedWarehouse = warehouseRepository.save(warehouse);
@@ -184,10 +229,209 @@ public class WarehouseService {
 
     @Transactional // Ensure annotation is present
     public WarehouseDTO getAndUpdateAvailableWarehouse(long productId, int quantity, Long orderId) { // Suggest passing orderId
-        logger.info("[WAREHOUSE] START: getAndUpdateAvailableWarehouse for productId={}, quantity={}, orderId={}", 
+        return reserve(productId, quantity, orderId, reservationMode, null);
+    }
+
+    /**
+     * Reserve stock for an order, letting the allocation strategy take the delivery destination into account
+     */
+    @Transactional
+    public WarehouseDTO getAndUpdateAvailableWarehouse(long productId, int quantity, Long orderId, Destination destination) {
+        return reserve(productId, quantity, orderId, reservationMode, destination);
+    }
+
+    /**
+     * Reserve stock for an order using the given reservation mode
+     * @return DTO with the warehouses used and the created HOLD transaction IDs, or null if stock is insufficient
+     */
+    @Transactional
+    public WarehouseDTO getAndUpdateAvailableWarehouse(long productId, int quantity, Long orderId, ReservationMode mode) {
+        return reserve(productId, quantity, orderId, mode, null);
+    }
+
+    private WarehouseDTO reserve(long productId, int quantity, Long orderId, ReservationMode mode, Destination destination) {
+        if (mode == ReservationMode.OPTIMISTIC) {
+            return reserveWithOptimisticLock(productId, quantity, orderId);
+        }
+        if (mode == ReservationMode.LEDGER) {
+            return reserveWithLedger(productId, quantity, orderId, destination);
+        }
+        return reserveWithGuardedUpdates(productId, quantity, orderId, destination);
+    }
+
+    /**
+     * Reservation path backed by the in-memory StockLedger.
+     * Stock is decided in memory; only the HOLD rows are inserted here (flagged stock_pending),
+     * warehouse_products is brought up to date by the ledger's write-behind flush.
+     */
+    private WarehouseDTO reserveWithLedger(long productId, int quantity, Long orderId, Destination destination) {
+        List<StockLedger.Allocation> allocations = stockLedger.hold(productId, quantity,
+                allocationStrategies.getConfigured(), destination);
+        if (allocations == null) {
+            int totalAvailable = (int) stockLedger.getTotal(productId);
+            logger.warn("[WAREHOUSE] INSUFFICIENT STOCK (ledger) for product: {}. Required: {}, Available: {}",
+                    productId, quantity, totalAvailable);
+            recordAuditLog(productId, null, null, null, quantity, orderId, totalAvailable, totalAvailable, "HOLD", "FAILED", "Insufficient stock");
+            return null;
+        }
+
+        Product productRef = productRepository.getReferenceById(productId);
+        List<InventoryTransaction> transactionsToCreate = new ArrayList<>();
+        List<WarehouseDTO> warehouseDTOs = new ArrayList<>();
+        for (StockLedger.Allocation allocation : allocations) {
+            InventoryTransaction tx = new InventoryTransaction();
+            tx.setProduct(productRef);
+            tx.setWarehouse(warehouseRepository.getReferenceById(allocation.getWarehouseId()));
+            tx.setQuantity(allocation.getQuantity());
+            tx.setType(InventoryTransactionType.HOLD);
+            tx.setTransactionTime(LocalDateTime.now());
+            tx.setOrderId(orderId);
+            tx.setAppliedQuantity(0);
+            tx.setStockPending(true);
+            transactionsToCreate.add(tx);
+
+            WarehouseDTO warehouseDTO = new WarehouseDTO();
+            warehouseDTO.setId(allocation.getWarehouseId());
+            warehouseDTO.setName(allocation.getWarehouseName());
+            warehouseDTOs.add(warehouseDTO);
+
+            recordAuditLog(productId, allocation.getProductName(), allocation.getWarehouseId(), allocation.getWarehouseName(),
+                    allocation.getQuantity(), orderId, allocation.getStockBefore(), allocation.getStockAfter(),
+                    "HOLD", "SUCCESS", null);
+        }
+
+        List<InventoryTransaction> savedTxs = inventoryTransactionRepository.saveAll(transactionsToCreate);
+        List<Long> inventoryTransactionIds = savedTxs.stream().map(InventoryTransaction::getId).collect(Collectors.toList());
+        logger.info("[WAREHOUSE] COMPLETED (ledger): Created {} inventory transactions for product {}, orderId {}: {}",
+                inventoryTransactionIds.size(), productId, orderId, inventoryTransactionIds);
+
+        WarehouseDTO responseDTO = new WarehouseDTO();
+        responseDTO.setWarehouses(warehouseDTOs);
+        responseDTO.setInventoryTransactionIds(inventoryTransactionIds);
+        return responseDTO;
+    }
+
+    /**
+     * Reservation path based on guarded single-statement updates
+     * (quantity = quantity - n WHERE quantity >= n) per warehouse row.
+     * The split across warehouses is planned by the configured AllocationStrategy from the in-memory
+     * WarehouseStockIndex; a lost race only costs a re-read of the product's stock (bounded by max-attempts).
+     */
+    private WarehouseDTO reserveWithGuardedUpdates(long productId, int quantity, Long orderId, Destination destination) {
+        AllocationStrategy strategy = allocationStrategies.getConfigured();
+        logger.info("[WAREHOUSE] START: guarded reservation for productId={}, quantity={}, orderId={}, strategy={}",
+                productId, quantity, orderId, strategy.getName());
+
+        int remainingQuantity = quantity;
+        int totalAvailable = 0;
+        List<AllocationLine> allocations = new ArrayList<>();
+        List<Integer> stockAfter = new ArrayList<>();
+
+        for (int attempt = 1; attempt <= maxReservationAttempts && remainingQuantity > 0; attempt++) {
+            // Retries always re-read, without caching: the read includes this transaction's own uncommitted
+            // decrements, which reach the index through adjustAfterCommit only once they commit
+            boolean reloaded = attempt > 1;
+            List<StockSlot> slots = reloaded ? stockIndex.peek(productId) : stockIndex.getSlots(productId, false);
+            totalAvailable = slots.stream().mapToInt(StockSlot::getQuantity).sum();
+            if (totalAvailable < remainingQuantity && !reloaded) {
+                // The index may be behind on released or restocked units
+                slots = stockIndex.getSlots(productId, true);
+                totalAvailable = slots.stream().mapToInt(StockSlot::getQuantity).sum();
+            }
+            List<AllocationLine> plan = strategy.allocate(slots, remainingQuantity, destination);
+            if (plan == null) {
+                logger.warn("[WAREHOUSE] Attempt {}: available {} < remaining {} for productId={}",
+                        attempt, totalAvailable, remainingQuantity, productId);
+                break;
+            }
+
+            // Planned by the strategy, applied in row id order so concurrent orders lock rows in the same order
+            List<AllocationLine> ordered = new ArrayList<>(plan);
+            ordered.sort(Comparator.comparing((AllocationLine line) -> line.getSlot().getStockRowId()));
+            LocalDateTime now = LocalDateTime.now();
+            for (AllocationLine line : ordered) {
+                Optional<Integer> left = warehouseProductRepository.decrementIfAvailable(
+                        line.getSlot().getStockRowId(), line.getQuantity(), now);
+                if (left.isPresent()) {
+                    allocations.add(line);
+                    stockAfter.add(left.get());
+                    remainingQuantity -= line.getQuantity();
+                    logger.info("[WAREHOUSE] Took {} units from warehouse {}", line.getQuantity(), line.getSlot().getWarehouseId());
+                } else {
+                    stockIndex.invalidate(productId);
+                    logger.info("[WAREHOUSE] Attempt {}: warehouse {} changed concurrently, will re-read",
+                            attempt, line.getSlot().getWarehouseId());
+                }
+            }
+        }
+
+        if (remainingQuantity > 0) {
+            // Give back anything taken so far, so a failed reservation never leaks stock
+            LocalDateTime now = LocalDateTime.now();
+            for (AllocationLine line : allocations) {
+                warehouseProductRepository.increment(line.getSlot().getStockRowId(), line.getQuantity(), now);
+            }
+            logger.warn("[WAREHOUSE] INSUFFICIENT STOCK for product: {}. Required: {}, Available: {}",
+                    productId, quantity, totalAvailable);
+            recordAuditLog(productId, null, null, null, quantity, orderId, totalAvailable, totalAvailable, "HOLD", "FAILED", "Insufficient stock");
+            return null;
+        }
+
+        stockSummaryService.recordDelta(productId, -quantity);
+
+        Product productRef = productRepository.getReferenceById(productId);
+        List<InventoryTransaction> transactionsToCreate = new ArrayList<>();
+        List<WarehouseDTO> warehouseDTOs = new ArrayList<>();
+        for (int i = 0; i < allocations.size(); i++) {
+            AllocationLine line = allocations.get(i);
+            StockSlot slot = line.getSlot();
+            stockIndex.adjustAfterCommit(productId, slot.getWarehouseId(), -line.getQuantity());
+
+            InventoryTransaction tx = new InventoryTransaction();
+            tx.setProduct(productRef);
+            tx.setWarehouse(warehouseRepository.getReferenceById(slot.getWarehouseId()));
+            tx.setQuantity(line.getQuantity());
+            tx.setType(InventoryTransactionType.HOLD);
+            tx.setTransactionTime(LocalDateTime.now());
+            tx.setOrderId(orderId);
+            transactionsToCreate.add(tx);
+
+            WarehouseDTO warehouseDTO = new WarehouseDTO();
+            warehouseDTO.setId(slot.getWarehouseId());
+            warehouseDTO.setName(slot.getWarehouseName());
+            warehouseDTO.setLocation(slot.getWarehouseLocation());
+            warehouseDTOs.add(warehouseDTO);
+
+            // Stock levels as the guarded update left them, not the index's possibly stale copy
+            recordAuditLog(productId, slot.getProductName(), slot.getWarehouseId(), slot.getWarehouseName(),
+                    line.getQuantity(), orderId, stockAfter.get(i) + line.getQuantity(), stockAfter.get(i),
+                    "HOLD", "SUCCESS", null);
+        }
+
+        List<InventoryTransaction> savedTxs = inventoryTransactionRepository.saveAll(transactionsToCreate);
+        List<Long> inventoryTransactionIds = savedTxs.stream().map(InventoryTransaction::getId).collect(Collectors.toList());
+
+        logger.info("[WAREHOUSE] COMPLETED: Created {} inventory transactions for product {}, orderId {}: {}",
+                inventoryTransactionIds.size(), productId, orderId, inventoryTransactionIds);
+
+        WarehouseDTO responseDTO = new WarehouseDTO();
+        responseDTO.setWarehouses(warehouseDTOs);
+        responseDTO.setInventoryTransactionIds(inventoryTransactionIds);
+        return responseDTO;
+    }
+
+    /**
+     * Original reservation path: load rows, decrement in memory and saveAll with @Version checks.
+     * Kept for A/B comparison; concurrent orders on the same product fail with optimistic lock errors.
+     */
+    private WarehouseDTO reserveWithOptimisticLock(long productId, int quantity, Long orderId) {
+        logger.info("[WAREHOUSE] START: optimistic reservation for productId={}, quantity={}, orderId={}", 
                 productId, quantity, orderId);
         
+        // Loaded (and so flushed) in id order; taken from the smallest warehouses first
         List<WarehouseProduct> availableProducts = warehouseProductRepository.findByProductIdAndQuantity(productId);
+        List<WarehouseProduct> smallestFirst = new ArrayList<>(availableProducts);
+        smallestFirst.sort(Comparator.comparingInt(WarehouseProduct::getQuantity));
         logger.info("[WAREHOUSE] Found {} warehouses with available stock for productId={}", 
                 availableProducts.size(), productId);
 
@@ -207,7 +451,7 @@ public class WarehouseService {
         List<InventoryTransaction> transactionsToCreate = new ArrayList<>();
         List<WarehouseDTO> warehouseDTOs = new ArrayList<>(); // Used for return
 
-        for (WarehouseProduct wp : availableProducts) {
+        for (WarehouseProduct wp : smallestFirst) {
             if (remainingQuantity <= 0) break;
 
             int quantityToTake = Math.min(wp.getQuantity(), remainingQuantity);
@@ -225,6 +469,7 @@ public class WarehouseService {
 
             // Create transaction entity (only in memory)
             InventoryTransaction tx = createInventoryTransaction(wp, quantityToTake, InventoryTransactionType.HOLD);
+            tx.setOrderId(orderId);
             transactionsToCreate.add(tx);
 
             remainingQuantity -= quantityToTake;
@@ -241,6 +486,7 @@ public class WarehouseService {
         // --- Step 2: Unified database write ---
         logger.info("[WAREHOUSE] Saving {} warehouse products to database", productsToUpdate.size());
         warehouseProductRepository.saveAll(productsToUpdate);
+        stockSummaryService.recordDelta(productId, -quantity);
         
         logger.info("[WAREHOUSE] Saving {} inventory transactions to database", transactionsToCreate.size());
         List<InventoryTransaction> savedTxs = inventoryTransactionRepository.saveAll(transactionsToCreate);
@@ -264,57 +510,141 @@ public class WarehouseService {
         logger.info("Unholding {} inventory transactions: {}", ids.size(), ids);
 
         try {
-            List<InventoryTransaction> transactions = inventoryTransactionRepository.findAllById(ids);
-            logger.info("Found {} transactions to unhold", transactions.size());
-
-            int totalReleased = 0;
-            for (InventoryTransaction tx : transactions) {
-                // Skip if already released (UNHOLD)
-                if (tx.getType() == InventoryTransactionType.UNHOLD) {
-                    logger.info("Transaction {} already unheld, skipping", tx.getId());
-                    continue;
-                }
+            int totalReleased = releaseHolds(ids);
+            logger.info("Total released: {} units", totalReleased);
+            return true;
+        } catch (Exception e) {
+            logger.error("Error unholding inventory: {}", e.getMessage(), e);
+            return false;
+        }
+    }
 
-                // Only process HOLD transactions
-                if (tx.getType() != InventoryTransactionType.HOLD) {
-                    logger.warn("Transaction {} has unexpected type: {}, skipping", tx.getId(), tx.getType());
-                    continue;
-                }
+    /**
+     * Set-based release of HOLD transactions, which may belong to many orders.
+     * Per chunk: lock the rows still in HOLD, flip them to UNHOLD in one statement, give the stock back
+     * with one update per (warehouse, product) and save the audit rows in one batch.
+     * Rows that were already released are skipped, so releasing twice is harmless.
+     * @return total units released
+     */
+    @Transactional
+    public int releaseHolds(Collection<Long> transactionIds) {
+        List<Long> ids = new ArrayList<>(new TreeSet<>(transactionIds));
+        int totalReleased = 0;
+        for (int from = 0; from < ids.size(); from += RELEASE_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + RELEASE_CHUNK_SIZE, ids.size()));
+            totalReleased += releaseLocked(inventoryTransactionRepository.lockHeldByIds(chunk));
+        }
+        return totalReleased;
+    }
 
-                Optional<WarehouseProduct> wpOpt = warehouseProductRepository.findByWarehouseAndProduct(tx.getWarehouse(), tx.getProduct());
-                if (!wpOpt.isPresent()) {
-                    logger.error("WarehouseProduct not found for transaction {}", tx.getId());
-                    continue;
-                }
-                WarehouseProduct wp = wpOpt.get();
+    /**
+     * Release every HOLD of the given orders, found through the order_id index
+     * @return total units released
+     */
+    @Transactional
+    public int releaseHoldsForOrders(Collection<Long> orderIds) {
+        List<Long> ids = new ArrayList<>(new TreeSet<>(orderIds));
+        int totalReleased = 0;
+        for (int from = 0; from < ids.size(); from += RELEASE_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + RELEASE_CHUNK_SIZE, ids.size()));
+            totalReleased += releaseLocked(inventoryTransactionRepository.lockHeldByOrderIds(chunk));
+        }
+        return totalReleased;
+    }
+
+    /**
+     * Release the stock held for one order
+     * @return false if the release failed
+     */
+    @Transactional
+    public boolean unholdOrder(Long orderId) {
+        try {
+            int totalReleased = releaseHoldsForOrders(List.of(orderId));
+            logger.info("Released {} units held for orderId={}", totalReleased, orderId);
+            return true;
+        } catch (Exception e) {
+            logger.error("Error unholding inventory for orderId={}: {}", orderId, e.getMessage(), e);
+            return false;
+        }
+    }
 
-                int stockBefore = wp.getQuantity();
-                logger.info("Releasing {} units for transaction {}, warehouse product {} (current: {})",
-                        tx.getQuantity(), tx.getId(), wp.getId(), wp.getQuantity());
+    private int releaseLocked(List<HeldInventoryView> held) {
+        if (held.isEmpty()) return 0;
+
+        // In LEDGER mode warehouse_products is left to the ledger flush and only the counters are given back
+        boolean ledger = reservationMode == ReservationMode.LEDGER && stockLedger.isReady();
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> heldIds = held.stream().map(HeldInventoryView::getId).collect(Collectors.toList());
+        if (ledger) {
+            inventoryTransactionRepository.markAllUnholdPending(heldIds, InventoryTransactionType.UNHOLD, now);
+        } else {
+            inventoryTransactionRepository.markUnheld(heldIds, InventoryTransactionType.UNHOLD, now);
+        }
 
-                wp.setQuantity(wp.getQuantity() + tx.getQuantity());
-                int stockAfter = wp.getQuantity();
-                wp.setModifyTime(LocalDateTime.now());
-                warehouseProductRepository.save(wp);
+        // Units per (warehouseId, productId), ordered so concurrent releases lock stock rows in the same order
+        Map<List<Long>, Integer> releases = new TreeMap<>(
+                Comparator.<List<Long>, Long>comparing(key -> key.get(0)).thenComparing(key -> key.get(1)));
+        Map<List<Long>, HeldInventoryView> names = new HashMap<>();
+        int totalReleased = 0;
+        for (HeldInventoryView row : held) {
+            List<Long> key = List.of(row.getWarehouseId(), row.getProductId());
+            releases.merge(key, releasedUnits(row, ledger), Integer::sum);
+            names.putIfAbsent(key, row);
+            totalReleased += row.getQuantity();
+        }
 
-                tx.setType(InventoryTransactionType.UNHOLD);
-                tx.setTransactionTime(LocalDateTime.now());
-                inventoryTransactionRepository.save(tx);
+        // Stock before the release, for the audit rows (per product total in LEDGER mode, per row otherwise)
+        Map<List<Long>, Integer> stock = new HashMap<>();
+        if (ledger) {
+            for (HeldInventoryView row : held) {
+                stock.computeIfAbsent(List.of(row.getProductId()), key -> (int) stockLedger.getTotal(row.getProductId()));
+            }
+        } else {
+            Set<Long> productIds = held.stream().map(HeldInventoryView::getProductId).collect(Collectors.toSet());
+            for (WarehouseStockView level : warehouseProductRepository.findStockLevelsByProductIds(productIds)) {
+                stock.put(List.of(level.getWarehouseId(), level.getProductId()), level.getQuantity());
+            }
+        }
 
-                totalReleased += tx.getQuantity();
-                
-                // Record audit log for unhold operation
-                recordAuditLog(tx.getProduct().getId(), tx.getProduct().getName(),
-                        tx.getWarehouse().getId(), tx.getWarehouse().getName(),
-                        tx.getQuantity(), tx.getId(), stockBefore, stockAfter, "UNHOLD", "SUCCESS", null);
+        releases.forEach((key, units) -> {
+            Long warehouseId = key.get(0);
+            Long productId = key.get(1);
+            if (ledger) {
+                HeldInventoryView sample = names.get(key);
+                stockLedger.adjustAfterCommit(productId, warehouseId, sample.getProductName(), sample.getWarehouseName(), units);
+            } else if (units != 0) {
+                warehouseProductRepository.adjustQuantity(warehouseId, productId, units, now);
+                stockSummaryService.recordDelta(productId, units);
+                stockIndex.invalidateAfterCommit(productId);
             }
+        });
 
-            logger.info("Total released: {} units", totalReleased);
-            return true;
-        } catch (Exception e) {
-            logger.error("Error unholding inventory: {}", e.getMessage(), e);
-            return false;
+        List<InventoryAuditLog> auditLogs = new ArrayList<>();
+        for (HeldInventoryView row : held) {
+            List<Long> key = ledger ? List.of(row.getProductId()) : List.of(row.getWarehouseId(), row.getProductId());
+            int stockBefore = stock.getOrDefault(key, 0);
+            int stockAfter = stockBefore + releasedUnits(row, ledger);
+            stock.put(key, stockAfter);
+            auditLogs.add(buildAuditLog(row.getProductId(), row.getProductName(), row.getWarehouseId(), row.getWarehouseName(),
+                    row.getQuantity(), row.getOrderId() != null ? row.getOrderId() : row.getId(),
+                    stockBefore, stockAfter, "UNHOLD", "SUCCESS", null));
+        }
+        auditWriter.writeAll(auditLogs);
+
+        logger.info("Released {} transactions ({} units) with {} stock updates",
+                held.size(), totalReleased, releases.size());
+        return totalReleased;
+    }
+
+    /**
+     * Units a release gives back: the ledger counters always had the hold taken,
+     * warehouse_products only had what was already applied to it (appliedQuantity null = applied inline)
+     */
+    private static int releasedUnits(HeldInventoryView row, boolean ledger) {
+        if (ledger || row.getAppliedQuantity() == null) {
+            return row.getQuantity();
         }
+        return -row.getAppliedQuantity();
     }
 
     /**
@@ -337,10 +667,43 @@ public class WarehouseService {
         return tx;
     }
 
+    /**
+     * Journal an absolute stock level (IN row: quantity is the level the row was set to), so snapshot replay
+     * also covers restocks and assignments
+     */
+    public void recordStockSet(WarehouseProduct wp) {
+        inventoryTransactionRepository.save(createInventoryTransaction(wp, wp.getQuantity(), InventoryTransactionType.IN));
+    }
+
+    /**
+     * Record the OUT rows of a delivered (or lost) order in one pass: one per HOLD row of the order,
+     * or per product from current stock for orders placed without HOLD rows.
+     * @param quantities units per product, only used when the order has no HOLD rows
+     */
+    @Transactional
+    public boolean recordOutForOrder(Long orderId, Map<Long, Integer> quantities) {
+        List<InventoryTransaction> holds = inventoryTransactionRepository
+                .findByOrderIdAndType(orderId, InventoryTransactionType.HOLD);
+        if (holds.isEmpty()) {
+            boolean recorded = true;
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                recorded &= recordOutTransaction(entry.getKey(), entry.getValue(), orderId);
+            }
+            return recorded;
+        }
+        try {
+            return recordOutFromHolds(holds, orderId);
+        } catch (Exception e) {
+            logger.error("Error recording OUT transactions for orderId={}: {}", orderId, e.getMessage(), e);
+            return false;
+        }
+    }
+
     /**
      * Record OUT transaction for delivered or lost orders
      * This is an audit record to track when inventory officially leaves the system
-     * Uses the same logic as getAndUpdateAvailableWarehouse to distribute across multiple warehouses
+     * Mirrors the order's HOLD rows warehouse by warehouse; orders without linked holds fall back to
+     * the same distribution logic as getAndUpdateAvailableWarehouse
      * @param productId Product ID
      * @param quantity Quantity that left
      * @param orderId Order ID for reference
@@ -351,9 +714,16 @@ public class WarehouseService {
         logger.info("Recording OUT transaction: productId={}, quantity={}, orderId={}", productId, quantity, orderId);
         
         try {
+            if (orderId != null) {
+                List<InventoryTransaction> holds = inventoryTransactionRepository
+                        .findByOrderIdAndType(orderId, InventoryTransactionType.HOLD);
+                if (!holds.isEmpty()) {
+                    return recordOutFromHolds(holds, orderId);
+                }
+            }
+
             // Get product info for audit log (in case of failure)
-            Product product = productRepository.findById(productId).orElse(null);
-            String productName = product != null ? product.getName() : null;
+            String productName = productCatalog.getName(productId);
             
             // Get all warehouse products for this product (using same logic as hold)
             List<WarehouseProduct> availableProducts = warehouseProductRepository.findByProductIdAndQuantity(productId);
@@ -380,6 +750,7 @@ public class WarehouseService {
                 
                 // Use public createInventoryTransaction method
                 InventoryTransaction tx = createInventoryTransaction(wp, quantityToRecord, InventoryTransactionType.OUT);
+                tx.setOrderId(orderId);
                 transactionsToCreate.add(tx);
                 
                 remainingQuantity -= quantityToRecord;
@@ -410,75 +781,155 @@ public class WarehouseService {
             logger.error("Error recording OUT transaction: {}", e.getMessage(), e);
             
             // Try to get product info for audit log
-            Product product = productRepository.findById(productId).orElse(null);
-            String productName = product != null ? product.getName() : null;
+            String productName = productCatalog.getName(productId);
             recordAuditLog(productId, productName, null, null, quantity, orderId, 0, 0, "OUT", "FAILED", e.getMessage());
             return false;
         }
     }
     
+    private boolean recordOutFromHolds(List<InventoryTransaction> holds, Long orderId) {
+        // Stock per (warehouseId, productId), the holds of a multi-item order span several products
+        Set<Long> productIds = holds.stream().map(hold -> hold.getProduct().getId()).collect(Collectors.toSet());
+        Map<List<Long>, Integer> stockByWarehouse = new HashMap<>();
+        for (WarehouseStockView level : warehouseProductRepository.findStockLevelsByProductIds(productIds)) {
+            stockByWarehouse.put(List.of(level.getWarehouseId(), level.getProductId()), level.getQuantity());
+        }
+
+        List<InventoryTransaction> transactionsToCreate = new ArrayList<>();
+        int totalRecorded = 0;
+        for (InventoryTransaction hold : holds) {
+            InventoryTransaction tx = new InventoryTransaction();
+            tx.setProduct(hold.getProduct());
+            tx.setWarehouse(hold.getWarehouse());
+            tx.setQuantity(hold.getQuantity());
+            tx.setType(InventoryTransactionType.OUT);
+            tx.setTransactionTime(LocalDateTime.now());
+            tx.setOrderId(orderId);
+            transactionsToCreate.add(tx);
+            totalRecorded += hold.getQuantity();
+
+            int stock = stockByWarehouse.getOrDefault(List.of(hold.getWarehouse().getId(), hold.getProduct().getId()), 0);
+            recordAuditLog(hold.getProduct().getId(), productCatalog.getName(hold.getProduct().getId()),
+                    hold.getWarehouse().getId(), hold.getWarehouse().getName(),
+                    hold.getQuantity(), orderId, stock, stock - hold.getQuantity(), "OUT", "SUCCESS", null);
+        }
+
+        inventoryTransactionRepository.saveAll(transactionsToCreate);
+        logger.info("Created {} OUT transaction(s) from holds for orderId={}, total quantity={}",
+                transactionsToCreate.size(), orderId, totalRecorded);
+        return true;
+    }
+
     /**
-     * Record inventory operation to audit log table
+     * Record inventory operation to audit log table (through the batched audit writer)
      */
     private void recordAuditLog(Long productId, String productName, Long warehouseId, String warehouseName,
                                 Integer quantity, Long orderId, Integer stockBefore, Integer stockAfter,
                                 String operationType, String status, String errorMessage) {
         try {
-            InventoryAuditLog auditLog = new InventoryAuditLog();
-            auditLog.setOperationType(operationType);
-            auditLog.setProductId(productId);
-            auditLog.setProductName(productName);
-            auditLog.setWarehouseId(warehouseId);
-            auditLog.setWarehouseName(warehouseName);
-            auditLog.setQuantity(quantity);
-            auditLog.setOrderId(orderId);
-            auditLog.setStockBefore(stockBefore);
-            auditLog.setStockAfter(stockAfter);
-            auditLog.setOperationTime(LocalDateTime.now());
-            auditLog.setReason("Order processing");
-            auditLog.setStatus(status);
-            auditLog.setErrorMessage(errorMessage);
-            
-            auditLogRepository.save(auditLog);
+            auditWriter.write(buildAuditLog(productId, productName, warehouseId, warehouseName, quantity, orderId,
+                    stockBefore, stockAfter, operationType, status, errorMessage));
         } catch (Exception e) {
             logger.error("Failed to record audit log: {}", e.getMessage(), e);
         }
     }
+
+    private InventoryAuditLog buildAuditLog(Long productId, String productName, Long warehouseId, String warehouseName,
+                                            Integer quantity, Long orderId, Integer stockBefore, Integer stockAfter,
+                                            String operationType, String status, String errorMessage) {
+        InventoryAuditLog auditLog = new InventoryAuditLog();
+        auditLog.setOperationType(operationType);
+        auditLog.setProductId(productId);
+        auditLog.setProductName(productName);
+        auditLog.setWarehouseId(warehouseId);
+        auditLog.setWarehouseName(warehouseName);
+        auditLog.setQuantity(quantity);
+        auditLog.setOrderId(orderId);
+        auditLog.setStockBefore(stockBefore);
+        auditLog.setStockAfter(stockAfter);
+        auditLog.setOperationTime(LocalDateTime.now());
+        auditLog.setReason("Order processing");
+        auditLog.setStatus(status);
+        auditLog.setErrorMessage(errorMessage);
+        return auditLog;
+    }
     
+    public AuditWriterStatsDTO getAuditWriterStats() {
+        return auditWriter.getStats();
+    }
+
+    /**
+     * One keyset page of audit logs, newest first, with every filter pushed into the query
+     */
+    @Transactional(readOnly = true)
+    public AuditLogPageDTO queryAuditLogs(AuditLogQuery query) {
+        int limit = query.getLimit() == null || query.getLimit() <= 0
+                ? auditDefaultPageSize : Math.min(query.getLimit(), auditMaxPageSize);
+        KeysetCursor after = query.getCursor() == null || query.getCursor().isBlank()
+                ? null : KeysetCursor.decode(query.getCursor());
+
+        // One extra row tells whether there is a next page without a count query
+        List<InventoryAuditLog> rows = auditLogRepository.findPage(query, after, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+        InventoryAuditLog last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+        String nextCursor = hasMore ? new KeysetCursor(last.getOperationTime(), last.getId()).encode() : null;
+        return new AuditLogPageDTO(rows.stream().map(InventoryAuditLogDTO::new).collect(Collectors.toList()),
+                nextCursor, hasMore);
+    }
+
+    /**
+     * List-shaped audit endpoints: one page when a cursor or limit is given; otherwise every matching row,
+     * newest first, as these endpoints always returned (read in max-page-size pages)
+     */
+    @Transactional(readOnly = true)
+    public AuditLogPageDTO listAuditLogs(AuditLogQuery query) {
+        if (query.getLimit() != null || (query.getCursor() != null && !query.getCursor().isBlank())) {
+            return queryAuditLogs(query);
+        }
+        List<InventoryAuditLogDTO> rows = new ArrayList<>();
+        AuditLogQuery pageQuery = query.copy();
+        pageQuery.setLimit(auditMaxPageSize);
+        do {
+            AuditLogPageDTO page = queryAuditLogs(pageQuery);
+            rows.addAll(page.getItems());
+            pageQuery.setCursor(page.getNextCursor());
+        } while (pageQuery.getCursor() != null);
+        return new AuditLogPageDTO(rows, null, false);
+    }
+
     /**
      * Query audit logs by order ID
      */
     @Transactional(readOnly = true)
     public List<InventoryAuditLogDTO> getAuditLogsByOrderId(Long orderId) {
-        List<InventoryAuditLog> logs = auditLogRepository.findByOrderId(orderId);
-        return logs.stream().map(InventoryAuditLogDTO::new).collect(Collectors.toList());
+        return listAuditLogs(orderAuditQuery(null, orderId)).getItems();
     }
     
     /**
-     * Query audit logs by product ID
+     * Query audit logs by product ID (every matching row, newest first)
      */
     @Transactional(readOnly = true)
     public List<InventoryAuditLogDTO> getAuditLogsByProductId(Long productId) {
-        List<InventoryAuditLog> logs = auditLogRepository.findByProductId(productId);
-        return logs.stream().map(InventoryAuditLogDTO::new).collect(Collectors.toList());
+        return listAuditLogs(AuditLogQuery.of(null, null, productId, null, null)).getItems();
     }
     
     /**
-     * Query audit logs by warehouse ID
+     * Query audit logs by warehouse ID (every matching row, newest first)
      */
     @Transactional(readOnly = true)
     public List<InventoryAuditLogDTO> getAuditLogsByWarehouseId(Long warehouseId) {
-        List<InventoryAuditLog> logs = auditLogRepository.findByWarehouseId(warehouseId);
-        return logs.stream().map(InventoryAuditLogDTO::new).collect(Collectors.toList());
+        return listAuditLogs(AuditLogQuery.of(null, null, null, warehouseId, null)).getItems();
     }
     
     /**
-     * Query failed audit logs
+     * Query failed audit logs (every matching row, newest first)
      */
     @Transactional(readOnly = true)
     public List<InventoryAuditLogDTO> getFailedAuditLogs() {
-        List<InventoryAuditLog> logs = auditLogRepository.findFailedOperations();
-        return logs.stream().map(InventoryAuditLogDTO::new).collect(Collectors.toList());
+        return listAuditLogs(AuditLogQuery.of(null, "FAILED", null, null, null)).getItems();
     }
     
     /**
@@ -487,8 +938,7 @@ public class WarehouseService {
      */
     @Transactional(readOnly = true)
     public List<InventoryAuditLogDTO> getOutTransactionLogs() {
-        List<InventoryAuditLog> logs = auditLogRepository.findByOperationType("OUT");
-        return logs.stream().map(InventoryAuditLogDTO::new).collect(Collectors.toList());
+        return listAuditLogs(AuditLogQuery.of("OUT", null, null, null, null)).getItems();
     }
     
     /**
@@ -496,8 +946,18 @@ public class WarehouseService {
      */
     @Transactional(readOnly = true)
     public List<InventoryAuditLogDTO> getOutTransactionLogsByOrderId(Long orderId) {
-        List<InventoryAuditLog> logs = auditLogRepository.findByOrderIdAndOperationType(orderId, "OUT");
-        return logs.stream().map(InventoryAuditLogDTO::new).collect(Collectors.toList());
+        return listAuditLogs(orderAuditQuery("OUT", orderId)).getItems();
+    }
+
+    /**
+     * Audit rows of an order are written after the order is created, so bounding operation_time by the order's
+     * creation time lets PostgreSQL prune the audit partitions down to the recent (hot) ones
+     */
+    public AuditLogQuery orderAuditQuery(String operationType, Long orderId) {
+        AuditLogQuery query = AuditLogQuery.of(operationType, null, null, null, orderId);
+        orderRepository.findCreatedAtById(orderId)
+                .ifPresent(createdAt -> query.setFrom(createdAt.minusMinutes(ORDER_AUDIT_MARGIN_MINUTES)));
+        return query;
     }
     
     /**
@@ -505,12 +965,7 @@ public class WarehouseService {
      */
     @Transactional(readOnly = true)
     public List<InventoryAuditLogDTO> getOutTransactionLogsByProductId(Long productId) {
-        // Filter OUT operations by product ID
-        List<InventoryAuditLog> allLogs = auditLogRepository.findByProductId(productId);
-        return allLogs.stream()
-                .filter(log -> "OUT".equals(log.getOperationType()))
-                .map(InventoryAuditLogDTO::new)
-                .collect(Collectors.toList());
+        return listAuditLogs(AuditLogQuery.of("OUT", null, productId, null, null)).getItems();
     }
     
     /**
@@ -518,13 +973,7 @@ public class WarehouseService {
      */
     @Transactional(readOnly = true)
     public List<InventoryAuditLogDTO> getOutTransactionLogsByWarehouseId(Long warehouseId) {
-        // Filter OUT operations by warehouse ID
-        List<InventoryAuditLog> allLogs = auditLogRepository.findByWarehouseId(warehouseId);
-        return allLogs.stream()
-                .filter(log -> "OUT".equals(log.getOperationType()))
-                .map(InventoryAuditLogDTO::new)
-                .collect(Collectors.toList());
+        return listAuditLogs(AuditLogQuery.of("OUT", null, null, warehouseId, null)).getItems();
     }
-}
-
 
+}
@@ -0,0 +1,61 @@
+package comp5348.storeservice.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Loads what belongs to a list of parents (payments of orders, lines of orders, ...) with set-based
+ * "WHERE key IN (...)" queries instead of one lookup per parent. Keys are de-duplicated, nulls dropped,
+ * and large key sets are split into chunks so a single IN list stays within reasonable bind-parameter counts.
+ */
+public final class BatchLoader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private BatchLoader() {
+    }
+
+    /**
+     * One value per key (e.g. the payment of an order); keys without a value are absent from the map
+     */
+    public static <K, V> Map<K, V> loadByKeys(Collection<K> keys, Function<Collection<K>, List<V>> query,
+                                              Function<V, K> keyOf) {
+        Map<K, V> result = new HashMap<>();
+        for (List<K> chunk : chunks(keys, DEFAULT_CHUNK_SIZE)) {
+            for (V value : query.apply(chunk)) {
+                result.put(keyOf.apply(value), value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Any number of values per key (e.g. the lines of an order), in the order the query returns them
+     */
+    public static <K, V> Map<K, List<V>> loadGroupedByKeys(Collection<K> keys, Function<Collection<K>, List<V>> query,
+                                                           Function<V, K> keyOf) {
+        Map<K, List<V>> result = new HashMap<>();
+        for (List<K> chunk : chunks(keys, DEFAULT_CHUNK_SIZE)) {
+            for (V value : query.apply(chunk)) {
+                result.computeIfAbsent(keyOf.apply(value), key -> new ArrayList<>()).add(value);
+            }
+        }
+        return result;
+    }
+
+    private static <K> List<List<K>> chunks(Collection<K> keys, int chunkSize) {
+        List<K> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        distinct.removeIf(Objects::isNull);
+        List<List<K>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            chunks.add(distinct.subList(from, Math.min(from + chunkSize, distinct.size())));
+        }
+        return chunks;
+    }
+}
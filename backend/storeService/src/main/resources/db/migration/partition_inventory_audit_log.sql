@@ -0,0 +1,93 @@
+-- Converts inventory_audit_log into a table range-partitioned by month on operation_time and installs the
+-- functions AuditPartitionManager calls to create and detach monthly partitions.
+--
+-- Run once by AuditLogPartitionMigration, in one transaction, before the service takes requests.
+--
+-- Existing rows are not copied: the old table becomes the partition for everything before the current month
+-- (inventory_audit_log_history). A CHECK constraint proves its range first, so the attach does not scan it again.
+-- AuditPartitionManager archives it like a monthly partition once all of its rows are past retention.
+--
+-- The primary key becomes (id, operation_time), as a partitioned table's key must include operation_time.
+-- ids stay unique because they come from one sequence (identity columns need PostgreSQL 17 on partitioned
+-- tables); InventoryAuditLog keeps mapping id alone, and ddl-auto=update does not touch primary keys.
+
+alter table inventory_audit_log rename to inventory_audit_log_history;
+alter table inventory_audit_log_history rename constraint inventory_audit_log_pkey to inventory_audit_log_history_pkey;
+
+create sequence inventory_audit_log_part_id_seq;
+select setval('inventory_audit_log_part_id_seq',
+              coalesce((select max(id) from inventory_audit_log_history), 0) + 1, false);
+alter table inventory_audit_log_history alter column id drop identity if exists;
+
+create table inventory_audit_log (
+    like inventory_audit_log_history including defaults,
+    constraint inventory_audit_log_part_pkey primary key (id, operation_time)
+) partition by range (operation_time);
+alter table inventory_audit_log alter column id set default nextval('inventory_audit_log_part_id_seq');
+alter sequence inventory_audit_log_part_id_seq owned by inventory_audit_log.id;
+
+-- Same indexes as declared on InventoryAuditLog; the history table gets matching ones when it is attached
+alter index if exists idx_audit_time_id rename to idx_audit_history_time_id;
+alter index if exists idx_audit_type_time_id rename to idx_audit_history_type_time_id;
+alter index if exists idx_audit_status_time_id rename to idx_audit_history_status_time_id;
+alter index if exists idx_audit_product_time_id rename to idx_audit_history_product_time_id;
+alter index if exists idx_audit_warehouse_time_id rename to idx_audit_history_warehouse_time_id;
+alter index if exists idx_audit_order_type rename to idx_audit_history_order_type;
+create index idx_audit_time_id on inventory_audit_log (operation_time, id);
+create index idx_audit_type_time_id on inventory_audit_log (operation_type, operation_time, id);
+create index idx_audit_status_time_id on inventory_audit_log (status, operation_time, id);
+create index idx_audit_product_time_id on inventory_audit_log (product_id, operation_time, id);
+create index idx_audit_warehouse_time_id on inventory_audit_log (warehouse_id, operation_time, id);
+create index idx_audit_order_type on inventory_audit_log (order_id, operation_type);
+
+create table inventory_audit_log_default partition of inventory_audit_log default;
+
+-- Monthly partition of the given month; rows of that month already in the default partition are moved into it
+create or replace function inventory_audit_create_partition(month date) returns boolean
+language plpgsql as $$
+declare
+    month_start timestamp := date_trunc('month', month);
+    month_end timestamp := date_trunc('month', month) + interval '1 month';
+    partition_name text := 'inventory_audit_log_p' || to_char(month, 'YYYY_MM');
+begin
+    if to_regclass(partition_name) is not null then
+        return false;
+    end if;
+    execute format('create table %I (like inventory_audit_log including defaults)', partition_name);
+    execute format('insert into %I select * from inventory_audit_log_default '
+                   'where operation_time >= %L and operation_time < %L', partition_name, month_start, month_end);
+    execute format('delete from inventory_audit_log_default where operation_time >= %L and operation_time < %L',
+                   month_start, month_end);
+    execute format('alter table inventory_audit_log attach partition %I for values from (%L) to (%L)',
+                   partition_name, month_start, month_end);
+    return true;
+end;
+$$;
+
+-- Detach the monthly partition of the given month; AuditPartitionManager archives and drops the detached table
+create or replace function inventory_audit_detach_partition(month date) returns boolean
+language plpgsql as $$
+declare
+    partition_name text := 'inventory_audit_log_p' || to_char(month, 'YYYY_MM');
+begin
+    if not exists (select 1 from pg_inherits i join pg_class c on c.oid = i.inhrelid
+                   where i.inhparent = 'inventory_audit_log'::regclass and c.relname = partition_name) then
+        return false;
+    end if;
+    execute format('alter table inventory_audit_log detach partition %I', partition_name);
+    return true;
+end;
+$$;
+
+do $$
+declare
+    current_month timestamp := date_trunc('month', localtimestamp);
+begin
+    execute format('alter table inventory_audit_log_history add constraint inventory_audit_log_history_range '
+                   'check (operation_time < %L)', current_month);
+    execute format('alter table inventory_audit_log attach partition inventory_audit_log_history '
+                   'for values from (minvalue) to (%L)', current_month);
+end;
+$$;
+
+select inventory_audit_create_partition(cast(date_trunc('month', localtimestamp) as date));
@@ -0,0 +1,14 @@
+-- Schema changes ddl-auto=update does not make on an existing database.
+-- Runs on every start after Hibernate has updated the schema, so every statement must be idempotent.
+
+-- FAILED audit records have no warehouse (InventoryAuditLog.warehouseId became nullable)
+alter table inventory_audit_log alter column warehouse_id drop not null;
+
+-- Completion markers of one-time data migrations run by the application (e.g. ReservationLinkMigration)
+create table if not exists schema_migration (
+    name varchar(100) primary key,
+    applied_at timestamp not null
+);
+
+-- Watermark of snapshot runs and of UNHOLD flips (InventoryTransactionRepository.markUnheld/markAllUnholdPending)
+create sequence if not exists inventory_tx_change_seq;
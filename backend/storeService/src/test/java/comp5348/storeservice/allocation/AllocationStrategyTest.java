@@ -0,0 +1,102 @@
+package comp5348.storeservice.allocation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class AllocationStrategyTest {
+
+    private static final Destination SYDNEY = new Destination(-33.87, 151.21);
+
+    // 33 units in total; warehouse 4 is empty and warehouse 3 has no coordinates
+    private static final List<StockSlot> SLOTS = List.of(
+            slot(1L, 5, -33.87, 151.21),      // Sydney
+            slot(2L, 20, -37.81, 144.96),     // Melbourne
+            slot(3L, 8, null, null),
+            slot(4L, 0, -27.47, 153.03));     // Brisbane
+
+    private final SmallestFirstAllocation smallestFirst = new SmallestFirstAllocation();
+    private final LargestFirstAllocation largestFirst = new LargestFirstAllocation();
+    private final FewestSplitsAllocation fewestSplits = new FewestSplitsAllocation();
+    private final SingleWarehouseAllocation singleWarehouse = new SingleWarehouseAllocation(smallestFirst);
+    private final NearestWarehouseAllocation nearest = new NearestWarehouseAllocation(fewestSplits);
+
+    @Test
+    void smallestFirstDrainsTheSmallestWarehouses() {
+        assertThat(plan(smallestFirst, 10, null)).containsExactly("1:5", "3:5");
+    }
+
+    @Test
+    void largestFirstTakesFromTheLargestWarehouses() {
+        assertThat(plan(largestFirst, 25, null)).containsExactly("2:20", "3:5");
+    }
+
+    @Test
+    void fewestSplitsUsesTheSmallestWarehouseThatCoversTheRest() {
+        assertThat(plan(fewestSplits, 7, null)).containsExactly("3:7");
+        assertThat(plan(fewestSplits, 25, null)).containsExactly("2:20", "1:5");
+    }
+
+    @Test
+    void singleWarehouseShipsFromOneWarehouseWhenItCan() {
+        assertThat(plan(singleWarehouse, 6, null)).containsExactly("3:6");
+        // No warehouse holds 25: falls back to smallest first
+        assertThat(plan(singleWarehouse, 25, null)).containsExactly("1:5", "3:8", "2:12");
+    }
+
+    @Test
+    void nearestTakesFromTheClosestWarehousesAndLeavesUnlocatedOnesLast() {
+        assertThat(plan(nearest, 10, SYDNEY)).containsExactly("1:5", "2:5");
+        assertThat(plan(nearest, 30, SYDNEY)).containsExactly("1:5", "2:20", "3:5");
+    }
+
+    @Test
+    void nearestWithoutDestinationFallsBackToFewestSplits() {
+        assertThat(plan(nearest, 7, null)).containsExactly("3:7");
+    }
+
+    @Test
+    void everyStrategyRejectsMoreThanTheTotalStock() {
+        for (AllocationStrategy strategy : List.of(smallestFirst, largestFirst, fewestSplits, singleWarehouse, nearest)) {
+            assertThat(strategy.allocate(SLOTS, 34, SYDNEY)).as(strategy.getName()).isNull();
+        }
+    }
+
+    @Test
+    void destinationDistanceIsTheGreatCircleDistance() {
+        assertThat(SYDNEY.distanceKm(-37.81, 144.96)).isCloseTo(713.4, within(0.5));
+        assertThat(SYDNEY.distanceKm(-33.87, 151.21)).isCloseTo(0.0, within(1e-9));
+        assertThat(SYDNEY.distanceKm(null, 151.21)).isEqualTo(Double.MAX_VALUE);
+    }
+
+    @Test
+    void registryLooksStrategiesUpByNameIgnoringCase() {
+        AllocationStrategies strategies = new AllocationStrategies(
+                List.of(smallestFirst, largestFirst, fewestSplits, singleWarehouse, nearest), "smallest_first");
+
+        assertThat(strategies.getConfigured()).isSameAs(smallestFirst);
+        assertThat(strategies.get("nearest")).isSameAs(nearest);
+        assertThat(strategies.getAll()).hasSize(5);
+        assertThatThrownBy(() -> strategies.get("RANDOM"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown allocation strategy");
+    }
+
+    private static List<String> plan(AllocationStrategy strategy, int quantity, Destination destination) {
+        List<AllocationLine> lines = strategy.allocate(SLOTS, quantity, destination);
+        assertThat(lines).as(strategy.getName() + " plan for " + quantity).isNotNull();
+        return lines.stream()
+                .map(line -> line.getSlot().getWarehouseId() + ":" + line.getQuantity())
+                .collect(Collectors.toList());
+    }
+
+    private static StockSlot slot(Long warehouseId, int quantity, Double latitude, Double longitude) {
+        return new StockSlot(warehouseId * 10, warehouseId, "Warehouse " + warehouseId, null, latitude, longitude,
+                1L, "Widget", quantity);
+    }
+}
@@ -0,0 +1,105 @@
+package comp5348.storeservice.benchmark;
+
+import comp5348.storeservice.allocation.AllocationLine;
+import comp5348.storeservice.allocation.AllocationStrategies;
+import comp5348.storeservice.allocation.AllocationStrategy;
+import comp5348.storeservice.allocation.Destination;
+import comp5348.storeservice.allocation.StockSlot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares allocation strategies on the same simulated order stream for one product.
+ * Logs orders fulfilled, average/max warehouses per order (splits) and rows written, where every
+ * allocation line costs one HOLD row, one audit row and one warehouse_products update.
+ *
+ * Pure in-memory simulation (no database writes). Enable with --benchmark.allocation.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "benchmark.allocation.enabled", havingValue = "true")
+public class AllocationStrategyBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(AllocationStrategyBenchmark.class);
+    private static final int ROWS_PER_LINE = 3;
+
+    @Autowired
+    private AllocationStrategies allocationStrategies;
+
+    @Value("${benchmark.allocation.warehouses:5}")
+    private int warehouseCount;
+
+    @Value("${benchmark.allocation.orders:10000}")
+    private int orderCount;
+
+    @Value("${benchmark.allocation.max-order-quantity:5}")
+    private int maxOrderQuantity;
+
+    @Value("${benchmark.allocation.seed:42}")
+    private long seed;
+
+    @Override
+    public void run(String... args) {
+        logger.info("[BENCHMARK] Allocation strategies: warehouses={}, orders={}, maxOrderQuantity={}, seed={}",
+                warehouseCount, orderCount, maxOrderQuantity, seed);
+        for (AllocationStrategy strategy : allocationStrategies.getAll()) {
+            simulate(strategy);
+        }
+    }
+
+    private void simulate(AllocationStrategy strategy) {
+        // Same seed for every strategy: identical warehouses, stock and order stream
+        Random random = new Random(seed);
+        List<StockSlot> slots = new ArrayList<>();
+        for (int i = 0; i < warehouseCount; i++) {
+            slots.add(new StockSlot((long) i, (long) i, "Warehouse " + i, null,
+                    -34.0 + random.nextDouble(), 150.5 + random.nextDouble(),
+                    1L, "Benchmark SKU", 100 + random.nextInt(900)));
+        }
+
+        int fulfilled = 0;
+        int rejected = 0;
+        long lines = 0;
+        int maxSplits = 0;
+        int singleWarehouse = 0;
+        double distanceKm = 0;
+        for (int n = 0; n < orderCount; n++) {
+            int quantity = 1 + random.nextInt(maxOrderQuantity);
+            Destination destination = new Destination(-34.0 + random.nextDouble(), 150.5 + random.nextDouble());
+
+            List<AllocationLine> plan = strategy.allocate(slots, quantity, destination);
+            if (plan == null) {
+                rejected++;
+                continue;
+            }
+            fulfilled++;
+            lines += plan.size();
+            maxSplits = Math.max(maxSplits, plan.size());
+            if (plan.size() == 1) singleWarehouse++;
+            for (AllocationLine line : plan) {
+                StockSlot slot = line.getSlot();
+                distanceKm += destination.distanceKm(slot.getLatitude(), slot.getLongitude());
+                int index = slot.getWarehouseId().intValue();
+                slots.set(index, slots.get(index).withQuantity(slots.get(index).getQuantity() - line.getQuantity()));
+            }
+        }
+
+        logger.info("[BENCHMARK] strategy={} fulfilled={} rejected={} avgSplits={} maxSplits={} singleWarehouse={}% " +
+                        "rowsWritten={} rowsPerOrder={} avgDistanceKm={}",
+                strategy.getName(), fulfilled, rejected,
+                String.format("%.3f", fulfilled == 0 ? 0 : (double) lines / fulfilled),
+                maxSplits,
+                String.format("%.1f", fulfilled == 0 ? 0 : 100.0 * singleWarehouse / fulfilled),
+                lines * ROWS_PER_LINE,
+                String.format("%.2f", fulfilled == 0 ? 0 : (double) lines * ROWS_PER_LINE / fulfilled),
+                String.format("%.1f", lines == 0 ? 0 : distanceKm / lines));
+    }
+}
@@ -0,0 +1,244 @@
+package comp5348.storeservice.benchmark;
+
+import comp5348.storeservice.dto.CreateOrderRequest;
+import comp5348.storeservice.model.Product;
+import comp5348.storeservice.model.Warehouse;
+import comp5348.storeservice.model.WarehouseProduct;
+import comp5348.storeservice.repository.ProductRepository;
+import comp5348.storeservice.repository.WarehouseProductRepository;
+import comp5348.storeservice.repository.WarehouseRepository;
+import comp5348.storeservice.service.OrderPlacementStatement;
+import comp5348.storeservice.service.OrderService;
+import comp5348.storeservice.service.OrderService.PlacementMode;
+import comp5348.storeservice.service.ProductStockSummaryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency benchmark for order placement: the JPA path against the single-statement path (OrderPlacementStatement).
+ * Each client places multi-line orders over its own products, so the numbers reflect round-trips rather than
+ * lock contention, and logs throughput and latency percentiles per mode, once with every order committed
+ * (commit and WAL flush included) and once with every order rolled back, side by side.
+ *
+ * Enable with --benchmark.placement.enabled=true (with --outbox.processor.enabled=false, so the committed
+ * orders' payment events are not dispatched meanwhile). Creates its own "Benchmark Placement" products and
+ * deletes them afterwards together with the committed orders, their lines, holds, audit rows and outbox events.
+ */
+@Component
+@ConditionalOnProperty(name = "benchmark.placement.enabled", havingValue = "true")
+public class OrderPlacementBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPlacementBenchmark.class);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderPlacementStatement placementStatement;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private WarehouseProductRepository warehouseProductRepository;
+
+    @Autowired
+    private ProductStockSummaryService stockSummaryService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${benchmark.placement.threads:8}")
+    private int threads;
+
+    @Value("${benchmark.placement.orders-per-thread:200}")
+    private int ordersPerThread;
+
+    @Value("${benchmark.placement.lines:3}")
+    private int linesPerOrder;
+
+    @Value("${benchmark.placement.warehouses:3}")
+    private int warehouseCount;
+
+    @Value("${benchmark.placement.user-id:1}")
+    private Long userId;
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!placementStatement.isSupported()) {
+            logger.info("[BENCHMARK] Order placement skipped: the STATEMENT path does not support inventory.reservation.mode=LEDGER");
+            return;
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<List<Long>> productsPerThread = tx.execute(status -> createProducts());
+        logger.info("[BENCHMARK] Order placement: threads={}, ordersPerThread={}, lines={}, warehouses={}",
+                threads, ordersPerThread, linesPerOrder, warehouseCount);
+
+        try {
+            for (PlacementMode mode : PlacementMode.values()) {
+                // Warm-up round so connection pool, statement cache and JIT do not count against the first mode
+                runRound(tx, productsPerThread, mode, Math.min(20, ordersPerThread), false, false);
+                runRound(tx, productsPerThread, mode, ordersPerThread, true, true);
+                runRound(tx, productsPerThread, mode, ordersPerThread, false, true);
+            }
+        } finally {
+            cleanUp(productsPerThread.stream().flatMap(List::stream).toArray(Long[]::new));
+        }
+    }
+
+    private void runRound(TransactionTemplate tx, List<List<Long>> productsPerThread, PlacementMode mode,
+                          int orders, boolean commit, boolean report) throws InterruptedException {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long[][] latencies = new long[threads][orders];
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            final int threadIndex = t;
+            final CreateOrderRequest request = buildRequest(productsPerThread.get(t));
+            pool.submit(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < orders; i++) {
+                    long begin = System.nanoTime();
+                    try {
+                        tx.executeWithoutResult(status -> {
+                            orderService.createOrder(request, mode);
+                            if (!commit) status.setRollbackOnly();
+                        });
+                        succeeded.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                    latencies[threadIndex][i] = System.nanoTime() - begin;
+                }
+            });
+        }
+
+        long roundStart = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - roundStart) / 1_000_000_000.0;
+        if (!report) return;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        logger.info("[BENCHMARK] placement={} {} succeeded={} failed={} elapsed={}s throughput={} orders/s p50={}ms p99={}ms",
+                mode, commit ? "committed" : "rolled-back", succeeded.get(), failed.get(),
+                String.format("%.2f", seconds),
+                String.format("%.1f", succeeded.get() / seconds),
+                String.format("%.2f", percentile(all, 50) / 1_000_000.0),
+                String.format("%.2f", percentile(all, 99) / 1_000_000.0));
+    }
+
+    private CreateOrderRequest buildRequest(List<Long> productIds) {
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setUserId(userId);
+        List<CreateOrderRequest.OrderItemRequest> items = new ArrayList<>();
+        for (Long productId : productIds) {
+            items.add(new CreateOrderRequest.OrderItemRequest(productId, 1));
+        }
+        request.setOrderItems(items);
+        return request;
+    }
+
+    private List<List<Long>> createProducts() {
+        List<Warehouse> warehouses = new ArrayList<>(warehouseRepository.findAll());
+        while (warehouses.size() < warehouseCount) {
+            Warehouse warehouse = new Warehouse();
+            warehouse.setName("Benchmark Warehouse " + (warehouses.size() + 1));
+            warehouse.setLocation("Benchmark");
+            warehouse.setModifyTime(LocalDateTime.now());
+            warehouses.add(warehouseRepository.save(warehouse));
+        }
+
+        // Enough for every committed order to come from one warehouse
+        int stockPerWarehouse = Math.max(1000, ordersPerThread * PlacementMode.values().length + 100);
+        long suffix = System.currentTimeMillis();
+        List<List<Long>> productsPerThread = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Long> productIds = new ArrayList<>();
+            for (int line = 0; line < linesPerOrder; line++) {
+                Product product = new Product();
+                product.setName("Benchmark Placement " + suffix + "-" + t + "-" + line);
+                product.setPrice(new BigDecimal("1.00"));
+                product.setDescription("Created by OrderPlacementBenchmark");
+                product.setStockQuantity(0);
+                product = productRepository.save(product);
+                for (Warehouse warehouse : warehouses.subList(0, warehouseCount)) {
+                    WarehouseProduct wp = new WarehouseProduct();
+                    wp.setWarehouse(warehouse);
+                    wp.setProduct(product);
+                    wp.setQuantity(stockPerWarehouse);
+                    warehouseProductRepository.save(wp);
+                }
+                stockSummaryService.recordDelta(product.getId(), stockPerWarehouse * warehouseCount);
+                productIds.add(product.getId());
+            }
+            productsPerThread.add(productIds);
+        }
+        return productsPerThread;
+    }
+
+    /**
+     * Delete the benchmark products and everything the committed orders left behind; every order of the
+     * benchmark only has benchmark products, so its orders are found through orders.product_id
+     */
+    private void cleanUp(Long[] productIds) {
+        String orderIds = "select id from orders where product_id = any(?)";
+        String[] statements = {
+                "delete from payment_outbox where order_id in (" + orderIds + ")",
+                "delete from order_view_dirty where order_id in (" + orderIds + ")",
+                "delete from order_view where order_id in (" + orderIds + ")",
+                "delete from inventory_audit_log where product_id = any(?)",
+                "delete from inventory_transactions where product_id = any(?)",
+                "delete from order_lines where order_id in (" + orderIds + ")",
+                "delete from orders where product_id = any(?)",
+                "delete from warehouse_products where product_id = any(?)",
+                "delete from product_stock_summary where product_id = any(?)",
+                "delete from products where id = any(?)"
+        };
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (String sql : statements) {
+                jdbcTemplate.update(sql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", productIds)));
+            }
+        });
+        logger.info("[BENCHMARK] Removed {} benchmark products and their orders", productIds.length);
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
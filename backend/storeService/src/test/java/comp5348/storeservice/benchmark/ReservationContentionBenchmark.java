@@ -0,0 +1,196 @@
+package comp5348.storeservice.benchmark;
+
+import comp5348.storeservice.dto.WarehouseDTO;
+import comp5348.storeservice.model.Product;
+import comp5348.storeservice.model.Warehouse;
+import comp5348.storeservice.model.WarehouseProduct;
+import comp5348.storeservice.repository.ProductRepository;
+import comp5348.storeservice.repository.WarehouseProductRepository;
+import comp5348.storeservice.repository.WarehouseRepository;
+import comp5348.storeservice.service.ProductStockSummaryService;
+import comp5348.storeservice.service.StockLedger;
+import comp5348.storeservice.service.WarehouseService;
+import comp5348.storeservice.service.WarehouseService.ReservationMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contention benchmark for stock reservation on a single hot product.
+ * Runs every ReservationMode with the same number of concurrent clients and logs
+ * successful reservations, conflicts (optimistic lock failures) and latency percentiles.
+ *
+ * Enable with --benchmark.reservation.enabled=true. Creates its own "Benchmark SKU" product, so existing
+ * catalog data is not touched.
+ */
+@Component
+@ConditionalOnProperty(name = "benchmark.reservation.enabled", havingValue = "true")
+public class ReservationContentionBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationContentionBenchmark.class);
+
+    @Autowired
+    private WarehouseService warehouseService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private WarehouseProductRepository warehouseProductRepository;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductStockSummaryService stockSummaryService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${benchmark.reservation.threads:16}")
+    private int threads;
+
+    @Value("${benchmark.reservation.orders-per-thread:50}")
+    private int ordersPerThread;
+
+    @Value("${benchmark.reservation.warehouses:3}")
+    private int warehouseCount;
+
+    @Override
+    public void run(String... args) throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int totalOrders = threads * ordersPerThread;
+
+        Product product = tx.execute(status -> createBenchmarkProduct());
+        List<Long> stockRowIds = tx.execute(status -> createStockRows(product));
+        logger.info("[BENCHMARK] Reservation contention: productId={}, warehouses={}, threads={}, ordersPerThread={}",
+                product.getId(), stockRowIds.size(), threads, ordersPerThread);
+
+        for (ReservationMode mode : ReservationMode.values()) {
+            if (mode == ReservationMode.LEDGER && !stockLedger.isReady()) {
+                logger.info("[BENCHMARK] mode=LEDGER skipped (start with inventory.reservation.mode=LEDGER to include it)");
+                continue;
+            }
+            // Enough stock for every order, so any failure is caused by contention only
+            tx.executeWithoutResult(status -> resetStock(stockRowIds, totalOrders));
+            stockLedger.resync(product.getId());
+            runRound(tx, product.getId(), mode);
+        }
+    }
+
+    private void runRound(TransactionTemplate tx, Long productId, ReservationMode mode) throws InterruptedException {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        long[][] latencies = new long[threads][ordersPerThread];
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            final int threadIndex = t;
+            pool.submit(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < ordersPerThread; i++) {
+                    long begin = System.nanoTime();
+                    try {
+                        WarehouseDTO result = tx.execute(status ->
+                                warehouseService.getAndUpdateAvailableWarehouse(productId, 1, null, mode));
+                        if (result != null) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            insufficient.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        conflicts.incrementAndGet();
+                    }
+                    latencies[threadIndex][i] = System.nanoTime() - begin;
+                }
+            });
+        }
+
+        long roundStart = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - roundStart) / 1_000_000_000.0;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        logger.info("[BENCHMARK] mode={} succeeded={} conflicts={} insufficient={} elapsed={}s throughput={} orders/s p50={}ms p99={}ms",
+                mode, succeeded.get(), conflicts.get(), insufficient.get(),
+                String.format("%.2f", seconds),
+                String.format("%.1f", succeeded.get() / seconds),
+                String.format("%.2f", percentile(all, 50) / 1_000_000.0),
+                String.format("%.2f", percentile(all, 99) / 1_000_000.0));
+    }
+
+    private Product createBenchmarkProduct() {
+        Product product = new Product();
+        product.setName("Benchmark SKU " + System.currentTimeMillis());
+        product.setPrice(new BigDecimal("1.00"));
+        product.setDescription("Created by ReservationContentionBenchmark");
+        product.setStockQuantity(0);
+        return productRepository.save(product);
+    }
+
+    private List<Long> createStockRows(Product product) {
+        List<Warehouse> warehouses = new ArrayList<>(warehouseRepository.findAll());
+        while (warehouses.size() < warehouseCount) {
+            Warehouse warehouse = new Warehouse();
+            warehouse.setName("Benchmark Warehouse " + (warehouses.size() + 1));
+            warehouse.setLocation("Benchmark");
+            warehouse.setModifyTime(LocalDateTime.now());
+            warehouses.add(warehouseRepository.save(warehouse));
+        }
+
+        List<Long> ids = new ArrayList<>();
+        for (Warehouse warehouse : warehouses.subList(0, warehouseCount)) {
+            WarehouseProduct wp = new WarehouseProduct();
+            wp.setWarehouse(warehouse);
+            wp.setProduct(product);
+            wp.setQuantity(0);
+            ids.add(warehouseProductRepository.save(wp).getId());
+        }
+        return ids;
+    }
+
+    private void resetStock(List<Long> stockRowIds, int totalOrders) {
+        int perWarehouse = (totalOrders + stockRowIds.size() - 1) / stockRowIds.size();
+        for (Long id : stockRowIds) {
+            WarehouseProduct wp = warehouseProductRepository.findById(id).orElseThrow();
+            stockSummaryService.recordDelta(wp.getProduct().getId(), perWarehouse - wp.getQuantity());
+            wp.setQuantity(perWarehouse);
+            warehouseProductRepository.save(wp);
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
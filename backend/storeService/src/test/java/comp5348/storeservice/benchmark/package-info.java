@@ -0,0 +1,6 @@
+/**
+ * Benchmarks run as CommandLineRunners inside the application, each behind its own benchmark.*.enabled property.
+ * They live in test sources so they never ship; run one against a database with
+ *   ./gradlew :storeService:bootTestRun --args='--benchmark.<name>.enabled=true'
+ */
+package comp5348.storeservice.benchmark;
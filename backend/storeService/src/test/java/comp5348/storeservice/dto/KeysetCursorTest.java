@@ -0,0 +1,52 @@
+package comp5348.storeservice.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    @Test
+    void roundTripsTimeAndId() {
+        LocalDateTime time = LocalDateTime.of(2026, 3, 14, 9, 26, 53, 589_793_000);
+
+        KeysetCursor decoded = KeysetCursor.decode(new KeysetCursor(time, 42L).encode());
+
+        assertThat(decoded.getTime()).isEqualTo(time);
+        assertThat(decoded.getId()).isEqualTo(42L);
+    }
+
+    @Test
+    void roundTripsWholeSecondsWithoutFraction() {
+        LocalDateTime time = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+        KeysetCursor decoded = KeysetCursor.decode(new KeysetCursor(time, 7L).encode());
+
+        assertThat(decoded.getTime()).isEqualTo(time);
+        assertThat(decoded.getId()).isEqualTo(7L);
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String cursor = new KeysetCursor(LocalDateTime.of(2026, 12, 31, 23, 59, 59, 999_999_000), Long.MAX_VALUE).encode();
+
+        assertThat(cursor).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void malformedCursorsAreRejectedAsIllegalArguments() {
+        String noSeparator = Base64.getUrlEncoder().encodeToString("2026-01-01T00:00".getBytes());
+        String badTime = Base64.getUrlEncoder().encodeToString("yesterday|5".getBytes());
+        String badId = Base64.getUrlEncoder().encodeToString("2026-01-01T00:00|five".getBytes());
+
+        for (String cursor : new String[]{"not base64!", noSeparator, badTime, badId}) {
+            assertThatThrownBy(() -> KeysetCursor.decode(cursor))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageStartingWith("Invalid cursor");
+        }
+    }
+}
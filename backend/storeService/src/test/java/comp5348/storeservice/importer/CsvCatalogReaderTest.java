@@ -0,0 +1,100 @@
+package comp5348.storeservice.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvCatalogReaderTest {
+
+    @Test
+    void mapsColumnsByHeaderInAnyOrderAndIgnoresUnknownOnes() throws IOException {
+        List<CatalogRow> rows = readAll("quantity,sku,color,warehouse_id\n5,ABC,red,2\n");
+
+        assertThat(rows).hasSize(1);
+        CatalogRow row = rows.get(0);
+        assertThat(row.getLine()).isEqualTo(2);
+        assertThat(row.getSku()).isEqualTo("ABC");
+        assertThat(row.getRawWarehouseId()).isEqualTo("2");
+        assertThat(row.getRawQuantity()).isEqualTo("5");
+        assertThat(row.getName()).isNull();
+        assertThat(row.validate()).isNull();
+        assertThat(row.getWarehouseId()).isEqualTo(2L);
+        assertThat(row.getQuantity()).isEqualTo(5);
+    }
+
+    @Test
+    void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        List<CatalogRow> rows = readAll("sku,name,price,description\r\n"
+                + "\"A-1\",\"Widget, large\",9.99,\"He said \"\"hi\"\"\r\nsecond line\"\r\n"
+                + "B-2,Caf\u00e9,1.50,\r\n");
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).getSku()).isEqualTo("A-1");
+        assertThat(rows.get(0).getName()).isEqualTo("Widget, large");
+        assertThat(rows.get(0).getRawPrice()).isEqualTo("9.99");
+        assertThat(rows.get(0).getDescription()).isEqualTo("He said \"hi\"\r\nsecond line");
+        assertThat(rows.get(1).getLine()).isEqualTo(3);
+        assertThat(rows.get(1).getName()).isEqualTo("Caf\u00e9");
+        assertThat(rows.get(1).getDescription()).isNull();
+    }
+
+    @Test
+    void skipsByteOrderMarkAndBlankLinesAndReadsALastLineWithoutNewline() throws IOException {
+        List<CatalogRow> rows = readAll("\uFEFFsku,name,price\n\nC-3,Thing,2\n\nD-4,Other,3");
+
+        assertThat(rows).extracting(CatalogRow::getSku).containsExactly("C-3", "D-4");
+        assertThat(rows).extracting(CatalogRow::getLine).containsExactly(3L, 5L);
+    }
+
+    @Test
+    void unterminatedQuoteBreaksTheStream() throws IOException {
+        try (CatalogRowReader reader = open("sku,name\n\"E-5,oops\n")) {
+            assertThatThrownBy(reader::next)
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Unterminated quoted field");
+        }
+    }
+
+    @Test
+    void headerRowWithSkuIsRequired() {
+        assertThatThrownBy(() -> open(""))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("header row is required");
+        assertThatThrownBy(() -> open("name,price\nWidget,1\n"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("no sku column");
+    }
+
+    @Test
+    void badValuesAreLeftToValidate() throws IOException {
+        List<CatalogRow> rows = readAll("sku,name,price,warehouse_id,quantity\n"
+                + "F-6,Widget,abc,,\n"
+                + "G-7,,,1,-2\n"
+                + ",Nameless,1,,\n");
+
+        assertThat(rows).extracting(CatalogRow::validate).containsExactly(
+                "invalid price 'abc'", "quantity must not be negative", "sku is required");
+    }
+
+    private static List<CatalogRow> readAll(String csv) throws IOException {
+        List<CatalogRow> rows = new ArrayList<>();
+        try (CatalogRowReader reader = open(csv)) {
+            CatalogRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static CatalogRowReader open(String csv) throws IOException {
+        return CatalogRowReader.open(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV);
+    }
+}
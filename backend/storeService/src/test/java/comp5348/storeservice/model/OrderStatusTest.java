@@ -0,0 +1,67 @@
+package comp5348.storeservice.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderStatusTest {
+
+    @Test
+    void happyPathMovesForwardOneStepAtATime() {
+        OrderStatus[] path = {OrderStatus.PENDING_STOCK_HOLD, OrderStatus.PLACED, OrderStatus.PENDING_PAYMENT,
+                OrderStatus.PAID, OrderStatus.PROCESSING, OrderStatus.PICKED_UP, OrderStatus.IN_TRANSIT,
+                OrderStatus.DELIVERED};
+        for (int i = 1; i < path.length; i++) {
+            assertThat(path[i - 1].canMoveTo(path[i])).as(path[i - 1] + " -> " + path[i]).isTrue();
+            assertThat(path[i].canMoveTo(path[i - 1])).as(path[i] + " -> " + path[i - 1]).isFalse();
+        }
+    }
+
+    @Test
+    void finalStatusesCannotMoveAnywhere() {
+        for (OrderStatus terminal : EnumSet.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED, OrderStatus.CANCELLED_SYSTEM)) {
+            for (OrderStatus next : OrderStatus.values()) {
+                assertThat(terminal.canMoveTo(next)).as(terminal + " -> " + next).isFalse();
+            }
+        }
+    }
+
+    @Test
+    void noStatusMovesToItself() {
+        for (OrderStatus status : OrderStatus.values()) {
+            assertThat(status.canMoveTo(status)).as(status.name()).isFalse();
+        }
+    }
+
+    @Test
+    void onlyOrdersWithTheParcelStillInTheWarehouseCanBeCancelledBySystem() {
+        assertThat(OrderStatus.allowedFrom(OrderStatus.CANCELLED_SYSTEM))
+                .containsExactlyInAnyOrder(OrderStatus.PAID, OrderStatus.PROCESSING);
+        assertThat(OrderStatus.PICKED_UP.canMoveTo(OrderStatus.CANCELLED_SYSTEM)).isFalse();
+        // A parcel lost in transit is cancelled, not system-cancelled
+        assertThat(OrderStatus.IN_TRANSIT.canMoveTo(OrderStatus.CANCELLED)).isTrue();
+    }
+
+    @Test
+    void allowedFromIsTheReverseOfCanMoveTo() {
+        for (OrderStatus to : OrderStatus.values()) {
+            for (OrderStatus from : OrderStatus.values()) {
+                assertThat(OrderStatus.allowedFrom(to).contains(from)).as(from + " -> " + to)
+                        .isEqualTo(from.canMoveTo(to));
+            }
+        }
+        assertThat(OrderStatus.allowedFrom(OrderStatus.PENDING_STOCK_HOLD)).isEmpty();
+        assertThat(OrderStatus.allowedFrom(OrderStatus.PAID))
+                .containsExactlyInAnyOrder(OrderStatus.PLACED, OrderStatus.PENDING_PAYMENT);
+    }
+
+    @Test
+    void allowedFromCannotBeModified() {
+        assertThatThrownBy(() -> OrderStatus.allowedFrom(OrderStatus.PAID).add(OrderStatus.DELIVERED))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(OrderStatus.allowedFrom(OrderStatus.PAID)).doesNotContain(OrderStatus.DELIVERED);
+    }
+}
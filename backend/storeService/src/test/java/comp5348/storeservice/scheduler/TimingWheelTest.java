@@ -0,0 +1,90 @@
+package comp5348.storeservice.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    @Test
+    void firesInTheTickOfItsDeadlineAndNotBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 1000);
+
+        assertThat(wheel.schedule("order-1", 1055)).isTrue();
+
+        assertThat(wheel.advance(1050, new ArrayList<>())).isEmpty();
+        assertThat(wheel.advance(1060, new ArrayList<>())).containsExactly("order-1");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void deadlineThatHasPassedIsNotScheduled() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 1000);
+
+        assertThat(wheel.schedule("late", 1000)).isFalse();
+        assertThat(wheel.schedule("later", 500)).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cancelledKeyNeverFires() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 4, 0);
+        wheel.schedule("paid", 5);
+        wheel.schedule("unpaid", 5);
+
+        assertThat(wheel.cancel("paid")).isTrue();
+        assertThat(wheel.cancel("paid")).isFalse();
+
+        assertThat(wheel.advance(10, new ArrayList<>())).containsExactly("unpaid");
+    }
+
+    @Test
+    void reschedulingReplacesTheEarlierDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 4, 0);
+        wheel.schedule("order-1", 10);
+        wheel.schedule("order-1", 30);
+
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(20, new ArrayList<>())).isEmpty();
+        assertThat(wheel.advance(30, new ArrayList<>())).containsExactly("order-1");
+    }
+
+    @Test
+    void timersOnHigherLevelsCascadeDownAndFireOnTime() {
+        // Levels cover 4, 16, 64 and 256 ticks; 1000 is beyond the top level and goes round it
+        TimingWheel<String> wheel = new TimingWheel<>(1, 4, 0);
+        long[] deadlines = {3, 5, 17, 70, 200, 300, 1000};
+        for (long deadline : deadlines) {
+            assertThat(wheel.schedule("k" + deadline, deadline)).isTrue();
+        }
+
+        Map<String, Long> firedAt = new HashMap<>();
+        for (long now = 1; now <= 1000; now++) {
+            for (String key : wheel.advance(now, new ArrayList<>())) {
+                firedAt.put(key, now);
+            }
+        }
+
+        for (long deadline : deadlines) {
+            assertThat(firedAt).containsEntry("k" + deadline, deadline);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void oneAdvanceOverManyTicksReturnsKeysInDeadlineOrder() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 4, 0);
+        wheel.schedule("c", 40);
+        wheel.schedule("a", 2);
+        wheel.schedule("b", 9);
+
+        List<String> expired = wheel.advance(100, new ArrayList<>());
+
+        assertThat(expired).containsExactly("a", "b", "c");
+    }
+}
@@ -0,0 +1,189 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.dto.CreateOrderRequest;
+import comp5348.storeservice.dto.OrderDTO;
+import comp5348.storeservice.service.OrderIntakeBatcher.IntakeMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderIntakeBatcherTest {
+
+    @Mock
+    private OrderProductService orderProductService;
+
+    @Mock
+    private OrderPlacementStatement placementStatement;
+
+    @Mock
+    private PaymentExpiryTracker paymentExpiryTracker;
+
+    @Mock
+    private OrderViewProjector orderViewProjector;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private OrderIntakeBatcher batcher;
+
+    // One thread per concurrent checkout, so every caller can be waiting at the same time
+    private final ExecutorService callers = Executors.newFixedThreadPool(3);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(batcher, "mode", IntakeMode.GROUP_COMMIT);
+        ReflectionTestUtils.setField(batcher, "batchWindowMs", 2000L);
+        ReflectionTestUtils.setField(batcher, "batchSize", 3);
+        ReflectionTestUtils.setField(batcher, "queueSize", 16);
+        ReflectionTestUtils.setField(batcher, "timeoutMs", 10000L);
+        when(placementStatement.isSupported()).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        callers.shutdownNow();
+        batcher.stop();
+    }
+
+    @Test
+    void rejectedCartFailsOnlyItsOwnOrderInASharedBatch() throws Exception {
+        when(placementStatement.place(eq(1L), anyMap())).thenReturn(order(101L));
+        when(placementStatement.place(eq(2L), anyMap())).thenThrow(new RuntimeException("Insufficient stock for product 7"));
+        when(placementStatement.place(eq(3L), anyMap())).thenReturn(order(103L));
+        batcher.start();
+
+        CompletableFuture<OrderDTO> first = submit(1L);
+        CompletableFuture<OrderDTO> second = submit(2L);
+        CompletableFuture<OrderDTO> third = submit(3L);
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getId()).isEqualTo(101L);
+        assertThat(third.get(5, TimeUnit.SECONDS).getId()).isEqualTo(103L);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Insufficient stock for product 7");
+
+        batcher.stop();   // counters are updated after the callers are released
+
+        // One transaction for all three orders, committed with the two good ones
+        verify(transactionManager, times(1)).commit(any());
+        verify(transactionManager, never()).rollback(any());
+        assertThat(batcher.getStats().getBatches()).isEqualTo(1);
+        assertThat(batcher.getStats().getBatchRetries()).isZero();
+        assertThat(batcher.getStats().getPlaced()).isEqualTo(2);
+        assertThat(batcher.getStats().getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void failedBatchIsRolledBackAndRetriedOneOrderPerTransaction() throws Exception {
+        when(placementStatement.place(eq(1L), anyMap())).thenReturn(order(101L));
+        when(placementStatement.place(eq(2L), anyMap())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(placementStatement.place(eq(3L), anyMap())).thenReturn(order(103L));
+        batcher.start();
+
+        CompletableFuture<OrderDTO> first = submit(1L);
+        CompletableFuture<OrderDTO> second = submit(2L);
+        CompletableFuture<OrderDTO> third = submit(3L);
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getId()).isEqualTo(101L);
+        assertThat(third.get(5, TimeUnit.SECONDS).getId()).isEqualTo(103L);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+
+        batcher.stop();
+
+        // The batch and the bad order's own retry roll back; the two good orders commit on their own
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(2)).commit(any());
+        verify(placementStatement, times(2)).place(eq(1L), anyMap());
+        verify(placementStatement, times(2)).place(eq(3L), anyMap());
+        assertThat(batcher.getStats().getBatchRetries()).isEqualTo(1);
+        assertThat(batcher.getStats().getPlaced()).isEqualTo(2);
+        assertThat(batcher.getStats().getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void callerThatTimesOutBeforeItsBatchIsNeverPlacedButAClaimedOrderIsAwaited() throws Exception {
+        ReflectionTestUtils.setField(batcher, "batchSize", 1);
+        ReflectionTestUtils.setField(batcher, "timeoutMs", 100L);
+        CountDownLatch placing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(placementStatement.place(eq(1L), anyMap())).thenAnswer(invocation -> {
+            placing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return order(101L);
+        });
+        batcher.start();
+
+        // The first order is claimed by a batch that outlasts the caller's timeout
+        CompletableFuture<OrderDTO> claimed = submit(1L);
+        assertThat(placing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The second one is still queued when its caller gives up
+        assertThatThrownBy(() -> batcher.createOrderWithPayment(request(2L), null))
+                .hasMessageContaining("timed out");
+        release.countDown();
+
+        assertThat(claimed.get(5, TimeUnit.SECONDS).getId()).isEqualTo(101L);
+        verify(placementStatement, after(300).never()).place(eq(2L), anyMap());
+        batcher.stop();
+        assertThat(batcher.getStats().getTimedOut()).isEqualTo(1);
+        assertThat(batcher.getStats().getPlaced()).isEqualTo(1);
+    }
+
+    private CompletableFuture<OrderDTO> submit(Long userId) {
+        return CompletableFuture.supplyAsync(() -> batcher.createOrderWithPayment(request(userId), null), callers);
+    }
+
+    private static CreateOrderRequest request(Long userId) {
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setUserId(userId);
+        request.setOrderItems(List.of(new CreateOrderRequest.OrderItemRequest(7L, 2)));
+        return request;
+    }
+
+    private static OrderDTO order(Long id) {
+        OrderDTO order = new OrderDTO();
+        order.setId(id);
+        order.setTotalAmount(new BigDecimal("20.00"));
+        order.setCreatedAt(LocalDateTime.now());
+        return order;
+    }
+}
@@ -0,0 +1,283 @@
+package comp5348.storeservice.service;
+
+import comp5348.storeservice.allocation.SmallestFirstAllocation;
+import comp5348.storeservice.dto.WarehouseStockView;
+import comp5348.storeservice.model.InventoryTransaction;
+import comp5348.storeservice.model.InventoryTransactionType;
+import comp5348.storeservice.model.Product;
+import comp5348.storeservice.model.Warehouse;
+import comp5348.storeservice.repository.InventoryTransactionRepository;
+import comp5348.storeservice.repository.WarehouseProductRepository;
+import comp5348.storeservice.service.WarehouseService.ReservationMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockLedgerTest {
+
+    private static final Long PRODUCT_ID = 7L;
+
+    @Mock
+    private WarehouseProductRepository warehouseProductRepository;
+
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @Mock
+    private ProductStockSummaryService stockSummaryService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private StockLedger ledger;
+
+    private final SmallestFirstAllocation smallestFirst = new SmallestFirstAllocation();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ledger, "reservationMode", ReservationMode.LEDGER);
+        ReflectionTestUtils.setField(ledger, "flushBatchSize", 500);
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void loadsTheCountersOnlyInLedgerMode() {
+        ReflectionTestUtils.setField(ledger, "reservationMode", ReservationMode.GUARDED);
+        when(inventoryTransactionRepository.findStockPendingForUpdate(any())).thenReturn(List.of());
+
+        ledger.start();
+
+        assertThat(ledger.isReady()).isFalse();
+        verify(warehouseProductRepository, never()).findAllStockLevels();
+        assertThatThrownBy(() -> ledger.hold(PRODUCT_ID, 1, smallestFirst, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("not loaded");
+    }
+
+    @Test
+    void holdSplitsAcrossWarehousesAndTakesTheUnits() {
+        load();
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(33);
+
+        List<StockLedger.Allocation> allocations = ledger.hold(PRODUCT_ID, 10, smallestFirst, null);
+
+        assertThat(describe(allocations)).containsExactly("1:5 (5->0)", "3:5 (8->3)");
+        assertThat(allocations).allSatisfy(allocation -> {
+            assertThat(allocation.getProductId()).isEqualTo(PRODUCT_ID);
+            assertThat(allocation.getProductName()).isEqualTo("Widget");
+        });
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(23);
+    }
+
+    @Test
+    void holdReturnsNullWithoutTakingAnythingWhenStockIsShort() {
+        load();
+
+        assertThat(ledger.hold(PRODUCT_ID, 34, smallestFirst, null)).isNull();
+        assertThat(ledger.hold(99L, 1, smallestFirst, null)).isNull();
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(33);
+        assertThat(ledger.getTotal(99L)).isZero();
+    }
+
+    @Test
+    void holdIsGivenBackWhenTheTransactionRollsBack() {
+        load();
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertThat(ledger.hold(PRODUCT_ID, 30, smallestFirst, null)).isNotNull();
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(3);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(33);
+        assertThat(describe(ledger.hold(PRODUCT_ID, 33, smallestFirst, null)))
+                .containsExactly("1:5 (5->0)", "3:8 (8->0)", "2:20 (20->0)");
+    }
+
+    @Test
+    void committedHoldIsKept() {
+        load();
+        TransactionSynchronizationManager.initSynchronization();
+
+        ledger.hold(PRODUCT_ID, 30, smallestFirst, null);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(3);
+    }
+
+    @Test
+    void adjustmentsWaitForTheCommitAndApplyAtOnceOutsideATransaction() {
+        load();
+
+        TransactionSynchronizationManager.initSynchronization();
+        ledger.adjustAfterCommit(PRODUCT_ID, 2L, "Widget", "Warehouse 2", 4);
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(33);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(37);
+
+        // A warehouse the product was not stocked in yet gets its own slot
+        ledger.adjustAfterCommit(PRODUCT_ID, 5L, "Widget", "Warehouse 5", 2);
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(39);
+        assertThat(describe(ledger.hold(PRODUCT_ID, 2, smallestFirst, null))).containsExactly("5:2 (2->0)");
+    }
+
+    @Test
+    void flushNetsTheJournalPerWarehouseAndMarksRowsApplied() {
+        InventoryTransaction hold = journal(1L, InventoryTransactionType.HOLD, 3, null);
+        InventoryTransaction unhold = journal(1L, InventoryTransactionType.UNHOLD, 3, -3);
+        InventoryTransaction otherWarehouse = journal(2L, InventoryTransactionType.HOLD, 2, null);
+        InventoryTransaction alreadyApplied = journal(3L, InventoryTransactionType.HOLD, 4, -4);
+        when(inventoryTransactionRepository.findStockPendingForUpdate(any()))
+                .thenReturn(List.of(hold, unhold, otherWarehouse, alreadyApplied), List.of());
+
+        assertThat(ledger.flushAll()).isEqualTo(4);
+
+        // Warehouse 1 nets to zero and warehouse 3 was applied by an earlier flush
+        verify(warehouseProductRepository).adjustQuantity(eq(2L), eq(PRODUCT_ID), eq(-2), any());
+        verify(warehouseProductRepository, never()).adjustQuantity(eq(1L), any(), anyInt(), any());
+        verify(warehouseProductRepository, never()).adjustQuantity(eq(3L), any(), anyInt(), any());
+        verify(stockSummaryService).recordDelta(PRODUCT_ID, -2);
+        assertThat(List.of(hold, unhold, otherWarehouse, alreadyApplied))
+                .extracting(InventoryTransaction::getAppliedQuantity)
+                .containsExactly(-3, 0, -2, -4);
+        assertThat(List.of(hold, unhold, otherWarehouse, alreadyApplied))
+                .extracting(InventoryTransaction::getStockPending)
+                .containsOnly(false);
+    }
+
+    @Test
+    void resyncReloadsOnlyTheGivenProduct() {
+        load();
+        ledger.hold(PRODUCT_ID, 10, smallestFirst, null);
+        when(warehouseProductRepository.findStockLevelsByProductIds(List.of(PRODUCT_ID))).thenReturn(List.of(
+                new StockLevel(1L, 4), new StockLevel(2L, 20)));
+
+        ledger.resync(PRODUCT_ID);
+
+        assertThat(ledger.getTotal(PRODUCT_ID)).isEqualTo(24);
+        verify(warehouseProductRepository).findAllStockLevels();
+        assertThat(describe(ledger.hold(PRODUCT_ID, 24, smallestFirst, null)))
+                .containsExactly("1:4 (4->0)", "2:20 (20->0)");
+    }
+
+    // 33 units of the product: 5 in warehouse 1, 20 in warehouse 2, 8 in warehouse 3
+    private void load() {
+        when(inventoryTransactionRepository.findStockPendingForUpdate(any())).thenReturn(List.of());
+        when(warehouseProductRepository.findAllStockLevels()).thenReturn(List.of(
+                new StockLevel(1L, 5), new StockLevel(2L, 20), new StockLevel(3L, 8)));
+        ledger.start();
+        assertThat(ledger.isReady()).isTrue();
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static List<String> describe(List<StockLedger.Allocation> allocations) {
+        assertThat(allocations).isNotNull();
+        return allocations.stream()
+                .map(a -> a.getWarehouseId() + ":" + a.getQuantity() + " (" + a.getStockBefore() + "->" + a.getStockAfter() + ")")
+                .collect(Collectors.toList());
+    }
+
+    private static InventoryTransaction journal(Long warehouseId, InventoryTransactionType type, int quantity,
+                                                Integer appliedQuantity) {
+        Warehouse warehouse = new Warehouse();
+        warehouse.setId(warehouseId);
+        Product product = new Product();
+        product.setId(PRODUCT_ID);
+        InventoryTransaction tx = new InventoryTransaction();
+        tx.setWarehouse(warehouse);
+        tx.setProduct(product);
+        tx.setType(type);
+        tx.setQuantity(quantity);
+        tx.setAppliedQuantity(appliedQuantity);
+        tx.setStockPending(true);
+        return tx;
+    }
+
+    private record StockLevel(Long warehouseId, int quantity) implements WarehouseStockView {
+
+        @Override
+        public Long getId() {
+            return warehouseId * 10;
+        }
+
+        @Override
+        public Long getWarehouseId() {
+            return warehouseId;
+        }
+
+        @Override
+        public String getWarehouseName() {
+            return "Warehouse " + warehouseId;
+        }
+
+        @Override
+        public String getWarehouseLocation() {
+            return null;
+        }
+
+        @Override
+        public Double getWarehouseLatitude() {
+            return null;
+        }
+
+        @Override
+        public Double getWarehouseLongitude() {
+            return null;
+        }
+
+        @Override
+        public Long getProductId() {
+            return PRODUCT_ID;
+        }
+
+        @Override
+        public String getProductName() {
+            return "Widget";
+        }
+
+        @Override
+        public Integer getQuantity() {
+            return quantity;
+        }
+    }
+}